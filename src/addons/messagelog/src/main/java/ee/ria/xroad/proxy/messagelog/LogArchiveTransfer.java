@@ -0,0 +1,425 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.messagelog;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Transfers created archive files with the archive transfer command
+ * separately from archiving.
+ * <p>
+ * By default the command is run the same way as before, without arguments,
+ * and is expected to transfer the whole archive directory. One run covers all
+ * the archive files created before it started. When per-file transfer is
+ * enabled, the command is run once for each archive file, which is passed to
+ * it as its first positional parameter ($1), and several commands may run in
+ * parallel.
+ * <p>
+ * Archive files waiting for transfer are stored in a state file in the
+ * archive directory, so that they are transferred after a restart. Failed
+ * transfers are retried with an exponentially growing delay. Files still not
+ * transferred after the last attempt are listed in {@value #FAILED_FILE} in
+ * the archive directory and retried after the next archiving run. If the
+ * queue is full, {@link #submit(String)} waits until a transfer completes.
+ */
+@Slf4j
+class LogArchiveTransfer implements Closeable {
+
+    static final String STATE_FILE = ".mlog-transfer-queue";
+    static final String FAILED_FILE = ".mlog-transfer-failed";
+
+    private static final int MAX_BACKOFF_SHIFT = 6;
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private final Path archivePath;
+    private final Path stateFile;
+    private final Path failedFile;
+    private final String command;
+    private final boolean perFile;
+    private final int queueSize;
+    private final int maxAttempts;
+    private final long retryDelayMillis;
+    private final ScheduledExecutorService executor;
+
+    // Guarded by this.
+    private final Set<String> pending = new LinkedHashSet<>();
+    private final Set<String> failed = new LinkedHashSet<>();
+    private boolean directoryTransferScheduled;
+
+    /**
+     * Creates the transfer stage and resubmits the archive files that were
+     * waiting for transfer when the previous instance was stopped.
+     * @param archivePath the archive directory
+     * @param command the archive transfer command
+     * @param perFile whether the command is run separately for each archive file
+     * @param concurrency the number of per-file transfer commands run in parallel
+     * @param queueSize the number of archive files waiting for transfer
+     * @param maxAttempts the number of times a transfer is attempted
+     * @param retryDelayMillis the delay before the first retry
+     */
+    LogArchiveTransfer(Path archivePath, String command, boolean perFile, int concurrency, int queueSize,
+            int maxAttempts, long retryDelayMillis) {
+        this.archivePath = archivePath;
+        this.stateFile = archivePath.resolve(STATE_FILE);
+        this.failedFile = archivePath.resolve(FAILED_FILE);
+        this.command = command;
+        this.perFile = perFile;
+        this.queueSize = queueSize;
+        this.maxAttempts = maxAttempts;
+        this.retryDelayMillis = retryDelayMillis;
+        this.executor = Executors.newScheduledThreadPool(perFile ? concurrency : 1, r -> {
+            Thread thread = new Thread(r);
+            thread.setName("archive-transfer-" + THREAD_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        restore();
+    }
+
+    /**
+     * Queues the archive file for transfer. Waits while the queue is full.
+     * @param archiveFileName the name of the archive file in the archive directory
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void submit(String archiveFileName) throws InterruptedException {
+        synchronized (this) {
+            while (pending.size() >= queueSize && !pending.contains(archiveFileName)) {
+                log.debug("Archive transfer queue is full, waiting");
+                wait();
+            }
+
+            failed.remove(archiveFileName);
+
+            if (!pending.add(archiveFileName)) {
+                return;
+            }
+
+            saveState();
+        }
+
+        schedule(archiveFileName);
+    }
+
+    /**
+     * Queues the archive files whose transfer has failed for another round of
+     * attempts, as far as there is room in the queue.
+     */
+    void retryFailed() {
+        List<String> retried = new ArrayList<>();
+
+        synchronized (this) {
+            Iterator<String> it = failed.iterator();
+
+            while (it.hasNext() && pending.size() < queueSize) {
+                String archiveFileName = it.next();
+                it.remove();
+
+                if (pending.add(archiveFileName)) {
+                    retried.add(archiveFileName);
+                }
+            }
+
+            if (retried.isEmpty()) {
+                return;
+            }
+
+            saveState();
+        }
+
+        log.info("Retrying transfer of {} archive files", retried.size());
+
+        retried.forEach(this::schedule);
+    }
+
+    /**
+     * @return the archive files waiting for transfer
+     */
+    synchronized List<String> getPending() {
+        return new ArrayList<>(pending);
+    }
+
+    /**
+     * @return the archive files whose transfer failed after all the attempts
+     */
+    synchronized List<String> getFailed() {
+        return new ArrayList<>(failed);
+    }
+
+    /**
+     * Stops the transfers. Unfinished transfers are resumed after a restart.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void restore() {
+        List<String> restored = readState(stateFile);
+        List<String> restoredFailed = readState(failedFile);
+
+        synchronized (this) {
+            failed.addAll(restoredFailed);
+        }
+
+        for (String archiveFileName : restored) {
+            if (addPending(archiveFileName)) {
+                log.info("Resuming transfer of archive file {}", archiveFileName);
+                schedule(archiveFileName);
+            }
+        }
+
+        if (!restoredFailed.isEmpty()) {
+            log.warn("Transfer of {} archive files has failed, see {}", restoredFailed.size(), failedFile);
+        }
+    }
+
+    private List<String> readState(Path file) {
+        List<String> archiveFileNames = new ArrayList<>();
+
+        if (Files.exists(file)) {
+            try {
+                Files.readAllLines(file, StandardCharsets.UTF_8).stream()
+                        .filter(name -> !name.isEmpty())
+                        .forEach(archiveFileNames::add);
+            } catch (IOException e) {
+                log.error("Failed to read archive transfer state from {}", file, e);
+            }
+        }
+
+        return archiveFileNames;
+    }
+
+    private synchronized boolean addPending(String archiveFileName) {
+        failed.remove(archiveFileName);
+
+        return pending.add(archiveFileName);
+    }
+
+    private synchronized void done(Collection<String> archiveFileNames) {
+        pending.removeAll(archiveFileNames);
+        saveState();
+        notifyAll();
+    }
+
+    private synchronized void giveUp(Collection<String> archiveFileNames) {
+        pending.removeAll(archiveFileNames);
+        failed.addAll(archiveFileNames);
+        saveState();
+        notifyAll();
+    }
+
+    private void schedule(String archiveFileName) {
+        if (perFile) {
+            schedule(() -> transferFile(archiveFileName, 1), 0);
+        } else {
+            scheduleDirectoryTransfer();
+        }
+    }
+
+    private void schedule(Runnable transfer, long delayMillis) {
+        executor.schedule(transfer, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void scheduleDirectoryTransfer() {
+        if (!directoryTransferScheduled && !pending.isEmpty()) {
+            directoryTransferScheduled = true;
+            schedule(() -> transferDirectory(1), 0);
+        }
+    }
+
+    private void transferFile(String archiveFileName, int attempt) {
+        Path archiveFile = archivePath.resolve(archiveFileName);
+        List<String> transferred = Collections.singletonList(archiveFileName);
+
+        if (!Files.exists(archiveFile)) {
+            log.debug("Archive file {} no longer exists, skipping transfer", archiveFile);
+            done(transferred);
+            return;
+        }
+
+        if (runTransferCommand(archiveFile)) {
+            done(transferred);
+        } else if (Thread.currentThread().isInterrupted()) {
+            log.info("Transfer of archive file {} interrupted, resuming after restart", archiveFile);
+        } else if (attempt < maxAttempts) {
+            long delay = getRetryDelay(attempt);
+            log.warn("Transfer of archive file {} failed (attempt {}/{}), retrying in {} ms", archiveFile,
+                    attempt, maxAttempts, delay);
+            schedule(() -> transferFile(archiveFileName, attempt + 1), delay);
+        } else {
+            log.error("Transfer of archive file {} failed after {} attempts, listed in {}", archiveFile, attempt,
+                    failedFile);
+            giveUp(transferred);
+        }
+    }
+
+    /**
+     * Runs the command for the whole archive directory. The run covers the
+     * archive files queued before it started; files queued meanwhile get
+     * another run.
+     */
+    private void transferDirectory(int attempt) {
+        List<String> transferred = getPending();
+
+        if (runTransferCommand(null)) {
+            done(transferred);
+            directoryTransferFinished();
+        } else if (Thread.currentThread().isInterrupted()) {
+            log.info("Archive transfer interrupted, resuming after restart");
+        } else if (attempt < maxAttempts) {
+            long delay = getRetryDelay(attempt);
+            log.warn("Archive transfer failed (attempt {}/{}), retrying in {} ms", attempt, maxAttempts, delay);
+            schedule(() -> transferDirectory(attempt + 1), delay);
+        } else {
+            log.error("Archive transfer failed after {} attempts, archive files not transferred are listed in {}",
+                    attempt, failedFile);
+            giveUp(transferred);
+            directoryTransferFinished();
+        }
+    }
+
+    private synchronized void directoryTransferFinished() {
+        directoryTransferScheduled = false;
+        scheduleDirectoryTransfer();
+    }
+
+    private long getRetryDelay(int attempt) {
+        return retryDelayMillis << Math.min(attempt - 1, MAX_BACKOFF_SHIFT);
+    }
+
+    /**
+     * Must be called holding the lock.
+     */
+    private void saveState() {
+        saveState(stateFile, pending);
+
+        if (failed.isEmpty()) {
+            try {
+                Files.deleteIfExists(failedFile);
+            } catch (IOException e) {
+                log.error("Failed to delete {}", failedFile, e);
+            }
+        } else {
+            saveState(failedFile, failed);
+        }
+    }
+
+    private void saveState(Path file, Set<String> archiveFileNames) {
+        try {
+            Path tmp = Files.createTempFile(archivePath, file.getFileName().toString(), ".tmp");
+            try {
+                Files.write(tmp, archiveFileNames, StandardCharsets.UTF_8);
+                Files.move(tmp, file, REPLACE_EXISTING, ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            log.error("Failed to save archive transfer state to {}", file, e);
+        }
+    }
+
+    /**
+     * @param archiveFile the archive file passed to the command, or null to run it for the whole directory
+     */
+    private boolean runTransferCommand(Path archiveFile) {
+        Process process = null;
+        try {
+            String[] commandLine;
+
+            if (archiveFile != null) {
+                log.info("Transferring archive {} with shell command: \t{}", archiveFile, command);
+
+                commandLine = new String[] {"/bin/bash", "-c", command, "archive-transfer", archiveFile.toString()};
+            } else {
+                log.info("Transferring archives with shell command: \t{}", command);
+
+                commandLine = new String[] {"/bin/bash", "-c", command};
+            }
+
+            String standardError = null;
+
+            process = new ProcessBuilder(commandLine).redirectOutput(Paths.get("/dev/null").toFile()).start();
+
+            try (InputStream error = process.getErrorStream()) {
+                standardError = IOUtils.toString(error, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                // We can ignore it.
+                log.error("Could not read standard error", e);
+            }
+
+            int exitCode = process.waitFor();
+            if (exitCode != 0) {
+                String errorMsg = String.format("Running archive transfer command '%s' exited with status '%d'",
+                        command, exitCode);
+                log.error(
+                        "{}\n -- STANDARD ERROR START\n{}\n"
+                                + " -- STANDARD ERROR END",
+                        errorMsg,
+                        standardError);
+
+                return false;
+            }
+
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            return false;
+        } catch (Exception e) {
+            log.error("Failed to execute archive transfer command '{}'", command, e);
+
+            return false;
+        } finally {
+            if (process != null && process.isAlive()) {
+                process.destroyForcibly();
+            }
+        }
+    }
+}
@@ -37,24 +37,26 @@ import akka.actor.UntypedAbstractActor;
 import lombok.RequiredArgsConstructor;
 import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.io.IOUtils;
 import org.hibernate.Session;
 
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
 import static ee.ria.xroad.common.messagelog.MessageLogProperties.getArchiveTransactionBatchSize;
 import static ee.ria.xroad.common.messagelog.MessageLogProperties.getArchiveTransferCommand;
+import static ee.ria.xroad.common.messagelog.MessageLogProperties.getArchiveTransferConcurrency;
+import static ee.ria.xroad.common.messagelog.MessageLogProperties.getArchiveTransferMaxAttempts;
+import static ee.ria.xroad.common.messagelog.MessageLogProperties.getArchiveTransferQueueSize;
+import static ee.ria.xroad.common.messagelog.MessageLogProperties.getArchiveTransferRetryDelay;
+import static ee.ria.xroad.common.messagelog.MessageLogProperties.isArchiveTransferPerFile;
 import static ee.ria.xroad.proxy.messagelog.MessageLogDatabaseCtx.doInTransaction;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 
@@ -76,6 +78,9 @@ public class LogArchiver extends UntypedAbstractActor {
     private final Path archivePath;
     private final Path workingPath;
 
+    private final List<String> createdArchives = new ArrayList<>();
+    private LogArchiveTransfer transfer;
+
     @Override
     public void onReceive(Object message) {
         log.trace("onReceive({})", message);
@@ -95,7 +100,36 @@ public class LogArchiver extends UntypedAbstractActor {
         }
     }
 
+    @Override
+    public void preStart() throws Exception {
+        super.preStart();
+
+        String transferCommand = getArchiveTransferCommand();
+        if (!isBlank(transferCommand)) {
+            transfer = new LogArchiveTransfer(archivePath, transferCommand, isArchiveTransferPerFile(),
+                    getArchiveTransferConcurrency(), getArchiveTransferQueueSize(), getArchiveTransferMaxAttempts(),
+                    TimeUnit.SECONDS.toMillis(getArchiveTransferRetryDelay()));
+        }
+    }
+
+    @Override
+    public void postStop() throws Exception {
+        if (transfer != null) {
+            transfer.close();
+        }
+
+        super.postStop();
+    }
+
     private boolean handleArchive(long maxTimestampId) throws Exception {
+        try {
+            return archive(maxTimestampId);
+        } finally {
+            transferCreatedArchives();
+        }
+    }
+
+    private boolean archive(long maxTimestampId) throws Exception {
         return doInTransaction(session -> {
             final List<TimestampRecord> batch =
                     getNonArchivedTimestampRecords(session, MAX_RECORDS_IN_BATCH, maxTimestampId);
@@ -116,9 +150,7 @@ public class LogArchiver extends UntypedAbstractActor {
                     try (Stream<MessageRecord> records = getNonArchivedMessageRecords(session, ts.getId())) {
                         recordsArchived += records.peek(record -> {
                             try {
-                                if (archiveWriter.write(record)) {
-                                    runTransferCommand(getArchiveTransferCommand());
-                                }
+                                archiveWriter.write(record);
                                 //evict record from persistence context to avoid running out of memory
                                 session.detach(record);
                             } catch (Exception e) {
@@ -140,8 +172,6 @@ public class LogArchiver extends UntypedAbstractActor {
                 }
             } catch (Exception e) {
                 throw new CodedException(ErrorCodes.X_INTERNAL_ERROR, e);
-            } finally {
-                runTransferCommand(getArchiveTransferCommand());
             }
 
             log.info("Archived {} log records in {} ms", recordsArchived, System.currentTimeMillis() - start);
@@ -151,6 +181,25 @@ public class LogArchiver extends UntypedAbstractActor {
         });
     }
 
+    /**
+     * Hands the archive files created by the last transaction over to the
+     * transfer stage, whether or not the transaction was committed, since
+     * the files exist either way. Earlier failed transfers are retried.
+     */
+    private void transferCreatedArchives() throws InterruptedException {
+        try {
+            if (transfer != null) {
+                for (String archiveFileName : createdArchives) {
+                    transfer.submit(archiveFileName);
+                }
+
+                transfer.retryFailed();
+            }
+        } finally {
+            createdArchives.clear();
+        }
+    }
+
     private LogArchiveWriter createLogArchiveWriter(Session session) {
         return new LogArchiveWriter(
                 getArchivePath(),
@@ -213,51 +262,14 @@ public class LogArchiver extends UntypedAbstractActor {
     protected void markArchiveCreated(final DigestEntry lastArchive,
             final Session session) throws Exception {
         if (lastArchive != null) {
+            createdArchives.add(lastArchive.getFileName());
+
             log.debug("Digest entry will be saved here...");
             session.createQuery("delete from " + DigestEntry.class.getName()).executeUpdate();
             session.save(lastArchive);
         }
     }
 
-    private static void runTransferCommand(String transferCommand) {
-        if (isBlank(transferCommand)) {
-            return;
-        }
-
-        log.info("Transferring archives with shell command: \t{}", transferCommand);
-        Process process = null;
-        try {
-            String[] command = new String[] {"/bin/bash", "-c", transferCommand};
-            String standardError = null;
-
-            process = new ProcessBuilder(command).redirectOutput(Paths.get("/dev/null").toFile()).start();
-
-            try (InputStream error = process.getErrorStream()) {
-                standardError = IOUtils.toString(error, StandardCharsets.UTF_8);
-            } catch (IOException e) {
-                // We can ignore it.
-                log.error("Could not read standard error", e);
-            }
-
-            int exitCode = process.waitFor();
-            if (exitCode != 0) {
-                String errorMsg = String.format("Running archive transfer command '%s' exited with status '%d'",
-                        transferCommand, exitCode);
-                log.error(
-                        "{}\n -- STANDARD ERROR START\n{}\n"
-                                + " -- STANDARD ERROR END",
-                        errorMsg,
-                        standardError);
-            }
-        } catch (Exception e) {
-            log.error("Failed to execute archive transfer command '{}'", transferCommand, e);
-        } finally {
-            if (process != null && process.isAlive()) {
-                process.destroyForcibly();
-            }
-        }
-    }
-
     @Value
     private class HibernateLogArchiveBase implements LogArchiveBase {
 
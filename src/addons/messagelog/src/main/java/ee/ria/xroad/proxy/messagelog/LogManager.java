@@ -32,9 +32,11 @@ import ee.ria.xroad.common.DiagnosticsUtils;
 import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.conf.globalconf.GlobalConf;
 import ee.ria.xroad.common.conf.serverconf.ServerConf;
+import ee.ria.xroad.common.message.SoapMessageImpl;
 import ee.ria.xroad.common.messagelog.AbstractLogManager;
 import ee.ria.xroad.common.messagelog.LogMessage;
 import ee.ria.xroad.common.messagelog.LogRecord;
+import ee.ria.xroad.common.messagelog.MessageCompression;
 import ee.ria.xroad.common.messagelog.MessageLogProperties;
 import ee.ria.xroad.common.messagelog.MessageRecord;
 import ee.ria.xroad.common.messagelog.RestLogMessage;
@@ -59,6 +61,7 @@ import scala.concurrent.Await;
 import scala.concurrent.duration.Duration;
 import scala.concurrent.duration.FiniteDuration;
 
+import java.io.InputStreamReader;
 import java.nio.file.Paths;
 import java.time.LocalTime;
 import java.util.Date;
@@ -83,6 +86,8 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 /**
  * Message log manager. Sets up the whole logging system components.
  * The logging system consists of a task queue, timestamper, archiver and log cleaner.
+ * Message records are saved by a pool of writer threads, while this actor only checks
+ * that messages can be logged and coordinates the time-stamping status.
  */
 @Slf4j
 public class LogManager extends AbstractLogManager {
@@ -99,6 +104,7 @@ public class LogManager extends AbstractLogManager {
 
     static final long MAX_LOGGABLE_BODY_SIZE = MessageLogProperties.getMaxLoggableBodySize();
     static final boolean TRUNCATED_BODY_ALLOWED = MessageLogProperties.isTruncatedBodyAllowed();
+    static final String MESSAGE_COMPRESSION = MessageCompression.getCompression();
 
     // Date at which a time-stamping first failed.
     private DateTime timestampFailed;
@@ -111,9 +117,13 @@ public class LogManager extends AbstractLogManager {
     final ActorRef logArchiver;
     final ActorRef logCleaner;
 
+    private final LogWriterPool writers;
+
     LogManager(JobManager jobManager) throws Exception {
         super(jobManager);
 
+        writers = new LogWriterPool(MessageLogProperties.getWriterCount());
+
         taskQueueRef = createTaskQueue();
         timestamper = createTimestamper();
         timestamperJob = createTimestamperJob();
@@ -158,18 +168,54 @@ public class LogManager extends AbstractLogManager {
 
     // ------------------------------------------------------------------------
 
+    @Override
+    public void postStop() {
+        writers.close();
+    }
+
     @Override
     protected void log(LogMessage message) throws Exception {
         boolean shouldTimestampImmediately = shouldTimestampImmediately();
 
         verifyCanLogMessage(shouldTimestampImmediately);
 
+        write(message, shouldTimestampImmediately);
+    }
+
+    /**
+     * Checks that the message can be logged and passes it to a writer, which replies to the sender
+     * when the message has been saved.
+     */
+    private void logAsync(LogMessage message) {
+        boolean shouldTimestampImmediately = shouldTimestampImmediately();
+
+        verifyCanLogMessage(shouldTimestampImmediately);
+
+        ActorRef sender = getSender();
+        ActorRef self = getSelf();
+
+        writers.submit(message.getQueryId(), () -> {
+            try {
+                write(message, shouldTimestampImmediately);
+                sender.tell(new Object(), self);
+            } catch (Exception e) {
+                sender.tell(e, self);
+            }
+        });
+    }
+
+    private void write(LogMessage message, boolean shouldTimestampImmediately) throws Exception {
         MessageRecord logRecord;
         if (message instanceof SoapLogMessage) {
             logRecord = createMessageRecord((SoapLogMessage) message);
         } else {
             logRecord = createMessageRecord((RestLogMessage) message);
         }
+
+        if (MESSAGE_COMPRESSION != null) {
+            logRecord.compress(MESSAGE_COMPRESSION, message.getService());
+        }
+
         logRecord = saveMessageRecord(logRecord);
 
         if (shouldTimestampImmediately) {
@@ -212,6 +258,8 @@ public class LogManager extends AbstractLogManager {
                 getSender().tell(statusMap, getSelf());
             } else if (message instanceof SetTimestampingStatusMessage) {
                 setTimestampingStatus((SetTimestampingStatusMessage) message);
+            } else if (message instanceof LogMessage) {
+                logAsync((LogMessage) message);
             } else {
                 super.onReceive(message);
             }
@@ -265,16 +313,26 @@ public class LogManager extends AbstractLogManager {
     private static MessageRecord createMessageRecord(SoapLogMessage message) throws Exception {
         log.trace("createMessageRecord()");
 
-        String loggedMessage = new MessageBodyManipulator().getLoggableMessageText(message);
+        MessageBodyManipulator manipulator = new MessageBodyManipulator();
+        SoapMessageImpl soap = message.getMessage();
+
+        // A message kept in a temporary file is compressed straight from the file,
+        // instead of reading it into a string. The uncompressed message column can
+        // only be filled from a string.
+        boolean streamed = MESSAGE_COMPRESSION != null && soap.isSpilled() && manipulator.isBodyLogged(message);
 
         MessageRecord messageRecord = new MessageRecord(
                 message.getQueryId(),
-                loggedMessage,
+                streamed ? null : manipulator.getLoggableMessageText(message),
                 message.getSignature().getSignatureXml(),
                 message.isResponse(),
                 message.isClientSide() ? message.getClient() : message.getService().getClientId(),
                 message.getXRequestId());
 
+        if (streamed) {
+            messageRecord.setMessageReader(new InputStreamReader(soap.getContent(), soap.getCharset()));
+        }
+
         messageRecord.setTime(new Date().getTime());
 
         if (message.getSignature().isBatchSignature()) {
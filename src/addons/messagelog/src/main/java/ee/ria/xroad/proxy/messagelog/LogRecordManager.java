@@ -136,16 +136,20 @@ public final class LogRecordManager {
      * @throws Exception if an error occurs while communicating with database.
      */
     static void saveMessageRecord(MessageRecord messageRecord) throws Exception {
-        doInTransaction(session -> {
-            //the blob must be created within hibernate session
-            final InputStream is = messageRecord.getAttachmentStream();
-            if (is != null) {
-                messageRecord.setAttachment(session.getLobHelper().createBlob(is,
-                        messageRecord.getAttachmentStreamSize()));
-            }
-            save(session, messageRecord);
-            return null;
-        });
+        try {
+            doInTransaction(session -> {
+                //the blob must be created within hibernate session
+                final InputStream is = messageRecord.getAttachmentStream();
+                if (is != null) {
+                    messageRecord.setAttachment(session.getLobHelper().createBlob(is,
+                            messageRecord.getAttachmentStreamSize()));
+                }
+                save(session, messageRecord);
+                return null;
+            });
+        } finally {
+            messageRecord.releaseAttachmentStream();
+        }
     }
 
     /**
@@ -156,10 +160,11 @@ public final class LogRecordManager {
     static void updateMessageRecordSignature(MessageRecord messageRecord) throws Exception {
         doInTransaction(session -> {
             final Query query = session.createQuery("update MessageRecord m set m.signature = :signature, "
-                    + "m.signatureHash = :hash where id = :id");
+                    + "m.compressedSignature = :compressedSignature, m.signatureHash = :hash where id = :id");
             query.setParameter("id", messageRecord.getId());
             query.setParameter("hash", messageRecord.getSignatureHash());
-            query.setParameter("signature", messageRecord.getSignature());
+            query.setParameter("signature", messageRecord.getStoredSignature());
+            query.setParameter("compressedSignature", messageRecord.getCompressedSignature());
             query.executeUpdate();
             return null;
         });
@@ -0,0 +1,111 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.messagelog;
+
+import ee.ria.xroad.common.util.ServiceMetricRegistry;
+
+import com.codahale.metrics.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Saves message records with a fixed number of writer threads, each using
+ * its own database connection. Tasks are sharded by query id, so the request
+ * and the response of a query are saved by the same writer in order.
+ * <p>
+ * The time a task waits in the writer queue and the time it takes to run are
+ * published in the service metric registry.
+ */
+@Slf4j
+class LogWriterPool implements Closeable {
+
+    private static final int SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    private final ExecutorService[] writers;
+
+    private final Timer queueTimer = ServiceMetricRegistry.getMetrics().timer(name(LogWriterPool.class, "queueTime"));
+    private final Timer writeTimer = ServiceMetricRegistry.getMetrics().timer(name(LogWriterPool.class, "writeTime"));
+
+    /**
+     * @param writerCount the number of writer threads
+     */
+    LogWriterPool(int writerCount) {
+        writers = new ExecutorService[writerCount];
+
+        for (int i = 0; i < writerCount; i++) {
+            String threadName = "messagelog-writer-" + i;
+            writers[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, threadName);
+                thread.setDaemon(true);
+
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Queues the task to the writer of the given shard key.
+     * @param shardKey the key determining the writer, may be null
+     * @param task the task
+     */
+    void submit(String shardKey, Runnable task) {
+        long queuedAt = System.nanoTime();
+
+        writers[Math.floorMod(Objects.hashCode(shardKey), writers.length)].execute(() -> {
+            queueTimer.update(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+
+            try (Timer.Context ignored = writeTimer.time()) {
+                task.run();
+            }
+        });
+    }
+
+    /**
+     * Stops the writers after the queued tasks have been run.
+     */
+    @Override
+    public void close() {
+        for (ExecutorService writer : writers) {
+            writer.shutdown();
+        }
+
+        try {
+            for (ExecutorService writer : writers) {
+                if (!writer.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    log.warn("Message log writer did not finish in time");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
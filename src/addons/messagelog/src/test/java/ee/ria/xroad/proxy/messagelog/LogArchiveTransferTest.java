@@ -0,0 +1,179 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.messagelog;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the asynchronous archive transfer stage.
+ */
+public class LogArchiveTransferTest {
+
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    /**
+     * Transfers an archive file and clears the state.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void transferArchive() throws Exception {
+        Path archiveDir = tmp.newFolder("archive").toPath();
+        Path targetDir = tmp.newFolder("target").toPath();
+        Files.write(archiveDir.resolve("mlog-1.zip"), "archive".getBytes(StandardCharsets.UTF_8));
+
+        try (LogArchiveTransfer transfer = new LogArchiveTransfer(archiveDir,
+                "cp \"$1\" " + targetDir, true, 2, 10, 1, 0)) {
+            transfer.submit("mlog-1.zip");
+
+            waitUntilDone(transfer);
+        }
+
+        assertTrue(Files.exists(targetDir.resolve("mlog-1.zip")));
+        assertTrue(Files.readAllLines(archiveDir.resolve(LogArchiveTransfer.STATE_FILE)).isEmpty());
+    }
+
+    /**
+     * Retries a failing transfer until the attempts are used up.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void retryFailedTransfer() throws Exception {
+        Path archiveDir = tmp.newFolder("archive").toPath();
+        Path attempts = tmp.getRoot().toPath().resolve("attempts");
+        Files.write(archiveDir.resolve("mlog-1.zip"), "archive".getBytes(StandardCharsets.UTF_8));
+
+        try (LogArchiveTransfer transfer = new LogArchiveTransfer(archiveDir,
+                "echo \"$1\" >> " + attempts + "; exit 1", true, 1, 10, 3, 10)) {
+            transfer.submit("mlog-1.zip");
+
+            waitUntilDone(transfer);
+
+            assertEquals(Collections.singletonList("mlog-1.zip"), transfer.getFailed());
+        }
+
+        assertEquals(3, Files.readAllLines(attempts).size());
+        assertEquals(Collections.singletonList("mlog-1.zip"),
+                Files.readAllLines(archiveDir.resolve(LogArchiveTransfer.FAILED_FILE)));
+    }
+
+    /**
+     * Retries the transfers that failed before the restart once archiving runs again.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void retryFailedAfterRestart() throws Exception {
+        Path archiveDir = tmp.newFolder("archive").toPath();
+        Path targetDir = tmp.newFolder("target").toPath();
+        Files.write(archiveDir.resolve("mlog-1.zip"), "archive".getBytes(StandardCharsets.UTF_8));
+        Files.write(archiveDir.resolve(LogArchiveTransfer.FAILED_FILE), Collections.singletonList("mlog-1.zip"));
+
+        try (LogArchiveTransfer transfer = new LogArchiveTransfer(archiveDir,
+                "cp \"$1\" " + targetDir, true, 1, 10, 1, 0)) {
+            assertEquals(Collections.singletonList("mlog-1.zip"), transfer.getFailed());
+
+            transfer.retryFailed();
+
+            waitUntilDone(transfer);
+
+            assertTrue(transfer.getFailed().isEmpty());
+        }
+
+        assertTrue(Files.exists(targetDir.resolve("mlog-1.zip")));
+        assertTrue(Files.notExists(archiveDir.resolve(LogArchiveTransfer.FAILED_FILE)));
+    }
+
+    /**
+     * Runs the command without arguments for the whole archive directory by default.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void transferDirectory() throws Exception {
+        Path archiveDir = tmp.newFolder("archive").toPath();
+        Path targetDir = tmp.newFolder("target").toPath();
+        Path arguments = tmp.getRoot().toPath().resolve("arguments");
+        Files.write(archiveDir.resolve("mlog-1.zip"), "archive".getBytes(StandardCharsets.UTF_8));
+        Files.write(archiveDir.resolve("mlog-2.zip"), "archive".getBytes(StandardCharsets.UTF_8));
+
+        try (LogArchiveTransfer transfer = new LogArchiveTransfer(archiveDir,
+                "echo $# >> " + arguments + "; mv " + archiveDir + "/*.zip " + targetDir, false, 2, 10, 1, 0)) {
+            transfer.submit("mlog-1.zip");
+            transfer.submit("mlog-2.zip");
+
+            waitUntilDone(transfer);
+        }
+
+        assertTrue(Files.exists(targetDir.resolve("mlog-1.zip")));
+        assertTrue(Files.exists(targetDir.resolve("mlog-2.zip")));
+
+        List<String> runs = Files.readAllLines(arguments);
+        assertFalse(runs.isEmpty());
+        runs.forEach(argumentCount -> assertEquals("0", argumentCount));
+    }
+
+    /**
+     * Resumes the transfers that were pending when the previous instance was stopped.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void resumeAfterRestart() throws Exception {
+        Path archiveDir = tmp.newFolder("archive").toPath();
+        Path targetDir = tmp.newFolder("target").toPath();
+        Files.write(archiveDir.resolve("mlog-1.zip"), "archive".getBytes(StandardCharsets.UTF_8));
+        Files.write(archiveDir.resolve(LogArchiveTransfer.STATE_FILE), Collections.singletonList("mlog-1.zip"));
+
+        try (LogArchiveTransfer transfer = new LogArchiveTransfer(archiveDir,
+                "mv \"$1\" " + targetDir, true, 1, 10, 1, 0)) {
+            waitUntilDone(transfer);
+        }
+
+        assertTrue(Files.exists(targetDir.resolve("mlog-1.zip")));
+        assertTrue(Files.notExists(archiveDir.resolve("mlog-1.zip")));
+    }
+
+    private static void waitUntilDone(LogArchiveTransfer transfer) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+
+        while (!transfer.getPending().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertTrue(transfer.getPending().isEmpty());
+    }
+}
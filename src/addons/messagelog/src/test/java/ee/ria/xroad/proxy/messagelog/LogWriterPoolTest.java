@@ -0,0 +1,84 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.messagelog;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link LogWriterPool}.
+ */
+public class LogWriterPoolTest {
+
+    /**
+     * Test that tasks of the same query are run in order by the same writer.
+     */
+    @Test
+    public void tasksOfSameQueryAreRunInOrder() {
+        List<Integer> results = Collections.synchronizedList(new ArrayList<>());
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+
+        LogWriterPool pool = new LogWriterPool(4);
+        for (int i = 0; i < 100; i++) {
+            int value = i;
+            pool.submit("query", () -> {
+                threads.add(Thread.currentThread().getName());
+                results.add(value);
+            });
+        }
+        pool.close();
+
+        assertEquals(1, threads.size());
+        assertEquals(100, results.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, (int) results.get(i));
+        }
+    }
+
+    /**
+     * Test that tasks of different queries are spread to several writers.
+     */
+    @Test
+    public void tasksAreShardedByQueryId() {
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+
+        LogWriterPool pool = new LogWriterPool(4);
+        for (int i = 0; i < 100; i++) {
+            pool.submit("query" + i, () -> threads.add(Thread.currentThread().getName()));
+        }
+        pool.submit(null, () -> threads.add(Thread.currentThread().getName()));
+        pool.close();
+
+        assertTrue(threads.size() > 1);
+    }
+}
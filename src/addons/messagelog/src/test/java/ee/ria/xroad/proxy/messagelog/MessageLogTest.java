@@ -31,6 +31,7 @@ import ee.ria.xroad.common.message.SoapMessageImpl;
 import ee.ria.xroad.common.messagelog.AbstractLogManager;
 import ee.ria.xroad.common.messagelog.AbstractLogRecord;
 import ee.ria.xroad.common.messagelog.LogRecord;
+import ee.ria.xroad.common.messagelog.MessageCompression;
 import ee.ria.xroad.common.messagelog.MessageLogProperties;
 import ee.ria.xroad.common.messagelog.MessageRecord;
 import ee.ria.xroad.common.messagelog.TimestampRecord;
@@ -399,6 +400,36 @@ public class MessageLogTest extends AbstractMessageLogTest {
         assertNull(findByQueryId("foo", "02-04-2014 12:34:56.100", "02-04-2014 12:34:59.100"));
     }
 
+    /**
+     * Saves a compressed message record and reads it back.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void saveCompressedMessageRecord() throws Exception {
+        log.trace("saveCompressedMessageRecord()");
+
+        SoapMessageImpl message = createMessage("compressed");
+        String signature = createSignature().getSignatureXml();
+
+        MessageRecord record = new MessageRecord(message, signature, message.getClient(), null);
+        record.setTime(new Date().getTime());
+        record.compress(MessageCompression.DEFLATE, message.getService());
+
+        LogRecordManager.saveMessageRecord(record);
+
+        MessageRecord saved = (MessageRecord) LogRecordManager.get(record.getId());
+
+        assertEquals(MessageCompression.DEFLATE, saved.getCompression());
+        assertEquals(message.getXml(), saved.getMessage());
+        assertEquals(signature, saved.getSignature());
+
+        saved.setSignature(signature + "<!-- updated -->");
+        LogRecordManager.updateMessageRecordSignature(saved);
+
+        assertEquals(signature + "<!-- updated -->",
+                ((MessageRecord) LogRecordManager.get(record.getId())).getSignature());
+    }
+
     /**
      * Wants to time-stamp, but no TSP urls configured.
      * @throws Exception in case of any unexpected errors
@@ -25,6 +25,7 @@
 package ee.ria.xroad.proxy.serverproxy;
 
 import ee.ria.xroad.common.CodedException;
+import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.conf.serverconf.ServerConf;
 import ee.ria.xroad.common.conf.serverconf.ServerConfDatabaseCtx;
 import ee.ria.xroad.common.conf.serverconf.dao.ServiceDescriptionDAOImpl;
@@ -50,6 +51,9 @@ import ee.ria.xroad.proxy.protocol.ProxyMessage;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.StatusLine;
@@ -57,6 +61,7 @@ import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
 import org.w3c.dom.Node;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
@@ -82,13 +87,13 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringWriter;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import static ee.ria.xroad.common.ErrorCodes.X_INVALID_REQUEST;
 import static ee.ria.xroad.common.ErrorCodes.X_INVALID_SERVICE_TYPE;
@@ -113,6 +118,8 @@ class MetadataServiceHandlerImpl implements ServiceHandler {
 
     private HttpClientCreator wsdlHttpClientCreator = new HttpClientCreator();
 
+    private static final WsdlCache WSDL_CACHE = new WsdlCache(SystemProperties.getWsdlCacheSize());
+
     private static final SAXTransformerFactory TRANSFORMER_FACTORY = createSaxTransformerFactory();
 
     private static SAXTransformerFactory createSaxTransformerFactory() {
@@ -263,8 +270,7 @@ class MetadataServiceHandlerImpl implements ServiceHandler {
                             request.getService().getClientId()));
         }
 
-        log.info("Downloading WSDL from URL: {}", url);
-        try (InputStream in = modifyWsdl(getWsdl(url, serviceId))) {
+        try (InputStream in = new ByteArrayInputStream(getModifiedWsdl(url, serviceId))) {
             Map<String, String> additionalHeaders = new HashMap<>();
             additionalHeaders.put("Content-Transfer-Encoding", "binary");
             additionalHeaders.put("Content-ID", "<wsdl=" + UUID.randomUUID().toString() + "@x-road.eu>");
@@ -335,16 +341,16 @@ class MetadataServiceHandlerImpl implements ServiceHandler {
     }
 
     /**
-     * reads a WSDL from input stream, modifies it and returns input stream to the result
+     * reads a WSDL from input stream, modifies it and returns the result
      *
      * @param wsdl
      * @return
      */
-    private InputStream modifyWsdl(InputStream wsdl) {
+    private byte[] modifyWsdl(InputStream wsdl) {
         try {
             TransformerHandler serializer = TRANSFORMER_FACTORY.newTransformerHandler();
-            StringWriter writer = new StringWriter();
-            StreamResult result = new StreamResult(writer);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            StreamResult result = new StreamResult(out);
             serializer.setResult(result);
 
             OverwriteAttributeFilter filter = getModifyWsdlFilter();
@@ -356,13 +362,14 @@ class MetadataServiceHandlerImpl implements ServiceHandler {
                     new CommentsHandler(serializer));
             xmlreader.setContentHandler(filter);
 
-            // parse XML, filter it, put end result to a String
+            // parse XML, filter it, serialize end result as UTF-8
             xmlreader.parse(new InputSource(wsdl));
-            String resultString = writer.toString();
-            log.debug("result of WSDL cleanup: {}", resultString);
+            byte[] resultBytes = out.toByteArray();
+            if (log.isDebugEnabled()) {
+                log.debug("result of WSDL cleanup: {}", new String(resultBytes, StandardCharsets.UTF_8));
+            }
 
-            // offer InputStream into processed String
-            return new ByteArrayInputStream(resultString.getBytes(StandardCharsets.UTF_8));
+            return resultBytes;
         } catch (IOException | SAXException | TransformerConfigurationException e) {
             throw new RuntimeException(e);
         }
@@ -372,25 +379,77 @@ class MetadataServiceHandlerImpl implements ServiceHandler {
         return OverwriteAttributeFilter.createOverwriteSoapAddressFilter(WSDL_ENDPOINT_ADDRESS);
     }
 
-    private InputStream getWsdl(String url, ServiceId serviceId)
+    /**
+     * Returns the modified WSDL from cache, or downloads and modifies it. An expired cache entry
+     * is revalidated with a conditional request, and reused if the service provider responds
+     * with 304 Not Modified.
+     */
+    private byte[] getModifiedWsdl(String url, ServiceId serviceId)
             throws HttpClientCreator.HttpClientCreatorException, URISyntaxException, IOException {
+        int cachePeriod = SystemProperties.getWsdlCachePeriod();
+        WsdlCache.Key key = new WsdlCache.Key(serviceId.getClientId(), url, getModifyWsdlFilter().getModification());
+        WsdlCache.Entry cached = cachePeriod > 0 ? WSDL_CACHE.get(key) : null;
 
-        HttpClient client = wsdlHttpClientCreator.getHttpClient();
-
-        HttpContext httpContext = new BasicHttpContext();
-
-        // ServerMessageProcessor uses the same method to pass the ServiceId to CustomSSLSocketFactory
-        httpContext.setAttribute(ServiceId.class.getName(), serviceId);
+        if (cached != null && !cached.isExpired()) {
+            log.debug("Using cached WSDL from URL: {}", url);
+            return cached.getWsdl();
+        }
 
-        HttpResponse response = client.execute(new HttpGet(new URI(url)), httpContext);
+        HttpGet request = new HttpGet(new URI(url));
+        if (cached != null && cached.getEtag() != null) {
+            request.setHeader(HttpHeaders.IF_NONE_MATCH, cached.getEtag());
+        }
+        if (cached != null && cached.getLastModified() != null) {
+            request.setHeader(HttpHeaders.IF_MODIFIED_SINCE, cached.getLastModified());
+        }
 
+        log.info("Downloading WSDL from URL: {}", url);
+        HttpResponse response = getWsdl(request, serviceId);
         StatusLine statusLine = response.getStatusLine();
+        long expiresAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(cachePeriod);
+
+        if (cached != null && cached.canRevalidate() && statusLine.getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+            EntityUtils.consumeQuietly(response.getEntity());
+            log.debug("WSDL from URL {} not modified", url);
+            WSDL_CACHE.put(key, cached.renew(expiresAt));
+            return cached.getWsdl();
+        }
 
         if (HttpStatus.SC_OK != statusLine.getStatusCode()) {
+            EntityUtils.consumeQuietly(response.getEntity());
             throw new RuntimeException("Received HTTP error: "
                     + statusLine.getStatusCode() + " - " + statusLine.getReasonPhrase());
         }
 
-        return response.getEntity().getContent();
+        byte[] wsdl;
+        HttpEntity entity = response.getEntity();
+        try (InputStream in = entity.getContent()) {
+            wsdl = modifyWsdl(in);
+        }
+
+        if (cachePeriod > 0) {
+            WSDL_CACHE.put(key, new WsdlCache.Entry(wsdl, getHeaderValue(response, HttpHeaders.ETAG),
+                    getHeaderValue(response, HttpHeaders.LAST_MODIFIED), expiresAt));
+        }
+
+        return wsdl;
+    }
+
+    private static String getHeaderValue(HttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return header != null ? header.getValue() : null;
+    }
+
+    private HttpResponse getWsdl(HttpGet request, ServiceId serviceId)
+            throws HttpClientCreator.HttpClientCreatorException, IOException {
+
+        HttpClient client = wsdlHttpClientCreator.getHttpClient();
+
+        HttpContext httpContext = new BasicHttpContext();
+
+        // ServerMessageProcessor uses the same method to pass the ServiceId to CustomSSLSocketFactory
+        httpContext.setAttribute(ServiceId.class.getName(), serviceId);
+
+        return client.execute(request, httpContext);
     }
 }
@@ -69,6 +69,13 @@ public class OverwriteAttributeFilter extends XMLFilterImpl {
     }
 
 
+    /**
+     * @return description of the modification this filter makes, equal for filters making the same modification
+     */
+    public String getModification() {
+        return element + " " + attributeToOverwrite + "=" + newValue;
+    }
+
     @Override
     public void startElement(String uri, String localName, String qName,
                              Attributes atts)
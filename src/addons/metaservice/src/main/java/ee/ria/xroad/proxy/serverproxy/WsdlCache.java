@@ -0,0 +1,91 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.serverproxy;
+
+import ee.ria.xroad.common.identifier.ClientId;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.Value;
+
+/**
+ * Keeps the WSDLs returned by the getWsdl metaservice, already modified for the client.
+ * Every entry has the ETag and Last-Modified validators the service provider returned,
+ * so an expired entry can be revalidated with a conditional request instead of
+ * downloading and modifying the WSDL again.
+ */
+class WsdlCache {
+
+    private final Cache<Key, Entry> cache;
+
+    WsdlCache(long maxSize) {
+        cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .build();
+    }
+
+    /**
+     * @param key the key
+     * @return cached entry, or null if there is none
+     */
+    Entry get(Key key) {
+        return cache.getIfPresent(key);
+    }
+
+    void put(Key key, Entry entry) {
+        cache.put(key, entry);
+    }
+
+    /**
+     * WSDL is fetched with the TLS settings of the service provider and modified with a filter,
+     * so all of them are part of the key.
+     */
+    @Value
+    static class Key {
+        private final ClientId serviceProvider;
+        private final String url;
+        private final String modification;
+    }
+
+    @Value
+    static class Entry {
+        private final byte[] wsdl;
+        private final String etag;
+        private final String lastModified;
+        private final long expiresAt;
+
+        boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+
+        boolean canRevalidate() {
+            return etag != null || lastModified != null;
+        }
+
+        Entry renew(long newExpiresAt) {
+            return new Entry(wsdl, etag, lastModified, newExpiresAt);
+        }
+    }
+}
@@ -97,6 +97,8 @@ import java.util.Arrays;
 import java.util.List;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
 import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
 import static ee.ria.xroad.common.ErrorCodes.X_INVALID_SERVICE_TYPE;
@@ -585,6 +587,47 @@ public class MetadataServiceHandlerTest {
                 containsInAnyOrder(expectedEndpointUrls.toArray()));
     }
 
+    @Test
+    public void getWsdlShouldRevalidateCachedWsdl() throws Exception {
+        System.setProperty(SystemProperties.WSDL_CACHE_PERIOD, "1");
+        try {
+            final ServiceId serviceId = ServiceId.create(DEFAULT_CLIENT, GET_WSDL);
+            TestMetadataServiceHandlerImpl handlerToTest = prepareTestConstructsForWsdl(serviceId);
+            handlerToTest.setTestFilter(OverwriteAttributeFilter.createOverwriteSoapAddressFilter("cached-location"));
+            mockServer.stubFor(WireMock.get(urlPathEqualTo(EXPECTED_WSDL_QUERY_PATH))
+                    .willReturn(aResponse().withHeader("ETag", "\"v1\"").withBodyFile("wsdl.wsdl")));
+            mockServer.stubFor(WireMock.get(urlPathEqualTo(EXPECTED_WSDL_QUERY_PATH))
+                    .withHeader("If-None-Match", equalTo("\"v1\""))
+                    .willReturn(aResponse().withStatus(HttpServletResponse.SC_NOT_MODIFIED)));
+
+            handlerToTest.startHandling(mockRequest, mockProxyMessage,
+                    httpClientMock, mock(OpMonitoringData.class));
+
+            // served from cache while fresh
+            handlerToTest = prepareWsdlHandler(serviceId, "cached-location");
+            handlerToTest.startHandling(mockRequest, mockProxyMessage,
+                    httpClientMock, mock(OpMonitoringData.class));
+            mockServer.verify(1, getRequestedFor(urlPathEqualTo(EXPECTED_WSDL_QUERY_PATH)));
+
+            // revalidated after expiry, 304 response reuses the cached WSDL
+            Thread.sleep(1100);
+            handlerToTest = prepareWsdlHandler(serviceId, "cached-location");
+            handlerToTest.startHandling(mockRequest, mockProxyMessage,
+                    httpClientMock, mock(OpMonitoringData.class));
+            mockServer.verify(2, getRequestedFor(urlPathEqualTo(EXPECTED_WSDL_QUERY_PATH)));
+            mockServer.verify(1, getRequestedFor(urlPathEqualTo(EXPECTED_WSDL_QUERY_PATH))
+                    .withHeader("If-None-Match", equalTo("\"v1\"")));
+
+            TestMimeContentHandler handler = parseWsdlResponse(handlerToTest.getResponseContent(),
+                    handlerToTest.getResponseContentType());
+
+            assertThat("Expected to find overwritten endpoint urls",
+                    handler.getEndpointUrls(), containsInAnyOrder("cached-location"));
+        } finally {
+            System.clearProperty(SystemProperties.WSDL_CACHE_PERIOD);
+        }
+    }
+
     @Test
     public void shouldThrowInvalidServiceTypeExWhenGetWsdl() throws Exception {
 
@@ -640,6 +683,30 @@ public class MetadataServiceHandlerTest {
         return prepareTestConstructsForWsdl(serviceId, false);
     }
 
+    /**
+     * Prepare another TestMetadataServiceHandlerImpl for a get WSDL request, reusing the database and wiremock
+     */
+    private TestMetadataServiceHandlerImpl prepareWsdlHandler(ServiceId serviceId, String endpointAddress)
+            throws Exception {
+        WsdlRequestData wsdlRequestData = new WsdlRequestData();
+        wsdlRequestData.setServiceCode("someServiceWithWsdl122");
+
+        InputStream soapContentInputStream = new TestSoapBuilder()
+                .withClient(DEFAULT_CLIENT)
+                .withService(serviceId)
+                .withModifiedBody(
+                        soapBody -> marshaller.marshal(wsdlRequestData, soapBody))
+                .buildAsInputStream();
+
+        when(mockProxyMessage.getSoapContent()).thenReturn(soapContentInputStream);
+
+        TestMetadataServiceHandlerImpl handlerToTest = new TestMetadataServiceHandlerImpl();
+        handlerToTest.setTestFilter(OverwriteAttributeFilter.createOverwriteSoapAddressFilter(endpointAddress));
+        handlerToTest.canHandle(serviceId, mockProxyMessage);
+
+        return handlerToTest;
+    }
+
     private String readFile(String filename) throws IOException, URISyntaxException {
         return new String(Files.readAllBytes(Paths.get(
                 ClassLoader.getSystemResource(filename).toURI()
@@ -25,19 +25,30 @@
 package ee.ria.xroad.proxymonitor.util;
 
 import ee.ria.xroad.common.util.SystemMetrics;
+import ee.ria.xroad.monitor.common.PhaseLatency;
 import ee.ria.xroad.monitor.common.StatsRequest;
 import ee.ria.xroad.monitor.common.StatsResponse;
+import ee.ria.xroad.proxy.util.PhaseTimer;
+import ee.ria.xroad.proxy.util.PhaseTimer.Phase;
 
 import akka.actor.UntypedAbstractActor;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
 import com.sun.management.UnixOperatingSystemMXBean;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Proxy monitoring agent
  */
 @Slf4j
 public class ProxyMonitorAgent extends UntypedAbstractActor {
 
+    private static final double NANOS_IN_MICRO = TimeUnit.MICROSECONDS.toNanos(1);
+
     private boolean failureState = false;
 
     @Override
@@ -58,7 +69,8 @@ public class ProxyMonitorAgent extends UntypedAbstractActor {
                     stats.getFreePhysicalMemorySize(),
                     stats.getTotalPhysicalMemorySize(),
                     stats.getFreeSwapSpaceSize(),
-                    stats.getTotalSwapSpaceSize());
+                    stats.getTotalSwapSpaceSize(),
+                    getPhaseLatencies());
             failureState = false;
             sender().tell(response, self());
         } catch (InternalError ignored) {
@@ -71,4 +83,37 @@ public class ProxyMonitorAgent extends UntypedAbstractActor {
             }
         }
     }
+
+    private static Map<String, PhaseLatency> getPhaseLatencies() {
+        Map<String, PhaseLatency> latencies = new HashMap<>();
+
+        for (Phase phase : Phase.values()) {
+            Timer timer = PhaseTimer.getTimer(phase);
+
+            if (timer.getCount() > 0) {
+                latencies.put(phase.getMetricName(), toPhaseLatency(timer.getCount(), timer.getSnapshot()));
+            }
+        }
+
+        return latencies;
+    }
+
+    private static PhaseLatency toPhaseLatency(long count, Snapshot snapshot) {
+        return new PhaseLatency(
+                count,
+                toMicros(snapshot.getMin()),
+                toMicros(snapshot.getMax()),
+                toMicros(snapshot.getMean()),
+                toMicros(snapshot.getStdDev()),
+                toMicros(snapshot.getMedian()),
+                toMicros(snapshot.get75thPercentile()),
+                toMicros(snapshot.get95thPercentile()),
+                toMicros(snapshot.get98thPercentile()),
+                toMicros(snapshot.get99thPercentile()),
+                toMicros(snapshot.get999thPercentile()));
+    }
+
+    private static double toMicros(double nanos) {
+        return nanos / NANOS_IN_MICRO;
+    }
 }
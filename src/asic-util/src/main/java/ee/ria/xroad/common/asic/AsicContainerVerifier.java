@@ -25,7 +25,6 @@
 package ee.ria.xroad.common.asic;
 
 import ee.ria.xroad.common.CodedException;
-import ee.ria.xroad.common.conf.globalconf.GlobalConf;
 import ee.ria.xroad.common.hashchain.DigestValue;
 import ee.ria.xroad.common.hashchain.HashChainReferenceResolver;
 import ee.ria.xroad.common.hashchain.HashChainVerifier;
@@ -39,7 +38,6 @@ import ee.ria.xroad.common.signature.MessagePart;
 import ee.ria.xroad.common.signature.Signature;
 import ee.ria.xroad.common.signature.SignatureData;
 import ee.ria.xroad.common.signature.SignatureVerifier;
-import ee.ria.xroad.common.signature.TimestampVerifier;
 import ee.ria.xroad.common.util.MessageFileNames;
 import ee.ria.xroad.common.util.MimeTypes;
 
@@ -50,12 +48,9 @@ import org.apache.xml.security.signature.XMLSignatureInput;
 import org.apache.xml.security.utils.resolver.ResourceResolverContext;
 import org.apache.xml.security.utils.resolver.ResourceResolverException;
 import org.apache.xml.security.utils.resolver.ResourceResolverSpi;
-import org.bouncycastle.asn1.ASN1Sequence;
-import org.bouncycastle.asn1.cms.ContentInfo;
 import org.bouncycastle.cert.ocsp.BasicOCSPResp;
 import org.bouncycastle.cert.ocsp.OCSPResp;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
-import org.bouncycastle.tsp.TimeStampToken;
 
 import java.io.ByteArrayInputStream;
 import java.io.FileInputStream;
@@ -96,6 +91,9 @@ public class AsicContainerVerifier {
     private final List<String> attachmentHashes = new ArrayList<>();
     private final AsicContainer asic;
 
+    @Getter(AccessLevel.NONE)
+    private TimestampVerificationCache timestampCache;
+
     private Signature signature;
 
     private ClientId signerName;
@@ -121,6 +119,17 @@ public class AsicContainerVerifier {
         }
     }
 
+    /**
+     * Constructs a new ASiC container verifier that shares time-stamp
+     * verification results with other verifiers using the same cache.
+     * @param asic the ASiC container
+     * @param timestampCache the time-stamp verification cache
+     */
+    public AsicContainerVerifier(AsicContainer asic, TimestampVerificationCache timestampCache) {
+        this.asic = asic;
+        this.timestampCache = timestampCache;
+    }
+
     /**
      * Attempts to verify the ASiC container's signature and timestamp.
      * @throws Exception if verification was unsuccessful
@@ -193,16 +202,17 @@ public class AsicContainerVerifier {
     }
 
     private Date verifyTimestamp() throws Exception {
-        TimeStampToken tsToken = getTimeStampToken();
+        byte[] tsDer = decodeBase64(asic.getEntryAsString(ENTRY_TIMESTAMP));
+        byte[] timestampedData = getTimestampedData();
 
-        TimestampVerifier.verify(tsToken, getTimestampedData(),
-                GlobalConf.getTspCertificates());
+        TimestampVerificationCache.Result result = timestampCache != null
+                ? timestampCache.verify(tsDer, timestampedData)
+                : TimestampVerificationCache.verifyToken(tsDer, timestampedData);
 
-        timestampDate = tsToken.getTimeStampInfo().getGenTime();
-        timestampCert = TimestampVerifier.getSignerCertificate(
-                tsToken, GlobalConf.getTspCertificates());
+        timestampDate = result.getGenTime();
+        timestampCert = result.getSignerCert();
 
-        return tsToken.getTimeStampInfo().getGenTime();
+        return timestampDate;
     }
 
     private void verifyTimestampHashChain(byte[] tsHashChainResultBytes) {
@@ -231,13 +241,6 @@ public class AsicContainerVerifier {
         }
     }
 
-    private TimeStampToken getTimeStampToken() throws Exception {
-        String timestampDerBase64 = asic.getEntryAsString(ENTRY_TIMESTAMP);
-        byte[] tsDerDecoded = decodeBase64(timestampDerBase64);
-        return new TimeStampToken(new ContentInfo(
-                (ASN1Sequence) ASN1Sequence.fromByteArray(tsDerDecoded)));
-    }
-
     private static ClientId getSigner(String messageXml) {
         final byte[] messageBytes = messageXml.getBytes(UTF_8);
 
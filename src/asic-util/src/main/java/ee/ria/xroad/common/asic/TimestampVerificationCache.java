@@ -0,0 +1,129 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.asic;
+
+import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+import ee.ria.xroad.common.signature.TimestampVerifier;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import lombok.Value;
+import org.bouncycastle.asn1.ASN1Sequence;
+import org.bouncycastle.asn1.cms.ContentInfo;
+import org.bouncycastle.tsp.TimeStampToken;
+
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.concurrent.ExecutionException;
+
+import static ee.ria.xroad.common.util.CryptoUtils.SHA256_ID;
+import static ee.ria.xroad.common.util.CryptoUtils.calculateDigest;
+import static ee.ria.xroad.common.util.CryptoUtils.encodeHex;
+
+/**
+ * Caches successful time-stamp token verifications. All the containers of
+ * a batch time-stamp carry the same time-stamp token over the same hash
+ * chain result, so the token needs to be verified only once per batch.
+ * The per-container hash chain linking the container to the batch is
+ * still verified by {@link AsicContainerVerifier}.
+ * <p>
+ * Instances are thread-safe. Concurrent verifications of the same token
+ * wait for the first one instead of repeating it.
+ */
+public class TimestampVerificationCache {
+
+    private final Cache<String, Result> cache;
+
+    /**
+     * Creates a cache holding up to the given number of verified tokens.
+     * @param maxSize the maximum number of cached verifications
+     */
+    public TimestampVerificationCache(long maxSize) {
+        cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Verifies the time-stamp token over the time-stamped data, unless the
+     * same token has already been verified over the same data.
+     * @param tokenDer the DER encoded time-stamp token
+     * @param timestampedData the time-stamped data
+     * @return the verified generation time and signer certificate of the token
+     * @throws Exception if verification was unsuccessful
+     */
+    public Result verify(byte[] tokenDer, byte[] timestampedData) throws Exception {
+        String key = encodeHex(calculateDigest(SHA256_ID, tokenDer))
+                + ":" + encodeHex(calculateDigest(SHA256_ID, timestampedData));
+
+        try {
+            return cache.get(key, () -> verifyToken(tokenDer, timestampedData));
+        } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+
+            throw e;
+        }
+    }
+
+    /**
+     * @return the hit/miss statistics of the cache
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    /**
+     * Verifies the time-stamp token without consulting any cache.
+     * @param tokenDer the DER encoded time-stamp token
+     * @param timestampedData the time-stamped data
+     * @return the verified generation time and signer certificate of the token
+     * @throws Exception if verification was unsuccessful
+     */
+    static Result verifyToken(byte[] tokenDer, byte[] timestampedData) throws Exception {
+        TimeStampToken tsToken = new TimeStampToken(new ContentInfo(
+                (ASN1Sequence) ASN1Sequence.fromByteArray(tokenDer)));
+
+        TimestampVerifier.verify(tsToken, timestampedData,
+                GlobalConf.getTspCertificates());
+
+        return new Result(tsToken.getTimeStampInfo().getGenTime(),
+                TimestampVerifier.getSignerCertificate(tsToken, GlobalConf.getTspCertificates()));
+    }
+
+    /**
+     * The outcome of a successful time-stamp token verification.
+     */
+    @Value
+    public static class Result {
+        private final Date genTime;
+        private final X509Certificate signerCert;
+    }
+}
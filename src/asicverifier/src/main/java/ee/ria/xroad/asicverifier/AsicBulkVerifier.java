@@ -0,0 +1,240 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.asicverifier;
+
+import ee.ria.xroad.common.asic.AsicContainer;
+import ee.ria.xroad.common.asic.AsicContainerVerifier;
+import ee.ria.xroad.common.asic.AsicUtils;
+import ee.ria.xroad.common.asic.TimestampVerificationCache;
+
+import com.google.common.cache.CacheStats;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import lombok.Getter;
+import lombok.Value;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Verifies all the ASiC containers of message log archive files and
+ * directories. The containers of an archive file are verified in parallel,
+ * and the verified time-stamp tokens are shared between the containers of
+ * the same batch time-stamp. Certificate chain verifications are shared
+ * through the signature verifier's verification cache.
+ */
+final class AsicBulkVerifier {
+
+    static final String ARCHIVE_SUFFIX = ".zip";
+    static final String CONTAINER_SUFFIX = ".asice";
+
+    private static final int TIMESTAMP_CACHE_SIZE = 10000;
+
+    private final ForkJoinPool pool;
+    private final TimestampVerificationCache timestampCache =
+            new TimestampVerificationCache(TIMESTAMP_CACHE_SIZE);
+
+    /**
+     * Creates a bulk verifier.
+     * @param parallelism the number of containers verified in parallel
+     */
+    AsicBulkVerifier(int parallelism) {
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Verifies the containers in the given archive files, container files
+     * and directories containing them.
+     * @param paths the files and directories to verify
+     * @return the verification report
+     * @throws Exception if reading the files fails
+     */
+    Report verify(List<Path> paths) throws Exception {
+        Report report = new Report(new Date());
+        List<Path> containerFiles = new ArrayList<>();
+
+        try {
+            for (Path file : listFiles(paths)) {
+                String name = file.getFileName().toString();
+
+                if (name.endsWith(ARCHIVE_SUFFIX)) {
+                    report.add(verifyArchive(file));
+                } else if (name.endsWith(CONTAINER_SUFFIX)) {
+                    containerFiles.add(file);
+                }
+            }
+
+            if (!containerFiles.isEmpty()) {
+                report.add(verifyContainerFiles(containerFiles));
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        report.finish(timestampCache.getStats());
+
+        return report;
+    }
+
+    private static List<Path> listFiles(List<Path> paths) throws IOException {
+        List<Path> files = new ArrayList<>();
+
+        for (Path path : paths) {
+            try (Stream<Path> walk = Files.walk(path)) {
+                walk.filter(Files::isRegularFile).sorted().forEach(files::add);
+            }
+        }
+
+        return files;
+    }
+
+    private SourceReport verifyArchive(Path archive) throws Exception {
+        System.out.println("Verifying archive file \"" + archive + "\" ...");
+
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            List<? extends ZipEntry> entries = zip.stream()
+                    .filter(e -> e.getName().endsWith(CONTAINER_SUFFIX))
+                    .collect(Collectors.toList());
+
+            List<Failure> failures = pool.submit(() -> entries.parallelStream()
+                    .map(e -> verifyContainer(e.getName(), () -> zip.getInputStream(e)))
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList())).get();
+
+            return new SourceReport(archive.toString(), entries.size(), failures);
+        }
+    }
+
+    private SourceReport verifyContainerFiles(List<Path> files) throws Exception {
+        System.out.println("Verifying " + files.size() + " container files ...");
+
+        List<Failure> failures = pool.submit(() -> files.parallelStream()
+                .map(f -> verifyContainer(f.toString(), () -> Files.newInputStream(f)))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList())).get();
+
+        return new SourceReport(null, files.size(), failures);
+    }
+
+    /**
+     * @return the failure, or null if the container was verified successfully
+     */
+    private Failure verifyContainer(String name, ContainerSource source) {
+        try {
+            AsicContainer asic;
+            try (InputStream in = source.open()) {
+                asic = AsicContainer.read(in);
+            }
+
+            new AsicContainerVerifier(asic, timestampCache).verify();
+
+            return null;
+        } catch (Exception e) {
+            return new Failure(name, AsicUtils.buildFailureOutput(e));
+        }
+    }
+
+    @FunctionalInterface
+    private interface ContainerSource {
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * Summary of a bulk verification run.
+     */
+    @Getter
+    static final class Report {
+        private final Date started;
+        private Date finished;
+        private int containers;
+        private int verified;
+        private int failed;
+        private long timestampCacheHits;
+        private long timestampCacheMisses;
+        private final List<SourceReport> sources = new ArrayList<>();
+
+        Report(Date started) {
+            this.started = started;
+        }
+
+        void add(SourceReport source) {
+            sources.add(source);
+            containers += source.getContainers();
+            failed += source.getFailures().size();
+            verified = containers - failed;
+        }
+
+        void finish(CacheStats stats) {
+            finished = new Date();
+            timestampCacheHits = stats.hitCount();
+            timestampCacheMisses = stats.missCount();
+        }
+
+        /**
+         * Writes the report in JSON format.
+         * @param file the report file
+         * @throws IOException if writing fails
+         */
+        void write(Path file) throws IOException {
+            Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+            try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                gson.toJson(this, writer);
+            }
+        }
+    }
+
+    /**
+     * Verification results of an archive file or the loose container files.
+     */
+    @Value
+    static class SourceReport {
+        private final String archiveFile;
+        private final int containers;
+        private final List<Failure> failures;
+    }
+
+    /**
+     * A container that failed verification.
+     */
+    @Value
+    static class Failure {
+        private final String container;
+        private final String error;
+    }
+}
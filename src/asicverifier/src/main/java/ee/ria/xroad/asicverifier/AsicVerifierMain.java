@@ -31,15 +31,21 @@ import ee.ria.xroad.common.asic.AsicContainerEntries;
 import ee.ria.xroad.common.asic.AsicContainerVerifier;
 import ee.ria.xroad.common.asic.AsicUtils;
 import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+import ee.ria.xroad.common.messagelog.archive.LogArchiveIndex;
 
 import org.apache.commons.io.IOUtils;
 
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
+import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -48,6 +54,9 @@ import java.util.zip.ZipInputStream;
  */
 public final class AsicVerifierMain {
 
+    private static final int BULK_MIN_ARGS = 4;
+    private static final int EXTRACT_ARGS = 3;
+
     private AsicVerifierMain() {
     }
 
@@ -59,6 +68,11 @@ public final class AsicVerifierMain {
     public static void main(String[] args) {
         if (args.length == 1 && "--version".equals(args[0])) {
             showVersion();
+        } else if (args.length >= BULK_MIN_ARGS && "--bulk".equals(args[0])) {
+            loadConf(args[1]);
+            verifyBulk(Paths.get(args[2]), Arrays.asList(args).subList(BULK_MIN_ARGS - 1, args.length));
+        } else if (args.length == EXTRACT_ARGS && "--extract".equals(args[0])) {
+            extractArchived(Paths.get(args[1]), args[2]);
         } else if (args.length != 2) {
             showUsage();
         } else {
@@ -103,6 +117,58 @@ public final class AsicVerifierMain {
         extractMessage(fileName);
     }
 
+    private static void verifyBulk(Path reportFile, List<String> files) {
+        AsicBulkVerifier.Report report;
+        try {
+            report = new AsicBulkVerifier(Runtime.getRuntime().availableProcessors())
+                    .verify(files.stream().map(Paths::get).collect(Collectors.toList()));
+            report.write(reportFile);
+        } catch (Exception e) {
+            System.err.println("Bulk verification failed: " + e);
+            System.exit(2);
+            return;
+        }
+
+        System.out.println("Verified " + report.getContainers() + " containers, " + report.getFailed()
+                + " failed. Report written to " + reportFile);
+
+        if (report.getFailed() > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Copies the archived containers of the query ID to the working
+     * directory using the archive index, so that they can be verified
+     * without unpacking the whole archive files.
+     */
+    private static void extractArchived(Path archiveDir, String queryId) {
+        try {
+            List<LogArchiveIndex.Entry> entries = LogArchiveIndex.find(archiveDir, queryId, null, null);
+
+            if (entries.isEmpty()) {
+                System.out.println("No archived containers found for query ID \"" + queryId + "\"");
+            }
+
+            for (LogArchiveIndex.Entry entry : entries) {
+                Path archiveFile = archiveDir.resolve(entry.getArchiveFile());
+
+                if (!Files.exists(archiveFile)) {
+                    System.err.println("Archive file " + archiveFile + " of " + entry.getEntryName()
+                            + " no longer exists");
+                    continue;
+                }
+
+                try (OutputStream out = new FileOutputStream(entry.getEntryName())) {
+                    LogArchiveIndex.extract(archiveFile, entry.getOffset(), out);
+                }
+                System.out.println("Created file " + entry.getEntryName() + " from " + archiveFile);
+            }
+        } catch (IOException e) {
+            System.err.println("Unable to extract archived containers: " + e);
+        }
+    }
+
     @SuppressWarnings("resource")
     private static void onVerificationSucceeded(AsicContainerVerifier verifier) {
         System.out.println(AsicUtils.buildSuccessOutput(verifier));
@@ -143,7 +209,9 @@ public final class AsicVerifierMain {
     }
 
     private static void showUsage() {
-        System.out.println("Usage: java -jar asicverifier.jar ( --version | <configuration path> <asic container> )");
+        System.out.println("Usage: java -jar asicverifier.jar ( --version | <configuration path> <asic container>"
+                + " | --bulk <configuration path> <report file> <archive file or directory>..."
+                + " | --extract <archive directory> <query id> )");
     }
 
     private static void showVersion() {
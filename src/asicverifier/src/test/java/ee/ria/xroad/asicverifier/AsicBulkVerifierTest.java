@@ -0,0 +1,341 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.asicverifier;
+
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.TestCertUtil;
+import ee.ria.xroad.common.TestSecurityUtil;
+import ee.ria.xroad.common.asic.AsicContainer;
+import ee.ria.xroad.common.asic.TimestampData;
+import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+import ee.ria.xroad.common.conf.globalconf.TestGlobalConfImpl;
+import ee.ria.xroad.common.hashchain.HashChainBuilder;
+import ee.ria.xroad.common.signature.SignatureData;
+import ee.ria.xroad.common.util.CryptoUtils;
+import ee.ria.xroad.common.util.XmlUtils;
+
+import org.apache.xml.security.c14n.Canonicalizer;
+import org.apache.xml.security.utils.Constants;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.oiw.OIWObjectIdentifiers;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.ExtendedKeyUsage;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.KeyPurposeId;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.cms.jcajce.JcaSimpleSignerInfoGeneratorBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.bouncycastle.tsp.TimeStampRequest;
+import org.bouncycastle.tsp.TimeStampRequestGenerator;
+import org.bouncycastle.tsp.TimeStampTokenGenerator;
+import org.joda.time.DateTime;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.w3c.dom.Node;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static ee.ria.xroad.common.util.CryptoUtils.SHA512WITHRSA_ID;
+import static ee.ria.xroad.common.util.CryptoUtils.calculateDigest;
+import static ee.ria.xroad.common.util.CryptoUtils.encodeBase64;
+import static ee.ria.xroad.common.util.CryptoUtils.getAlgorithmIdentifier;
+import static ee.ria.xroad.common.util.MessageFileNames.MESSAGE;
+import static ee.ria.xroad.common.util.MessageFileNames.SIGNATURE;
+import static ee.ria.xroad.common.util.MessageFileNames.TS_HASH_CHAIN;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the traversal and reporting of the bulk verification mode.
+ */
+public class AsicBulkVerifierTest {
+
+    private static final Path RESOURCES = Paths.get("src/test/resources");
+
+    private static final Path SAMPLE_MESSAGE = Paths.get("../common-test/src/test/signatures/message-0.xml");
+    private static final Path SAMPLE_SIGNATURE = Paths.get("../common-test/src/test/signatures/sign-0.xml");
+    private static final String SAMPLE_QUERY_ID = "0a5c76ab5866d04f023134f667a4c753";
+
+    // The sample signature uses SHA-512 digests.
+    private static final String HASH_ALG = CryptoUtils.SHA512_ID;
+
+    // The test certificates are valid on this date.
+    private static final Date VALIDATION_DATE = createDate(30, 9, 2014);
+
+    private static KeyPair tsaKeys;
+    private static X509Certificate tsaCert;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    /**
+     * Sets up the global configuration with a test time-stamping authority.
+     * @throws Exception in case of any unexpected errors
+     */
+    @BeforeClass
+    public static void setUpConf() throws Exception {
+        TestSecurityUtil.initSecurity();
+
+        System.setProperty(SystemProperties.CONFIGURATION_PATH, "../common-util/src/test/resources/globalconf_good_v2");
+        System.setProperty(SystemProperties.CONFIGURATION_ANCHOR_FILE,
+                "../common-util/src/test/resources/configuration-anchor1.xml");
+
+        tsaKeys = generateKeyPair();
+        tsaCert = createTsaCert(tsaKeys);
+
+        GlobalConf.reload(new TestGlobalConfImpl(false) {
+            @Override
+            public X509Certificate getCaCert(String instanceIdentifier, X509Certificate memberCert) {
+                return TestCertUtil.getCaCert();
+            }
+
+            @Override
+            public List<X509Certificate> getTspCertificates() {
+                return Collections.singletonList(tsaCert);
+            }
+        });
+    }
+
+    /**
+     * Verifies the containers of a batch time-stamp. The time-stamp token is
+     * verified for the first container only.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void verifyBatchTimestampedContainers() throws Exception {
+        int containers = 5;
+        Path archive = tmp.getRoot().toPath().resolve("mlog-batch.zip");
+
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+            int i = 0;
+
+            for (AsicContainer asic : createBatchTimestampedContainers(containers)) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                asic.write(out);
+
+                zip.putNextEntry(new ZipEntry("batch-" + i++ + ".asice"));
+                zip.write(out.toByteArray());
+                zip.closeEntry();
+            }
+        }
+
+        AsicBulkVerifier.Report report = new AsicBulkVerifier(2).verify(Collections.singletonList(archive));
+
+        assertEquals(report.getSources().get(0).getFailures().toString(), containers, report.getVerified());
+        assertEquals(0, report.getFailed());
+        assertEquals(1, report.getTimestampCacheMisses());
+        assertEquals(containers - 1, report.getTimestampCacheHits());
+    }
+
+    /**
+     * Verifies the containers of an archive file and reports them per archive.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void verifyArchive() throws Exception {
+        Path archive = tmp.getRoot().toPath().resolve("mlog-test.zip");
+
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+            for (String name : Arrays.asList("wrong-message.asice", "invalid-ts-hashchainresult.asice")) {
+                zip.putNextEntry(new ZipEntry(name));
+                Files.copy(RESOURCES.resolve(name), zip);
+                zip.closeEntry();
+            }
+
+            zip.putNextEntry(new ZipEntry("linkinginfo"));
+            zip.write("not a container".getBytes());
+            zip.closeEntry();
+        }
+
+        AsicBulkVerifier.Report report = new AsicBulkVerifier(2).verify(Collections.singletonList(archive));
+
+        assertEquals(2, report.getContainers());
+        assertEquals(2, report.getFailed());
+        assertEquals(0, report.getVerified());
+        assertEquals(1, report.getSources().size());
+        assertEquals(archive.toString(), report.getSources().get(0).getArchiveFile());
+        assertEquals(2, report.getSources().get(0).getFailures().size());
+    }
+
+    /**
+     * Verifies loose container files found in a directory and writes the report.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void verifyDirectoryAndWriteReport() throws Exception {
+        Path dir = tmp.newFolder("containers").toPath();
+        Files.copy(RESOURCES.resolve("wrong-message.asice"), dir.resolve("wrong-message.asice"));
+        try (OutputStream out = Files.newOutputStream(dir.resolve("README"))) {
+            out.write("ignored".getBytes());
+        }
+
+        AsicBulkVerifier.Report report = new AsicBulkVerifier(1).verify(Collections.singletonList(dir));
+
+        assertEquals(1, report.getContainers());
+        assertEquals(1, report.getFailed());
+        assertNull(report.getSources().get(0).getArchiveFile());
+
+        Path reportFile = tmp.getRoot().toPath().resolve("report.json");
+        report.write(reportFile);
+
+        String json = new String(Files.readAllBytes(reportFile), "UTF-8");
+        assertTrue(json.contains("\"failed\": 1"));
+        assertTrue(json.contains("wrong-message.asice"));
+    }
+
+    /**
+     * Signs the given number of messages and time-stamps the signatures with
+     * a single batch time-stamp, the way the message log does.
+     */
+    private static List<AsicContainer> createBatchTimestampedContainers(int count) throws Exception {
+        // The sample message predates the protocol version header, which is now required.
+        String query = new String(Files.readAllBytes(SAMPLE_MESSAGE), UTF_8).replace("<xroad:issue/>",
+                "<xroad:issue/>\n        <xroad:protocolVersion>4.0</xroad:protocolVersion>");
+
+        List<String> messages = new ArrayList<>();
+        List<String> signatures = new ArrayList<>();
+        HashChainBuilder hashChainBuilder = new HashChainBuilder(HASH_ALG);
+
+        for (int i = 0; i < count; i++) {
+            String message = query.replace(SAMPLE_QUERY_ID, "batch-" + i);
+            String signature = signMessage(message);
+
+            messages.add(message);
+            signatures.add(signature);
+            hashChainBuilder.addInputHash(calculateDigest(HASH_ALG, signature.getBytes(UTF_8)));
+        }
+
+        hashChainBuilder.finishBuilding();
+
+        String hashChainResult = hashChainBuilder.getHashChainResult(TS_HASH_CHAIN);
+        String[] hashChains = hashChainBuilder.getHashChains(SIGNATURE);
+        String timestamp = encodeBase64(createTimestamp(hashChainResult.getBytes(UTF_8)));
+
+        List<AsicContainer> containers = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            containers.add(new AsicContainer(messages.get(i), new SignatureData(signatures.get(i), null, null),
+                    new TimestampData(timestamp, hashChainResult, hashChains[i]), null));
+        }
+
+        return containers;
+    }
+
+    /**
+     * Signs the message with the consumer key. The signed properties, the
+     * signing certificate and the OCSP response are taken over from the
+     * sample signature, only the message digest and the signature value
+     * are replaced.
+     */
+    private static String signMessage(String message) throws Exception {
+        String signatureXml = replaceValue(new String(Files.readAllBytes(SAMPLE_SIGNATURE), UTF_8),
+                "(URI=\"" + MESSAGE + "\">\\s*<ds:DigestMethod[^>]*>\\s*<ds:DigestValue>)[^<]*",
+                encodeBase64(calculateDigest(HASH_ALG, message.getBytes(UTF_8))));
+
+        Node signedInfo = XmlUtils.parseDocument(signatureXml)
+                .getElementsByTagNameNS(Constants.SignatureSpecNS, Constants._TAG_SIGNEDINFO).item(0);
+
+        Signature signer = Signature.getInstance(SHA512WITHRSA_ID);
+        signer.initSign(TestCertUtil.getConsumer().key);
+        signer.update(XmlUtils.canonicalize(Canonicalizer.ALGO_ID_C14N_OMIT_COMMENTS, signedInfo));
+
+        return replaceValue(signatureXml, "(<ds:SignatureValue Id=\"signature-value\">)[^<]*",
+                encodeBase64(signer.sign()));
+    }
+
+    private static String replaceValue(String xml, String regex, String value) {
+        Matcher matcher = Pattern.compile(regex).matcher(xml);
+        assertTrue(regex, matcher.find());
+
+        return matcher.replaceFirst("$1" + Matcher.quoteReplacement(value));
+    }
+
+    private static byte[] createTimestamp(byte[] data) throws Exception {
+        TimeStampRequest request = new TimeStampRequestGenerator().generate(
+                getAlgorithmIdentifier(HASH_ALG).getAlgorithm(), calculateDigest(HASH_ALG, data));
+
+        TimeStampTokenGenerator generator = new TimeStampTokenGenerator(
+                new JcaSimpleSignerInfoGeneratorBuilder().build("SHA256withRSA", tsaKeys.getPrivate(), tsaCert),
+                new JcaDigestCalculatorProviderBuilder().build().get(
+                        new AlgorithmIdentifier(OIWObjectIdentifiers.idSHA1)),
+                new ASN1ObjectIdentifier("1.2.3.4"));
+
+        return generator.generate(request, BigInteger.ONE, VALIDATION_DATE).getEncoded();
+    }
+
+    private static KeyPair generateKeyPair() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+
+        return generator.generateKeyPair();
+    }
+
+    private static X509Certificate createTsaCert(KeyPair keys) throws Exception {
+        X500Name name = new X500Name("CN=Test TSA");
+
+        // the token is signed now, but time-stamps the test date
+        JcaX509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(name, BigInteger.ONE,
+                createDate(1, 0, 2014), new DateTime().plusYears(1).toDate(), name, keys.getPublic());
+        builder.addExtension(Extension.extendedKeyUsage, true, new ExtendedKeyUsage(KeyPurposeId.id_kp_timeStamping));
+
+        return new JcaX509CertificateConverter().getCertificate(
+                builder.build(new JcaContentSignerBuilder("SHA256withRSA").build(keys.getPrivate())));
+    }
+
+    private static Date createDate(int day, int month, int year) {
+        Calendar cal = Calendar.getInstance();
+        cal.clear();
+        cal.set(year, month, day);
+
+        return cal.getTime();
+    }
+}
@@ -31,6 +31,7 @@ import akka.actor.UntypedAbstractActor;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -42,7 +43,7 @@ import java.util.Map;
 public abstract class AbstractLogManager extends UntypedAbstractActor {
 
     @Getter
-    protected static Map<String, DiagnosticsStatus> statusMap = new HashMap<>();
+    protected static Map<String, DiagnosticsStatus> statusMap = Collections.synchronizedMap(new HashMap<>());
 
     protected AbstractLogManager(JobManager jobManager) {
         if (jobManager == null) {
@@ -0,0 +1,354 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.messagelog;
+
+import ee.ria.xroad.common.identifier.ServiceId;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Compresses the message texts, signatures and attachments of message records
+ * stored in the message log database using deflate.
+ *
+ * Optionally, the compression uses preset dictionaries read from the
+ * configured dictionary directory. The messages of a service are compressed
+ * with the dictionary named after the service (the short form of the service
+ * identifier with slashes replaced by underscores, for example
+ * {@code EE_GOV_1234_SUB_getRandom_v1.dict}), or with {@code default.dict} if
+ * the service has no dictionary of its own. A dictionary is simply a sample of
+ * content typical for the messages, e.g. a few concatenated SOAP envelopes.
+ * The compressed data identifies its dictionary by the Adler-32 checksum of
+ * the dictionary, so the records stay readable as long as the dictionary files
+ * are kept in the directory.
+ */
+@Slf4j
+public final class MessageCompression {
+
+    /** The name of the deflate compression. */
+    public static final String DEFLATE = "deflate";
+
+    static final String DEFAULT_DICTIONARY = "default";
+    static final String DICTIONARY_SUFFIX = ".dict";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static volatile Dictionaries dictionaries;
+
+    private MessageCompression() {
+    }
+
+    /**
+     * @return the compression used for new message records or null if
+     * the records are stored uncompressed
+     */
+    public static String getCompression() {
+        String compression = MessageLogProperties.getMessageCompression();
+
+        return DEFLATE.equalsIgnoreCase(compression) ? DEFLATE : null;
+    }
+
+    /**
+     * @param service the service the compressed messages belong to, may be null
+     * @return the preset dictionary for the messages of the service or null
+     * if no dictionary has been configured
+     */
+    static byte[] getDictionary(ServiceId service) {
+        Dictionaries dicts = getDictionaries();
+        byte[] dictionary = service != null ? dicts.byName.get(dictionaryName(service)) : null;
+
+        return dictionary != null ? dictionary : dicts.byName.get(DEFAULT_DICTIONARY);
+    }
+
+    /**
+     * @param service the service identifier
+     * @return the name of the dictionary file of the service, without the suffix
+     */
+    static String dictionaryName(ServiceId service) {
+        return service.toShortString().replace('/', '_');
+    }
+
+    /**
+     * Compresses the given text.
+     * @param text the text to compress
+     * @param dictionary the preset dictionary, may be null
+     * @return the compressed text
+     */
+    static byte[] compress(String text, byte[] dictionary) {
+        if (text == null) {
+            return null;
+        }
+
+        byte[] input = text.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = createDeflater(dictionary);
+
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 2 + 1);
+            byte[] buffer = new byte[BUFFER_SIZE];
+
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Compresses the text read from the given reader, without keeping the
+     * whole text in memory.
+     * @param text the text to compress
+     * @param dictionary the preset dictionary, may be null
+     * @return the compressed text
+     * @throws IOException if reading the text fails
+     */
+    static byte[] compressReader(Reader text, byte[] dictionary) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        char[] buffer = new char[BUFFER_SIZE];
+
+        try (Writer writer = new OutputStreamWriter(compressingStream(out, dictionary), StandardCharsets.UTF_8)) {
+            int count;
+
+            while ((count = text.read(buffer)) != -1) {
+                writer.write(buffer, 0, count);
+            }
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Decompresses the given text.
+     * @param data the compressed text
+     * @return the decompressed text
+     */
+    static String decompress(byte[] data) {
+        if (data == null) {
+            return null;
+        }
+
+        Inflater inflater = new Inflater();
+
+        try {
+            inflater.setInput(data);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 2);
+            byte[] buffer = new byte[BUFFER_SIZE];
+
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+
+                if (count == 0) {
+                    if (inflater.needsDictionary()) {
+                        inflater.setDictionary(findDictionary(inflater.getAdler()));
+                    } else if (inflater.needsInput()) {
+                        throw new ZipException("Unexpected end of compressed data");
+                    }
+                }
+
+                out.write(buffer, 0, count);
+            }
+
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException | DataFormatException e) {
+            throw new IllegalStateException("Failed to decompress message log data", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * @param out the stream where the compressed data is written to
+     * @param dictionary the preset dictionary, may be null
+     * @return a stream that compresses the data written to it, closing
+     * the returned stream closes the underlying stream
+     */
+    static OutputStream compressingStream(OutputStream out, byte[] dictionary) {
+        Deflater deflater = createDeflater(dictionary);
+
+        return new DeflaterOutputStream(out, deflater, BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    deflater.end();
+                }
+            }
+        };
+    }
+
+    /**
+     * @param in the stream of compressed data
+     * @return a stream that decompresses the data read from the given stream
+     */
+    static InputStream decompressingStream(InputStream in) {
+        return new DictionaryInflaterInputStream(in);
+    }
+
+    /**
+     * Reloads the dictionaries from the dictionary directory.
+     */
+    static synchronized void reloadDictionaries() {
+        dictionaries = Dictionaries.load(Paths.get(MessageLogProperties.getMessageCompressionDictionaryPath()));
+    }
+
+    private static Dictionaries getDictionaries() {
+        Dictionaries dicts = dictionaries;
+
+        if (dicts == null) {
+            synchronized (MessageCompression.class) {
+                if (dictionaries == null) {
+                    reloadDictionaries();
+                }
+
+                dicts = dictionaries;
+            }
+        }
+
+        return dicts;
+    }
+
+    private static Deflater createDeflater(byte[] dictionary) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+
+        if (dictionary != null) {
+            deflater.setDictionary(dictionary);
+        }
+
+        return deflater;
+    }
+
+    private static byte[] findDictionary(int id) throws ZipException {
+        byte[] dictionary = getDictionaries().byId.get(id);
+
+        if (dictionary == null) {
+            throw new ZipException(String.format("Compression dictionary %08x not found", id));
+        }
+
+        return dictionary;
+    }
+
+    /**
+     * Supplies the preset dictionary when the compressed data requires one.
+     */
+    private static final class DictionaryInflaterInputStream extends InflaterInputStream {
+        DictionaryInflaterInputStream(InputStream in) {
+            super(in, new Inflater(), BUFFER_SIZE);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = super.read(b, off, len);
+
+            if (count == -1 && inf.needsDictionary()) {
+                inf.setDictionary(findDictionary(inf.getAdler()));
+                count = super.read(b, off, len);
+            }
+
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                inf.end();
+            }
+        }
+    }
+
+    /**
+     * The preset dictionaries by name and by Adler-32 checksum.
+     */
+    private static final class Dictionaries {
+        private final Map<String, byte[]> byName;
+        private final Map<Integer, byte[]> byId;
+
+        private Dictionaries(Map<String, byte[]> byName, Map<Integer, byte[]> byId) {
+            this.byName = byName;
+            this.byId = byId;
+        }
+
+        static Dictionaries load(Path directory) {
+            Map<String, byte[]> byName = new HashMap<>();
+            Map<Integer, byte[]> byId = new HashMap<>();
+
+            if (Files.isDirectory(directory)) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + DICTIONARY_SUFFIX)) {
+                    for (Path file : files) {
+                        String fileName = file.getFileName().toString();
+                        byte[] dictionary = Files.readAllBytes(file);
+
+                        byName.put(fileName.substring(0, fileName.length() - DICTIONARY_SUFFIX.length()),
+                                dictionary);
+                        byId.put(adler32(dictionary), dictionary);
+                    }
+                } catch (IOException e) {
+                    log.error("Failed to read message compression dictionaries from {}", directory, e);
+                }
+            }
+
+            log.info("Loaded {} message compression dictionaries from {}", byName.size(), directory);
+
+            return new Dictionaries(Collections.unmodifiableMap(byName), Collections.unmodifiableMap(byId));
+        }
+
+        private static int adler32(byte[] data) {
+            Adler32 adler = new Adler32();
+            adler.update(data, 0, data.length);
+
+            return (int) adler.getValue();
+        }
+    }
+}
@@ -56,6 +56,13 @@ public final class MessageLogProperties {
     private static final int DEFAULT_ARCHIVE_TRANSACTION_BATCH_SIZE = 10000;
     private static final int DEFAULT_CLEAN_TRANSACTION_BATCH_SIZE = 10000;
 
+    private static final int DEFAULT_ARCHIVE_TRANSFER_CONCURRENCY = 1;
+    private static final int DEFAULT_ARCHIVE_TRANSFER_QUEUE_SIZE = 100;
+    private static final int DEFAULT_ARCHIVE_TRANSFER_MAX_ATTEMPTS = 5;
+    private static final int DEFAULT_ARCHIVE_TRANSFER_RETRY_DELAY = 60;
+
+    private static final int DEFAULT_WRITER_COUNT = 4;
+
     private static final long DEFAULT_MAX_LOGGABLE_MESSAGE_BODY_SIZE = 10 * 1024 * 1024;
     private static final long MAX_LOGGABLE_MESSAGE_BODY_SIZE_LIMIT = 1024 * 1024 * 1024;
 
@@ -94,6 +101,24 @@ public final class MessageLogProperties {
 
     public static final String ARCHIVE_TRANSFER_COMMAND = PREFIX + "archive-transfer-command";
 
+    /** whether the archive transfer command is run separately for each archive file **/
+    public static final String ARCHIVE_TRANSFER_PER_FILE = PREFIX + "archive-transfer-per-file";
+
+    /** number of per-file archive transfer commands run in parallel **/
+    public static final String ARCHIVE_TRANSFER_CONCURRENCY = PREFIX + "archive-transfer-concurrency";
+
+    /** number of archive files waiting for transfer before archiving waits for the transfers **/
+    public static final String ARCHIVE_TRANSFER_QUEUE_SIZE = PREFIX + "archive-transfer-queue-size";
+
+    /** number of times a failed archive transfer is attempted **/
+    public static final String ARCHIVE_TRANSFER_MAX_ATTEMPTS = PREFIX + "archive-transfer-max-attempts";
+
+    /** delay in seconds before the first retry of a failed archive transfer **/
+    public static final String ARCHIVE_TRANSFER_RETRY_DELAY = PREFIX + "archive-transfer-retry-delay";
+
+    /** number of threads saving message records in parallel **/
+    public static final String WRITER_COUNT = PREFIX + "writer-count";
+
     /**
      * Property name for toggling SOAP body logging on/off
      * @deprecated
@@ -121,6 +146,12 @@ public final class MessageLogProperties {
     /** is truncating body in logging allowed **/
     private static final String REST_TRUNCATED_BODY_ALLOWED = PREFIX + "truncated-body-allowed";
 
+    /** compression of the message texts, signatures and attachments stored in the database **/
+    public static final String MESSAGE_COMPRESSION = PREFIX + "message-compression";
+
+    /** directory of the preset dictionaries of message compression **/
+    public static final String MESSAGE_COMPRESSION_DICTIONARY_PATH = PREFIX + "message-compression-dictionary-path";
+
     public static final int NUM_COMPONENTS = 4;
     public static final int FIRST_COMPONENT = 0;
     public static final int SECOND_COMPONENT = 1;
@@ -237,6 +268,54 @@ public final class MessageLogProperties {
         return System.getProperty(ARCHIVE_TRANSFER_COMMAND, null);
     }
 
+    /**
+     * @return whether the archive transfer command is run separately for each archive file, with the file as
+     * its first parameter, instead of once for the whole archive directory. 'false' by default.
+     */
+    public static boolean isArchiveTransferPerFile() {
+        return Boolean.getBoolean(ARCHIVE_TRANSFER_PER_FILE);
+    }
+
+    /**
+     * @return the number of per-file archive transfer commands run in parallel, '1' by default.
+     */
+    public static int getArchiveTransferConcurrency() {
+        return Math.max(1, getInt(System.getProperty(ARCHIVE_TRANSFER_CONCURRENCY),
+                DEFAULT_ARCHIVE_TRANSFER_CONCURRENCY));
+    }
+
+    /**
+     * @return the number of archive files waiting for transfer after which archiving waits for
+     * the transfers to complete, '100' by default.
+     */
+    public static int getArchiveTransferQueueSize() {
+        return Math.max(1, getInt(System.getProperty(ARCHIVE_TRANSFER_QUEUE_SIZE),
+                DEFAULT_ARCHIVE_TRANSFER_QUEUE_SIZE));
+    }
+
+    /**
+     * @return the number of times a failed archive transfer is attempted, '5' by default.
+     */
+    public static int getArchiveTransferMaxAttempts() {
+        return Math.max(1, getInt(System.getProperty(ARCHIVE_TRANSFER_MAX_ATTEMPTS),
+                DEFAULT_ARCHIVE_TRANSFER_MAX_ATTEMPTS));
+    }
+
+    /**
+     * @return the delay in seconds before the first retry of a failed archive transfer. The delay
+     * doubles after each failed attempt. '60' by default.
+     */
+    public static int getArchiveTransferRetryDelay() {
+        return getInt(System.getProperty(ARCHIVE_TRANSFER_RETRY_DELAY), DEFAULT_ARCHIVE_TRANSFER_RETRY_DELAY);
+    }
+
+    /**
+     * @return the number of threads saving message records in parallel, '4' by default.
+     */
+    public static int getWriterCount() {
+        return Math.max(1, getInt(System.getProperty(WRITER_COUNT), DEFAULT_WRITER_COUNT));
+    }
+
     private static int getInt(String value, int defaultValue) {
         try {
             return Integer.parseInt(value);
@@ -294,6 +373,21 @@ public final class MessageLogProperties {
         return Boolean.getBoolean(REST_TRUNCATED_BODY_ALLOWED);
     }
 
+    /**
+     * @return the compression of the message texts, signatures and attachments stored in the database,
+     * 'deflate' or 'none'. 'none' by default.
+     */
+    public static String getMessageCompression() {
+        return System.getProperty(MESSAGE_COMPRESSION, "none");
+    }
+
+    /**
+     * @return the directory of the preset dictionaries of message compression.
+     */
+    public static String getMessageCompressionDictionaryPath() {
+        return System.getProperty(MESSAGE_COMPRESSION_DICTIONARY_PATH, "/etc/xroad/messagelog/dictionaries");
+    }
+
     public static int getCleanTransactionBatchSize() {
         return Integer.getInteger(CLEAN_TRANSACTION_BATCH, DEFAULT_CLEAN_TRANSACTION_BATCH_SIZE);
     }
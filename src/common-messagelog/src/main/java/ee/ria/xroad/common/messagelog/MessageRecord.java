@@ -27,8 +27,11 @@ package ee.ria.xroad.common.messagelog;
 import ee.ria.xroad.common.asic.AsicContainer;
 import ee.ria.xroad.common.asic.TimestampData;
 import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.identifier.ServiceId;
 import ee.ria.xroad.common.message.SoapMessageImpl;
 import ee.ria.xroad.common.signature.SignatureData;
+import ee.ria.xroad.common.util.CacheInputStream;
+import ee.ria.xroad.common.util.CachingStream;
 import ee.ria.xroad.common.util.CryptoUtils;
 
 import lombok.AccessLevel;
@@ -39,8 +42,12 @@ import lombok.Setter;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
 import java.sql.Blob;
+import java.sql.SQLException;
 
 import static ee.ria.xroad.common.util.CryptoUtils.MD5_ID;
 import static ee.ria.xroad.common.util.CryptoUtils.hexDigest;
@@ -49,23 +56,32 @@ import static ee.ria.xroad.common.util.CryptoUtils.hexDigest;
  * A message log record.
  */
 @Slf4j
-@ToString(callSuper = true, exclude = {"attachment"})
+@ToString(callSuper = true, exclude = {"attachment", "compressedMessage", "compressedSignature", "messageReader"})
 @EqualsAndHashCode(callSuper = true, exclude = {"attachment"})
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 public class MessageRecord extends AbstractLogRecord {
 
+    private static final int COPY_BUFFER_SIZE = 8192;
+
     @Getter
     @Setter
     private String queryId;
 
-    @Getter
-    @Setter
     private String message;
 
-    @Getter
-    @Setter
+    // The message to be compressed, when it is too large to be passed as a string.
+    private transient Reader messageReader;
+
     private String signature;
 
+    /** The compression of the message, signature and attachment, null if stored uncompressed. */
+    @Getter
+    private String compression;
+
+    private byte[] compressedMessage;
+
+    private byte[] compressedSignature;
+
     @Getter
     @Setter
     private String hashChain;
@@ -111,6 +127,8 @@ public class MessageRecord extends AbstractLogRecord {
     @Getter
     private transient long attachmentStreamSize;
 
+    private transient CachingStream compressedAttachment;
+
     @Getter
     @Setter
     private String xRequestId;
@@ -153,17 +171,122 @@ public class MessageRecord extends AbstractLogRecord {
 
     @Override
     public Object[] getLinkingInfoFields() {
-        return new Object[] {getId(), getTime(), queryId, message, signature,
+        return new Object[] {getId(), getTime(), queryId, getMessage(), getSignature(),
                 memberClass, memberCode, subsystemCode};
     }
 
+    /**
+     * @return the message, decompressed if stored compressed
+     */
+    public String getMessage() {
+        return compressedMessage != null ? MessageCompression.decompress(compressedMessage) : message;
+    }
+
+    /**
+     * @return the signature, decompressed if stored compressed
+     */
+    public String getSignature() {
+        return compressedSignature != null ? MessageCompression.decompress(compressedSignature) : signature;
+    }
+
+    /**
+     * Sets the signature, compressing it if the record is compressed.
+     * @param signature the signature
+     */
+    public void setSignature(String signature) {
+        if (compression != null) {
+            this.compressedSignature = MessageCompression.compress(signature, null);
+            this.signature = null;
+        } else {
+            this.signature = signature;
+        }
+    }
+
+    /**
+     * @return the signature as stored in the signature column, null if the signature is compressed
+     */
+    public String getStoredSignature() {
+        return signature;
+    }
+
+    /**
+     * @return the compressed signature, null if the signature is not compressed
+     */
+    public byte[] getCompressedSignature() {
+        return compressedSignature;
+    }
+
+    /**
+     * Compresses the message, the signature and the attachment stream of this record before it is saved.
+     * The attachment is compressed into a cache that must be released using
+     * {@link #releaseAttachmentStream()} after the record has been saved.
+     * @param compression the compression to use
+     * @param service the service of the message, for choosing the compression dictionary
+     * @throws IOException if compressing the attachment fails
+     */
+    public void compress(String compression, ServiceId service) throws IOException {
+        if (!MessageCompression.DEFLATE.equals(compression)) {
+            throw new IllegalArgumentException("Unsupported message compression: " + compression);
+        }
+
+        byte[] dictionary = MessageCompression.getDictionary(service);
+
+        this.compression = compression;
+        this.compressedMessage = messageReader != null
+                ? MessageCompression.compressReader(messageReader, dictionary)
+                : MessageCompression.compress(message, dictionary);
+        this.message = null;
+        this.messageReader = null;
+        this.compressedSignature = MessageCompression.compress(signature, null);
+        this.signature = null;
+
+        if (attachmentStream != null) {
+            compressedAttachment = new CachingStream();
+
+            try (OutputStream out = MessageCompression.compressingStream(compressedAttachment, dictionary)) {
+                byte[] buffer = new byte[COPY_BUFFER_SIZE];
+                int count;
+
+                while ((count = attachmentStream.read(buffer)) != -1) {
+                    out.write(buffer, 0, count);
+                }
+            } catch (IOException | RuntimeException e) {
+                releaseAttachmentStream();
+                throw e;
+            }
+
+            CacheInputStream contents = compressedAttachment.getCachedContents();
+            setAttachmentStream(contents, contents.size());
+        }
+    }
+
+    /**
+     * Sets the reader the message of this record is compressed from, instead of
+     * the message string. Only for records that are compressed before they are
+     * saved, the message of the record is null until then.
+     * @param reader the reader of the message
+     */
+    public void setMessageReader(Reader reader) {
+        this.messageReader = reader;
+    }
+
+    /**
+     * Releases the resources used for compressing the attachment of this record.
+     */
+    public void releaseAttachmentStream() {
+        if (compressedAttachment != null) {
+            compressedAttachment.consume();
+            compressedAttachment = null;
+        }
+    }
+
     /**
      * @return an ASiC container constructed from this message record
      * @throws Exception in case of any errors
      */
     public AsicContainer toAsicContainer() throws Exception {
         SignatureData signatureData =
-                new SignatureData(signature, hashChainResult, hashChain);
+                new SignatureData(getSignature(), hashChainResult, hashChain);
 
         TimestampData timestamp = null;
 
@@ -174,8 +297,17 @@ public class MessageRecord extends AbstractLogRecord {
                     timestampHashChain);
         }
 
-        return new AsicContainer(message, signatureData, timestamp,
-                (attachment != null) ? attachment.getBinaryStream() : null);
+        return new AsicContainer(getMessage(), signatureData, timestamp, getAttachmentContents());
+    }
+
+    private InputStream getAttachmentContents() throws SQLException {
+        if (attachment == null) {
+            return null;
+        }
+
+        return compression != null
+                ? MessageCompression.decompressingStream(attachment.getBinaryStream())
+                : attachment.getBinaryStream();
     }
 
     public void setAttachmentStream(InputStream stream, long size) {
@@ -42,7 +42,9 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.DigestOutputStream;
 import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.function.Supplier;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -71,7 +73,9 @@ class LogArchiveCache implements Closeable {
     private State state = State.NEW;
 
     private Path archiveTmpFile;
+    private CountingOutputStream archiveTmpCounter;
     private ZipOutputStream archiveTmp;
+    private List<LogArchiveIndex.Entry> indexEntries = new ArrayList<>();
 
     private Date minCreationTime;
     private Date maxCreationTime;
@@ -137,6 +141,13 @@ class LogArchiveCache implements Closeable {
     }
 
 
+    /**
+     * @return the index entries of the containers in the current archive
+     */
+    List<LogArchiveIndex.Entry> getIndexEntries() {
+        return indexEntries;
+    }
+
     Date getStartTime() {
         return minCreationTime;
     }
@@ -194,6 +205,7 @@ class LogArchiveCache implements Closeable {
                                 : AsicContainerNameGenerator.TYPE_REQUEST);
 
         final MessageDigest digest = MessageDigest.getInstance(MessageLogProperties.getHashAlg());
+        final long offset = archiveTmpCounter.getCount();
         archiveTmp.putNextEntry(new ZipEntry(archiveFilename));
         try (CountingOutputStream cos = new CountingOutputStream(
                 new DigestOutputStream(new EntryStream(archiveTmp), digest));
@@ -206,6 +218,16 @@ class LogArchiveCache implements Closeable {
         }
         archiveTmp.closeEntry();
         linkingInfoBuilder.addNextFile(archiveFilename, digest.digest());
+        indexEntries.add(new LogArchiveIndex.Entry(record.getQueryId(), getClientId(record), record.getTime(),
+                record.isResponse() ? AsicContainerNameGenerator.TYPE_RESPONSE
+                        : AsicContainerNameGenerator.TYPE_REQUEST,
+                archiveFilename, offset, null));
+    }
+
+    private static String getClientId(MessageRecord record) {
+        return record.getSubsystemCode() != null
+                ? String.join("/", record.getMemberClass(), record.getMemberCode(), record.getSubsystemCode())
+                : String.join("/", record.getMemberClass(), record.getMemberCode());
     }
 
     private void reset() {
@@ -222,7 +244,8 @@ class LogArchiveCache implements Closeable {
     private void resetArchive() throws IOException {
         deleteArchiveArtifacts();
         archiveTmpFile = Files.createTempFile(workingDir, "tmp-mlog-", ".tmp");
-        archiveTmp = new ZipOutputStream(Files.newOutputStream(archiveTmpFile));
+        archiveTmpCounter = new CountingOutputStream(Files.newOutputStream(archiveTmpFile));
+        archiveTmp = new ZipOutputStream(archiveTmpCounter);
         archiveTmp.setLevel(0);
     }
 
@@ -244,6 +267,7 @@ class LogArchiveCache implements Closeable {
         maxCreationTime = null;
         state = State.NEW;
         archivesTotalSize = 0;
+        indexEntries = new ArrayList<>();
         nameGenerator = new AsicContainerNameGenerator(randomGenerator, MAX_RANDOM_GEN_ATTEMPTS);
     }
 
@@ -0,0 +1,340 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.messagelog.archive;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Index of the ASiC containers in log archive files.
+ *
+ * For each archive file, a sidecar index file ({@code <archive>.index}) is
+ * written next to the archive. It lists the containers of the archive sorted
+ * by query ID. In addition, the containers are appended to a global index
+ * that is rolled monthly by the time of the message records
+ * ({@code mlog-index/mlog-index-yyyyMM} in the archive directory).
+ *
+ * Each index line consists of the query ID, the client identifier, the time
+ * of the record, the message type, the name and the offset of the container
+ * entry in the archive file (and, in the global index, the name of the
+ * archive file) separated with tabs. The offset allows reading a single
+ * container without scanning the archive file.
+ */
+@Slf4j
+public final class LogArchiveIndex {
+
+    static final String SIDECAR_SUFFIX = ".index";
+    static final String GLOBAL_INDEX_DIR = "mlog-index";
+    static final String GLOBAL_INDEX_PREFIX = "mlog-index-";
+
+    private static final String MONTH_FORMAT = "yyyyMM";
+
+    private static final char SEPARATOR = '\t';
+    private static final int ARCHIVE_FIELD_COUNT = 6;
+    private static final int GLOBAL_FIELD_COUNT = 7;
+
+    private static final int QUERY_ID = 0;
+    private static final int CLIENT_ID = 1;
+    private static final int TIME = 2;
+    private static final int TYPE = 3;
+    private static final int ENTRY_NAME = 4;
+    private static final int OFFSET = 5;
+    private static final int ARCHIVE_FILE = 6;
+
+    private static final int UNSIGNED_SHORT = 0xffff;
+    private static final long UNSIGNED_INT = 0xffffffffL;
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final Comparator<Entry> ORDER =
+            Comparator.comparing(Entry::getQueryId).thenComparingLong(Entry::getTime);
+
+    private LogArchiveIndex() {
+    }
+
+    /**
+     * An indexed ASiC container.
+     */
+    @Value
+    public static class Entry {
+        private final String queryId;
+        private final String clientId;
+        private final long time;
+        private final String type;
+        private final String entryName;
+        private final long offset;
+        private final String archiveFile;
+
+        Entry withArchiveFile(String archive) {
+            return new Entry(queryId, clientId, time, type, entryName, offset, archive);
+        }
+    }
+
+    /**
+     * Writes the sidecar index of the archive file and appends the entries
+     * to the global index.
+     * @param archiveFile the archive file
+     * @param entries the containers of the archive file
+     * @throws IOException if writing the index fails
+     */
+    static void write(Path archiveFile, List<Entry> entries) throws IOException {
+        String archiveName = archiveFile.getFileName().toString();
+
+        // Sorting the lines sorts the entries by query ID.
+        List<String> lines = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            lines.add(format(entry, false));
+        }
+        Collections.sort(lines);
+
+        Path sidecar = getSidecarFile(archiveFile);
+        Path tmp = Files.createTempFile(archiveFile.getParent(), "tmp-mlog-", SIDECAR_SUFFIX);
+        try {
+            Files.write(tmp, lines, StandardCharsets.UTF_8);
+            Files.move(tmp, sidecar, REPLACE_EXISTING, ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+
+        Map<String, List<String>> byMonth = new TreeMap<>();
+        SimpleDateFormat monthFormat = new SimpleDateFormat(MONTH_FORMAT);
+        for (Entry entry : entries) {
+            byMonth.computeIfAbsent(monthFormat.format(new Date(entry.getTime())), m -> new ArrayList<>())
+                    .add(format(entry.withArchiveFile(archiveName), true));
+        }
+
+        Path globalDir = getGlobalIndexDir(archiveFile.getParent());
+        Files.createDirectories(globalDir);
+
+        for (Map.Entry<String, List<String>> month : byMonth.entrySet()) {
+            Files.write(globalDir.resolve(GLOBAL_INDEX_PREFIX + month.getKey()), month.getValue(),
+                    StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+    }
+
+    /**
+     * Finds the containers of the given query ID from the global index.
+     * @param archiveDir the archive directory
+     * @param queryId the query ID
+     * @param from the start of the time range of the records, null if not limited
+     * @param to the end of the time range of the records, null if not limited
+     * @return the indexed containers with the archive file names
+     * @throws IOException if reading the index fails
+     */
+    public static List<Entry> find(Path archiveDir, String queryId, Date from, Date to) throws IOException {
+        Path globalDir = getGlobalIndexDir(archiveDir);
+        List<Entry> result = new ArrayList<>();
+
+        if (!Files.isDirectory(globalDir)) {
+            return result;
+        }
+
+        SimpleDateFormat monthFormat = new SimpleDateFormat(MONTH_FORMAT);
+        String firstMonth = from != null ? GLOBAL_INDEX_PREFIX + monthFormat.format(from) : null;
+        String lastMonth = to != null ? GLOBAL_INDEX_PREFIX + monthFormat.format(to) : null;
+        String prefix = escape(queryId) + SEPARATOR;
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(globalDir, GLOBAL_INDEX_PREFIX + "*")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+
+                if ((firstMonth != null && name.compareTo(firstMonth) < 0)
+                        || (lastMonth != null && name.compareTo(lastMonth) > 0)) {
+                    continue;
+                }
+
+                try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.startsWith(prefix)) {
+                            Entry entry = parse(line, true);
+
+                            if ((from == null || entry.getTime() >= from.getTime())
+                                    && (to == null || entry.getTime() <= to.getTime())) {
+                                result.add(entry);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        result.sort(ORDER);
+
+        return result;
+    }
+
+    /**
+     * Finds the containers of the given query ID from the sidecar index of
+     * the archive file.
+     * @param archiveFile the archive file
+     * @param queryId the query ID
+     * @return the indexed containers
+     * @throws IOException if reading the index fails
+     */
+    public static List<Entry> findInArchive(Path archiveFile, String queryId) throws IOException {
+        String archiveName = archiveFile.getFileName().toString();
+        List<String> lines = Files.readAllLines(getSidecarFile(archiveFile), StandardCharsets.UTF_8);
+        List<Entry> result = new ArrayList<>();
+
+        // The lines are sorted by query ID, find the first line of the query ID.
+        String prefix = escape(queryId) + SEPARATOR;
+        int index = Collections.binarySearch(lines, prefix);
+        if (index < 0) {
+            index = -index - 1;
+        }
+
+        for (; index < lines.size() && lines.get(index).startsWith(prefix); index++) {
+            result.add(parse(lines.get(index), false).withArchiveFile(archiveName));
+        }
+
+        return result;
+    }
+
+    /**
+     * Copies the ASiC container at the given offset of the archive file to
+     * the output stream without reading the rest of the archive.
+     * @param archiveFile the archive file
+     * @param offset the offset of the container entry
+     * @param out the output stream
+     * @throws IOException if reading the container fails
+     */
+    public static void extract(Path archiveFile, long offset, OutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(archiveFile, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(ZipEntry.LOCHDR).order(ByteOrder.LITTLE_ENDIAN);
+
+            while (header.hasRemaining()) {
+                if (channel.read(header, offset + header.position()) < 0) {
+                    throw new ZipException("Unexpected end of archive file " + archiveFile);
+                }
+            }
+
+            if ((header.getInt(0) & UNSIGNED_INT) != ZipEntry.LOCSIG) {
+                throw new ZipException("No container entry at offset " + offset + " of " + archiveFile);
+            }
+
+            int method = header.getShort(ZipEntry.LOCHOW) & UNSIGNED_SHORT;
+            long compressedSize = header.getInt(ZipEntry.LOCSIZ) & UNSIGNED_INT;
+            int nameLength = header.getShort(ZipEntry.LOCNAM) & UNSIGNED_SHORT;
+            int extraLength = header.getShort(ZipEntry.LOCEXT) & UNSIGNED_SHORT;
+
+            channel.position(offset + ZipEntry.LOCHDR + nameLength + extraLength);
+            InputStream data = new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE);
+
+            if (method == ZipEntry.DEFLATED) {
+                Inflater inflater = new Inflater(true);
+                try {
+                    IOUtils.copy(new InflaterInputStream(data, inflater, BUFFER_SIZE), out);
+                } finally {
+                    inflater.end();
+                }
+            } else if (method == ZipEntry.STORED) {
+                IOUtils.copyLarge(new BoundedInputStream(data, compressedSize), out);
+            } else {
+                throw new ZipException("Unsupported compression method " + method + " in " + archiveFile);
+            }
+        }
+    }
+
+    static Path getSidecarFile(Path archiveFile) {
+        return archiveFile.resolveSibling(archiveFile.getFileName() + SIDECAR_SUFFIX);
+    }
+
+    static Path getGlobalIndexDir(Path archiveDir) {
+        return archiveDir.resolve(GLOBAL_INDEX_DIR);
+    }
+
+    private static String format(Entry entry, boolean global) {
+        StringBuilder sb = new StringBuilder()
+                .append(escape(entry.getQueryId())).append(SEPARATOR)
+                .append(escape(entry.getClientId())).append(SEPARATOR)
+                .append(entry.getTime()).append(SEPARATOR)
+                .append(entry.getType()).append(SEPARATOR)
+                .append(escape(entry.getEntryName())).append(SEPARATOR)
+                .append(entry.getOffset());
+
+        if (global) {
+            sb.append(SEPARATOR).append(escape(entry.getArchiveFile()));
+        }
+
+        return sb.toString();
+    }
+
+    private static Entry parse(String line, boolean global) throws IOException {
+        String[] fields = line.split(String.valueOf(SEPARATOR), -1);
+
+        if (fields.length != (global ? GLOBAL_FIELD_COUNT : ARCHIVE_FIELD_COUNT)) {
+            throw new IOException("Malformed archive index line: " + line);
+        }
+
+        return new Entry(unescape(fields[QUERY_ID]), unescape(fields[CLIENT_ID]), Long.parseLong(fields[TIME]),
+                fields[TYPE], unescape(fields[ENTRY_NAME]), Long.parseLong(fields[OFFSET]),
+                global ? unescape(fields[ARCHIVE_FILE]) : null);
+    }
+
+    // The separator and line breaks of the values are percent encoded.
+    static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+
+        return value.replace("%", "%25").replace("\t", "%09").replace("\n", "%0A").replace("\r", "%0D");
+    }
+
+    static String unescape(String value) {
+        return value.replace("%0D", "\r").replace("%0A", "\n").replace("%09", "\t").replace("%25", "%");
+    }
+}
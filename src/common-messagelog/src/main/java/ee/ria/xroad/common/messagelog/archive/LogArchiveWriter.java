@@ -35,6 +35,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.SimpleDateFormat;
+import java.util.List;
 
 import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
 import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
@@ -146,12 +147,24 @@ public class LogArchiveWriter implements Closeable {
             return;
         }
         Path archiveFile = getUniqueArchiveFilename();
+        List<LogArchiveIndex.Entry> indexEntries = logArchiveCache.getIndexEntries();
         archiveTmp = logArchiveCache.getArchiveFile();
         atomicMove(archiveTmp, archiveFile);
         setArchivedInDatabase(archiveFile.getFileName().toString());
         linkingInfoBuilder.afterArchiveSaved();
         archiveTmp = null;
         log.info("Created archive file {}", archiveFile);
+
+        writeIndex(archiveFile, indexEntries);
+    }
+
+    private static void writeIndex(Path archiveFile, List<LogArchiveIndex.Entry> indexEntries) {
+        try {
+            LogArchiveIndex.write(archiveFile, indexEntries);
+        } catch (IOException e) {
+            // The archive itself is complete, the containers can still be found by scanning it.
+            log.error("Failed to write the index of archive file {}", archiveFile, e);
+        }
     }
 
     private void setArchivedInDatabase(String archiveFilename)
@@ -0,0 +1,157 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.messagelog;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Message log compression ratio and throughput test program. Compresses
+ * generated SOAP messages of a single service with and without a preset
+ * dictionary.
+ */
+@Slf4j
+public final class MessageCompressionPerformanceTest {
+
+    private static final int MESSAGES = 20000;
+    private static final int DICTIONARY_SAMPLES = 5;
+    private static final int[] ITEM_COUNTS = {1, 10, 100};
+
+    private static final int NANOS_IN_MILLI = 1_000_000;
+
+    private MessageCompressionPerformanceTest() {
+    }
+
+    /**
+     * Main program access point.
+     * @param args command-line arguments
+     * @throws Exception in case of any errors
+     */
+    public static void main(String[] args) throws Exception {
+        log.info("Starting message log compression performance test...");
+
+        Path dictionaryDir = Files.createTempDirectory("dictionaries");
+        System.setProperty(MessageLogProperties.MESSAGE_COMPRESSION_DICTIONARY_PATH, dictionaryDir.toString());
+
+        Random random = new Random(MESSAGES);
+
+        for (int items : ITEM_COUNTS) {
+            List<String> messages = new ArrayList<>(MESSAGES);
+
+            for (int i = 0; i < MESSAGES; ++i) {
+                messages.add(createMessage(random, items));
+            }
+
+            StringBuilder dictionary = new StringBuilder();
+            for (int i = 0; i < DICTIONARY_SAMPLES; ++i) {
+                dictionary.append(createMessage(random, items));
+            }
+
+            // the dictionary must be found for decompressing
+            byte[] dictionaryBytes = dictionary.toString().getBytes(StandardCharsets.UTF_8);
+            Files.write(dictionaryDir.resolve(MessageCompression.DEFAULT_DICTIONARY
+                    + MessageCompression.DICTIONARY_SUFFIX), dictionaryBytes);
+            MessageCompression.reloadDictionaries();
+
+            // warm up
+            run(messages, null, items, false);
+            run(messages, dictionaryBytes, items, false);
+
+            run(messages, null, items, true);
+            run(messages, dictionaryBytes, items, true);
+        }
+
+        FileUtils.deleteDirectory(dictionaryDir.toFile());
+    }
+
+    private static void run(List<String> messages, byte[] dictionary, int items, boolean report) {
+        long originalBytes = 0;
+        long compressedBytes = 0;
+        List<byte[]> compressed = new ArrayList<>(messages.size());
+
+        long start = System.nanoTime();
+
+        for (String message : messages) {
+            byte[] data = MessageCompression.compress(message, dictionary);
+
+            originalBytes += message.getBytes(StandardCharsets.UTF_8).length;
+            compressedBytes += data.length;
+            compressed.add(data);
+        }
+
+        long compressNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+
+        for (byte[] data : compressed) {
+            MessageCompression.decompress(data);
+        }
+
+        long decompressNanos = System.nanoTime() - start;
+
+        if (report) {
+            log.info("{} items per message, {}: {} bytes -> {} bytes ({}%), compress {} msg/s, "
+                    + "decompress {} msg/s", items, dictionary != null ? "dictionary" : "no dictionary",
+                    originalBytes, compressedBytes, compressedBytes * 100 / originalBytes,
+                    perSecond(messages.size(), compressNanos), perSecond(messages.size(), decompressNanos));
+        }
+    }
+
+    private static String createMessage(Random random, int items) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\" "
+                + "xmlns:id=\"http://x-road.eu/xsd/identifiers\" xmlns:xroad=\"http://x-road.eu/xsd/xroad.xsd\">"
+                + "<SOAP-ENV:Header><xroad:client id:objectType=\"SUBSYSTEM\"><id:xRoadInstance>EE"
+                + "</id:xRoadInstance><id:memberClass>GOV</id:memberClass><id:memberCode>1234</id:memberCode>"
+                + "<id:subsystemCode>CLIENT</id:subsystemCode></xroad:client><xroad:service "
+                + "id:objectType=\"SERVICE\"><id:xRoadInstance>EE</id:xRoadInstance><id:memberClass>GOV"
+                + "</id:memberClass><id:memberCode>5678</id:memberCode><id:subsystemCode>SERVICE"
+                + "</id:subsystemCode><id:serviceCode>getPerson</id:serviceCode><id:serviceVersion>v1"
+                + "</id:serviceVersion></xroad:service><xroad:id>")
+                .append(UUID.randomUUID())
+                .append("</xroad:id><xroad:userId>EE").append(random.nextInt(Integer.MAX_VALUE))
+                .append("</xroad:userId><xroad:protocolVersion>4.0</xroad:protocolVersion></SOAP-ENV:Header>"
+                        + "<SOAP-ENV:Body><getPersonResponse>");
+
+        for (int i = 0; i < items; ++i) {
+            sb.append("<person><code>").append(random.nextInt(Integer.MAX_VALUE))
+                    .append("</code><name>Name ").append(random.nextInt(Integer.MAX_VALUE))
+                    .append("</name><status>ACTIVE</status></person>");
+        }
+
+        return sb.append("</getPersonResponse></SOAP-ENV:Body></SOAP-ENV:Envelope>").toString();
+    }
+
+    private static long perSecond(int count, long nanos) {
+        return count * 1000L * NANOS_IN_MILLI / Math.max(nanos, 1);
+    }
+}
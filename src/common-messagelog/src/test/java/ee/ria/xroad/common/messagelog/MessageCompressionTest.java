@@ -0,0 +1,195 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.messagelog;
+
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.identifier.ServiceId;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static ee.ria.xroad.common.messagelog.MessageCompression.DEFLATE;
+import static ee.ria.xroad.common.messagelog.MessageLogProperties.MESSAGE_COMPRESSION_DICTIONARY_PATH;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the compression of message log records.
+ */
+public class MessageCompressionTest {
+
+    private static final ServiceId SERVICE = ServiceId.create("EE", "GOV", "1234", "SUB", "getRandom", "v1");
+
+    private static final String MESSAGE = "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/"
+            + "envelope/\" xmlns:xroad=\"http://x-road.eu/xsd/xroad.xsd\"><SOAP-ENV:Header><xroad:id>1234567890"
+            + "</xroad:id></SOAP-ENV:Header><SOAP-ENV:Body><getRandom>õäöü</getRandom></SOAP-ENV:Body>"
+            + "</SOAP-ENV:Envelope>";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private String originalDictionaryPath;
+
+    /**
+     * Points the dictionary directory to an empty temporary folder.
+     */
+    @Before
+    public void setUp() {
+        originalDictionaryPath = System.getProperty(MESSAGE_COMPRESSION_DICTIONARY_PATH);
+        System.setProperty(MESSAGE_COMPRESSION_DICTIONARY_PATH, tempFolder.getRoot().getAbsolutePath());
+        MessageCompression.reloadDictionaries();
+    }
+
+    /**
+     * Restores the dictionary directory.
+     */
+    @After
+    public void tearDown() {
+        if (originalDictionaryPath != null) {
+            System.setProperty(MESSAGE_COMPRESSION_DICTIONARY_PATH, originalDictionaryPath);
+        } else {
+            System.clearProperty(MESSAGE_COMPRESSION_DICTIONARY_PATH);
+        }
+
+        MessageCompression.reloadDictionaries();
+    }
+
+    @Test
+    public void compressAndDecompressText() {
+        byte[] compressed = MessageCompression.compress(MESSAGE, null);
+
+        assertEquals(MESSAGE, MessageCompression.decompress(compressed));
+        assertNull(MessageCompression.compress(null, null));
+        assertNull(MessageCompression.decompress(null));
+    }
+
+    @Test
+    public void compressTextFromReader() throws Exception {
+        byte[] compressed = MessageCompression.compressReader(new StringReader(MESSAGE), null);
+
+        assertEquals(MESSAGE, MessageCompression.decompress(compressed));
+    }
+
+    @Test
+    public void compressWithServiceDictionary() throws Exception {
+        writeDictionary(MessageCompression.dictionaryName(SERVICE), MESSAGE);
+
+        byte[] dictionary = MessageCompression.getDictionary(SERVICE);
+        byte[] compressed = MessageCompression.compress(MESSAGE, dictionary);
+
+        assertArrayEquals(MESSAGE.getBytes(StandardCharsets.UTF_8), dictionary);
+        assertTrue(compressed.length < MessageCompression.compress(MESSAGE, null).length);
+        assertEquals(MESSAGE, MessageCompression.decompress(compressed));
+    }
+
+    @Test
+    public void useDefaultDictionaryWhenServiceHasNone() throws Exception {
+        writeDictionary(MessageCompression.DEFAULT_DICTIONARY, "default");
+
+        assertArrayEquals("default".getBytes(StandardCharsets.UTF_8), MessageCompression.getDictionary(SERVICE));
+        assertArrayEquals("default".getBytes(StandardCharsets.UTF_8), MessageCompression.getDictionary(null));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void failWhenDictionaryIsMissing() throws Exception {
+        writeDictionary(MessageCompression.DEFAULT_DICTIONARY, MESSAGE);
+
+        byte[] compressed = MessageCompression.compress(MESSAGE, MessageCompression.getDictionary(SERVICE));
+
+        Files.delete(tempFolder.getRoot().toPath().resolve(
+                MessageCompression.DEFAULT_DICTIONARY + MessageCompression.DICTIONARY_SUFFIX));
+        MessageCompression.reloadDictionaries();
+
+        MessageCompression.decompress(compressed);
+    }
+
+    @Test
+    public void compressAndDecompressStream() throws Exception {
+        writeDictionary(MessageCompression.DEFAULT_DICTIONARY, MESSAGE);
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+        try (OutputStream out = MessageCompression.compressingStream(compressed,
+                MessageCompression.getDictionary(null))) {
+            out.write(MESSAGE.getBytes(StandardCharsets.UTF_8));
+        }
+
+        try (InputStream in = MessageCompression.decompressingStream(
+                new ByteArrayInputStream(compressed.toByteArray()))) {
+            assertEquals(MESSAGE, IOUtils.toString(in, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void compressMessageRecord() throws Exception {
+        writeDictionary(MessageCompression.dictionaryName(SERVICE), MESSAGE);
+
+        MessageRecord record = new MessageRecord("1234567890", MESSAGE, "<signature/>", false,
+                ClientId.create("EE", "GOV", "1234", "SUB"), null);
+        byte[] attachment = MESSAGE.getBytes(StandardCharsets.UTF_8);
+        record.setAttachmentStream(new ByteArrayInputStream(attachment), attachment.length);
+
+        try {
+            record.compress(DEFLATE, SERVICE);
+
+            assertEquals(DEFLATE, record.getCompression());
+            assertEquals(MESSAGE, record.getMessage());
+            assertEquals("<signature/>", record.getSignature());
+            assertNull(record.getStoredSignature());
+            assertTrue(record.getAttachmentStreamSize() < attachment.length);
+
+            try (InputStream in = MessageCompression.decompressingStream(record.getAttachmentStream())) {
+                assertArrayEquals(attachment, IOUtils.toByteArray(in));
+            }
+
+            record.setSignature("<updated/>");
+
+            assertEquals("<updated/>", record.getSignature());
+            assertNull(record.getStoredSignature());
+        } finally {
+            record.releaseAttachmentStream();
+        }
+    }
+
+    private void writeDictionary(String name, String content) throws Exception {
+        Files.write(tempFolder.getRoot().toPath().resolve(name + MessageCompression.DICTIONARY_SUFFIX),
+                content.getBytes(StandardCharsets.UTF_8));
+        MessageCompression.reloadDictionaries();
+    }
+}
@@ -25,6 +25,7 @@
 package ee.ria.xroad.common.messagelog.archive;
 
 import ee.ria.xroad.common.ExpectedCodedException;
+import ee.ria.xroad.common.asic.AsicContainer;
 import ee.ria.xroad.common.identifier.ClientId;
 import ee.ria.xroad.common.messagelog.LogRecord;
 import ee.ria.xroad.common.messagelog.MessageLogProperties;
@@ -37,10 +38,16 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Date;
+import java.util.List;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -99,6 +106,48 @@ public class LogArchiveTest {
         assertTrue(rotated);
     }
 
+    /**
+     * Writes records and looks up a single container using the archive index.
+     */
+    @Test
+    public void writeAndFindFromIndex() throws Exception {
+        System.setProperty(MessageLogProperties.ARCHIVE_MAX_FILESIZE, "1000000");
+        writeRecordsToLog(false);
+
+        Path archiveDir = Paths.get("build/slog");
+        List<LogArchiveIndex.Entry> entries = LogArchiveIndex.find(archiveDir, "qid2", null, null);
+        assertEquals(1, entries.size());
+
+        LogArchiveIndex.Entry entry = entries.get(0);
+        assertEquals("memberCode/subsystemCode", entry.getClientId());
+        assertEquals("request", entry.getType());
+
+        Path archiveFile = archiveDir.resolve(entry.getArchiveFile());
+        assertTrue(Files.exists(LogArchiveIndex.getSidecarFile(archiveFile)));
+        assertEquals(entries, LogArchiveIndex.findInArchive(archiveFile, "qid2"));
+        assertTrue(LogArchiveIndex.findInArchive(archiveFile, "qid").isEmpty());
+        assertTrue(LogArchiveIndex.find(archiveDir, "qid2", new Date(), null).isEmpty());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LogArchiveIndex.extract(archiveFile, entry.getOffset(), out);
+
+        AsicContainer container = AsicContainer.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals("msg2", container.getMessage());
+    }
+
+    /**
+     * Checks that index fields survive escaping.
+     */
+    @Test
+    public void escapeIndexFields() {
+        String value = "a%b\tc\nd\re";
+        String escaped = LogArchiveIndex.escape(value);
+
+        assertEquals(-1, escaped.indexOf('\t'));
+        assertEquals(-1, escaped.indexOf('\n'));
+        assertEquals(value, LogArchiveIndex.unescape(escaped));
+    }
+
     // ------------------------------------------------------------------------
 
     private void writeRecordsToLog(boolean finishAfterRotate) throws Exception {
@@ -51,6 +51,7 @@ import ee.ria.xroad.signer.protocol.message.GetTokenInfo;
 import ee.ria.xroad.signer.protocol.message.GetTokenInfoAndKeyIdForCertHash;
 import ee.ria.xroad.signer.protocol.message.GetTokenInfoAndKeyIdForCertRequestId;
 import ee.ria.xroad.signer.protocol.message.GetTokenInfoForKeyId;
+import ee.ria.xroad.signer.protocol.message.GetTokensVersion;
 import ee.ria.xroad.signer.protocol.message.ImportCert;
 import ee.ria.xroad.signer.protocol.message.ImportCertResponse;
 import ee.ria.xroad.signer.protocol.message.InitSoftwareToken;
@@ -98,6 +99,16 @@ public final class SignerProxy {
         return execute(new ListTokens());
     }
 
+    /**
+     * Gets the version of the token state. The version changes whenever tokens,
+     * keys, certificates or certificate requests change.
+     * @return the version
+     * @throws Exception if any errors occur
+     */
+    public static long getTokensVersion() throws Exception {
+        return execute(new GetTokensVersion());
+    }
+
     /**
      * Gets information about the token with the specified token ID.
      * @param tokenId ID of the token
@@ -180,6 +180,38 @@ public final class SystemProperties {
 
     public static final String SERVER_CONF_ACL_CACHE_SIZE = PREFIX + "proxy.server-conf-acl-cache-size";
 
+    public static final String WSDL_CACHE_PERIOD = PREFIX + "proxy.wsdl-cache-period";
+
+    public static final String WSDL_CACHE_SIZE = PREFIX + "proxy.wsdl-cache-size";
+
+    /** Property name of the maximum number of signing requests signed in one batch */
+    public static final String BATCH_SIGNER_MAX_BATCH_SIZE = PREFIX + "proxy.batch-signer-max-batch-size";
+
+    /** Property name of the maximum time an idle batch signer waits for more requests, in milliseconds */
+    public static final String BATCH_SIGNER_MAX_LINGER_MS = PREFIX + "proxy.batch-signer-max-linger-ms";
+
+    /** Property name of the maximum number of successful certificate chain verifications to cache */
+    public static final String SIGNATURE_VERIFICATION_CACHE_SIZE =
+            PREFIX + "proxy.signature-verification-cache-size";
+
+    /** Property name of the size up to which cached message bodies are kept in memory, in bytes */
+    public static final String MESSAGE_CACHE_MEMORY_THRESHOLD = PREFIX + "proxy.message-cache-memory-threshold";
+
+    /** Property name of the switch for keeping cached message bodies in direct byte buffers */
+    public static final String MESSAGE_CACHE_DIRECT_BUFFERS = PREFIX + "proxy.message-cache-direct-buffers";
+
+    /** Property name of the size above which parsed SOAP messages are kept in a temporary file, in bytes */
+    public static final String SOAP_MESSAGE_SPILL_THRESHOLD = PREFIX + "proxy.soap-message-spill-threshold";
+
+    /** Property name of the initial size of the buffer for reading small proxy message parts, in bytes */
+    public static final String PROXY_MESSAGE_DECODER_BUFFER_SIZE = PREFIX + "proxy.message-decoder-buffer-size";
+
+    /** Property name of the number of threads digesting attachments of outgoing proxy messages */
+    public static final String PROXY_ATTACHMENT_DIGEST_THREADS = PREFIX + "proxy.attachment-digest-threads";
+
+    /** Property name of the switch for reading OCSP responses directly from the signer's OCSP response store */
+    public static final String PROXY_READ_OCSP_RESPONSE_STORE = PREFIX + "proxy.read-ocsp-response-store";
+
 
     /** Property name of the idle time that connections to the ServerProxy Connector are allowed, in milliseconds */
     private static final String SERVERPROXY_CONNECTOR_MAX_IDLE_TIME =
@@ -370,6 +402,12 @@ public final class SystemProperties {
 
     private static final String DEFAULT_SIGNER_OCSP_RETRY_DELAY = "60";
 
+    public static final String SIGNER_OCSP_FETCH_THREADS =
+            PREFIX + "signer.ocsp-fetch-threads";
+
+    public static final String SIGNER_OCSP_MAX_REQUESTS_PER_RESPONDER =
+            PREFIX + "signer.ocsp-max-requests-per-responder";
+
     public static final String SIGNER_MODULE_MANAGER_UPDATE_INTERVAL =
             PREFIX + "signer.module-manager-update-interval";
 
@@ -397,6 +435,18 @@ public final class SystemProperties {
     public static final String ANTIDOS_MAX_HEAP_USAGE =
             PREFIX + "anti-dos.max-heap-usage";
 
+    /** Property name of the interval in milliseconds for reusing the last system resource check */
+    public static final String ANTIDOS_RESOURCE_CHECK_INTERVAL =
+            PREFIX + "anti-dos.resource-check-interval";
+
+    /** Property name of the interval in seconds for checking the known member addresses from global conf */
+    public static final String ANTIDOS_PARTNER_SYNC_INTERVAL =
+            PREFIX + "anti-dos.partner-sync-interval";
+
+    /** Property name of the scheduling weights of partner addresses */
+    public static final String ANTIDOS_PARTNER_WEIGHTS =
+            PREFIX + "anti-dos.partner-weights";
+
     // Configuration client ---------------------------------------------------
 
     public static final String CONFIGURATION_CLIENT_PORT =
@@ -570,6 +620,18 @@ public final class SystemProperties {
     public static final String ENV_MONITOR_CERTIFICATE_INFO_SENSOR_INTERVAL =
             PREFIX + "env-monitor.certificate-info-sensor-interval";
 
+    /** Property name of certificate info sensor change check interval. */
+    public static final String ENV_MONITOR_CERTIFICATE_INFO_SENSOR_CHANGE_CHECK_INTERVAL =
+            PREFIX + "env-monitor.certificate-info-sensor-change-check-interval";
+
+    /** Property name of environmental monitor OpenMetrics endpoint port. */
+    public static final String ENV_MONITOR_METRICS_PORT =
+            PREFIX + "env-monitor.metrics-port";
+
+    /** Property name of environmental monitor OpenMetrics endpoint listen address. */
+    public static final String ENV_MONITOR_METRICS_HOST =
+            PREFIX + "env-monitor.metrics-host";
+
     public static final String ONE_DAY_AS_SECONDS = String.valueOf(24 * 60 * 60);
 
     // Cluster node configuration ------------------------------------------ //
@@ -885,6 +947,22 @@ public final class SystemProperties {
                 DEFAULT_SIGNER_OCSP_RETRY_DELAY));
     }
 
+    /**
+     * @return the number of threads used for fetching OCSP responses in parallel, 8 by default
+     */
+    @SuppressWarnings("checkstyle:MagicNumber")
+    public static int getOcspFetchThreads() {
+        return Math.max(1, Integer.getInteger(SIGNER_OCSP_FETCH_THREADS, 8));
+    }
+
+    /**
+     * @return the maximum number of concurrent OCSP requests sent to a single OCSP responder, 4 by default
+     */
+    @SuppressWarnings("checkstyle:MagicNumber")
+    public static int getOcspMaxRequestsPerResponder() {
+        return Math.max(1, Integer.getInteger(SIGNER_OCSP_MAX_REQUESTS_PER_RESPONDER, 4));
+    }
+
     /**
      * @return the module manager update interval in seconds that should be set for signer, 60 by default
      */
@@ -1160,6 +1238,27 @@ public final class SystemProperties {
         return Integer.parseInt(System.getProperty(ENV_MONITOR_CERTIFICATE_INFO_SENSOR_INTERVAL, ONE_DAY_AS_SECONDS));
     }
 
+    /**
+     * @return interval in seconds of checking if the signer certificates have changed, '60' by default.
+     */
+    public static int getEnvMonitorCertificateInfoSensorChangeCheckInterval() {
+        return Integer.parseInt(System.getProperty(ENV_MONITOR_CERTIFICATE_INFO_SENSOR_CHANGE_CHECK_INTERVAL, "60"));
+    }
+
+    /**
+     * @return port of the OpenMetrics endpoint of the environmental monitor, '0' (disabled) by default.
+     */
+    public static int getEnvMonitorMetricsPort() {
+        return Integer.parseInt(System.getProperty(ENV_MONITOR_METRICS_PORT, "0"));
+    }
+
+    /**
+     * @return listen address of the OpenMetrics endpoint of the environmental monitor, '127.0.0.1' by default.
+     */
+    public static String getEnvMonitorMetricsHost() {
+        return System.getProperty(ENV_MONITOR_METRICS_HOST, "127.0.0.1");
+    }
+
 
     /**
      * @return path to the file containing network statistics,
@@ -1215,6 +1314,30 @@ public final class SystemProperties {
         return Double.parseDouble(System.getProperty(ANTIDOS_MAX_HEAP_USAGE, "1.1"));
     }
 
+    /**
+     * @return the interval in milliseconds during which Anti-Dos reuses the result of the previous
+     * system resource check, '100' by default. 0 checks the resources for every connection.
+     */
+    public static long getAntiDosResourceCheckInterval() {
+        return Long.parseLong(System.getProperty(ANTIDOS_RESOURCE_CHECK_INTERVAL, "100"));
+    }
+
+    /**
+     * @return the interval in seconds at which Anti-Dos checks the known member addresses
+     * from global configuration, '10' by default.
+     */
+    public static int getAntiDosPartnerSyncInterval() {
+        return Integer.parseInt(System.getProperty(ANTIDOS_PARTNER_SYNC_INTERVAL, "10"));
+    }
+
+    /**
+     * @return comma-separated list of address=weight pairs that give partners a larger share of
+     * the connections Anti-Dos lets through, empty by default (every partner has weight 1).
+     */
+    public static String getAntiDosPartnerWeights() {
+        return System.getProperty(ANTIDOS_PARTNER_WEIGHTS, "");
+    }
+
     /**
      * @return whether Anti-Dos should be used, 'true' by default.
      */
@@ -1516,6 +1639,96 @@ public final class SystemProperties {
         return Long.getLong(SERVER_CONF_ACL_CACHE_SIZE, 100_000);
     }
 
+    /**
+     * @return the number of seconds a WSDL returned by the getWsdl metaservice is served from memory
+     * before it is revalidated from the service provider, '60' by default. 0 disables caching.
+     */
+    public static int getWsdlCachePeriod() {
+        return Integer.parseInt(System.getProperty(WSDL_CACHE_PERIOD, "60"));
+    }
+
+    /**
+     * @return maximum number of WSDLs the getWsdl metaservice keeps cached, '100' by default
+     */
+    public static long getWsdlCacheSize() {
+        return Long.getLong(WSDL_CACHE_SIZE, 100);
+    }
+
+
+    /**
+     * @return maximum number of signing requests the batch signer signs in one batch, '1000' by default
+     */
+    @SuppressWarnings("checkstyle:MagicNumber")
+    public static int getBatchSignerMaxBatchSize() {
+        return Integer.getInteger(BATCH_SIGNER_MAX_BATCH_SIZE, 1000);
+    }
+
+    /**
+     * @return maximum time in milliseconds an idle batch signer waits for more requests before signing,
+     * '2' by default, '0' disables waiting
+     */
+    public static long getBatchSignerMaxLingerMs() {
+        return Long.getLong(BATCH_SIGNER_MAX_LINGER_MS, 2);
+    }
+
+    /**
+     * @return maximum number of cached certificate chain verification results, '1000' by default.
+     * Value 0 disables the cache.
+     */
+    @SuppressWarnings("checkstyle:MagicNumber")
+    public static long getSignatureVerificationCacheSize() {
+        return Long.getLong(SIGNATURE_VERIFICATION_CACHE_SIZE, 1000);
+    }
+
+    /**
+     * @return the size up to which cached message bodies are kept in memory before spilling them to a temporary
+     * file, '65536' bytes by default. Value 0 disables the memory buffer.
+     */
+    @SuppressWarnings("checkstyle:MagicNumber")
+    public static int getMessageCacheMemoryThreshold() {
+        return Integer.getInteger(MESSAGE_CACHE_MEMORY_THRESHOLD, 65536);
+    }
+
+    /**
+     * @return whether cached message bodies are kept in direct byte buffers, 'false' by default.
+     */
+    public static boolean isMessageCacheDirectBuffers() {
+        return "true".equalsIgnoreCase(System.getProperty(MESSAGE_CACHE_DIRECT_BUFFERS, "false"));
+    }
+
+    /**
+     * @return the size above which parsed SOAP messages are kept in a temporary file instead of memory,
+     * '16777216' bytes by default. Value 0 keeps every message in a temporary file.
+     */
+    @SuppressWarnings("checkstyle:MagicNumber")
+    public static int getSoapMessageSpillThreshold() {
+        return Integer.getInteger(SOAP_MESSAGE_SPILL_THRESHOLD, 16 * 1024 * 1024);
+    }
+
+    /**
+     * @return the initial size of the per-thread buffer the proxy reads small parts of proxy messages (REST
+     * message headers, hash chains and signatures) into, '8192' bytes by default.
+     */
+    @SuppressWarnings("checkstyle:MagicNumber")
+    public static int getProxyMessageDecoderBufferSize() {
+        return Integer.getInteger(PROXY_MESSAGE_DECODER_BUFFER_SIZE, 8 * 1024);
+    }
+
+    /**
+     * @return the number of worker threads that digest the attachments of outgoing proxy messages while they are
+     * written, '0' by default. Value 0 digests attachments on the thread writing the message.
+     */
+    public static int getProxyAttachmentDigestThreads() {
+        return Integer.getInteger(PROXY_ATTACHMENT_DIGEST_THREADS, 0);
+    }
+
+    /**
+     * @return whether the proxy reads OCSP responses directly from the signer's OCSP response store before
+     * asking them from the signer, 'true' by default.
+     */
+    public static boolean isProxyReadOcspResponseStore() {
+        return "true".equalsIgnoreCase(System.getProperty(PROXY_READ_OCSP_RESPONSE_STORE, "true"));
+    }
 
     /**
      * @return whether GET request can be used for getWsdl metaservice, 'false' by default.
@@ -27,11 +27,6 @@ package ee.ria.xroad.common.hashchain;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBElement;
-import javax.xml.bind.Marshaller;
-
-import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -73,9 +68,6 @@ public final class HashChainBuilder {
     private static final Logger LOG =
             LoggerFactory.getLogger(HashChainBuilder.class);
 
-    /** For accessing JAXB functionality. Shared between all the builders. */
-    private static JAXBContext jaxbCtx;
-
     /**
      * Index of the root of the tree.
      */
@@ -107,12 +99,6 @@ public final class HashChainBuilder {
     /** Maximum index a tree node can have. */
     private int maxIndex;
 
-    /** Used for serializing XML objects. */
-    private Marshaller marshaller;
-
-    /** Factory for creating XML objects. */
-    private ObjectFactory objectFactory = new ObjectFactory();
-
     /**
      * Constructs a hash chain builder.
      * @param hashAlgorithm Identifier (not URL) of the hash algorithm
@@ -124,10 +110,6 @@ public final class HashChainBuilder {
     public HashChainBuilder(String hashAlgorithm) throws Exception {
         this.hashAlgorithm = hashAlgorithm;
         hashAlgorithmUri = getDigestAlgorithmURI(hashAlgorithm);
-
-        marshaller = jaxbCtx.createMarshaller();
-        // Format the XML, good for debugging.
-        marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
     }
 
     /**
@@ -222,7 +204,7 @@ public final class HashChainBuilder {
         result.setDigestMethod(digestMethod());
         result.setURI(hashChainFileName + "#" + STEP + "0");
 
-        return elementToString(objectFactory.createHashChainResult(result));
+        return HashChainWriter.write(result);
     }
 
     /**
@@ -485,7 +467,7 @@ public final class HashChainBuilder {
                     multipartStep(multiparts.get(itemIndex), stepCount));
         }
 
-        return elementToString(objectFactory.createHashChain(hashChain));
+        return HashChainWriter.write(hashChain);
     }
 
     /**
@@ -536,7 +518,7 @@ public final class HashChainBuilder {
         // the input parts
         hashChain.getHashStep().add(multipartStep(multiparts.get(0), 0));
 
-        return elementToString(objectFactory.createHashChain(hashChain));
+        return HashChainWriter.write(hashChain);
     }
 
     private HashStepType multipartStep(byte[][] inputSet, int stepCount) {
@@ -566,16 +548,6 @@ public final class HashChainBuilder {
         return digestMethod;
     }
 
-    /**
-     * Serializes the given XML element to a string.
-     */
-    private <T> String elementToString(JAXBElement<T> element)
-            throws Exception {
-        StringWriter writer = new StringWriter();
-        marshaller.marshal(element, writer);
-        return writer.toString();
-    }
-
     /**
      * Returns index for parent of a node identified by childIdx.
      */
@@ -626,12 +598,4 @@ public final class HashChainBuilder {
     private static int pow2(int n) {
         return 1 << n;
     }
-
-    static {
-        try {
-            jaxbCtx = JAXBContext.newInstance(ObjectFactory.class);
-        } catch (Exception ex) {
-            LOG.error("Failed to initialize JAXB context", ex);
-        }
-    }
 }
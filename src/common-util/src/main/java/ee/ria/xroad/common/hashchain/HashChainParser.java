@@ -0,0 +1,252 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.hashchain;
+
+import ee.ria.xroad.common.CodedException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import java.io.ByteArrayInputStream;
+
+import static ee.ria.xroad.common.ErrorCodes.X_MALFORMED_HASH_CHAIN;
+import static ee.ria.xroad.common.hashchain.HashChainWriter.HASHCHAIN_NS;
+import static ee.ria.xroad.common.hashchain.HashChainWriter.XMLDSIG_NS;
+import static ee.ria.xroad.common.util.CryptoUtils.decodeBase64;
+
+/**
+ * Streaming (StAX) reader for hash chains and hash chain results.
+ *
+ * Covers the subset of the hash chain schema that X-Road produces. Documents
+ * that use transforms or digest method parameters are not handled and the
+ * parse methods return null for them, so that the caller can fall back to JAXB.
+ */
+final class HashChainParser {
+
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+    private HashChainParser() {
+    }
+
+    /**
+     * Parses the hash chain result.
+     * @param xml XML-encoded hash chain result
+     * @return the hash chain result or null if the document uses features
+     * this parser does not support
+     * @throws Exception if the document is malformed
+     */
+    static HashChainResultType parseHashChainResult(byte[] xml) throws Exception {
+        XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(new ByteArrayInputStream(xml));
+        try {
+            expectStart(reader, reader.nextTag(), HASHCHAIN_NS, "HashChainResult");
+
+            HashChainResultType result = new HashChainResultType();
+            result.setURI(requiredAttribute(reader, "URI"));
+
+            int event = reader.nextTag();
+
+            if (isStart(reader, event, XMLDSIG_NS, "DigestMethod")) {
+                result.setDigestMethod(readDigestMethod(reader));
+                event = reader.nextTag();
+            }
+
+            expectStart(reader, event, XMLDSIG_NS, "DigestValue");
+            result.setDigestValue(readDigestValue(reader));
+
+            expectEnd(reader, reader.nextTag());
+
+            return result;
+        } catch (UnsupportedContentException e) {
+            return null;
+        } catch (XMLStreamException e) {
+            throw new CodedException(X_MALFORMED_HASH_CHAIN, e);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Parses the hash chain.
+     * @param xml XML-encoded hash chain
+     * @return the hash chain or null if the document uses features
+     * this parser does not support
+     * @throws Exception if the document is malformed
+     */
+    static HashChainType parseHashChain(byte[] xml) throws Exception {
+        XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(new ByteArrayInputStream(xml));
+        try {
+            expectStart(reader, reader.nextTag(), HASHCHAIN_NS, "HashChain");
+
+            HashChainType hashChain = new HashChainType();
+
+            int event = reader.nextTag();
+
+            if (isStart(reader, event, HASHCHAIN_NS, "DefaultDigestMethod")) {
+                hashChain.setDefaultDigestMethod(readDigestMethod(reader));
+                event = reader.nextTag();
+            }
+
+            while (isStart(reader, event, HASHCHAIN_NS, "HashStep")) {
+                hashChain.getHashStep().add(readHashStep(reader));
+                event = reader.nextTag();
+            }
+
+            expectEnd(reader, event);
+
+            return hashChain;
+        } catch (UnsupportedContentException e) {
+            return null;
+        } catch (XMLStreamException e) {
+            throw new CodedException(X_MALFORMED_HASH_CHAIN, e);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static HashStepType readHashStep(XMLStreamReader reader) throws Exception {
+        HashStepType step = new HashStepType();
+        step.setId(reader.getAttributeValue(null, "id"));
+
+        int event = reader.nextTag();
+
+        while (event == XMLStreamConstants.START_ELEMENT) {
+            if (isStart(reader, event, HASHCHAIN_NS, "HashValue")) {
+                HashValueType hashValue = new HashValueType();
+                hashValue.setDigestValue(readValueContent(reader, hashValue, true));
+                step.getHashValueOrStepRefOrDataRef().add(hashValue);
+            } else if (isStart(reader, event, HASHCHAIN_NS, "StepRef")) {
+                StepRefType stepRef = new StepRefType();
+                stepRef.setURI(requiredAttribute(reader, "URI"));
+                readValueContent(reader, stepRef, false);
+                step.getHashValueOrStepRefOrDataRef().add(stepRef);
+            } else if (isStart(reader, event, HASHCHAIN_NS, "DataRef")) {
+                DataRefType dataRef = new DataRefType();
+                dataRef.setURI(requiredAttribute(reader, "URI"));
+                dataRef.setDigestValue(readValueContent(reader, dataRef, true));
+                step.getHashValueOrStepRefOrDataRef().add(dataRef);
+            } else {
+                throw unexpected(reader);
+            }
+
+            event = reader.nextTag();
+        }
+
+        return step;
+    }
+
+    /**
+     * Reads the optional digest method and the digest value of a hash step
+     * value, leaving the reader at the end element of the value.
+     */
+    private static byte[] readValueContent(XMLStreamReader reader, AbstractValueType value,
+            boolean digestValueRequired) throws Exception {
+        int event = reader.nextTag();
+
+        if (isStart(reader, event, XMLDSIG_NS, "DigestMethod")) {
+            value.setDigestMethod(readDigestMethod(reader));
+            event = reader.nextTag();
+        }
+
+        if (isStart(reader, event, XMLDSIG_NS, "Transforms")) {
+            throw new UnsupportedContentException();
+        }
+
+        byte[] digest = null;
+
+        if (digestValueRequired) {
+            expectStart(reader, event, XMLDSIG_NS, "DigestValue");
+            digest = readDigestValue(reader);
+            event = reader.nextTag();
+        }
+
+        expectEnd(reader, event);
+
+        return digest;
+    }
+
+    private static DigestMethodType readDigestMethod(XMLStreamReader reader) throws Exception {
+        DigestMethodType digestMethod = new DigestMethodType();
+        digestMethod.setAlgorithm(requiredAttribute(reader, "Algorithm"));
+
+        if (reader.nextTag() != XMLStreamConstants.END_ELEMENT) {
+            // Digest method parameters are left to JAXB.
+            throw new UnsupportedContentException();
+        }
+
+        return digestMethod;
+    }
+
+    private static byte[] readDigestValue(XMLStreamReader reader) throws XMLStreamException {
+        return decodeBase64(reader.getElementText().trim());
+    }
+
+    private static String requiredAttribute(XMLStreamReader reader, String name) {
+        String value = reader.getAttributeValue(null, name);
+
+        if (value == null) {
+            throw new CodedException(X_MALFORMED_HASH_CHAIN, "Element %s is missing attribute %s",
+                    reader.getLocalName(), name);
+        }
+
+        return value;
+    }
+
+    private static boolean isStart(XMLStreamReader reader, int event, String namespace, String localName) {
+        return event == XMLStreamConstants.START_ELEMENT
+                && namespace.equals(reader.getNamespaceURI())
+                && localName.equals(reader.getLocalName());
+    }
+
+    private static void expectStart(XMLStreamReader reader, int event, String namespace, String localName) {
+        if (!isStart(reader, event, namespace, localName)) {
+            throw unexpected(reader);
+        }
+    }
+
+    private static void expectEnd(XMLStreamReader reader, int event) {
+        if (event != XMLStreamConstants.END_ELEMENT) {
+            throw unexpected(reader);
+        }
+    }
+
+    private static CodedException unexpected(XMLStreamReader reader) {
+        return new CodedException(X_MALFORMED_HASH_CHAIN, "Unexpected element in hash chain: %s",
+                reader.isStartElement() || reader.isEndElement() ? reader.getName() : "");
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        return factory;
+    }
+
+    /** Signals content that is left for the JAXB based parsing. */
+    private static class UnsupportedContentException extends Exception {
+    }
+}
@@ -79,6 +79,7 @@ public final class HashChainVerifier {
     private InputStream hashChainResultXml;
     private HashChainReferenceResolver referenceResolver;
     private Map<String, DigestValue> inputs;
+    private boolean validateSchema;
 
     /**
      * Caches already retrieved and parsed hash chains.
@@ -103,14 +104,30 @@ public final class HashChainVerifier {
      */
     public static void verify(InputStream hashChainResultXml, HashChainReferenceResolver referenceResolver,
             Map<String, DigestValue> inputs) throws Exception {
-        new HashChainVerifier(hashChainResultXml, referenceResolver, inputs).verify();
+        verify(hashChainResultXml, referenceResolver, inputs, true);
+    }
+
+    /**
+     * Verifies a set of inputs with respect to hash chain result, optionally skipping the schema validation
+     * of the hash chain documents. The validation should only be skipped for trusted inputs.
+     * @param hashChainResultXml hash chain result that is the starting point of the verification.
+     * @param referenceResolver used to resolve references from hash chain result and hash chains.
+     * @param inputs set of inputs that are to be verified with respect to the hash chain result.
+     * @param validateSchema if true, the hash chain result and hash chains are validated against the schema
+     * @throws Exception in case of any errors
+     * @see #verify(InputStream, HashChainReferenceResolver, Map)
+     */
+    public static void verify(InputStream hashChainResultXml, HashChainReferenceResolver referenceResolver,
+            Map<String, DigestValue> inputs, boolean validateSchema) throws Exception {
+        new HashChainVerifier(hashChainResultXml, referenceResolver, inputs, validateSchema).verify();
     }
 
     private HashChainVerifier(InputStream hashChainResultXml, HashChainReferenceResolver referenceResolver,
-            Map<String, DigestValue> inputs) {
+            Map<String, DigestValue> inputs, boolean validateSchema) {
         this.hashChainResultXml = hashChainResultXml;
         this.referenceResolver = referenceResolver;
         this.inputs = inputs;
+        this.validateSchema = validateSchema;
     }
 
     private void verify() throws Exception {
@@ -146,23 +163,35 @@ public final class HashChainVerifier {
         }
     }
 
-    private static HashChainResultType parseHashChainResult(InputStream xml) throws Exception {
-        return validateAndParse(xml, HashChainResultType.class);
+    private HashChainResultType parseHashChainResult(InputStream xml) throws Exception {
+        byte[] xmlBytes = readAndValidate(xml);
+        HashChainResultType result = HashChainParser.parseHashChainResult(xmlBytes);
+
+        return result != null ? result : unmarshal(xmlBytes);
     }
 
+    private HashChainType parseHashChain(InputStream xml) throws Exception {
+        byte[] xmlBytes = readAndValidate(xml);
+        HashChainType hashChain = HashChainParser.parseHashChain(xmlBytes);
 
-    private static HashChainType parseHashChain(InputStream xml) throws Exception {
-        return validateAndParse(xml, HashChainType.class);
+        return hashChain != null ? hashChain : unmarshal(xmlBytes);
     }
 
-    @SuppressWarnings("unchecked")
-    private static <T> T validateAndParse(InputStream xml, Class<T> type) throws Exception {
-        // They have made it rather impossible to get the actual source from JAXBSource so let's
-        // pass StreamSource which we are actually able to handle later in SchemaVerfier.
+    private byte[] readAndValidate(InputStream xml) throws Exception {
         byte[] xmlBytes = IOUtils.toByteArray(xml);
 
-        HashChainValidator.validate(new StreamSource(new ByteArrayInputStream(xmlBytes)));
+        if (validateSchema) {
+            HashChainValidator.validate(new StreamSource(new ByteArrayInputStream(xmlBytes)));
+        }
+
+        return xmlBytes;
+    }
 
+    /**
+     * Parses hash chain documents the streaming parser does not handle (e.g. ones using transforms).
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T unmarshal(byte[] xmlBytes) throws Exception {
         Unmarshaller unmarshaller = jaxbCtx.createUnmarshaller();
         JAXBElement<T> element = (JAXBElement<T>) unmarshaller.unmarshal(new ByteArrayInputStream(xmlBytes));
 
@@ -0,0 +1,224 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.hashchain;
+
+import java.util.List;
+
+import static ee.ria.xroad.common.util.CryptoUtils.encodeBase64;
+
+/**
+ * Serializes hash chains and hash chain results without JAXB.
+ *
+ * The output is byte-for-byte identical to what the JAXB marshaller
+ * produces for the same objects with formatted output enabled, so the
+ * hash chains remain comparable with the ones created earlier.
+ */
+final class HashChainWriter {
+
+    static final String HASHCHAIN_NS = "http://cyber.ee/hashchain";
+    static final String XMLDSIG_NS = "http://www.w3.org/2000/09/xmldsig#";
+
+    private static final String XML_HEADER =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+
+    private static final String NAMESPACE_DECLARATIONS =
+            " xmlns:ns2=\"" + HASHCHAIN_NS + "\" xmlns=\"" + XMLDSIG_NS + "\"";
+
+    private static final String INDENT = "    ";
+
+    /** Nesting depth of the digest elements inside a hash step reference. */
+    private static final int REFERENCE_CONTENT_DEPTH = 3;
+
+    /** Approximate size of a hash step, used for sizing the output buffer. */
+    private static final int HASH_STEP_SIZE = 320;
+
+    private HashChainWriter() {
+    }
+
+    /**
+     * Serializes the hash chain result.
+     * @param result the hash chain result
+     * @return XML-encoded hash chain result
+     */
+    static String write(HashChainResultType result) {
+        StringBuilder sb = new StringBuilder(HASH_STEP_SIZE);
+
+        sb.append(XML_HEADER).append("<ns2:HashChainResult");
+        attribute(sb, "URI", result.getURI());
+        sb.append(NAMESPACE_DECLARATIONS).append(">\n");
+
+        digestMethod(sb, 1, "DigestMethod", result.getDigestMethod());
+        digestValue(sb, 1, result.getDigestValue());
+
+        return sb.append("</ns2:HashChainResult>\n").toString();
+    }
+
+    /**
+     * Serializes the hash chain.
+     * @param hashChain the hash chain
+     * @return XML-encoded hash chain
+     */
+    static String write(HashChainType hashChain) {
+        List<HashStepType> steps = hashChain.getHashStep();
+        StringBuilder sb = new StringBuilder(HASH_STEP_SIZE * (steps.size() + 1));
+
+        sb.append(XML_HEADER).append("<ns2:HashChain").append(NAMESPACE_DECLARATIONS).append(">\n");
+
+        digestMethod(sb, 1, "ns2:DefaultDigestMethod", hashChain.getDefaultDigestMethod());
+
+        for (HashStepType step : steps) {
+            hashStep(sb, step);
+        }
+
+        return sb.append("</ns2:HashChain>\n").toString();
+    }
+
+    private static void hashStep(StringBuilder sb, HashStepType step) {
+        indent(sb, 1).append("<ns2:HashStep");
+        attribute(sb, "id", step.getId());
+
+        List<AbstractValueType> values = step.getHashValueOrStepRefOrDataRef();
+
+        if (values.isEmpty()) {
+            sb.append("/>\n");
+            return;
+        }
+
+        sb.append(">\n");
+
+        for (AbstractValueType value : values) {
+            value(sb, value);
+        }
+
+        indent(sb, 1).append("</ns2:HashStep>\n");
+    }
+
+    private static void value(StringBuilder sb, AbstractValueType value) {
+        if (value instanceof DataRefType) {
+            DataRefType dataRef = (DataRefType) value;
+
+            checkNoTransforms(dataRef.getTransforms());
+            valueElement(sb, "ns2:DataRef", dataRef.getURI(), dataRef.getDigestMethod(),
+                    dataRef.getDigestValue());
+        } else if (value instanceof StepRefType) {
+            StepRefType stepRef = (StepRefType) value;
+
+            valueElement(sb, "ns2:StepRef", stepRef.getURI(), stepRef.getDigestMethod(), null);
+        } else if (value instanceof HashValueType) {
+            HashValueType hashValue = (HashValueType) value;
+
+            checkNoTransforms(hashValue.getTransforms());
+            valueElement(sb, "ns2:HashValue", null, hashValue.getDigestMethod(),
+                    hashValue.getDigestValue());
+        } else {
+            throw new IllegalArgumentException("Unknown value type");
+        }
+    }
+
+    private static void valueElement(StringBuilder sb, String name, String uri,
+            DigestMethodType digestMethod, byte[] digest) {
+        indent(sb, 2).append('<').append(name);
+        attribute(sb, "URI", uri);
+
+        if (digestMethod == null && digest == null) {
+            sb.append("/>\n");
+            return;
+        }
+
+        sb.append(">\n");
+
+        digestMethod(sb, REFERENCE_CONTENT_DEPTH, "DigestMethod", digestMethod);
+        digestValue(sb, REFERENCE_CONTENT_DEPTH, digest);
+
+        indent(sb, 2).append("</").append(name).append(">\n");
+    }
+
+    private static void digestMethod(StringBuilder sb, int level, String name, DigestMethodType digestMethod) {
+        if (digestMethod == null) {
+            return;
+        }
+
+        if (!digestMethod.getContent().isEmpty()) {
+            throw new IllegalArgumentException("Digest method content is not supported");
+        }
+
+        indent(sb, level).append('<').append(name);
+        attribute(sb, "Algorithm", digestMethod.getAlgorithm());
+        sb.append("/>\n");
+    }
+
+    private static void digestValue(StringBuilder sb, int level, byte[] digest) {
+        if (digest == null) {
+            return;
+        }
+
+        indent(sb, level).append("<DigestValue>").append(encodeBase64(digest)).append("</DigestValue>\n");
+    }
+
+    private static void checkNoTransforms(TransformsType transforms) {
+        if (transforms != null) {
+            throw new IllegalArgumentException("Transforms are not supported");
+        }
+    }
+
+    private static void attribute(StringBuilder sb, String name, String value) {
+        if (value == null) {
+            return;
+        }
+
+        sb.append(' ').append(name).append("=\"");
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            switch (c) {
+                case '&':
+                    sb.append("&amp;");
+                    break;
+                case '<':
+                    sb.append("&lt;");
+                    break;
+                case '>':
+                    sb.append("&gt;");
+                    break;
+                case '"':
+                    sb.append("&quot;");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+
+        sb.append('"');
+    }
+
+    private static StringBuilder indent(StringBuilder sb, int level) {
+        for (int i = 0; i < level; i++) {
+            sb.append(INDENT);
+        }
+
+        return sb;
+    }
+}
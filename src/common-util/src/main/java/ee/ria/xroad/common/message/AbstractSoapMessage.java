@@ -24,22 +24,38 @@
  */
 package ee.ria.xroad.common.message;
 
+import ee.ria.xroad.common.util.CachingStream;
+
+import lombok.AccessLevel;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
+import org.apache.commons.io.IOUtils;
 
 import javax.xml.soap.SOAPMessage;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 
+import static ee.ria.xroad.common.ErrorCodes.translateException;
+
 /**
- * Base class for SOAP messages.
+ * Base class for SOAP messages. The raw content of the message is kept
+ * either in memory or, for large messages, in a caching stream that has
+ * been spilled to a temporary file.
  * @param <T> generic type of the SOAP message header.
  */
 @Getter
-@RequiredArgsConstructor
 public abstract class AbstractSoapMessage<T> implements SoapMessage {
 
+    // null if the content is kept in the caching stream
+    @Getter(AccessLevel.NONE)
     private final byte[] bytes;
+
+    // null if the content is kept in memory
+    @Getter(AccessLevel.NONE)
+    private final CachingStream cachedContent;
+
     private final String charset;
     private final T header;
     private final SOAPMessage soap;
@@ -47,6 +63,28 @@ public abstract class AbstractSoapMessage<T> implements SoapMessage {
     private final boolean isRpcEncoded;
     private final String contentType;
 
+    protected AbstractSoapMessage(byte[] bytes, String charset, T header, SOAPMessage soap,
+            boolean isResponse, boolean isRpcEncoded, String contentType) {
+        this(bytes, null, charset, header, soap, isResponse, isRpcEncoded, contentType);
+    }
+
+    protected AbstractSoapMessage(CachingStream cachedContent, String charset, T header, SOAPMessage soap,
+            boolean isResponse, boolean isRpcEncoded, String contentType) {
+        this(null, cachedContent, charset, header, soap, isResponse, isRpcEncoded, contentType);
+    }
+
+    private AbstractSoapMessage(byte[] bytes, CachingStream cachedContent, String charset, T header,
+            SOAPMessage soap, boolean isResponse, boolean isRpcEncoded, String contentType) {
+        this.bytes = bytes;
+        this.cachedContent = cachedContent;
+        this.charset = charset;
+        this.header = header;
+        this.soap = soap;
+        this.isResponse = isResponse;
+        this.isRpcEncoded = isRpcEncoded;
+        this.contentType = contentType;
+    }
+
     /**
      * Gets the SOAP header instance for this message.
      * @return T
@@ -55,6 +93,46 @@ public abstract class AbstractSoapMessage<T> implements SoapMessage {
         return header;
     }
 
+    @Override
+    public byte[] getBytes() {
+        if (bytes != null) {
+            return bytes;
+        }
+
+        try {
+            return IOUtils.toByteArray(cachedContent.getCachedContents());
+        } catch (IOException e) {
+            throw translateException(e);
+        }
+    }
+
+    @Override
+    public InputStream getContent() {
+        return bytes != null ? new ByteArrayInputStream(bytes) : cachedContent.getCachedContents();
+    }
+
+    @Override
+    public long getSize() {
+        return bytes != null ? bytes.length : cachedContent.size();
+    }
+
+    /**
+     * @return true, if the content of the message is kept in a temporary file
+     */
+    public boolean isSpilled() {
+        return cachedContent != null;
+    }
+
+    /**
+     * Releases the temporary file holding the content of a large message.
+     * The content of the message cannot be read after this.
+     */
+    public void consume() {
+        if (cachedContent != null) {
+            cachedContent.consume();
+        }
+    }
+
     @Override
     public boolean isRequest() {
         return !isResponse;
@@ -62,6 +140,14 @@ public abstract class AbstractSoapMessage<T> implements SoapMessage {
 
     @Override
     public String getXml() throws UnsupportedEncodingException {
-        return new String(bytes, charset);
+        if (bytes != null) {
+            return new String(bytes, charset);
+        }
+
+        try {
+            return IOUtils.toString(cachedContent.getCachedContents(), charset);
+        } catch (IOException e) {
+            throw translateException(e);
+        }
     }
 }
@@ -25,11 +25,13 @@
 package ee.ria.xroad.common.message;
 
 import ee.ria.xroad.common.CodedException;
+import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.identifier.CentralServiceId;
 import ee.ria.xroad.common.identifier.ClientId;
 import ee.ria.xroad.common.identifier.SecurityServerId;
 import ee.ria.xroad.common.identifier.ServiceId;
 import ee.ria.xroad.common.identifier.XRoadObjectType;
+import ee.ria.xroad.common.util.CachingStream;
 import ee.ria.xroad.common.util.MimeUtils;
 import ee.ria.xroad.common.util.XmlUtils;
 
@@ -38,6 +40,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.input.BOMInputStream;
 import org.apache.commons.io.input.TeeInputStream;
 import org.apache.commons.lang3.StringEscapeUtils;
@@ -54,7 +57,7 @@ import javax.xml.parsers.SAXParserFactory;
 import javax.xml.soap.SOAPException;
 
 import java.io.BufferedWriter;
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
@@ -80,6 +83,10 @@ import static ee.ria.xroad.common.util.MimeUtils.hasUtf8Charset;
 
 /**
  * SOAP message parser that does not construct a DOM tree of the message.
+ * Only the SOAP header and the name of the body element are interpreted,
+ * the message is returned byte-for-byte unless a subclass requires the
+ * processed XML. SAX parsers are reused by the parsing thread. Messages
+ * larger than the configured spill threshold are kept in a temporary file.
  */
 @Slf4j
 public class SaxSoapParserImpl implements SoapParser {
@@ -170,6 +177,8 @@ public class SaxSoapParserImpl implements SoapParser {
 
     private static final SAXParserFactory PARSER_FACTORY = createSaxParserFactory();
 
+    private static final ThreadLocal<SAXParser> PARSER = ThreadLocal.withInitial(SaxSoapParserImpl::createSaxParser);
+
     @Override
     public Soap parse(String contentType, InputStream is) {
         String mimeType = MimeUtils.getBaseContentType(contentType);
@@ -193,28 +202,45 @@ public class SaxSoapParserImpl implements SoapParser {
     private Soap parseMessage(InputStream is, String mimeType, String contentType, String charset) throws Exception {
         log.trace("parseMessage({}, {})", mimeType, charset);
 
-        ByteArrayOutputStream rawXml = new ByteArrayOutputStream();
-        ByteArrayOutputStream processedXml = new ByteArrayOutputStream();
+        // Messages over the spill threshold are kept in a temporary file
+        int spillThreshold = SystemProperties.getSoapMessageSpillThreshold();
+        CachingStream rawXml = new CachingStream(spillThreshold);
+        CachingStream processedXml = null;
+        CachingStream retainedXml = null;
 
-        InputStream proxyStream = excludeUtf8Bom(contentType, new TeeInputStream(is, rawXml));
-        Writer outputWriter = new OutputStreamWriter(processedXml, charset);
-        XRoadSoapHandler handler = handleSoap(outputWriter, proxyStream);
+        try {
+            // The processed XML is only written if it is required from the start of the message
+            processedXml = isProcessedXmlRequired() ? new CachingStream(spillThreshold) : null;
 
-        CodedException fault = handler.getFault();
-        if (fault != null) {
-            return createSoapFault(charset, rawXml, fault);
-        }
+            InputStream proxyStream = excludeUtf8Bom(contentType, new TeeInputStream(is, rawXml));
+            Writer outputWriter = processedXml != null ? new OutputStreamWriter(processedXml, charset) : null;
+            XRoadSoapHandler handler = handleSoap(outputWriter, proxyStream);
+
+            CodedException fault = handler.getFault();
+            if (fault != null) {
+                return createSoapFault(charset, rawXml, fault);
+            }
+
+            CachingStream xml = processedXml != null && isProcessedXmlRequired() ? processedXml : rawXml;
+            Soap soap = createSoapMessage(contentType, charset, handler, xml);
 
-        byte[] xmlBytes = isProcessedXmlRequired() ? processedXml.toByteArray() : rawXml.toByteArray();
+            if (xml.isSpilled()) {
+                retainedXml = xml;
+            }
 
-        return createSoapMessage(contentType, charset, handler, xmlBytes);
+            return soap;
+        } finally {
+            releaseUnlessRetained(rawXml, retainedXml);
+            releaseUnlessRetained(processedXml, retainedXml);
+        }
     }
 
     private XRoadSoapHandler handleSoap(Writer writer, InputStream inputStream)
             throws Exception {
-        try (BufferedWriter out = new BufferedWriter(writer)) {
+        SAXParser saxParser = PARSER.get();
+
+        try (BufferedWriter out = writer != null ? new BufferedWriter(writer) : null) {
             XRoadSoapHandler handler = new XRoadSoapHandler(out);
-            SAXParser saxParser = PARSER_FACTORY.newSAXParser();
             XMLReader xmlReader = saxParser.getXMLReader();
             xmlReader.setProperty(LEXICAL_HANDLER_PROPERTY, handler);
             // ensure both builtin entities and character entities are reported to the parser
@@ -225,20 +251,38 @@ public class SaxSoapParserImpl implements SoapParser {
             return handler;
         } catch (SAXException ex) {
             throw new SOAPException(ex);
+        } finally {
+            // restores the initial configuration, also releasing the handler
+            saxParser.reset();
         }
     }
 
     private static Soap createSoapMessage(String contentType, String charset,
-            XRoadSoapHandler handler, byte[] xmlBytes) throws Exception {
-        return new SoapMessageImpl(xmlBytes, charset, handler.getHeader(),
+            XRoadSoapHandler handler, CachingStream xml) throws Exception {
+        if (xml.isSpilled()) {
+            return new SoapMessageImpl(xml, charset, handler.getHeader(),
+                    null, handler.getServiceName(), handler.isRpc(), contentType);
+        }
+
+        return new SoapMessageImpl(toByteArray(xml), charset, handler.getHeader(),
                 null, handler.getServiceName(), handler.isRpc(), contentType);
     }
 
     private static Soap createSoapFault(String charset,
-            ByteArrayOutputStream rawXml, CodedException fault) {
+            CachingStream rawXml, CodedException fault) throws IOException {
         return new SoapFault(fault.getFaultCode(), fault.getFaultString(),
                 fault.getFaultActor(), fault.getFaultDetail(),
-                rawXml.toByteArray(), charset);
+                toByteArray(rawXml), charset);
+    }
+
+    private static byte[] toByteArray(CachingStream xml) throws IOException {
+        return IOUtils.toByteArray(xml.getCachedContents());
+    }
+
+    private static void releaseUnlessRetained(CachingStream xml, CachingStream retainedXml) {
+        if (xml != null && xml != retainedXml) {
+            xml.consume();
+        }
     }
 
     @SneakyThrows
@@ -254,6 +298,11 @@ public class SaxSoapParserImpl implements SoapParser {
         return factory;
     }
 
+    @SneakyThrows
+    private static SAXParser createSaxParser() {
+        return PARSER_FACTORY.newSAXParser();
+    }
+
     /**
      * Determines whether the raw XML of the SOAP message should be re-encoded
      * or if the original should be used in the output.
@@ -304,6 +353,7 @@ public class SaxSoapParserImpl implements SoapParser {
 
         private static final String XML_VERSION_ENCODING = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
 
+        // null if the processed XML is not written
         private final BufferedWriter out;
 
         private char[] xmlEntity;
@@ -340,13 +390,25 @@ public class SaxSoapParserImpl implements SoapParser {
             log.trace("startDocument()");
             reset();
 
-            if (isProcessedXmlRequired()) {
+            if (isWritingProcessedXml()) {
                 writeXmlDeclaration();
             }
         }
 
+        private boolean isWritingProcessedXml() {
+            return out != null && isProcessedXmlRequired();
+        }
+
         @Override
         public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            boolean writing = isWritingProcessedXml();
+
+            if (!writing && !elementHandlers.isEmpty() && elementHandlers.peek() == NoOpHandler.INSTANCE) {
+                // Content of uninterpreted elements (e.g. the body payload) is only checked for well-formedness
+                elementHandlers.push(NoOpHandler.INSTANCE);
+                return;
+            }
+
             QName element = new QName(uri, localName);
 
             if (elementHandlers.isEmpty()) {
@@ -355,7 +417,7 @@ public class SaxSoapParserImpl implements SoapParser {
                 handleElement(attributes, element);
             }
 
-            if (isProcessedXmlRequired()) {
+            if (writing) {
                 String prefix = findNamespacePrefix(qName);
                 writeStartElementXml(prefix, element, attributes, out);
             }
@@ -385,7 +447,7 @@ public class SaxSoapParserImpl implements SoapParser {
             XmlElementHandler elementParser = elementHandlers.peek();
             elementParser.characters(ch, start, length);
 
-            if (isProcessedXmlRequired()) {
+            if (isWritingProcessedXml()) {
                 // Make sure XML entities are not resolved in processed XML
                 if (xmlEntity != null) {
                     writeCharactersXml(ENTITY_START, 0, 1, out);
@@ -400,7 +462,7 @@ public class SaxSoapParserImpl implements SoapParser {
 
         @Override
         public void comment(char[] ch, int start, int length) {
-            if (isProcessedXmlRequired()) {
+            if (isWritingProcessedXml()) {
                 writeCharactersXml(COMMENT_START, 0, COMMENT_START.length, out);
                 writeCharactersXml(ch, start, length, out);
                 writeCharactersXml(COMMENT_END, 0, COMMENT_END.length, out);
@@ -409,21 +471,21 @@ public class SaxSoapParserImpl implements SoapParser {
 
         @Override
         public void startEntity(String name) {
-            if (isProcessedXmlRequired()) {
+            if (isWritingProcessedXml()) {
                 xmlEntity = name.toCharArray();
             }
         }
 
         @Override
         public void startCDATA() {
-            if (isProcessedXmlRequired()) {
+            if (isWritingProcessedXml()) {
                 writeCharactersXml(CDATA_START, 0, CDATA_START.length, out);
             }
         }
 
         @Override
         public void endCDATA() {
-            if (isProcessedXmlRequired()) {
+            if (isWritingProcessedXml()) {
                 writeCharactersXml(CDATA_END, 0, CDATA_END.length, out);
             }
         }
@@ -435,7 +497,7 @@ public class SaxSoapParserImpl implements SoapParser {
             elementHandler.valueInternal();
             elementHandler.closeTag();
 
-            if (isProcessedXmlRequired()) {
+            if (isWritingProcessedXml()) {
                 QName element = new QName(uri, localName);
                 String prefix = findNamespacePrefix(qName);
                 writeEndElementXml(prefix, element, attributes, out);
@@ -445,7 +507,7 @@ public class SaxSoapParserImpl implements SoapParser {
         @Override
         public void endDocument() {
             log.trace("endDocument()");
-            if (isProcessedXmlRequired()) {
+            if (isWritingProcessedXml()) {
                 writeNewLine();
             }
         }
@@ -28,6 +28,8 @@ import ee.ria.xroad.common.util.MimeTypes;
 
 import javax.xml.soap.SOAPMessage;
 
+import java.io.InputStream;
+
 /**
  * Describes a Soap message that is received from the client or service.
  */
@@ -39,10 +41,22 @@ public interface SoapMessage extends Soap {
     SOAPMessage getSoap();
 
     /**
-     * @return the raw byte content of the message.
+     * @return the raw byte content of the message. Large messages are kept
+     * in a temporary file and read into memory by every call of this method.
      */
     byte[] getBytes();
 
+    /**
+     * @return the raw content of the message as a stream. The stream is
+     * re-created by every call of this method.
+     */
+    InputStream getContent();
+
+    /**
+     * @return the size of the raw content of the message, in bytes.
+     */
+    long getSize();
+
     /**
      * @return the original charset of the message.
      */
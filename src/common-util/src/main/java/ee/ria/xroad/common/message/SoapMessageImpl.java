@@ -28,6 +28,7 @@ import ee.ria.xroad.common.identifier.CentralServiceId;
 import ee.ria.xroad.common.identifier.ClientId;
 import ee.ria.xroad.common.identifier.SecurityServerId;
 import ee.ria.xroad.common.identifier.ServiceId;
+import ee.ria.xroad.common.util.CachingStream;
 
 import lombok.SneakyThrows;
 
@@ -50,6 +51,13 @@ public class SoapMessageImpl extends AbstractSoapMessage<SoapHeader> {
                 isRpcEncoded, originalContentType);
     }
 
+    SoapMessageImpl(CachingStream cachedXml, String charset, SoapHeader header,
+            SOAPMessage soap, String serviceName, boolean isRpcEncoded,
+            String originalContentType) throws Exception {
+        super(cachedXml, charset, header, soap, isResponseMessage(serviceName),
+                isRpcEncoded, originalContentType);
+    }
+
     /**
      * Lazy method to retrieve the hash of the message, will calculate it
      * on the first invocation of the method.
@@ -58,7 +66,7 @@ public class SoapMessageImpl extends AbstractSoapMessage<SoapHeader> {
     @SneakyThrows
     public byte[] getHash() {
         if (hash == null) {
-            hash = calculateDigest(SoapUtils.getHashAlgoId(), getBytes());
+            hash = calculateDigest(SoapUtils.getHashAlgoId(), getContent());
         }
         return hash;
     }
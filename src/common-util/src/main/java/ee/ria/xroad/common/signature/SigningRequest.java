@@ -47,9 +47,11 @@ public final class SigningRequest {
     private final List<OCSPResp> ocspResponses = new ArrayList<>();
 
     /**
-     * @return true if signing request is for a single message
+     * @return true if signing request is for a single message that is available in memory.
+     * Messages without content (e.g. large messages kept in a temporary file) are signed
+     * using the hash chain.
      */
     public boolean isSingleMessage() {
-        return parts.size() == 1;
+        return parts.size() == 1 && parts.get(0).getMessage() != null;
     }
 }
@@ -26,78 +26,310 @@ package ee.ria.xroad.common.util;
 
 import ee.ria.xroad.common.DefaultFilepaths;
 import ee.ria.xroad.common.ErrorCodes;
+import ee.ria.xroad.common.SystemProperties;
 
 import lombok.extern.slf4j.Slf4j;
 
-import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Caches stuff in a temporary file.
+ * Caches stuff in memory and spills it to a temporary file when the cached
+ * contents grow over the configured memory threshold.
  */
 @Slf4j
-public class CachingStream extends FilterOutputStream {
+public class CachingStream extends OutputStream {
+
+    private static final int CHUNK_SIZE = 16 * 1024;
+    private static final int MAX_POOLED_CHUNKS = 256;
+    private static final int BYTE_MASK = 0xff;
+
+    private static final Queue<ByteBuffer> CHUNK_POOL = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger POOLED_CHUNKS = new AtomicInteger();
+
+    private final int memoryThreshold;
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private long size;
+
+    // Readers of the memory chunks that have not reached the end of the contents.
+    private final AtomicInteger openReaders = new AtomicInteger();
+    private volatile boolean released;
+
     private SeekableByteChannel channel;
+    private OutputStream fileOut;
     private Path tempFile;
 
     /**
-     * Constructs a new caching stream that caches data in a temporary file.
+     * Constructs a new caching stream that keeps the data in memory up to
+     * the configured threshold and in a temporary file after that.
      *
      * @throws IOException if I/O errors occurred
      */
     public CachingStream() throws IOException {
-        // Construct the parent class with null stream and replace it later.
-        super(null);
+        this(SystemProperties.getMessageCacheMemoryThreshold());
+    }
 
-        tempFile = DefaultFilepaths.createTempFile("tmpattach", null);
-        channel = Files.newByteChannel(tempFile, StandardOpenOption.CREATE,
-                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING,
-                StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE);
+    /**
+     * Constructs a new caching stream that keeps the data in memory up to
+     * the given threshold and in a temporary file after that.
+     *
+     * @param memoryThreshold maximum number of bytes kept in memory
+     * @throws IOException if I/O errors occurred
+     */
+    public CachingStream(int memoryThreshold) throws IOException {
+        this.memoryThreshold = Math.max(0, memoryThreshold);
 
-        // Now that we are set up, we can set the output stream in the
-        // parent class.
-        out = Channels.newOutputStream(channel);
+        if (this.memoryThreshold == 0) {
+            spill();
+        }
     }
 
     @Override
     public void close() throws IOException {
-        // we must not close the channel before reading it
+        // we must not release the cache before reading it
         flush();
     }
 
+    @Override
+    public void write(int b) throws IOException {
+        if (fileOut == null && size + 1 > memoryThreshold) {
+            spill();
+        }
+
+        if (fileOut != null) {
+            fileOut.write(b);
+        } else {
+            currentChunk().put((byte) b);
+        }
+
+        size++;
+    }
+
     @Override
     public void write(byte[] b, int off, int len) throws IOException {
-        // prevent FilterOutputStream from writing inefficiently
-        out.write(b, off, len);
+        if (fileOut == null && size + len > memoryThreshold) {
+            spill();
+        }
+
+        if (fileOut != null) {
+            fileOut.write(b, off, len);
+        } else {
+            int written = 0;
+
+            while (written < len) {
+                ByteBuffer chunk = currentChunk();
+                int count = Math.min(chunk.remaining(), len - written);
+                chunk.put(b, off + written, count);
+                written += count;
+            }
+        }
+
+        size += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (fileOut != null) {
+            fileOut.flush();
+        }
+    }
+
+    /**
+     * @return number of bytes written to the cache
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return true if the cached contents have been written to a temporary file
+     */
+    public boolean isSpilled() {
+        return channel != null;
     }
 
     /**
      * @return input stream that contains the encoded attachment contents.
      * The returned stream does not support mark, and closing the stream has no effect.
+     * Reading the stream fails after the cache has been consumed.
      * @see #consume() to free resources used by the cache.
      */
     public CacheInputStream getCachedContents() {
         try {
-            return new CacheInputStream(channel);
+            if (channel != null) {
+                return new CacheInputStream(Channels.newInputStream(channel.position(0)), channel.size());
+            }
+
+            return new CacheInputStream(new ChunkInputStream(), size);
         } catch (IOException ex) { // the position shouldn't really throw
             throw ErrorCodes.translateException(ex);
         }
     }
 
     /**
-     * Finalize caching stream. Use to avoid file handle leaks.
+     * Finalize caching stream. Use to avoid file handle leaks. The memory
+     * chunks are reused only if no reader of the contents is left unfinished,
+     * otherwise they are left to the garbage collector.
      */
     public void consume() {
-        try {
-            channel.close();
-        } catch (IOException e) {
-            log.warn("Error closing channel of the temporary file '{}'", tempFile.toString(), e);
+        released = true;
+
+        releaseChunks();
+
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Error closing channel of the temporary file '{}'", tempFile.toString(), e);
+            }
+        }
+    }
+
+    private ByteBuffer currentChunk() {
+        ByteBuffer chunk = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+
+        if (chunk == null || !chunk.hasRemaining()) {
+            chunk = acquireChunk();
+            chunks.add(chunk);
+        }
+
+        return chunk;
+    }
+
+    private void spill() throws IOException {
+        tempFile = DefaultFilepaths.createTempFile("tmpattach", null);
+        channel = Files.newByteChannel(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE);
+
+        for (ByteBuffer chunk : chunks) {
+            ByteBuffer data = (ByteBuffer) chunk.duplicate().flip();
+
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+
+        releaseChunks();
+
+        fileOut = Channels.newOutputStream(channel);
+    }
+
+    /**
+     * Returns the memory chunks to the pool, unless a reader that has not
+     * finished still refers to them. Then the chunks are left to the garbage
+     * collector instead.
+     */
+    private void releaseChunks() {
+        if (openReaders.get() == 0) {
+            chunks.forEach(CachingStream::releaseChunk);
+        }
+
+        chunks.clear();
+    }
+
+    private static ByteBuffer acquireChunk() {
+        ByteBuffer chunk = CHUNK_POOL.poll();
+
+        if (chunk != null) {
+            POOLED_CHUNKS.decrementAndGet();
+
+            return chunk;
+        }
+
+        return SystemProperties.isMessageCacheDirectBuffers()
+                ? ByteBuffer.allocateDirect(CHUNK_SIZE) : ByteBuffer.allocate(CHUNK_SIZE);
+    }
+
+    private static void releaseChunk(ByteBuffer chunk) {
+        if (POOLED_CHUNKS.incrementAndGet() <= MAX_POOLED_CHUNKS) {
+            chunk.clear();
+            CHUNK_POOL.offer(chunk);
+        } else {
+            POOLED_CHUNKS.decrementAndGet();
         }
     }
 
+    /**
+     * Reads the contents of the memory chunks without modifying them. Counts
+     * as an open reader of the chunks until the end of the contents is reached.
+     */
+    private final class ChunkInputStream extends InputStream {
+        private final List<ByteBuffer> views = new ArrayList<>();
+        private int current;
+        private boolean open = true;
+
+        ChunkInputStream() {
+            for (ByteBuffer chunk : chunks) {
+                views.add((ByteBuffer) chunk.duplicate().flip());
+            }
+
+            openReaders.incrementAndGet();
+        }
+
+        @Override
+        public int read() throws IOException {
+            ByteBuffer chunk = nextChunk();
+
+            return chunk != null ? chunk.get() & BYTE_MASK : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+
+            ByteBuffer chunk = nextChunk();
+
+            if (chunk == null) {
+                return -1;
+            }
+
+            int count = Math.min(len, chunk.remaining());
+            chunk.get(b, off, count);
+
+            return count;
+        }
+
+        @Override
+        public int available() throws IOException {
+            ByteBuffer chunk = nextChunk();
+
+            return chunk != null ? chunk.remaining() : 0;
+        }
+
+        private ByteBuffer nextChunk() throws IOException {
+            if (released && open) {
+                throw new IOException("Cached contents have already been released");
+            }
+
+            while (current < views.size() && !views.get(current).hasRemaining()) {
+                current++;
+            }
+
+            if (current < views.size()) {
+                return views.get(current);
+            }
+
+            if (open) {
+                open = false;
+                openReaders.decrementAndGet();
+            }
+
+            return null;
+        }
+    }
 }
@@ -0,0 +1,70 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.util;
+
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Global access point for the {@link MetricRegistry} of the running X-Road service process
+ * (proxy, signer). The metrics are published over JMX under the domain given by the service.
+ */
+public final class ServiceMetricRegistry {
+
+    private static final MetricRegistry METRICS = new MetricRegistry();
+
+    private static JmxReporter jmxReporter;
+
+    private ServiceMetricRegistry() {
+    }
+
+    /**
+     * @return the service metric registry
+     */
+    public static MetricRegistry getMetrics() {
+        return METRICS;
+    }
+
+    /**
+     * Starts publishing the metrics over JMX.
+     * @param jmxDomain JMX domain of the service, e.g. "xroad.proxy"
+     */
+    public static synchronized void startJmxReporter(String jmxDomain) {
+        if (jmxReporter == null) {
+            jmxReporter = JmxReporter.forRegistry(METRICS).inDomain(jmxDomain).build();
+            jmxReporter.start();
+        }
+    }
+
+    /**
+     * Stops publishing the metrics over JMX.
+     */
+    public static synchronized void stopJmxReporter() {
+        if (jmxReporter != null) {
+            jmxReporter.stop();
+            jmxReporter = null;
+        }
+    }
+}
@@ -28,6 +28,11 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.Marshaller;
+
+import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
 
 import static ee.ria.xroad.common.util.CryptoUtils.SHA256_ID;
@@ -212,4 +217,45 @@ public class HashChainBuilderTest {
         LOG.debug("Hash chain result:\n{}", builder.getHashChainResult("foo"));
         printChains(builder);
     }
+
+    /**
+     * Test that ensures the hash chains are serialized exactly like the JAXB
+     * marshaller serializes them and that they can be parsed back.
+     * @throws Exception in case of unexpected errors
+     */
+    @Test
+    public void serializationMatchesJaxb() throws Exception {
+        LOG.info("serializationMatchesJaxb()");
+
+        Marshaller marshaller = JAXBContext.newInstance(ObjectFactory.class).createMarshaller();
+        marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+
+        for (int treeSize = 1; treeSize < 20; ++treeSize) {
+            HashChainBuilder builder = new HashChainBuilder(SHA256_ID);
+            builder.addInputHash(new byte[][] {
+                    new byte[] {(byte) 1 },
+                    new byte[] {(byte) 2 }
+            });
+            for (int i = 1; i < treeSize; ++i) {
+                builder.addInputHash(String.valueOf(i).getBytes());
+            }
+            builder.finishBuilding();
+
+            String result = builder.getHashChainResult("/hashchain.xml");
+            HashChainResultType parsedResult =
+                    HashChainParser.parseHashChainResult(result.getBytes(StandardCharsets.UTF_8));
+            assertEquals(result, marshal(marshaller, new ObjectFactory().createHashChainResult(parsedResult)));
+
+            for (String hashChain : builder.getHashChains("/message.xml")) {
+                HashChainType parsed = HashChainParser.parseHashChain(hashChain.getBytes(StandardCharsets.UTF_8));
+                assertEquals(hashChain, marshal(marshaller, new ObjectFactory().createHashChain(parsed)));
+            }
+        }
+    }
+
+    private static String marshal(Marshaller marshaller, JAXBElement<?> element) throws Exception {
+        StringWriter writer = new StringWriter();
+        marshaller.marshal(element, writer);
+        return writer.toString();
+    }
 }
@@ -0,0 +1,164 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.hashchain;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+
+import static ee.ria.xroad.common.util.CryptoUtils.SHA512_ID;
+import static ee.ria.xroad.common.util.CryptoUtils.calculateDigest;
+import static ee.ria.xroad.common.util.CryptoUtils.getDigestAlgorithmURI;
+import static ee.ria.xroad.common.util.MessageFileNames.MESSAGE;
+import static ee.ria.xroad.common.util.MessageFileNames.SIG_HASH_CHAIN;
+
+/**
+ * Hash chain build and verify throughput test program.
+ */
+@Slf4j
+public final class HashChainPerformanceTest {
+
+    private static final int[] BATCH_SIZES = {1, 10, 100, 1000, 10000};
+
+    // minimum number of hash chains built and verified per batch size
+    private static final int MIN_CHAINS = 20000;
+
+    private static final int NANOS_IN_MILLI = 1_000_000;
+
+    private HashChainPerformanceTest() {
+    }
+
+    /**
+     * Main program access point.
+     * @param args command-line arguments
+     * @throws Exception in case of any errors
+     */
+    public static void main(String[] args) throws Exception {
+        log.info("Starting hash chain performance test...");
+
+        // warm up
+        for (int batchSize : BATCH_SIZES) {
+            run(batchSize, batchSize, false);
+        }
+
+        for (int batchSize : BATCH_SIZES) {
+            run(batchSize, Math.max(batchSize, MIN_CHAINS), true);
+        }
+    }
+
+    private static void run(int batchSize, int totalChains, boolean report) throws Exception {
+        String digestMethodUri = getDigestAlgorithmURI(SHA512_ID);
+
+        long buildNanos = 0;
+        long verifyNanos = 0;
+        long trustedVerifyNanos = 0;
+        int chains = 0;
+
+        while (chains < totalChains) {
+            byte[][] inputs = new byte[batchSize][];
+
+            long start = System.nanoTime();
+
+            HashChainBuilder builder = new HashChainBuilder(SHA512_ID);
+            for (int i = 0; i < batchSize; ++i) {
+                inputs[i] = calculateDigest(SHA512_ID, String.valueOf(chains + i).getBytes(StandardCharsets.UTF_8));
+
+                if (batchSize == 1) {
+                    // Single input hash chains are only built for messages with attachments
+                    builder.addInputHash(new byte[][] {inputs[i], inputs[i]});
+                } else {
+                    builder.addInputHash(inputs[i]);
+                }
+            }
+
+            builder.finishBuilding();
+
+            String hashChainResult = builder.getHashChainResult(SIG_HASH_CHAIN);
+            String[] hashChains = builder.getHashChains(MESSAGE);
+
+            buildNanos += System.nanoTime() - start;
+            start = System.nanoTime();
+
+            verify(hashChainResult, hashChains, inputs, digestMethodUri, true);
+
+            verifyNanos += System.nanoTime() - start;
+            start = System.nanoTime();
+
+            verify(hashChainResult, hashChains, inputs, digestMethodUri, false);
+
+            trustedVerifyNanos += System.nanoTime() - start;
+            chains += batchSize;
+        }
+
+        if (report) {
+            log.info("Batch size {}: {} chains, build {} chains/s, verify {} chains/s, "
+                    + "verify without schema validation {} chains/s", batchSize, chains,
+                    perSecond(chains, buildNanos), perSecond(chains, verifyNanos),
+                    perSecond(chains, trustedVerifyNanos));
+        }
+    }
+
+    private static void verify(String hashChainResult, String[] hashChains, byte[][] inputs,
+            String digestMethodUri, boolean validateSchema) throws Exception {
+        for (int i = 0; i < hashChains.length; ++i) {
+            Map<String, DigestValue> digests =
+                    Collections.singletonMap(MESSAGE, new DigestValue(digestMethodUri, inputs[i]));
+
+            HashChainVerifier.verify(is(hashChainResult), new Resolver(hashChains[i]), digests, validateSchema);
+        }
+    }
+
+    private static long perSecond(int count, long nanos) {
+        return count * 1000L * NANOS_IN_MILLI / Math.max(nanos, 1);
+    }
+
+    private static InputStream is(String str) {
+        return new ByteArrayInputStream(str.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static class Resolver implements HashChainReferenceResolver {
+
+        private final String hashChain;
+
+        Resolver(String hashChain) {
+            this.hashChain = hashChain;
+        }
+
+        @Override
+        public InputStream resolve(String uri) {
+            return SIG_HASH_CHAIN.equals(uri) ? is(hashChain) : null;
+        }
+
+        @Override
+        public boolean shouldResolve(String uri, byte[] digestValue) {
+            // attachments of the single input batch are not available
+            return false;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.message;
+
+import ee.ria.xroad.common.util.MimeTypes;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * SAX SOAP parser throughput test program. Parses envelopes of 1 KB, 1 MB
+ * and 50 MB, both passing the message through as is and writing the
+ * processed XML.
+ */
+@Slf4j
+public final class SaxSoapParserPerformanceTest {
+
+    private static final int KB = 1024;
+    private static final int MB = KB * KB;
+
+    private static final int[] ENVELOPE_SIZES = {KB, MB, 50 * MB};
+
+    // approximate number of bytes parsed per envelope size and mode
+    private static final long BYTES_PER_RUN = 500L * MB;
+
+    private static final int MIN_ITERATIONS = 5;
+
+    private static final long NANOS_IN_MILLI = 1_000_000L;
+
+    private static final String HEADER = "<?xml version=\"1.0\" encoding=\"utf-8\"?>"
+            + "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\""
+            + " xmlns:xroad=\"http://x-road.eu/xsd/xroad.xsd\" xmlns:id=\"http://x-road.eu/xsd/identifiers\">"
+            + "<SOAP-ENV:Header>"
+            + "<xroad:client id:objectType=\"MEMBER\"><id:xRoadInstance>EE</id:xRoadInstance>"
+            + "<id:memberClass>BUSINESS</id:memberClass><id:memberCode>consumer</id:memberCode></xroad:client>"
+            + "<xroad:service id:objectType=\"SERVICE\"><id:xRoadInstance>EE</id:xRoadInstance>"
+            + "<id:memberClass>BUSINESS</id:memberClass><id:memberCode>producer</id:memberCode>"
+            + "<id:serviceCode>testQuery</id:serviceCode></xroad:service>"
+            + "<xroad:id>1234567890</xroad:id><xroad:protocolVersion>4.0</xroad:protocolVersion>"
+            + "</SOAP-ENV:Header><SOAP-ENV:Body><ns1:testQuery xmlns:ns1=\"http://consumer.ee.xroad.net\">";
+
+    private static final String ITEM = "<item><name>foo &amp; bar</name><age>35</age></item>";
+
+    private static final String FOOTER = "</ns1:testQuery></SOAP-ENV:Body></SOAP-ENV:Envelope>";
+
+    private SaxSoapParserPerformanceTest() {
+    }
+
+    /**
+     * Main program access point.
+     * @param args command-line arguments
+     * @throws Exception in case of any errors
+     */
+    public static void main(String[] args) throws Exception {
+        log.info("Starting SAX SOAP parser performance test...");
+
+        for (int size : ENVELOPE_SIZES) {
+            byte[] envelope = createEnvelope(size);
+            int iterations = (int) Math.max(MIN_ITERATIONS, BYTES_PER_RUN / envelope.length);
+
+            // warm up
+            run(new SaxSoapParserImpl(), envelope, MIN_ITERATIONS);
+            run(new ProcessedXmlParser(), envelope, MIN_ITERATIONS);
+
+            long passThroughNanos = run(new SaxSoapParserImpl(), envelope, iterations);
+            long processedNanos = run(new ProcessedXmlParser(), envelope, iterations);
+
+            log.info("Envelope of {} bytes, {} iterations: pass-through {} ms/message ({} MB/s), "
+                    + "processed XML {} ms/message ({} MB/s)", envelope.length, iterations,
+                    millisPerMessage(passThroughNanos, iterations),
+                    megabytesPerSecond(envelope.length, iterations, passThroughNanos),
+                    millisPerMessage(processedNanos, iterations),
+                    megabytesPerSecond(envelope.length, iterations, processedNanos));
+        }
+    }
+
+    private static long run(SoapParser parser, byte[] envelope, int iterations) {
+        long start = System.nanoTime();
+
+        for (int i = 0; i < iterations; i++) {
+            Soap soap = parser.parse(MimeTypes.TEXT_XML_UTF8, new ByteArrayInputStream(envelope));
+            if (!(soap instanceof SoapMessageImpl)) {
+                throw new IllegalStateException("Unexpected parse result " + soap);
+            }
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    private static byte[] createEnvelope(int size) {
+        StringBuilder sb = new StringBuilder(size + ITEM.length() + FOOTER.length());
+        sb.append(HEADER);
+
+        while (sb.length() + FOOTER.length() < size) {
+            sb.append(ITEM);
+        }
+
+        sb.append(FOOTER);
+
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static double millisPerMessage(long nanos, int iterations) {
+        return (double) nanos / iterations / NANOS_IN_MILLI;
+    }
+
+    private static long megabytesPerSecond(int envelopeSize, int iterations, long nanos) {
+        return (long) ((double) envelopeSize * iterations / MB / (nanos / (NANOS_IN_MILLI * 1000.0)));
+    }
+
+    private static class ProcessedXmlParser extends SaxSoapParserImpl {
+        @Override
+        protected boolean isProcessedXmlRequired() {
+            return true;
+        }
+    }
+}
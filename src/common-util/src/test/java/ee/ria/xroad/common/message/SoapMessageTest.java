@@ -24,6 +24,7 @@
  */
 package ee.ria.xroad.common.message;
 
+import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.identifier.CentralServiceId;
 import ee.ria.xroad.common.identifier.ClientId;
 import ee.ria.xroad.common.identifier.ServiceId;
@@ -60,6 +61,7 @@ import static ee.ria.xroad.common.message.SoapMessageTestUtil.fileToBytes;
 import static ee.ria.xroad.common.message.SoapMessageTestUtil.messageToBytes;
 import static ee.ria.xroad.common.message.SoapUtils.getChildElements;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -396,6 +398,40 @@ public class SoapMessageTest {
         assertTrue(Arrays.areEqual(in, out));
     }
 
+    /**
+     * Test that a message over the spill threshold is kept in a temporary file
+     * and that its content, size and hash equal those of the in-memory message.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void spilledMessage() throws Exception {
+        byte[] in = fileToBytes("simple.query");
+
+        SoapMessageImpl inMemory = (SoapMessageImpl) new SaxSoapParserImpl().parse(MimeTypes.TEXT_XML_UTF8,
+                new ByteArrayInputStream(in));
+        SoapMessageImpl spilled;
+
+        System.setProperty(SystemProperties.SOAP_MESSAGE_SPILL_THRESHOLD, "0");
+        try {
+            spilled = (SoapMessageImpl) new SaxSoapParserImpl().parse(MimeTypes.TEXT_XML_UTF8,
+                    new ByteArrayInputStream(in));
+        } finally {
+            System.clearProperty(SystemProperties.SOAP_MESSAGE_SPILL_THRESHOLD);
+        }
+
+        try {
+            assertFalse(inMemory.isSpilled());
+            assertTrue(spilled.isSpilled());
+            assertEquals(in.length, spilled.getSize());
+            assertTrue(Arrays.areEqual(in, IOUtils.toByteArray(spilled.getContent())));
+            assertTrue(Arrays.areEqual(in, spilled.getBytes()));
+            assertTrue(Arrays.areEqual(inMemory.getHash(), spilled.getHash()));
+            assertEquals(inMemory.getQueryId(), spilled.getQueryId());
+        } finally {
+            spilled.consume();
+        }
+    }
+
     /**
      * Test that central service query is parsed correctly.
      * @throws Exception in case of any unexpected errors
@@ -0,0 +1,193 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.util;
+
+import ee.ria.xroad.common.SystemProperties;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for {@link CachingStream}
+ */
+public class CachingStreamTest {
+
+    private static final int THRESHOLD = 64 * 1024;
+
+    // More than the chunk pool of the caching streams can hold.
+    private static final int POOL_DRAINING_SIZE = 5 * 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String originalTempFilesPath;
+
+    @Before
+    public void setUp() {
+        originalTempFilesPath = System.getProperty(SystemProperties.TEMP_FILES_PATH);
+        System.setProperty(SystemProperties.TEMP_FILES_PATH, folder.getRoot().getAbsolutePath());
+    }
+
+    @After
+    public void tearDown() {
+        if (originalTempFilesPath != null) {
+            System.setProperty(SystemProperties.TEMP_FILES_PATH, originalTempFilesPath);
+        } else {
+            System.clearProperty(SystemProperties.TEMP_FILES_PATH);
+        }
+    }
+
+    @Test
+    public void smallContentIsKeptInMemory() throws Exception {
+        byte[] data = randomBytes(1000);
+
+        CachingStream cache = new CachingStream(THRESHOLD);
+        cache.write(data[0]);
+        cache.write(data, 1, data.length - 1);
+        cache.close();
+
+        assertFalse(cache.isSpilled());
+        assertEquals(0, folder.getRoot().list().length);
+        assertCachedContents(data, cache);
+        // contents can be read more than once
+        assertCachedContents(data, cache);
+
+        cache.consume();
+    }
+
+    @Test
+    public void largeContentIsSpilledToDisk() throws Exception {
+        byte[] data = randomBytes(THRESHOLD + 1);
+
+        CachingStream cache = new CachingStream(THRESHOLD);
+        cache.write(data, 0, THRESHOLD - 10);
+        assertFalse(cache.isSpilled());
+
+        cache.write(data, THRESHOLD - 10, data.length - THRESHOLD + 10);
+        cache.close();
+
+        assertTrue(cache.isSpilled());
+        assertCachedContents(data, cache);
+
+        cache.consume();
+    }
+
+    @Test
+    public void zeroThresholdAlwaysUsesDisk() throws Exception {
+        byte[] data = randomBytes(10);
+
+        CachingStream cache = new CachingStream(0);
+        cache.write(data);
+        cache.close();
+
+        assertTrue(cache.isSpilled());
+        assertCachedContents(data, cache);
+
+        cache.consume();
+    }
+
+    @Test
+    public void unfinishedReaderFailsAfterConsume() throws Exception {
+        byte[] data = randomBytes(THRESHOLD / 2);
+
+        CachingStream cache = new CachingStream(THRESHOLD);
+        cache.write(data);
+        cache.close();
+
+        InputStream contents = cache.getCachedContents();
+        assertEquals(data[0] & 0xff, contents.read());
+
+        cache.consume();
+
+        // Another cache must not get the chunks the unfinished reader still refers to.
+        CachingStream other = new CachingStream(THRESHOLD);
+        other.write(new byte[data.length]);
+
+        try {
+            contents.read();
+            fail("Reading released cache contents should fail");
+        } catch (IOException expected) {
+            // expected
+        }
+
+        other.consume();
+    }
+
+    /**
+     * Test that spilling to disk does not recycle the memory chunks an unfinished reader still refers to.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void unfinishedReaderKeepsChunksWhenSpilled() throws Exception {
+        byte[] data = randomBytes(THRESHOLD / 2);
+
+        CachingStream cache = new CachingStream(THRESHOLD);
+        cache.write(data);
+
+        InputStream contents = cache.getCachedContents();
+        assertEquals(data[0] & 0xff, contents.read());
+
+        cache.write(randomBytes(THRESHOLD));
+        assertTrue(cache.isSpilled());
+
+        // Another cache must not get the chunks the unfinished reader still refers to.
+        CachingStream other = new CachingStream(POOL_DRAINING_SIZE);
+        other.write(new byte[POOL_DRAINING_SIZE]);
+
+        assertArrayEquals(Arrays.copyOfRange(data, 1, data.length), IOUtils.toByteArray(contents));
+
+        other.consume();
+        cache.consume();
+    }
+
+    private static void assertCachedContents(byte[] expected, CachingStream cache) throws Exception {
+        CacheInputStream contents = cache.getCachedContents();
+
+        assertEquals(expected.length, contents.size());
+        assertArrayEquals(expected, IOUtils.toByteArray(contents));
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+
+        return data;
+    }
+}
@@ -0,0 +1,263 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.cert;
+
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+import ee.ria.xroad.common.conf.globalconfextension.GlobalConfExtensions;
+import ee.ria.xroad.common.util.ServiceMetricRegistry;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.bouncycastle.cert.ocsp.SingleResp;
+
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static ee.ria.xroad.common.util.CryptoUtils.calculateCertHexHash;
+
+/**
+ * Caches successful certificate chain verifications. Consecutive messages
+ * from the same member usually carry the same signing certificate and the
+ * same OCSP responses, so the PKIX path building and OCSP verification
+ * done by {@link CertChainVerifier} can be skipped for them.
+ * <p>
+ * A cached result is reused only for verification dates between the date it
+ * was verified at and the earliest of the certificate expiry dates, the OCSP
+ * freshness limits and (if verified) the OCSP nextUpdate values. The cache is
+ * cleared when global configuration is reloaded or its trust anchors change.
+ * <p>
+ * The hit and miss counts and the hit ratio of the cache are published as
+ * gauges in the {@link ServiceMetricRegistry}.
+ */
+@Slf4j
+public final class CertChainVerificationCache {
+
+    private static final Cache<Key, Entry> CACHE;
+
+    private static volatile String trustAnchorsHash;
+
+    static {
+        CACHE = CacheBuilder.newBuilder()
+                .maximumSize(SystemProperties.getSignatureVerificationCacheSize())
+                .recordStats()
+                .build();
+
+        MetricRegistry metrics = ServiceMetricRegistry.getMetrics();
+        metrics.register(name(CertChainVerificationCache.class, "hits"),
+                (Gauge<Long>) () -> CACHE.stats().hitCount());
+        metrics.register(name(CertChainVerificationCache.class, "misses"),
+                (Gauge<Long>) () -> CACHE.stats().missCount());
+        metrics.register(name(CertChainVerificationCache.class, "hitRatio"),
+                (Gauge<Double>) () -> CACHE.stats().hitRate());
+        metrics.register(name(CertChainVerificationCache.class, "size"),
+                (Gauge<Long>) CACHE::size);
+    }
+
+    private CertChainVerificationCache() {
+    }
+
+    /**
+     * Verifies the certificate chain, unless a previous successful
+     * verification of the same chain and OCSP responses is still valid
+     * at the given date.
+     * @param certChain the certificate chain
+     * @param ocspResponses OCSP responses for the certificates in the chain
+     * @param atDate the date at which the verification is performed
+     */
+    public static void verify(CertChain certChain, List<OCSPResp> ocspResponses, Date atDate) {
+        if (SystemProperties.getSignatureVerificationCacheSize() <= 0) {
+            new CertChainVerifier(certChain).verify(ocspResponses, atDate);
+            return;
+        }
+
+        Key key = createKey(certChain, ocspResponses);
+        Entry cached = key != null ? CACHE.getIfPresent(key) : null;
+
+        if (cached != null && cached.isValidAt(atDate)) {
+            return;
+        }
+
+        new CertChainVerifier(certChain).verify(ocspResponses, atDate);
+
+        if (key != null) {
+            Entry entry = createEntry(certChain, ocspResponses, atDate);
+
+            if (entry != null) {
+                CACHE.put(key, entry);
+            } else {
+                CACHE.invalidate(key);
+            }
+        }
+    }
+
+    /**
+     * Clears the cache if the set of CA and OCSP responder certificates
+     * in global configuration has changed since the last check.
+     */
+    public static void invalidateIfTrustAnchorsChanged() {
+        String current;
+        try {
+            current = calculateTrustAnchorsHash();
+        } catch (Exception e) {
+            log.error("Failed to calculate trust anchors hash, clearing verification cache", e);
+            invalidateAll();
+            return;
+        }
+
+        if (!current.equals(trustAnchorsHash)) {
+            if (trustAnchorsHash != null) {
+                log.debug("Trust anchors have changed, clearing verification cache");
+            }
+
+            invalidateAll();
+            trustAnchorsHash = current;
+        }
+    }
+
+    /**
+     * Removes all cached verification results.
+     */
+    public static void invalidateAll() {
+        CACHE.invalidateAll();
+    }
+
+    /**
+     * @return the hit/miss statistics of the cache
+     */
+    public static CacheStats getStats() {
+        return CACHE.stats();
+    }
+
+    /**
+     * Logs the cache statistics.
+     */
+    public static void logStatistics() {
+        if (log.isDebugEnabled()) {
+            log.debug("CertChainVerificationCache: entries: {}, stats: {}", CACHE.size(), CACHE.stats());
+        }
+    }
+
+    private static Key createKey(CertChain certChain, List<OCSPResp> ocspResponses) {
+        try {
+            List<String> ocspHashes = new ArrayList<>();
+            for (OCSPResp response : ocspResponses) {
+                ocspHashes.add(calculateCertHexHash(response.getEncoded()));
+            }
+
+            Collections.sort(ocspHashes);
+
+            List<String> additionalCertHashes = new ArrayList<>();
+            for (X509Certificate cert : certChain.getAdditionalCerts()) {
+                additionalCertHashes.add(calculateCertHexHash(cert));
+            }
+
+            return new Key(certChain.getInstanceIdentifier(),
+                    calculateCertHexHash(certChain.getEndEntityCert()),
+                    calculateCertHexHash(certChain.getTrustedRootCert()),
+                    additionalCertHashes, ocspHashes);
+        } catch (Exception e) {
+            log.warn("Failed to create verification cache key", e);
+            return null;
+        }
+    }
+
+    private static Entry createEntry(CertChain certChain, List<OCSPResp> ocspResponses, Date verifiedAt) {
+        try {
+            Date validUntil = null;
+            for (X509Certificate cert : certChain.getAllCerts()) {
+                validUntil = earliest(validUntil, cert.getNotAfter());
+            }
+
+            long freshnessMillis = GlobalConf.getOcspFreshnessSeconds(false) * 1000L;
+            boolean verifyNextUpdate = GlobalConfExtensions.getInstance().shouldVerifyOcspNextUpdate();
+
+            for (OCSPResp response : ocspResponses) {
+                BasicOCSPResp basicResp = (BasicOCSPResp) response.getResponseObject();
+                SingleResp singleResp = basicResp.getResponses()[0];
+
+                validUntil = earliest(validUntil,
+                        new Date(singleResp.getThisUpdate().getTime() + freshnessMillis));
+
+                if (verifyNextUpdate && singleResp.getNextUpdate() != null) {
+                    validUntil = earliest(validUntil, singleResp.getNextUpdate());
+                }
+            }
+
+            return validUntil != null && !validUntil.before(verifiedAt)
+                    ? new Entry(verifiedAt, validUntil) : null;
+        } catch (Exception e) {
+            log.warn("Failed to calculate verification cache entry validity", e);
+            return null;
+        }
+    }
+
+    private static Date earliest(Date current, Date candidate) {
+        return current == null || candidate.before(current) ? candidate : current;
+    }
+
+    private static String calculateTrustAnchorsHash() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (X509Certificate cert : GlobalConf.getAllCaCerts()) {
+            sb.append(calculateCertHexHash(cert));
+        }
+
+        for (X509Certificate cert : GlobalConf.getOcspResponderCertificates()) {
+            sb.append(calculateCertHexHash(cert));
+        }
+
+        return sb.toString();
+    }
+
+    @Value
+    private static class Key {
+        String instanceIdentifier;
+        String endEntityCertHash;
+        String trustedRootCertHash;
+        List<String> additionalCertHashes;
+        List<String> ocspResponseHashes;
+    }
+
+    @Value
+    private static class Entry {
+        Date verifiedAt;
+        Date validUntil;
+
+        boolean isValidAt(Date atDate) {
+            return !atDate.before(verifiedAt) && !atDate.after(validUntil);
+        }
+    }
+}
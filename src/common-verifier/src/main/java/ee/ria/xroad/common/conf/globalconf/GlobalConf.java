@@ -27,6 +27,7 @@ package ee.ria.xroad.common.conf.globalconf;
 import ee.ria.xroad.common.CodedException;
 import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.cert.CertChain;
+import ee.ria.xroad.common.cert.CertChainVerificationCache;
 import ee.ria.xroad.common.certificateprofile.AuthCertificateProfileInfo;
 import ee.ria.xroad.common.certificateprofile.SignCertificateProfileInfo;
 import ee.ria.xroad.common.identifier.CentralServiceId;
@@ -119,6 +120,8 @@ public final class GlobalConf {
             log.trace("reload called, create new GlobalConfImpl");
             instance = instanceFactory.createInstance(true);
         }
+
+        CertChainVerificationCache.invalidateAll();
     }
 
     /**
@@ -128,6 +131,8 @@ public final class GlobalConf {
     public static void reload(GlobalConfProvider conf) {
         log.trace("reload called with parameter class {}", conf.getClass());
         instance = conf;
+
+        CertChainVerificationCache.invalidateAll();
     }
 
     /**
@@ -0,0 +1,578 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.ocsp;
+
+import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static ee.ria.xroad.common.SystemProperties.getOcspCachePath;
+
+/**
+ * Append-only OCSP response store backed by a single memory-mapped file.
+ *
+ * Each record holds the certificate hash, the thisUpdate time of the response
+ * and the DER encoded response. A later record for the same hash overrides
+ * the earlier one, a record without response data removes the response.
+ * The in-memory index maps certificate hashes to the records, so a response
+ * is parsed only when it is first read and expiry is checked against the
+ * stored thisUpdate time. The file is compacted once the overridden and
+ * expired records take up more than half of it.
+ *
+ * The store is written by the signer. Other processes can open the same file
+ * read-only and pick up the changes with {@link #refresh()}.
+ *
+ * Readers keep slices of the mapped file in the index, and touching a mapped
+ * region that has been cut off the file crashes the process. Therefore the
+ * store file is never shrunk in place: whenever records have to be dropped, a
+ * new file is written and moved over the old one atomically, while the old
+ * file stays intact for the mappings that still refer to it. The index of the
+ * new file replaces the previous one as a whole.
+ */
+@Slf4j
+public class OcspResponseStore implements Closeable {
+
+    /** Name of the store file in the OCSP cache directory. */
+    public static final String STORE_FILE_NAME = "ocsp-responses.db";
+
+    private static final int MAGIC = 0x4f435350;
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = 8;
+
+    private static final int MAX_HASH_LENGTH = 256;
+    private static final int RECORD_OVERHEAD = Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+    private static final long MIN_COMPACTION_SIZE = 1024 * 1024;
+
+    private final Path file;
+    private final boolean readOnly;
+
+    private volatile Map<String, Entry> index = new ConcurrentHashMap<>();
+
+    private volatile boolean opened;
+
+    private FileChannel channel;
+    private Object fileKey;
+    private long end;
+    private long liveBytes;
+
+    /**
+     * Creates a store on top of the given file. The file is opened on first use.
+     * @param file the store file
+     * @param readOnly whether the store is only read in this process
+     */
+    public OcspResponseStore(Path file, boolean readOnly) {
+        this.file = file;
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * @return the store file in the configured OCSP cache directory
+     */
+    public static Path getDefaultStoreFile() {
+        return Paths.get(getOcspCachePath(), STORE_FILE_NAME);
+    }
+
+    /**
+     * @return the store file
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Opens the store file and builds the index. When writable, a missing file
+     * is created and an incomplete record at the end of the file is discarded.
+     * @throws IOException if the file cannot be read or created
+     */
+    public synchronized void open() throws IOException {
+        closeChannel();
+
+        Map<String, Entry> loaded = new ConcurrentHashMap<>();
+        liveBytes = 0;
+        end = HEADER_LENGTH;
+
+        if (!readOnly) {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+
+            if (!Files.exists(file) || Files.size(file) == 0) {
+                replaceFile(ByteBuffer.allocate(0));
+            }
+
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            if (!hasValidHeader(channel)) {
+                log.warn("OCSP response store '{}' has an invalid header, discarding its contents", file);
+
+                closeChannel();
+                replaceFile(ByteBuffer.allocate(0));
+                channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+
+            load(channel, loaded);
+
+            if (channel.size() > end) {
+                log.warn("Discarding {} bytes of incomplete records at the end of '{}'", channel.size() - end, file);
+
+                // the complete records are written to a new file, the records appended later would otherwise be
+                // followed by the leftovers of the incomplete one
+                ByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_LENGTH, end - HEADER_LENGTH);
+
+                closeChannel();
+                replaceFile(records);
+                channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+                loaded.clear();
+                liveBytes = 0;
+                end = HEADER_LENGTH;
+
+                load(channel, loaded);
+            }
+        } else if (Files.exists(file)) {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (hasValidHeader(ch)) {
+                    load(ch, loaded);
+                } else {
+                    log.warn("OCSP response store '{}' has an invalid header", file);
+                }
+            }
+        }
+
+        index = loaded;
+        fileKey = getFileKey();
+        opened = true;
+
+        log.debug("Opened OCSP response store '{}' with {} responses", file, index.size());
+    }
+
+    /**
+     * Picks up the records appended to the store file since the last call and
+     * reopens the file if it has been replaced by compaction.
+     * @throws IOException if the file cannot be read
+     */
+    public synchronized void refresh() throws IOException {
+        if (!opened || !Files.exists(file)) {
+            open();
+
+            return;
+        }
+
+        long size = Files.size(file);
+
+        if (!Objects.equals(fileKey, getFileKey()) || size < end) {
+            open();
+        } else if (size > end) {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                scan(ch.map(FileChannel.MapMode.READ_ONLY, end, size - end), end, index);
+            }
+        }
+    }
+
+    /**
+     * @param certHash the certificate hash
+     * @param atDate the date
+     * @return the OCSP response or null if the response is not found or is
+     * expired at the specified date
+     * @throws Exception if the stored response cannot be parsed
+     */
+    public OCSPResp get(String certHash, Date atDate) throws Exception {
+        ensureOpen();
+
+        Entry entry = index.get(certHash);
+
+        if (entry == null || isExpired(entry, atDate)) {
+            return null;
+        }
+
+        return entry.getResponse();
+    }
+
+    /**
+     * @return all OCSP responses that are not expired at the current date
+     * @throws Exception if a stored response cannot be parsed
+     */
+    public Map<String, OCSPResp> getResponses() throws Exception {
+        ensureOpen();
+
+        Date now = new Date();
+        Map<String, OCSPResp> responses = new HashMap<>();
+
+        for (Map.Entry<String, Entry> e : index.entrySet()) {
+            if (!isExpired(e.getValue(), now)) {
+                responses.put(e.getKey(), e.getValue().getResponse());
+            }
+        }
+
+        return responses;
+    }
+
+    /**
+     * Appends the OCSP response to the store.
+     * @param certHash the certificate hash
+     * @param response the OCSP response
+     * @return the previous response for the certificate or null
+     * @throws Exception if an error occurs
+     */
+    public OCSPResp put(String certHash, OCSPResp response) throws Exception {
+        Entry previous = index.get(certHash);
+
+        putAll(Collections.singletonMap(certHash, response));
+
+        return previous != null ? previous.getResponse() : null;
+    }
+
+    /**
+     * Appends the OCSP responses to the store with a single write.
+     * @param responses the OCSP responses keyed by certificate hash
+     * @throws Exception if an error occurs
+     */
+    public synchronized void putAll(Map<String, OCSPResp> responses) throws Exception {
+        ensureWritable();
+
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        Map<String, Entry> entries = new HashMap<>();
+
+        for (Map.Entry<String, OCSPResp> e : responses.entrySet()) {
+            long thisUpdate = getThisUpdate(e.getValue());
+            int length = writeRecord(records, e.getKey(), thisUpdate, e.getValue().getEncoded());
+
+            entries.put(e.getKey(), new Entry(thisUpdate, length, null, e.getValue()));
+        }
+
+        append(records.toByteArray());
+
+        entries.forEach((certHash, entry) -> index(index, certHash, entry));
+
+        compactIfNeeded();
+    }
+
+    /**
+     * Removes the OCSP response of the given certificate from the store.
+     * @param certHash the certificate hash
+     * @throws IOException if an error occurs
+     */
+    public synchronized void remove(String certHash) throws IOException {
+        ensureWritable();
+
+        if (!index.containsKey(certHash)) {
+            return;
+        }
+
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        writeRecord(record, certHash, 0, new byte[0]);
+
+        append(record.toByteArray());
+
+        Entry removed = index.remove(certHash);
+
+        if (removed != null) {
+            liveBytes -= removed.length;
+        }
+    }
+
+    /**
+     * Rewrites the store file with only the responses that are not expired.
+     * The new file replaces the old one atomically.
+     * @throws Exception if an error occurs
+     */
+    public synchronized void compact() throws Exception {
+        ensureWritable();
+
+        Date now = new Date();
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+
+        for (Map.Entry<String, Entry> e : index.entrySet()) {
+            if (!isExpired(e.getValue(), now)) {
+                writeRecord(records, e.getKey(), e.getValue().thisUpdate, e.getValue().getEncoded());
+            }
+        }
+
+        log.debug("Compacting OCSP response store '{}' from {} to {} bytes", file, end,
+                HEADER_LENGTH + records.size());
+
+        closeChannel();
+        replaceFile(ByteBuffer.wrap(records.toByteArray()));
+
+        open();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closeChannel();
+        index = new ConcurrentHashMap<>();
+        opened = false;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (!opened) {
+            synchronized (this) {
+                if (!opened) {
+                    open();
+                }
+            }
+        }
+    }
+
+    private void ensureWritable() throws IOException {
+        if (readOnly) {
+            throw new IllegalStateException("OCSP response store '" + file + "' is opened read-only");
+        }
+
+        ensureOpen();
+    }
+
+    private void append(byte[] records) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(records);
+        long position = end;
+
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+
+        channel.force(false);
+
+        end = position;
+    }
+
+    private void compactIfNeeded() throws Exception {
+        long size = end - HEADER_LENGTH;
+
+        if (size > MIN_COMPACTION_SIZE && liveBytes * 2 < size) {
+            compact();
+        }
+    }
+
+    /**
+     * Writes the given records with a new header to a temporary file and moves it over the store file.
+     * The mappings of the replaced file remain valid.
+     */
+    private void replaceFile(ByteBuffer records) throws IOException {
+        Path tmp = Files.createTempFile(file.toAbsolutePath().getParent(), STORE_FILE_NAME, ".tmp");
+
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ByteBuffer header = createHeader();
+
+                while (header.hasRemaining()) {
+                    ch.write(header);
+                }
+
+                while (records.hasRemaining()) {
+                    ch.write(records);
+                }
+
+                ch.force(true);
+            }
+
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private void load(FileChannel ch, Map<String, Entry> target) throws IOException {
+        long size = ch.size();
+
+        if (size > HEADER_LENGTH) {
+            scan(ch.map(FileChannel.MapMode.READ_ONLY, HEADER_LENGTH, size - HEADER_LENGTH), HEADER_LENGTH, target);
+        }
+    }
+
+    /**
+     * Adds the complete records in the buffer to the index. Stops at the first
+     * incomplete or malformed record and leaves the end of the store there.
+     */
+    private void scan(MappedByteBuffer buffer, long offset, Map<String, Entry> target) {
+        while (buffer.remaining() >= Integer.BYTES) {
+            int start = buffer.position();
+            int hashLength = buffer.getInt();
+
+            if (hashLength <= 0 || hashLength > MAX_HASH_LENGTH) {
+                log.warn("Malformed record at offset {} in '{}'", offset + start, file);
+
+                break;
+            }
+
+            if (buffer.remaining() < hashLength + Long.BYTES + Integer.BYTES) {
+                break;
+            }
+
+            byte[] hash = new byte[hashLength];
+            buffer.get(hash);
+
+            long thisUpdate = buffer.getLong();
+            int dataLength = buffer.getInt();
+
+            if (dataLength < 0 || buffer.remaining() < dataLength) {
+                break;
+            }
+
+            String certHash = new String(hash, StandardCharsets.US_ASCII);
+
+            if (dataLength == 0) {
+                Entry removed = target.remove(certHash);
+
+                if (removed != null) {
+                    liveBytes -= removed.length;
+                }
+            } else {
+                ByteBuffer data = buffer.slice();
+                data.limit(dataLength);
+
+                index(target, certHash, new Entry(thisUpdate, RECORD_OVERHEAD + hashLength + dataLength, data, null));
+
+                buffer.position(buffer.position() + dataLength);
+            }
+
+            end = offset + buffer.position();
+        }
+    }
+
+    private void index(Map<String, Entry> target, String certHash, Entry entry) {
+        Entry previous = target.put(certHash, entry);
+
+        liveBytes += entry.length - (previous != null ? previous.length : 0);
+    }
+
+    private Object getFileKey() throws IOException {
+        return Files.exists(file) ? Files.readAttributes(file, BasicFileAttributes.class).fileKey() : null;
+    }
+
+    private void closeChannel() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private static boolean isExpired(Entry entry, Date atDate) {
+        long allowedThisUpdate = atDate.getTime()
+                - TimeUnit.SECONDS.toMillis(GlobalConf.getOcspFreshnessSeconds(true));
+
+        return entry.thisUpdate < allowedThisUpdate;
+    }
+
+    private static long getThisUpdate(OCSPResp response) throws Exception {
+        BasicOCSPResp basicResp = (BasicOCSPResp) response.getResponseObject();
+
+        return basicResp.getResponses()[0].getThisUpdate().getTime();
+    }
+
+    private static boolean hasValidHeader(FileChannel ch) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+
+        while (header.hasRemaining() && ch.read(header, header.position()) > 0) {
+            // keep reading
+        }
+
+        header.flip();
+
+        return header.remaining() == HEADER_LENGTH && header.getInt() == MAGIC && header.getInt() == VERSION;
+    }
+
+    private static ByteBuffer createHeader() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        header.putInt(MAGIC).putInt(VERSION);
+        header.flip();
+
+        return header;
+    }
+
+    private static int writeRecord(ByteArrayOutputStream out, String certHash, long thisUpdate, byte[] data)
+            throws IOException {
+        byte[] hash = certHash.getBytes(StandardCharsets.US_ASCII);
+
+        DataOutputStream dos = new DataOutputStream(out);
+        dos.writeInt(hash.length);
+        dos.write(hash);
+        dos.writeLong(thisUpdate);
+        dos.writeInt(data.length);
+        dos.write(data);
+        dos.flush();
+
+        return RECORD_OVERHEAD + hash.length + data.length;
+    }
+
+    private static final class Entry {
+        private final long thisUpdate;
+        private final int length;
+        private final ByteBuffer data;
+        private volatile OCSPResp response;
+
+        Entry(long thisUpdate, int length, ByteBuffer data, OCSPResp response) {
+            this.thisUpdate = thisUpdate;
+            this.length = length;
+            this.data = data;
+            this.response = response;
+        }
+
+        OCSPResp getResponse() throws IOException {
+            OCSPResp result = response;
+
+            if (result == null) {
+                result = new OCSPResp(getEncoded());
+                response = result;
+            }
+
+            return result;
+        }
+
+        byte[] getEncoded() throws IOException {
+            if (data == null) {
+                return response.getEncoded();
+            }
+
+            ByteBuffer buffer = data.duplicate();
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+
+            return bytes;
+        }
+    }
+}
@@ -26,7 +26,7 @@ package ee.ria.xroad.common.signature;
 
 import ee.ria.xroad.common.CodedException;
 import ee.ria.xroad.common.cert.CertChain;
-import ee.ria.xroad.common.cert.CertChainVerifier;
+import ee.ria.xroad.common.cert.CertChainVerificationCache;
 import ee.ria.xroad.common.cert.CertHelper;
 import ee.ria.xroad.common.certificateprofile.impl.SignCertificateProfileInfoParameters;
 import ee.ria.xroad.common.conf.globalconf.GlobalConf;
@@ -329,8 +329,8 @@ public class SignatureVerifier {
         CertChain certChain =
                 CertChain.create(signer.getXRoadInstance(), signingCert,
                         signature.getExtraCertificates());
-        new CertChainVerifier(certChain).verify(signature.getOcspResponses(),
-                atDate);
+        CertChainVerificationCache.verify(certChain,
+                signature.getOcspResponses(), atDate);
     }
 
     private Map<String, DigestValue> getHashChainInputs() throws Exception {
@@ -31,7 +31,9 @@ import ee.ria.xroad.common.TestCertUtil;
 import ee.ria.xroad.common.TestSecurityUtil;
 import ee.ria.xroad.common.conf.globalconf.EmptyGlobalConf;
 import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+import ee.ria.xroad.common.util.ServiceMetricRegistry;
 
+import com.codahale.metrics.Gauge;
 import org.bouncycastle.cert.ocsp.CertificateStatus;
 import org.bouncycastle.cert.ocsp.OCSPResp;
 import org.bouncycastle.cert.ocsp.RevokedStatus;
@@ -44,6 +46,8 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
+import static com.codahale.metrics.MetricRegistry.name;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -232,6 +236,66 @@ public class CertChainTest {
         }
     }
 
+    /**
+     * Tests that a repeated verification of the same chain and OCSP
+     * responses is served from the verification cache and counted in the
+     * published cache metrics.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void cachedVerification() throws Exception {
+        CertChainVerificationCache.invalidateAll();
+
+        X509Certificate rootCa = TestCertUtil.getCertChainCert("root_ca.p12");
+        X509Certificate interCa1 = TestCertUtil.getCertChainCert("ca_1.p12");
+        X509Certificate interCa2 = TestCertUtil.getCertChainCert("ca_2.p12");
+        X509Certificate interCa3 = TestCertUtil.getCertChainCert("ca_3.p12");
+        X509Certificate userCert = TestCertUtil.getCertChainCert("user_3.p12");
+
+        CertChain chain = new CertChain("EE",
+                userCert,
+                rootCa,
+                Arrays.asList(interCa1, interCa2, interCa3));
+        List<OCSPResp> ocsp = getAllOcspResponses();
+
+        long hits = CertChainVerificationCache.getStats().hitCount();
+
+        CertChainVerificationCache.verify(chain, ocsp, makeDate(rootCa.getNotBefore(), 1));
+        CertChainVerificationCache.verify(chain, ocsp, makeDate(rootCa.getNotBefore(), 2));
+
+        assertEquals(hits + 1, CertChainVerificationCache.getStats().hitCount());
+
+        Gauge<?> hitsGauge = ServiceMetricRegistry.getMetrics().getGauges()
+                .get(name(CertChainVerificationCache.class, "hits"));
+        assertEquals(hits + 1, hitsGauge.getValue());
+    }
+
+    /**
+     * Tests that a cached verification result is not used for dates
+     * outside of its validity period.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void cachedVerificationNotUsedOutsideValidity() throws Exception {
+        CertChainVerificationCache.invalidateAll();
+
+        X509Certificate rootCa = TestCertUtil.getCertChainCert("root_ca.p12");
+        X509Certificate userCert = TestCertUtil.getCertChainCert("user_0.p12");
+
+        CertChain chain = new CertChain("EE", userCert, rootCa,
+                new ArrayList<X509Certificate>());
+        List<OCSPResp> ocsp = getAllOcspResponses();
+
+        CertChainVerificationCache.verify(chain, ocsp, makeDate(userCert.getNotBefore(), 1));
+
+        try {
+            CertChainVerificationCache.verify(chain, ocsp, makeDate(userCert.getNotAfter(), 1));
+            fail("Verification of expired certificate should fail");
+        } catch (CodedException expected) {
+            // expected
+        }
+    }
+
     // -- Utility methods
 
     private static void  verify(CertChain chain, List<OCSPResp> ocspResponses,
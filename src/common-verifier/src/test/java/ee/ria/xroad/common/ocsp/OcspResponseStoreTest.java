@@ -0,0 +1,240 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.ocsp;
+
+import ee.ria.xroad.common.OcspTestUtils;
+import ee.ria.xroad.common.TestCertUtil;
+import ee.ria.xroad.common.conf.globalconf.EmptyGlobalConf;
+import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the memory-mapped OCSP response store.
+ */
+public class OcspResponseStoreTest {
+
+    static X509Certificate subject;
+    static X509Certificate issuer;
+    static X509Certificate signer;
+    static PrivateKey signerKey;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path storeFile;
+
+    /**
+     * Sets up an empty global configuration and loads test certificates.
+     * @throws Exception if an error occurs
+     */
+    @BeforeClass
+    public static void loadCerts() throws Exception {
+        GlobalConf.reload(new EmptyGlobalConf());
+
+        issuer = TestCertUtil.getCertChainCert("root_ca.p12");
+        assertNotNull(issuer);
+
+        signer = issuer;
+        signerKey = TestCertUtil.getCertChainKey("root_ca.p12");
+        assertNotNull(signerKey);
+
+        subject = TestCertUtil.getCertChainCert("user_0.p12");
+        assertNotNull(subject);
+    }
+
+    /**
+     * Sets up the store file.
+     */
+    @Before
+    public void setUp() {
+        storeFile = folder.getRoot().toPath().resolve(OcspResponseStore.STORE_FILE_NAME);
+    }
+
+    /**
+     * Tests that the responses are read back after reopening the store.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void reopen() throws Exception {
+        OCSPResp ocsp = createResponse(new DateTime().plusDays(1).toDate());
+
+        try (OcspResponseStore store = new OcspResponseStore(storeFile, false)) {
+            store.put("foo", ocsp);
+            store.put("bar", ocsp);
+            store.remove("bar");
+        }
+
+        try (OcspResponseStore store = new OcspResponseStore(storeFile, false)) {
+            assertArrayEquals(ocsp.getEncoded(), store.get("foo", new Date()).getEncoded());
+            assertNull(store.get("bar", new Date()));
+        }
+    }
+
+    /**
+     * Tests that a read-only store picks up the changes of the writer.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void readOnlyRefresh() throws Exception {
+        OCSPResp ocsp = createResponse(new DateTime().plusDays(1).toDate());
+
+        try (OcspResponseStore writer = new OcspResponseStore(storeFile, false);
+                OcspResponseStore reader = new OcspResponseStore(storeFile, true)) {
+            assertNull(reader.get("foo", new Date()));
+
+            writer.put("foo", ocsp);
+            reader.refresh();
+
+            assertNotNull(reader.get("foo", new Date()));
+
+            writer.put("bar", ocsp);
+            writer.compact();
+            reader.refresh();
+
+            assertNotNull(reader.get("foo", new Date()));
+            assertNotNull(reader.get("bar", new Date()));
+        }
+    }
+
+    /**
+     * Tests that compaction drops the expired responses.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void compactDropsExpiredResponses() throws Exception {
+        OCSPResp fresh = createResponse(new DateTime().plusDays(1).toDate());
+        OCSPResp expired = createResponse(new DateTime().minusDays(1).toDate());
+
+        try (OcspResponseStore store = new OcspResponseStore(storeFile, false)) {
+            store.put("foo", fresh);
+            store.put("bar", expired);
+
+            long sizeBefore = Files.size(storeFile);
+
+            store.compact();
+
+            assertTrue(Files.size(storeFile) < sizeBefore);
+            assertNotNull(store.get("foo", new Date()));
+            assertNull(store.get("bar", new Date()));
+            assertEquals(1, store.getResponses().size());
+        }
+    }
+
+    /**
+     * Tests that an incomplete record at the end of the file is discarded.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void incompleteRecordIsDiscarded() throws Exception {
+        OCSPResp ocsp = createResponse(new DateTime().plusDays(1).toDate());
+
+        try (OcspResponseStore store = new OcspResponseStore(storeFile, false)) {
+            store.put("foo", ocsp);
+        }
+
+        long size = Files.size(storeFile);
+        Files.write(storeFile, new byte[] {0, 0, 0, 3, 'b', 'a'}, StandardOpenOption.APPEND);
+
+        try (OcspResponseStore store = new OcspResponseStore(storeFile, false)) {
+            assertNotNull(store.get("foo", new Date()));
+            assertEquals(size, Files.size(storeFile));
+
+            store.put("bar", ocsp);
+        }
+
+        try (OcspResponseStore store = new OcspResponseStore(storeFile, true)) {
+            assertNotNull(store.get("bar", new Date()));
+        }
+    }
+
+    /**
+     * Tests that the writer never shrinks the store file in place, so that the
+     * records a reader has already mapped stay readable.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void rewriteKeepsReaderMappingsValid() throws Exception {
+        OCSPResp ocsp = createResponse(new DateTime().plusDays(1).toDate());
+
+        try (OcspResponseStore store = new OcspResponseStore(storeFile, false)) {
+            store.put("foo", ocsp);
+        }
+
+        Files.write(storeFile, new byte[] {0, 0, 0, 3, 'b', 'a'}, StandardOpenOption.APPEND);
+
+        Object mappedFileKey = getFileKey();
+
+        try (OcspResponseStore reader = new OcspResponseStore(storeFile, true)) {
+            reader.open();
+
+            try (OcspResponseStore writer = new OcspResponseStore(storeFile, false)) {
+                writer.open();
+                writer.put("bar", ocsp);
+
+                assertNotEquals(mappedFileKey, getFileKey());
+                assertNotNull(writer.get("foo", new Date()));
+            }
+
+            // the reader still uses the mapping of the replaced file
+            assertArrayEquals(ocsp.getEncoded(), reader.get("foo", new Date()).getEncoded());
+
+            reader.refresh();
+
+            assertNotNull(reader.get("bar", new Date()));
+        }
+    }
+
+    private Object getFileKey() throws Exception {
+        return Files.readAttributes(storeFile, BasicFileAttributes.class).fileKey();
+    }
+
+    private static OCSPResp createResponse(Date thisUpdate) throws Exception {
+        return OcspTestUtils.createOCSPResponse(subject, issuer,
+                signer, signerKey, CertificateStatus.GOOD, thisUpdate, null);
+    }
+}
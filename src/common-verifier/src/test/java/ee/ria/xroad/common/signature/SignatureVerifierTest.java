@@ -54,6 +54,7 @@ import java.util.Map;
 import static ee.ria.xroad.common.ErrorCodes.X_INCORRECT_CERTIFICATE;
 import static ee.ria.xroad.common.ErrorCodes.X_INVALID_SIGNATURE_VALUE;
 import static ee.ria.xroad.common.ErrorCodes.X_INVALID_XML;
+import static ee.ria.xroad.common.ErrorCodes.X_MALFORMED_HASH_CHAIN;
 import static ee.ria.xroad.common.ErrorCodes.X_MALFORMED_SIGNATURE;
 import static ee.ria.xroad.common.util.CryptoUtils.SHA512_ID;
 import static ee.ria.xroad.common.util.CryptoUtils.calculateDigest;
@@ -128,6 +129,25 @@ public class SignatureVerifierTest {
                 resolver).verify(CONSUMER_ID, CORRECT_VALIDATION_DATE);
     }
 
+    /**
+     * Tests that the hash chain is validated against its schema even when
+     * the signature schema validation is disabled (as done for ASiC containers).
+     * @throws Exception if error occurs
+     */
+    @Test
+    public void hashChainSchemaValidationFail() throws Exception {
+        thrown.expectError(X_MALFORMED_SIGNATURE, X_MALFORMED_HASH_CHAIN);
+
+        Resolver resolver = new Resolver()
+                .withHashChain("src/test/signatures/hash-chain-1.xml")
+                .withMessage("src/test/signatures/message-1.xml");
+
+        SignatureVerifier verifier = createSignatureVerifier("src/test/signatures/batch-sig.xml",
+                "src/test/signatures/hash-chain-result-schema-fail.xml", resolver);
+        verifier.setVerifySchema(false);
+        verifier.verify(CONSUMER_ID, CORRECT_VALIDATION_DATE);
+    }
+
     /**
      * Tests that verifying backward compatible (not conforming to specification) valid signature succeeds.
      * @throws Exception if error occurs
@@ -28,9 +28,12 @@ import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 
 import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
 
 /**
- * System statistics response
+ * System statistics response, optionally with the latency distributions of
+ * the proxy request processing phases keyed by the phase name.
  *
  * @see com.sun.management.UnixOperatingSystemMXBean
  */
@@ -45,4 +48,16 @@ public final class StatsResponse implements Serializable {
     private final long totalPhysicalMemorySize;
     private final long freeSwapSpaceSize;
     private final long totalSwapSpaceSize;
+    private final Map<String, PhaseLatency> phaseLatencies;
+
+    /**
+     * Creates a statistics response without phase latencies.
+     */
+    public StatsResponse(long openFileDescriptorCount, long maxFileDescriptorCount, double systemCpuLoad,
+            long committedVirtualMemorySize, long freePhysicalMemorySize, long totalPhysicalMemorySize,
+            long freeSwapSpaceSize, long totalSwapSpaceSize) {
+        this(openFileDescriptorCount, maxFileDescriptorCount, systemCpuLoad, committedVirtualMemorySize,
+                freePhysicalMemorySize, totalPhysicalMemorySize, freeSwapSpaceSize, totalSwapSpaceSize,
+                Collections.emptyMap());
+    }
 }
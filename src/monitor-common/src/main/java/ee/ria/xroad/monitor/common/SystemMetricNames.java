@@ -48,6 +48,9 @@ public final class SystemMetricNames {
     public static final String OS_INFO = "OperatingSystem";
     public static final String CERTIFICATES = "Certificates";
     public static final String CERTIFICATES_STRINGS = "CertificatesDump";
+    public static final String CERTIFICATES_MIN_DAYS_TO_EXPIRY = "CertificatesMinDaysToExpiry";
+    public static final String OCSP_RESPONSES_MAX_AGE = "OcspResponsesMaxAge";
+    public static final String PROXY_PHASE_LATENCY_PREFIX = "ProxyPhaseLatency_";
 
     private SystemMetricNames() {
     }
@@ -0,0 +1,131 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.monitor;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.UniformSnapshot;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Reservoir} that keeps the measurements of a sliding time window in a
+ * fixed size ring buffer. Unlike {@link com.codahale.metrics.SlidingTimeWindowReservoir}
+ * the memory used does not grow with the number of measurements: when the buffer
+ * is full, the oldest measurement is overwritten. The snapshot is reused until a
+ * new measurement arrives or an old one leaves the window, so frequent reads
+ * (e.g. scrapes of the OpenMetrics endpoint) do not copy the samples every time.
+ */
+public class BoundedSlidingTimeWindowReservoir implements Reservoir {
+
+    private final Clock clock;
+    private final long window;
+    private final long[] values;
+    private final long[] ticks;
+
+    private int head;
+    private int count;
+    private Snapshot snapshot;
+
+    /**
+     * Creates a new reservoir.
+     * @param window the length of the window
+     * @param windowUnit the unit of the window length
+     * @param capacity maximum number of measurements kept
+     */
+    public BoundedSlidingTimeWindowReservoir(long window, TimeUnit windowUnit, int capacity) {
+        this(window, windowUnit, capacity, Clock.defaultClock());
+    }
+
+    /**
+     * Creates a new reservoir.
+     * @param window the length of the window
+     * @param windowUnit the unit of the window length
+     * @param capacity maximum number of measurements kept
+     * @param clock the clock used to time the measurements
+     */
+    public BoundedSlidingTimeWindowReservoir(long window, TimeUnit windowUnit, int capacity, Clock clock) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+
+        this.clock = clock;
+        this.window = windowUnit.toNanos(window);
+        this.values = new long[capacity];
+        this.ticks = new long[capacity];
+    }
+
+    @Override
+    public synchronized int size() {
+        expire();
+
+        return count;
+    }
+
+    @Override
+    public synchronized void update(long value) {
+        expire();
+
+        values[head] = value;
+        ticks[head] = clock.getTick();
+        head = (head + 1) % values.length;
+        count = Math.min(count + 1, values.length);
+        snapshot = null;
+    }
+
+    @Override
+    public synchronized Snapshot getSnapshot() {
+        expire();
+
+        if (snapshot == null) {
+            long[] current = new long[count];
+
+            for (int i = 0; i < count; i++) {
+                current[i] = values[index(i)];
+            }
+
+            snapshot = new UniformSnapshot(current);
+        }
+
+        return snapshot;
+    }
+
+    private void expire() {
+        long oldest = clock.getTick() - window;
+
+        while (count > 0 && ticks[index(0)] - oldest < 0) {
+            count--;
+            snapshot = null;
+        }
+    }
+
+    /**
+     * @return buffer index of the i-th oldest measurement in the window
+     */
+    private int index(int i) {
+        return (head - count + i + values.length) % values.length;
+    }
+}
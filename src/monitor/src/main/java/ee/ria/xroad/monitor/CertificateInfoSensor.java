@@ -25,22 +25,39 @@
 package ee.ria.xroad.monitor;
 
 import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.conf.InternalSSLKey;
 import ee.ria.xroad.common.conf.serverconf.ServerConf;
 import ee.ria.xroad.common.util.CryptoUtils;
 import ee.ria.xroad.monitor.CertificateMonitoringInfo.CertificateType;
 import ee.ria.xroad.monitor.common.SystemMetricNames;
 import ee.ria.xroad.signer.protocol.SignerClient;
+import ee.ria.xroad.signer.protocol.dto.CertificateInfo;
 import ee.ria.xroad.signer.protocol.dto.TokenInfo;
+import ee.ria.xroad.signer.protocol.message.GetTokensVersion;
 import ee.ria.xroad.signer.protocol.message.ListTokens;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.OCSPResp;
 import scala.concurrent.duration.Duration;
 import scala.concurrent.duration.FiniteDuration;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 import java.security.cert.X509Certificate;
+import java.time.Instant;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -50,6 +67,12 @@ import java.util.stream.Stream;
  * Collects certificate information.
  * Before using CertificateInfoSensor, SignerClient needs to have been initialized
  * with SignerClient.init()
+ *
+ * The token certificates are kept in an inventory that is refreshed only when the
+ * version of the signer token state changes. The version is checked more often than
+ * the full measurement interval, so certificate changes show up quickly without
+ * listing all tokens. Days to the nearest certificate expiry and the age of the
+ * oldest OCSP response are computed from the inventory when the gauges are read.
  */
 @Slf4j
 public class CertificateInfoSensor extends AbstractSensor {
@@ -58,7 +81,8 @@ public class CertificateInfoSensor extends AbstractSensor {
     private static final FiniteDuration INITIAL_DELAY = Duration.create(10, TimeUnit.SECONDS);
     private static final String JMX_HEADER = "SHA1HASH\t\t\t\t\t\t\tCERT TYPE\t\tNOT BEFORE\t\tNOT AFTER\t\tACTIVE";
 
-    private CertificateInfoCollector certificateInfoCollector;
+    private volatile CertificateInfoCollector certificateInfoCollector;
+    private volatile Set<CertificateMonitoringInfo> inventory = Collections.emptySet();
 
     public static final String CERT_HEX_DELIMITER = ":";
 
@@ -77,7 +101,9 @@ public class CertificateInfoSensor extends AbstractSensor {
                 .addExtractor(new InternalTlsExtractor())
                 .addExtractor(new TokenExtractor());
 
+        registerGauges();
         scheduleSingleMeasurement(INITIAL_DELAY, new CertificateInfoMeasure());
+        scheduleSingleMeasurement(INITIAL_DELAY.plus(getChangeCheckInterval()), new CertificateChangeCheck());
     }
 
     /**
@@ -95,6 +121,45 @@ public class CertificateInfoSensor extends AbstractSensor {
                 .update(data.getJmxStringData());
     }
 
+    /**
+     * Registers the gauges computed from the inventory, replacing the ones of a previous sensor instance
+     */
+    private void registerGauges() {
+        MetricRegistry metrics = MetricRegistryHolder.getInstance().getMetrics();
+
+        metrics.remove(SystemMetricNames.CERTIFICATES_MIN_DAYS_TO_EXPIRY);
+        metrics.register(SystemMetricNames.CERTIFICATES_MIN_DAYS_TO_EXPIRY, (Gauge<Long>) this::getMinDaysToExpiry);
+        metrics.remove(SystemMetricNames.OCSP_RESPONSES_MAX_AGE);
+        metrics.register(SystemMetricNames.OCSP_RESPONSES_MAX_AGE, (Gauge<Long>) this::getOcspResponsesMaxAge);
+    }
+
+    /**
+     * @return days until the first active certificate expires (negative if already expired),
+     * null if there are no active certificates
+     */
+    private Long getMinDaysToExpiry() {
+        Instant now = Instant.now();
+
+        return inventory.stream()
+                .filter(CertificateMonitoringInfo::isActive)
+                .map(c -> ChronoUnit.DAYS.between(now, Instant.parse(c.getNotAfter())))
+                .min(Long::compare)
+                .orElse(null);
+    }
+
+    /**
+     * @return age in seconds of the oldest OCSP response of the active token certificates,
+     * null if there are no OCSP responses
+     */
+    private Long getOcspResponsesMaxAge() {
+        Instant now = Instant.now();
+
+        return certificateInfoCollector.getOcspThisUpdateTimes()
+                .map(t -> ChronoUnit.SECONDS.between(t, now))
+                .max(Long::compare)
+                .orElse(null);
+    }
+
     private JmxStringifiedData<CertificateMonitoringInfo> list() {
         log.trace("listing certificate data");
 
@@ -104,7 +169,11 @@ public class CertificateInfoSensor extends AbstractSensor {
 
         ArrayList<CertificateMonitoringInfo> dtoRepresentation = new ArrayList<>();
 
-        for (CertificateMonitoringInfo certInfo : certificateInfoCollector.extractToSet()) {
+        Set<CertificateMonitoringInfo> certificates = certificateInfoCollector.extractToSet();
+
+        inventory = certificates;
+
+        for (CertificateMonitoringInfo certInfo : certificates) {
             dtoRepresentation.add(certInfo);
             jmxRepresentation.add(getJxmRepresentationFrom(certInfo));
         }
@@ -122,6 +191,20 @@ public class CertificateInfoSensor extends AbstractSensor {
     abstract static class CertificateInfoExtractor {
         abstract Stream<CertificateMonitoringInfo> getCertificates();
 
+        /**
+         * @return true if the certificates are known to have changed since they were last extracted
+         */
+        boolean isChanged() {
+            return false;
+        }
+
+        /**
+         * @return this update times of the OCSP responses of the extracted certificates
+         */
+        Stream<Instant> getOcspThisUpdateTimes() {
+            return Stream.empty();
+        }
+
         static Stream<CertificateMonitoringInfo> convertToMonitoringInfo(X509Certificate certificate,
                                                                          CertificateType certificateType,
                                                                          boolean active) {
@@ -145,18 +228,51 @@ public class CertificateInfoSensor extends AbstractSensor {
 
     static class InternalTlsExtractor extends CertificateInfoExtractor {
 
+        private FileTime loadedModifiedTime;
+        private List<CertificateMonitoringInfo> loaded = Collections.emptyList();
+
+        /**
+         * The key file is read again only if it has been modified since it was last read.
+         */
+        @Override
+        boolean isChanged() {
+            return isModifiedSince(getKeyFileModifiedTime());
+        }
+
         @Override
         public Stream<CertificateMonitoringInfo> getCertificates() {
+            FileTime modifiedTime = getKeyFileModifiedTime();
+
+            if (isModifiedSince(modifiedTime)) {
+                try {
+                    loaded = convertToMonitoringInfo(
+                            ServerConf.getSSLKey().getCertChain()[0],
+                            CertificateType.SECURITY_SERVER_TLS,
+                            true).collect(Collectors.toList());
+                    loadedModifiedTime = modifiedTime;
+                } catch (Exception e) {
+                    throw new SensorException(e);
+                }
+            }
+
+            return loaded.stream();
+        }
+
+        private boolean isModifiedSince(FileTime modifiedTime) {
+            return modifiedTime == null || !modifiedTime.equals(loadedModifiedTime);
+        }
+
+        private static FileTime getKeyFileModifiedTime() {
+            Path file = Paths.get(SystemProperties.getConfPath(), InternalSSLKey.KEY_FILE_NAME);
+
             try {
-                return convertToMonitoringInfo(
-                        ServerConf.getSSLKey().getCertChain()[0],
-                        CertificateType.SECURITY_SERVER_TLS,
-                        true);
+                return Files.getLastModifiedTime(file);
             } catch (Exception e) {
-                throw new SensorException(e);
+                log.debug("Could not read modification time of {}", file, e);
+
+                return null;
             }
         }
-
     }
 
     static class InternalServerCertificateExtractor extends CertificateInfoExtractor {
@@ -176,7 +292,18 @@ public class CertificateInfoSensor extends AbstractSensor {
             List<TokenInfo> listTokens() throws Exception;
         }
 
+        @FunctionalInterface
+        interface VersionReader {
+            long getTokensVersion() throws Exception;
+        }
+
         private final Lister tokenInfoLister;
+        private final VersionReader versionReader;
+
+        private Long version;
+        private List<CertificateMonitoringInfo> certificates = Collections.emptyList();
+        private Map<String, ParsedCertificate> parsedCertificates = new HashMap<>();
+        private volatile List<Instant> ocspThisUpdateTimes = Collections.emptyList();
 
         /**
          * Constructor for test purposes
@@ -184,28 +311,159 @@ public class CertificateInfoSensor extends AbstractSensor {
          * @param tokenInfoLister
          */
         TokenExtractor(Lister tokenInfoLister) {
+            this(tokenInfoLister, null);
+        }
+
+        /**
+         * Constructor for test purposes
+         *
+         * @param tokenInfoLister
+         * @param versionReader reader of the token state version, tokens are listed on every
+         * extraction if null
+         */
+        TokenExtractor(Lister tokenInfoLister, VersionReader versionReader) {
             this.tokenInfoLister = tokenInfoLister;
+            this.versionReader = versionReader;
         }
 
         TokenExtractor() {
-            tokenInfoLister = () -> SignerClient.execute(new ListTokens());
+            this(() -> SignerClient.execute(new ListTokens()),
+                    () -> SignerClient.execute(new GetTokensVersion()));
+        }
+
+        @Override
+        boolean isChanged() {
+            Long current = readVersion();
+
+            return current == null || !current.equals(version);
         }
 
         @Override
         public Stream<CertificateMonitoringInfo> getCertificates() {
-            Stream<TokenInfo> tokens;
-            try {
-                tokens = tokenInfoLister.listTokens().stream();
-            } catch (Exception e) {
-                throw new SensorException(e);
+            Long current = readVersion();
+
+            if (current == null || !current.equals(version)) {
+                List<TokenInfo> tokens;
+                try {
+                    tokens = tokenInfoLister.listTokens();
+                } catch (Exception e) {
+                    throw new SensorException(e);
+                }
+
+                refresh(tokens);
+                version = current;
             }
-            return tokens
+
+            return certificates.stream();
+        }
+
+        @Override
+        Stream<Instant> getOcspThisUpdateTimes() {
+            return ocspThisUpdateTimes.stream();
+        }
+
+        /**
+         * Rebuilds the inventory from the listed tokens. Certificates and OCSP responses
+         * that have not changed since the previous listing are not parsed again.
+         */
+        private void refresh(List<TokenInfo> tokens) {
+            Map<String, ParsedCertificate> parsed = new HashMap<>();
+            List<CertificateMonitoringInfo> result = new ArrayList<>();
+            List<Instant> ocspTimes = new ArrayList<>();
+
+            tokens.stream()
                     .flatMap(t -> t.getKeyInfo().stream())
                     .flatMap(k -> k.getCerts().stream())
-                    .flatMap(c -> convertToMonitoringInfo(
-                            CryptoUtils.readCertificate(c.getCertificateBytes()),
-                            CertificateType.AUTH_OR_SIGN,
-                            c.isActive()));
+                    .forEach(c -> {
+                        ParsedCertificate p = parsedCertificates.get(c.getId());
+
+                        if (p == null || !Arrays.equals(p.certificateBytes, c.getCertificateBytes())) {
+                            p = ParsedCertificate.parse(c);
+                        }
+
+                        if (p != null) {
+                            p.updateOcspResponse(c.getOcspBytes());
+                            parsed.put(c.getId(), p);
+                            result.add(new CertificateMonitoringInfo(CertificateType.AUTH_OR_SIGN,
+                                    p.sha1hash, p.notBefore, p.notAfter, c.isActive()));
+
+                            if (c.isActive() && p.ocspThisUpdate != null) {
+                                ocspTimes.add(p.ocspThisUpdate);
+                            }
+                        }
+                    });
+
+            parsedCertificates = parsed;
+            certificates = result;
+            ocspThisUpdateTimes = ocspTimes;
+        }
+
+        private Long readVersion() {
+            if (versionReader == null) {
+                return null;
+            }
+
+            try {
+                return versionReader.getTokensVersion();
+            } catch (Exception e) {
+                log.debug("Could not get tokens version, listing all tokens", e);
+
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Token certificate with the parsed fields needed for monitoring.
+     */
+    private static final class ParsedCertificate {
+        private final byte[] certificateBytes;
+        private final String sha1hash;
+        private final String notBefore;
+        private final String notAfter;
+
+        private byte[] ocspBytes;
+        private Instant ocspThisUpdate;
+
+        private ParsedCertificate(byte[] certificateBytes, X509Certificate certificate) throws Exception {
+            this.certificateBytes = certificateBytes;
+            this.sha1hash = CryptoUtils.calculateDelimitedCertHexHash(certificate, CERT_HEX_DELIMITER);
+            this.notBefore = DateTimeFormatter.ISO_INSTANT.format(certificate.getNotBefore().toInstant());
+            this.notAfter = DateTimeFormatter.ISO_INSTANT.format(certificate.getNotAfter().toInstant());
+        }
+
+        static ParsedCertificate parse(CertificateInfo info) {
+            X509Certificate certificate = null;
+            try {
+                certificate = CryptoUtils.readCertificate(info.getCertificateBytes());
+
+                return new ParsedCertificate(info.getCertificateBytes(), certificate);
+            } catch (Exception e) {
+                log.error("Extracting monitoring information failed for certificate type {} with certificate {}",
+                        CertificateType.AUTH_OR_SIGN,
+                        certificate != null ? certificate.getIssuerDN().getName() : info.getId());
+
+                return null;
+            }
+        }
+
+        void updateOcspResponse(byte[] bytes) {
+            if (Arrays.equals(ocspBytes, bytes)) {
+                return;
+            }
+
+            ocspBytes = bytes;
+            ocspThisUpdate = null;
+
+            if (bytes != null) {
+                try {
+                    BasicOCSPResp response = (BasicOCSPResp) new OCSPResp(bytes).getResponseObject();
+
+                    ocspThisUpdate = response.getResponses()[0].getThisUpdate().toInstant();
+                } catch (Exception e) {
+                    log.error("Could not parse OCSP response of certificate {}", sha1hash, e);
+                }
+            }
         }
     }
 
@@ -227,6 +485,14 @@ public class CertificateInfoSensor extends AbstractSensor {
                     .collect(Collectors.toSet());
         }
 
+        boolean isChanged() {
+            return extractors.stream().anyMatch(CertificateInfoExtractor::isChanged);
+        }
+
+        Stream<Instant> getOcspThisUpdateTimes() {
+            return extractors.stream().flatMap(CertificateInfoExtractor::getOcspThisUpdateTimes);
+        }
+
     }
 
     /**
@@ -258,6 +524,12 @@ public class CertificateInfoSensor extends AbstractSensor {
             log.info("Updating CertificateInfo metrics");
             updateOrRegisterData(list());
             scheduleSingleMeasurement(getInterval(), new CertificateInfoMeasure());
+        } else if (o instanceof CertificateChangeCheck) {
+            if (certificateInfoCollector.isChanged()) {
+                log.info("Certificates changed, updating CertificateInfo metrics");
+                updateOrRegisterData(list());
+            }
+            scheduleSingleMeasurement(getChangeCheckInterval(), new CertificateChangeCheck());
         } else {
             log.error("received unhandled message {}", o);
             unhandled(o);
@@ -269,10 +541,21 @@ public class CertificateInfoSensor extends AbstractSensor {
         return Duration.create(SystemProperties.getEnvMonitorCertificateInfoSensorInterval(), TimeUnit.SECONDS);
     }
 
+    private static FiniteDuration getChangeCheckInterval() {
+        return Duration.create(SystemProperties.getEnvMonitorCertificateInfoSensorChangeCheckInterval(),
+                TimeUnit.SECONDS);
+    }
+
     /**
      * Akka message
      */
     public static class CertificateInfoMeasure {
     }
 
+    /**
+     * Akka message for checking if the certificates have changed
+     */
+    public static class CertificateChangeCheck {
+    }
+
 }
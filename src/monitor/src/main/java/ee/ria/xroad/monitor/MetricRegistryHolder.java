@@ -24,10 +24,11 @@
  */
 package ee.ria.xroad.monitor;
 
+import ee.ria.xroad.common.SystemProperties;
+
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.MetricRegistry;
-import com.codahale.metrics.SlidingTimeWindowReservoir;
 
 import java.util.concurrent.TimeUnit;
 
@@ -82,6 +83,18 @@ public final class MetricRegistryHolder {
         throw new IllegalArgumentException(metricName + " is already used for a different type of metric");
     }
 
+    /**
+     * Either registers a new phase latency histogram to metricRegistry, or reuses already registered one.
+     * throws an IllegalArgumentException if a metric with the same name but a different type exists
+     */
+    public PhaseLatencyHistogram getOrCreatePhaseLatencyHistogram(String metricName) {
+        final Histogram histogram = metrics.histogram(metricName, PhaseLatencyHistogram::new);
+        if (histogram instanceof PhaseLatencyHistogram) {
+            return (PhaseLatencyHistogram) histogram;
+        }
+        throw new IllegalArgumentException(metricName + " is already used for a different type of metric");
+    }
+
     /**
      * Either registers a new default histogram to metricRegistry, or reuses already registered one.
      * throws an IllegalArgumentException if a metric with the same name but a different type exists
@@ -92,7 +105,15 @@ public final class MetricRegistryHolder {
 
 
 
+    /**
+     * The default histogram keeps the measurements of the last hour. The capacity is sized
+     * for the system metrics sensor interval, so memory use stays bounded even if the
+     * histogram is updated more often.
+     */
     private Histogram createDefaultHistogram() {
-        return new Histogram(new SlidingTimeWindowReservoir(MINUTES_IN_HOUR, TimeUnit.MINUTES));
+        int interval = Math.max(1, SystemProperties.getEnvMonitorSystemMetricsSensorInterval());
+        int capacity = (int) Math.max(1, TimeUnit.MINUTES.toSeconds(MINUTES_IN_HOUR) / interval);
+
+        return new Histogram(new BoundedSlidingTimeWindowReservoir(MINUTES_IN_HOUR, TimeUnit.MINUTES, capacity));
     }
 }
@@ -64,7 +64,10 @@ public class MetricsProviderActor extends UntypedAbstractActor {
             SystemMetricNames.PACKAGES,
             SystemMetricNames.PACKAGE_STRINGS,
             SystemMetricNames.CERTIFICATES,
-            SystemMetricNames.CERTIFICATES_STRINGS
+            SystemMetricNames.CERTIFICATES_STRINGS,
+            // derived from the certificates, only for JMX and OpenMetrics reporting
+            SystemMetricNames.CERTIFICATES_MIN_DAYS_TO_EXPIRY,
+            SystemMetricNames.OCSP_RESPONSES_MAX_AGE
     );
 
     /**
@@ -64,6 +64,7 @@ public final class MonitorMain {
 
     private static ActorSystem actorSystem;
     private static JmxReporter jmxReporter;
+    private static OpenMetricsEndpoint openMetricsEndpoint;
 
     /**
      * Main entry point
@@ -109,6 +110,14 @@ public final class MonitorMain {
         if (jmxReporter != null) {
             jmxReporter.stop();
         }
+
+        if (openMetricsEndpoint != null) {
+            try {
+                openMetricsEndpoint.stop();
+            } catch (Exception e) {
+                log.error("Failed to stop OpenMetrics endpoint", e);
+            }
+        }
     }
 
     private static void initAkka() throws Exception {
@@ -135,7 +144,7 @@ public final class MonitorMain {
         return ConfigFactory.load().withValue(AKKA_PORT, ConfigValueFactory.fromAnyRef(port));
     }
 
-    private static void startReporters() {
+    private static void startReporters() throws Exception {
         jmxReporter = JmxReporter.forRegistry(MetricRegistryHolder.getInstance().getMetrics())
                 .convertRatesTo(TimeUnit.SECONDS)
                 .convertDurationsTo(TimeUnit.MILLISECONDS)
@@ -144,5 +153,13 @@ public final class MonitorMain {
                 .build();
 
         jmxReporter.start();
+
+        int metricsPort = SystemProperties.getEnvMonitorMetricsPort();
+
+        if (metricsPort > 0) {
+            openMetricsEndpoint = new OpenMetricsEndpoint(SystemProperties.getEnvMonitorMetricsHost(), metricsPort,
+                    MetricRegistryHolder.getInstance().getMetrics());
+            openMetricsEndpoint.start();
+        }
     }
 }
@@ -0,0 +1,128 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.monitor;
+
+import ee.ria.xroad.common.util.StartStop;
+
+import com.codahale.metrics.MetricRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import static javax.servlet.http.HttpServletResponse.SC_METHOD_NOT_ALLOWED;
+import static javax.servlet.http.HttpServletResponse.SC_NOT_FOUND;
+import static javax.servlet.http.HttpServletResponse.SC_OK;
+
+/**
+ * HTTP endpoint that serves the environmental monitoring metrics in the
+ * OpenMetrics text format at {@value #PATH}, to be scraped by Prometheus
+ * compatible collectors.
+ */
+@Slf4j
+public class OpenMetricsEndpoint implements StartStop {
+
+    static final String PATH = "/metrics";
+
+    private final Server server = new Server();
+    private final MetricRegistry registry;
+    private final OpenMetricsWriter metricsWriter = new OpenMetricsWriter();
+
+    /**
+     * Creates an endpoint listening on the given address.
+     * @param host the listen address
+     * @param port the port
+     * @param registry the registry whose metrics are served
+     */
+    public OpenMetricsEndpoint(String host, int port, MetricRegistry registry) {
+        this.registry = registry;
+
+        ServerConnector connector = new ServerConnector(server);
+
+        connector.setName("OpenMetrics");
+        connector.setHost(host);
+        connector.setPort(port);
+
+        server.addConnector(connector);
+        server.setHandler(new MetricsHandler());
+    }
+
+    @Override
+    public void start() throws Exception {
+        server.start();
+
+        log.info("Started OpenMetrics endpoint on port {}", getPort());
+    }
+
+    @Override
+    public void stop() throws Exception {
+        server.stop();
+    }
+
+    @Override
+    public void join() throws InterruptedException {
+        server.join();
+    }
+
+    /**
+     * @return the port the endpoint is listening on
+     */
+    public int getPort() {
+        return ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+    }
+
+    private class MetricsHandler extends AbstractHandler {
+        @Override
+        public void handle(String target, Request baseRequest, HttpServletRequest request,
+                HttpServletResponse response) throws IOException {
+            baseRequest.setHandled(true);
+
+            if (!PATH.equals(target)) {
+                response.setStatus(SC_NOT_FOUND);
+                return;
+            }
+
+            if (!"GET".equals(request.getMethod())) {
+                response.setStatus(SC_METHOD_NOT_ALLOWED);
+                return;
+            }
+
+            response.setStatus(SC_OK);
+            response.setContentType(OpenMetricsWriter.CONTENT_TYPE);
+
+            Writer out = response.getWriter();
+
+            metricsWriter.write(registry, out);
+            out.flush();
+        }
+    }
+}
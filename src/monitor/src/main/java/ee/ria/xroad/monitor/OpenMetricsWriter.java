@@ -0,0 +1,179 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.monitor;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the metrics of a {@link MetricRegistry} in the OpenMetrics text format.
+ * Histograms and timers are written as summaries, counters and meters as counters
+ * and gauges with numeric or boolean values as gauges. Gauges with other values
+ * (e.g. process and package listings) are skipped.
+ */
+public class OpenMetricsWriter {
+
+    /** Content type of the OpenMetrics text format */
+    public static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    private static final String PREFIX = "xroad_";
+    private static final double[] QUANTILES = {0.0, 0.5, 0.75, 0.95, 0.99, 1.0};
+    private static final String[] QUANTILE_LABELS = {"0", "0.5", "0.75", "0.95", "0.99", "1"};
+    private static final double NANOS_IN_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final ConcurrentMap<String, String> names = new ConcurrentHashMap<>();
+
+    /**
+     * Writes the metrics of the registry.
+     * @param registry the registry
+     * @param out the writer, not closed
+     * @throws IOException if writing fails
+     */
+    public void write(MetricRegistry registry, Writer out) throws IOException {
+        // Iterate the registry view directly, the typed getters copy the metrics to a sorted map
+        for (Map.Entry<String, Metric> e : registry.getMetrics().entrySet()) {
+            Metric metric = e.getValue();
+
+            if (metric instanceof Gauge) {
+                writeGauge(toMetricName(e.getKey()), ((Gauge<?>) metric).getValue(), out);
+            } else if (metric instanceof Counter) {
+                writeCounter(toMetricName(e.getKey()), ((Counter) metric).getCount(), out);
+            } else if (metric instanceof Histogram) {
+                Histogram histogram = (Histogram) metric;
+
+                writeSummary(toMetricName(e.getKey()), histogram.getSnapshot(), 1, histogram.getCount(), out);
+            } else if (metric instanceof Timer) {
+                Timer timer = (Timer) metric;
+
+                writeSummary(toMetricName(e.getKey()) + "_seconds", timer.getSnapshot(), NANOS_IN_SECOND,
+                        timer.getCount(), out);
+            } else if (metric instanceof Meter) {
+                writeCounter(toMetricName(e.getKey()), ((Meter) metric).getCount(), out);
+            }
+        }
+
+        out.write("# EOF\n");
+    }
+
+    private static void writeGauge(String name, Object value, Writer out) throws IOException {
+        double number;
+
+        if (value instanceof Number) {
+            number = ((Number) value).doubleValue();
+        } else if (value instanceof Boolean) {
+            number = (Boolean) value ? 1 : 0;
+        } else {
+            return;
+        }
+
+        writeType(name, "gauge", out);
+        writeSample(name, number, out);
+    }
+
+    private static void writeCounter(String name, long count, Writer out) throws IOException {
+        writeType(name, "counter", out);
+        out.write(name);
+        out.write("_total ");
+        out.write(Long.toString(count));
+        out.write('\n');
+    }
+
+    private static void writeSummary(String name, Snapshot snapshot, double divisor, long count, Writer out)
+            throws IOException {
+        writeType(name, "summary", out);
+
+        for (int i = 0; i < QUANTILES.length; i++) {
+            out.write(name);
+            out.write("{quantile=\"");
+            out.write(QUANTILE_LABELS[i]);
+            out.write("\"} ");
+            out.write(formatValue(snapshot.getValue(QUANTILES[i]) / divisor));
+            out.write('\n');
+        }
+
+        out.write(name);
+        out.write("_count ");
+        out.write(Long.toString(count));
+        out.write('\n');
+    }
+
+    private static void writeType(String name, String type, Writer out) throws IOException {
+        out.write("# TYPE ");
+        out.write(name);
+        out.write(' ');
+        out.write(type);
+        out.write('\n');
+    }
+
+    private static void writeSample(String name, double value, Writer out) throws IOException {
+        out.write(name);
+        out.write(' ');
+        out.write(formatValue(value));
+        out.write('\n');
+    }
+
+    private static String formatValue(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        } else if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        } else if (value == Math.rint(value) && Math.abs(value) < Long.MAX_VALUE) {
+            return Long.toString((long) value);
+        }
+
+        return Double.toString(value);
+    }
+
+    private String toMetricName(String name) {
+        return names.computeIfAbsent(name, OpenMetricsWriter::sanitize);
+    }
+
+    static String sanitize(String name) {
+        StringBuilder sb = new StringBuilder(PREFIX.length() + name.length()).append(PREFIX);
+
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+
+            boolean valid = c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_';
+
+            sb.append(valid ? c : '_');
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.monitor;
+
+import ee.ria.xroad.monitor.common.PhaseLatency;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.SlidingWindowReservoir;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.UniformSnapshot;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Histogram of the latencies of a proxy request processing phase. The proxy
+ * measures and aggregates the latencies itself, so instead of sampling values
+ * this histogram reports the count and the distribution the proxy sent last.
+ */
+public final class PhaseLatencyHistogram extends Histogram {
+
+    private volatile long count;
+    private volatile Snapshot snapshot = new UniformSnapshot(new long[0]);
+
+    /**
+     * Creates a histogram that reports nothing until the first phase latency is received.
+     */
+    public PhaseLatencyHistogram() {
+        super(new SlidingWindowReservoir(1));
+    }
+
+    /**
+     * Replaces the reported count and distribution with the ones the proxy measured.
+     * @param latency the latency distribution of the phase
+     */
+    public void update(PhaseLatency latency) {
+        snapshot = new PhaseLatencySnapshot(latency);
+        count = latency.getCount();
+    }
+
+    @Override
+    public void update(long value) {
+        throw new UnsupportedOperationException("Phase latencies are measured by the proxy");
+    }
+
+    @Override
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Snapshot of the quantiles the proxy reported. Other quantiles are
+     * approximated with the nearest reported quantile above them.
+     */
+    private static final class PhaseLatencySnapshot extends Snapshot {
+
+        private static final double P50 = 0.5;
+        private static final double P75 = 0.75;
+        private static final double P95 = 0.95;
+        private static final double P98 = 0.98;
+        private static final double P99 = 0.99;
+        private static final double P999 = 0.999;
+
+        private final PhaseLatency latency;
+
+        PhaseLatencySnapshot(PhaseLatency latency) {
+            this.latency = latency;
+        }
+
+        @Override
+        public double getValue(double quantile) {
+            if (quantile <= 0) {
+                return latency.getMin();
+            } else if (quantile <= P50) {
+                return latency.getMedian();
+            } else if (quantile <= P75) {
+                return latency.getPercentile75();
+            } else if (quantile <= P95) {
+                return latency.getPercentile95();
+            } else if (quantile <= P98) {
+                return latency.getPercentile98();
+            } else if (quantile <= P99) {
+                return latency.getPercentile99();
+            } else if (quantile <= P999) {
+                return latency.getPercentile999();
+            }
+
+            return latency.getMax();
+        }
+
+        @Override
+        public long[] getValues() {
+            return new long[] {
+                getMin(),
+                Math.round(latency.getMedian()),
+                Math.round(latency.getPercentile75()),
+                Math.round(latency.getPercentile95()),
+                Math.round(latency.getPercentile98()),
+                Math.round(latency.getPercentile99()),
+                Math.round(latency.getPercentile999()),
+                getMax()
+            };
+        }
+
+        @Override
+        public int size() {
+            return getValues().length;
+        }
+
+        @Override
+        public long getMax() {
+            return Math.round(latency.getMax());
+        }
+
+        @Override
+        public double getMean() {
+            return latency.getMean();
+        }
+
+        @Override
+        public long getMin() {
+            return Math.round(latency.getMin());
+        }
+
+        @Override
+        public double getStdDev() {
+            return latency.getStdDev();
+        }
+
+        @Override
+        public void dump(OutputStream output) {
+            try (PrintWriter out = new PrintWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8))) {
+                for (long value : getValues()) {
+                    out.printf("%d%n", value);
+                }
+            }
+        }
+    }
+}
@@ -106,6 +106,9 @@ public class SystemMetricsSensor extends AbstractSensor {
         registryHolder
                 .getOrCreateSimpleSensor(SystemMetricNames.TOTAL_PHYSICAL_MEMORY)
                 .update(stats.getTotalPhysicalMemorySize());
+        stats.getPhaseLatencies().forEach((phase, latency) -> registryHolder
+                .getOrCreatePhaseLatencyHistogram(SystemMetricNames.PROXY_PHASE_LATENCY_PREFIX + phase)
+                .update(latency));
     }
 
     @Override
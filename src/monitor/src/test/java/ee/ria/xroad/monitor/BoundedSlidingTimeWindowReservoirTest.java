@@ -0,0 +1,104 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.monitor;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Snapshot;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * BoundedSlidingTimeWindowReservoirTest
+ */
+public class BoundedSlidingTimeWindowReservoirTest {
+
+    private final TestClock clock = new TestClock();
+
+    @Test
+    public void dropsMeasurementsOutsideWindow() {
+        BoundedSlidingTimeWindowReservoir reservoir =
+                new BoundedSlidingTimeWindowReservoir(10, TimeUnit.SECONDS, 100, clock);
+
+        reservoir.update(1);
+        clock.advance(5);
+        reservoir.update(2);
+        clock.advance(6);
+
+        assertEquals(1, reservoir.size());
+        assertArrayEquals(new long[] {2}, reservoir.getSnapshot().getValues());
+
+        clock.advance(5);
+
+        assertEquals(0, reservoir.size());
+    }
+
+    @Test
+    public void overwritesOldestWhenFull() {
+        BoundedSlidingTimeWindowReservoir reservoir =
+                new BoundedSlidingTimeWindowReservoir(10, TimeUnit.SECONDS, 3, clock);
+
+        for (long i = 1; i <= 5; i++) {
+            reservoir.update(i);
+        }
+
+        assertEquals(3, reservoir.size());
+        assertArrayEquals(new long[] {3, 4, 5}, reservoir.getSnapshot().getValues());
+    }
+
+    @Test
+    public void reusesSnapshotUntilChanged() {
+        BoundedSlidingTimeWindowReservoir reservoir =
+                new BoundedSlidingTimeWindowReservoir(10, TimeUnit.SECONDS, 3, clock);
+
+        reservoir.update(1);
+
+        Snapshot snapshot = reservoir.getSnapshot();
+
+        assertSame(snapshot, reservoir.getSnapshot());
+
+        reservoir.update(2);
+
+        assertNotSame(snapshot, reservoir.getSnapshot());
+    }
+
+    private static class TestClock extends Clock {
+        private long tick;
+
+        void advance(long seconds) {
+            tick += TimeUnit.SECONDS.toNanos(seconds);
+        }
+
+        @Override
+        public long getTick() {
+            return tick;
+        }
+    }
+}
@@ -24,10 +24,13 @@
  */
 package ee.ria.xroad.monitor;
 
+import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.TestCertUtil;
+import ee.ria.xroad.common.conf.InternalSSLKey;
 import ee.ria.xroad.common.conf.serverconf.ServerConf;
 import ee.ria.xroad.common.util.CryptoUtils;
 import ee.ria.xroad.monitor.CertificateInfoSensor.CertificateInfoCollector;
+import ee.ria.xroad.monitor.CertificateInfoSensor.InternalTlsExtractor;
 import ee.ria.xroad.monitor.CertificateInfoSensor.TokenExtractor;
 import ee.ria.xroad.monitor.common.SystemMetricNames;
 import ee.ria.xroad.signer.protocol.dto.CertRequestInfo;
@@ -39,29 +42,43 @@ import ee.ria.xroad.signer.protocol.dto.TokenStatusInfo;
 import akka.actor.ActorSystem;
 import akka.actor.Props;
 import akka.testkit.TestActorRef;
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Metric;
 import com.codahale.metrics.MetricRegistry;
 import com.typesafe.config.ConfigFactory;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.contrib.java.lang.system.RestoreSystemProperties;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mockito;
 import scala.concurrent.Await;
 import scala.concurrent.duration.Duration;
 
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
 import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Stream;
 
 import static ee.ria.xroad.monitor.CertificateInfoSensor.CERT_HEX_DELIMITER;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -82,6 +99,12 @@ public class CertificateInfoSensorTest {
     private static final String TSP_NOT_BEFORE = "2012-11-29T11:53:06Z";
     private static final String TSP_NOT_AFTER = "2014-11-29T11:53:06Z";
 
+    @Rule
+    public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Rule
+    public final RestoreSystemProperties restoreSystemProperties = new RestoreSystemProperties();
+
     /**
      * Before test handler
      */
@@ -176,7 +199,7 @@ public class CertificateInfoSensorTest {
 
         sensor.onReceive(new CertificateInfoSensor.CertificateInfoMeasure());
         Map<String, Metric> result = metrics.getMetrics();
-        assertEquals(2, result.entrySet().size()); // certs & jmx certs
+        assertEquals(4, result.entrySet().size()); // certs, jmx certs, days to expiry & ocsp age
         SimpleSensor<JmxStringifiedData<CertificateMonitoringInfo>> certificates =
                 (SimpleSensor<JmxStringifiedData<CertificateMonitoringInfo>>)
                 result.get(SystemMetricNames.CERTIFICATES);
@@ -223,7 +246,7 @@ public class CertificateInfoSensorTest {
 
         sensor.onReceive(new CertificateInfoSensor.CertificateInfoMeasure());
         Map<String, Metric> result = metrics.getMetrics();
-        assertEquals(2, result.entrySet().size()); // certs & jmx certs
+        assertEquals(4, result.entrySet().size()); // certs, jmx certs, days to expiry & ocsp age
         SimpleSensor<JmxStringifiedData<CertificateMonitoringInfo>> certificates =
                 (SimpleSensor<JmxStringifiedData<CertificateMonitoringInfo>>)
                         result.get(SystemMetricNames.CERTIFICATES);
@@ -235,6 +258,90 @@ public class CertificateInfoSensorTest {
         assertEquals(1, certificatesAsText.getValue().size()); // header line + 0 certs
     }
 
+    @Test
+    public void testTokensListedOnlyWhenVersionChanges() throws Exception {
+        AtomicInteger listings = new AtomicInteger();
+        AtomicLong version = new AtomicLong(1);
+
+        TokenExtractor extractor = new TokenExtractor(() -> {
+            listings.incrementAndGet();
+            return Arrays.asList(caTokenInfo, tspTokenInfo);
+        }, version::get);
+
+        assertEquals(2, extractor.getCertificates().count());
+        assertEquals(2, extractor.getCertificates().count());
+        assertEquals(1, listings.get());
+        assertFalse(extractor.isChanged());
+
+        version.incrementAndGet();
+
+        assertTrue(extractor.isChanged());
+        assertEquals(2, extractor.getCertificates().count());
+        assertEquals(2, listings.get());
+    }
+
+    @Test
+    public void testInternalTlsKeyChangedWhenKeyFileModified() throws Exception {
+        TestCertUtil.PKCS12 internal = TestCertUtil.getInternalKey();
+
+        ServerConf.reload(new EmptyServerConf() {
+            @Override
+            public InternalSSLKey getSSLKey() {
+                return new InternalSSLKey(internal.key, internal.certChain);
+            }
+        });
+
+        System.setProperty(SystemProperties.CONF_PATH, tempFolder.getRoot().getPath());
+
+        File keyFile = new File(tempFolder.getRoot(), InternalSSLKey.KEY_FILE_NAME);
+        keyFile.getParentFile().mkdirs();
+        Files.write(keyFile.toPath(), new byte[] {1});
+
+        InternalTlsExtractor extractor = new InternalTlsExtractor();
+
+        assertTrue(extractor.isChanged());
+        assertEquals(1, extractor.getCertificates().count());
+        assertFalse(extractor.isChanged());
+
+        Files.setLastModifiedTime(keyFile.toPath(),
+                FileTime.from(Files.getLastModifiedTime(keyFile.toPath()).toInstant().plusSeconds(1)));
+
+        assertTrue(extractor.isChanged());
+        assertEquals(1, extractor.getCertificates().count());
+        assertFalse(extractor.isChanged());
+    }
+
+    @Test
+    public void testDaysToExpiryComputedFromInventory() throws Exception {
+        final Props props = Props.create(CertificateInfoSensor.class);
+        final TestActorRef<CertificateInfoSensor> ref = TestActorRef.create(actorSystem, props,
+                "testActorRef");
+
+        CertificateInfoSensor sensor = ref.underlyingActor();
+
+        CertificateInfoCollector collector = new CertificateInfoCollector()
+                .addExtractor(new CertificateInfoSensor.CertificateInfoExtractor() {
+                    @Override
+                    Stream<CertificateMonitoringInfo> getCertificates() {
+                        return convertToMonitoringInfo(TestCertUtil.getCaCert(),
+                                CertificateMonitoringInfo.CertificateType.AUTH_OR_SIGN, true);
+                    }
+                });
+
+        sensor.setCertificateInfoCollector(collector);
+
+        Gauge<Long> daysToExpiry = metrics.getGauges().get(SystemMetricNames.CERTIFICATES_MIN_DAYS_TO_EXPIRY);
+        Gauge<Long> ocspAge = metrics.getGauges().get(SystemMetricNames.OCSP_RESPONSES_MAX_AGE);
+
+        assertNull(daysToExpiry.getValue());
+
+        sensor.onReceive(new CertificateInfoSensor.CertificateInfoMeasure());
+
+        assertEquals(ChronoUnit.DAYS.between(Instant.now(), Instant.parse(CA_NOT_AFTER)),
+                (long) daysToExpiry.getValue());
+        assertNull(ocspAge.getValue());
+    }
+
     private CertificateMonitoringInfo getCertificateInfo(ArrayList<CertificateMonitoringInfo> dtoData,
                                                          String certId) {
         return dtoData.stream()
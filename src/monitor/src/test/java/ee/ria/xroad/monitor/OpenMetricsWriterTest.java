@@ -0,0 +1,70 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.monitor;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * OpenMetricsWriterTest
+ */
+public class OpenMetricsWriterTest {
+
+    @Test
+    public void writesMetrics() throws Exception {
+        MetricRegistry registry = new MetricRegistry();
+
+        registry.register("FreeDiskSpace", new SimpleSensor<>(42L));
+        registry.register("OperatingSystem", new SimpleSensor<>("Linux"));
+        registry.counter("Requests.count").inc(3);
+        registry.histogram("SystemCpuLoad").update(10);
+
+        StringWriter out = new StringWriter();
+
+        new OpenMetricsWriter().write(registry, out);
+
+        String result = out.toString();
+
+        assertTrue(result.contains("# TYPE xroad_FreeDiskSpace gauge\nxroad_FreeDiskSpace 42\n"));
+        assertFalse(result.contains("OperatingSystem"));
+        assertTrue(result.contains("# TYPE xroad_Requests_count counter\nxroad_Requests_count_total 3\n"));
+        assertTrue(result.contains("# TYPE xroad_SystemCpuLoad summary\n"));
+        assertTrue(result.contains("xroad_SystemCpuLoad{quantile=\"0.5\"} 10\n"));
+        assertTrue(result.contains("xroad_SystemCpuLoad_count 1\n"));
+        assertTrue(result.endsWith("# EOF\n"));
+    }
+
+    @Test
+    public void sanitizesNames() {
+        assertEquals("xroad_ProxyPhaseLatency_parsing", OpenMetricsWriter.sanitize("ProxyPhaseLatency_parsing"));
+        assertEquals("xroad_a_b_c", OpenMetricsWriter.sanitize("a.b-c"));
+    }
+}
@@ -25,6 +25,7 @@
 package ee.ria.xroad.monitor;
 
 import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.monitor.common.PhaseLatency;
 import ee.ria.xroad.monitor.common.StatsRequest;
 import ee.ria.xroad.monitor.common.StatsResponse;
 import ee.ria.xroad.monitor.common.SystemMetricNames;
@@ -36,12 +37,14 @@ import akka.testkit.TestActorRef;
 import akka.testkit.javadsl.TestKit;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
 import com.typesafe.config.ConfigFactory;
 import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.util.Collections;
 import java.util.Map;
 
 /**
@@ -83,5 +86,29 @@ public class SystemMetricsSensorTest {
 
     }
 
-}
+    @Test
+    public void testProxyPhaseLatencies() {
+        final MetricRegistry registry = new MetricRegistry();
+        MetricRegistryHolder.getInstance().setMetrics(registry);
+
+        final TestKit agent = new TestKit(actorSystem);
+        final ActorRef sensor = TestActorRef.create(actorSystem, Props.create(SystemMetricsSensor.class,
+                agent.getRef().path().toString()));
+        agent.expectMsgClass(StatsRequest.class);
+
+        PhaseLatency latency = new PhaseLatency(42, 10, 900, 120, 50, 100, 150, 400, 500, 700, 850);
+        sensor.tell(new StatsResponse(0, 0, 1.0, 0, 0, 0, 0, 0, Collections.singletonMap("parsing", latency)),
+                agent.getRef());
+
+        Histogram histogram = registry.getHistograms().get(SystemMetricNames.PROXY_PHASE_LATENCY_PREFIX + "parsing");
+        Snapshot snapshot = histogram.getSnapshot();
 
+        Assert.assertEquals(42, histogram.getCount());
+        Assert.assertEquals(100, snapshot.getMedian(), 0);
+        Assert.assertEquals(400, snapshot.get95thPercentile(), 0);
+        Assert.assertEquals(700, snapshot.get99thPercentile(), 0);
+        Assert.assertEquals(900, snapshot.getMax());
+        Assert.assertEquals(120, snapshot.getMean(), 0);
+    }
+
+}
@@ -0,0 +1,128 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.opmonitordaemon;
+
+import java.util.Arrays;
+
+/**
+ * Counts request durations in buckets with fixed upper bounds so that the
+ * counts of different periods can be summed and percentiles can be
+ * estimated from the sums. The counts are stored in the database as a
+ * comma separated list of numbers.
+ */
+final class DurationHistogram {
+
+    /** The inclusive upper bounds (in milliseconds) of the buckets except the last unbounded one. */
+    static final long[] BOUNDS = {10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000};
+
+    private static final String SEPARATOR = ",";
+
+    private final long[] counts = new long[BOUNDS.length + 1];
+
+    /**
+     * Adds a duration to the bucket it falls into.
+     * @param duration the duration in milliseconds
+     */
+    void add(long duration) {
+        int index = Arrays.binarySearch(BOUNDS, duration);
+
+        counts[index >= 0 ? index : -index - 1]++;
+    }
+
+    /**
+     * Adds the counts of the other histogram to the counts of this histogram.
+     * @param other the other histogram
+     */
+    void add(DurationHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+    }
+
+    /**
+     * Estimates a percentile of the durations by interpolating linearly
+     * within the bucket the percentile falls into. The bucket boundaries
+     * are narrowed to the minimum and the maximum duration.
+     * @param quantile the quantile in [0..1]
+     * @param min      the minimum duration
+     * @param max      the maximum duration
+     * @return the estimated duration, or 0 if the histogram is empty
+     */
+    double percentile(double quantile, long min, long max) {
+        long total = Arrays.stream(counts).sum();
+
+        if (total == 0) {
+            return 0;
+        }
+
+        double rank = quantile * total;
+        long seen = 0;
+
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0 && seen + counts[i] >= rank) {
+                double lower = Math.max(min, i == 0 ? 0 : BOUNDS[i - 1]);
+                double upper = Math.max(lower, Math.min(max, i < BOUNDS.length ? BOUNDS[i] : max));
+
+                return lower + (upper - lower) * Math.max(0, rank - seen) / counts[i];
+            }
+
+            seen += counts[i];
+        }
+
+        return max;
+    }
+
+    /**
+     * @return the counts as a comma separated list of numbers
+     */
+    String encode() {
+        StringBuilder sb = new StringBuilder();
+
+        for (long count : counts) {
+            if (sb.length() > 0) {
+                sb.append(SEPARATOR);
+            }
+
+            sb.append(count);
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * @param encoded the counts as returned by {@link #encode()}
+     * @return the histogram with the given counts
+     */
+    static DurationHistogram decode(String encoded) {
+        DurationHistogram histogram = new DurationHistogram();
+        String[] values = encoded.split(SEPARATOR);
+
+        for (int i = 0; i < values.length && i < histogram.counts.length; i++) {
+            histogram.counts[i] = Long.parseLong(values[i]);
+        }
+
+        return histogram;
+    }
+}
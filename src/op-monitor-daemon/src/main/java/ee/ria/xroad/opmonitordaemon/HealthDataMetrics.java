@@ -31,21 +31,21 @@ import ee.ria.xroad.common.opmonitoring.OpMonitoringSystemProperties;
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Metric;
 import com.codahale.metrics.MetricRegistry;
-import com.codahale.metrics.SlidingTimeWindowReservoir;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 import static ee.ria.xroad.opmonitordaemon.HealthDataMetricsUtil.getLastRequestTimestampGaugeName;
 import static ee.ria.xroad.opmonitordaemon.HealthDataMetricsUtil.getRequestCounterName;
-import static ee.ria.xroad.opmonitordaemon.HealthDataMetricsUtil.getRequestDurationName;
-import static ee.ria.xroad.opmonitordaemon.HealthDataMetricsUtil.getRequestSizeName;
-import static ee.ria.xroad.opmonitordaemon.HealthDataMetricsUtil.getResponseSizeName;
 import static ee.ria.xroad.opmonitordaemon.HealthDataMetricsUtil.getServiceTypeName;
 
 /**
@@ -65,13 +65,11 @@ final class HealthDataMetrics {
     static final String MONITORING_STARTUP_TIMESTAMP =
             "monitoringStartupTimestamp";
 
-    // The timestamps of last successful and unsuccessful requests are stored
-    // for each service that is handled for, and are provided when the
-    // respective gauge is queried.
-    private static Map<String, Long> requestTimestamps = new HashMap<>();
-
-    // Stores the service types of the services
-    private static Map<String, String> serviceTypes = new HashMap<>();
+    // The metrics of each service that has been handled, per registry.
+    // Updating the metrics of a known service does not need to format the
+    // escaped metric names or to look up the metrics in the registry.
+    private static final Map<MetricRegistry, Map<ServiceId, ServiceMetrics>>
+            SERVICE_METRICS = Collections.synchronizedMap(new WeakHashMap<>());
 
     private HealthDataMetrics() {
     }
@@ -98,6 +96,9 @@ final class HealthDataMetrics {
      */
     static void processRecords(MetricRegistry registry,
             List<OperationalDataRecord> records) {
+        Map<ServiceId, ServiceMetrics> services = SERVICE_METRICS.computeIfAbsent(
+                registry, r -> new ConcurrentHashMap<>());
+
         for (OperationalDataRecord rec : records) {
             if (!rec.getSecurityServerType().equals(
                     OpMonitoringData.SecurityServerType.PRODUCER)) {
@@ -113,82 +114,115 @@ final class HealthDataMetrics {
                 continue;
             }
 
-            registerOrUpdateGauges(registry, serviceId, rec);
-            registerOrUpdateCounters(registry, serviceId, rec);
-
-            if (rec.getSucceeded()) {
-                // Statistics of request duration and the sizes of the request
-                // and response are computed over the successful requests only.
-                registerOrUpdateHistograms(registry, serviceId, rec);
-            }
+            services.computeIfAbsent(serviceId,
+                    id -> new ServiceMetrics(registry, id)).update(registry, rec);
         }
     }
 
-    private static void registerOrUpdateGauges(MetricRegistry registry,
-            ServiceId serviceId, OperationalDataRecord rec) {
-        // last request timestamp
-        String expectedGaugeName = getLastRequestTimestampGaugeName(serviceId,
-                rec.getSucceeded());
-        requestTimestamps.put(expectedGaugeName, rec.getResponseOutTs());
-        Gauge gauge = HealthDataMetricsUtil.findGauge(registry,
-                expectedGaugeName);
-        if (gauge == null) {
-            registry.register(expectedGaugeName,
-                    (Gauge<Long>) () -> requestTimestamps.get(
-                            expectedGaugeName));
+    /**
+     * The health data metrics of a single service. The metrics are
+     * registered when the service is handled for the first time and
+     * referenced directly afterwards. The registry is passed in instead of
+     * being stored, so that the registry does not stay reachable from
+     * {@link #SERVICE_METRICS}.
+     */
+    private static final class ServiceMetrics {
+        private final ServiceId serviceId;
+
+        // The timestamps of last successful and unsuccessful requests,
+        // provided when the respective gauge is queried.
+        private volatile Long lastSuccessfulRequestTimestamp;
+        private volatile Long lastUnsuccessfulRequestTimestamp;
+
+        private volatile String serviceType;
+
+        private Counter successfulRequestCounter;
+        private Counter unsuccessfulRequestCounter;
+
+        private Histogram requestDuration;
+        private Histogram requestSize;
+        private Histogram responseSize;
+
+        ServiceMetrics(MetricRegistry registry, ServiceId serviceId) {
+            this.serviceId = serviceId;
+
+            getOrRegister(registry, getServiceTypeName(serviceId),
+                    (Gauge<String>) () -> serviceType);
         }
 
-        // service type
-        String serviceTypeGaugeName = getServiceTypeName(serviceId);
-        serviceTypes.put(serviceTypeGaugeName, rec.getServiceType());
-        Gauge serviceTypeGauge = HealthDataMetricsUtil.findGauge(registry,
-                serviceTypeGaugeName);
-        if (serviceTypeGauge == null) {
-            registry.register(serviceTypeGaugeName,
-                    (Gauge<String>) () -> serviceTypes.get(serviceTypeGaugeName));
+        synchronized void update(MetricRegistry registry, OperationalDataRecord rec) {
+            serviceType = rec.getServiceType();
+
+            if (rec.getSucceeded()) {
+                updateSuccessful(registry, rec);
+            } else {
+                updateUnsuccessful(registry, rec);
+            }
         }
-    }
 
-    private static void registerOrUpdateCounters(MetricRegistry registry,
-            ServiceId serviceId, OperationalDataRecord rec) {
-        String expectedCounterName = getRequestCounterName(serviceId,
-                rec.getSucceeded());
-        Counter counter = HealthDataMetricsUtil.findCounter(registry,
-                expectedCounterName);
-
-        if (counter == null) {
-            // Register and increment a new counter.
-            counter = new SlidingTimeWindowCounter(
-                    OP_MONITOR_HEALTH_STATS_PERIOD_SECONDS, TimeUnit.SECONDS);
-            registry.register(expectedCounterName, counter);
+        private void updateSuccessful(MetricRegistry registry, OperationalDataRecord rec) {
+            if (successfulRequestCounter == null) {
+                getOrRegister(registry, getLastRequestTimestampGaugeName(serviceId, true),
+                        (Gauge<Long>) () -> lastSuccessfulRequestTimestamp);
+                successfulRequestCounter = getOrRegister(registry,
+                        getRequestCounterName(serviceId, true), createCounter());
+            }
+
+            lastSuccessfulRequestTimestamp = rec.getResponseOutTs();
+            successfulRequestCounter.inc();
+
+            // Statistics of request duration and the sizes of the request
+            // and response are computed over the successful requests only.
+            requestDuration = updateHistogram(registry, requestDuration,
+                    HealthDataMetricsUtil::getRequestDurationName, getRequestDuration(rec));
+            requestSize = updateHistogram(registry, requestSize,
+                    HealthDataMetricsUtil::getRequestSizeName, rec.getRequestSize());
+            responseSize = updateHistogram(registry, responseSize,
+                    HealthDataMetricsUtil::getResponseSizeName, rec.getResponseSize());
         }
 
-        counter.inc();
-    }
+        private void updateUnsuccessful(MetricRegistry registry, OperationalDataRecord rec) {
+            if (unsuccessfulRequestCounter == null) {
+                getOrRegister(registry, getLastRequestTimestampGaugeName(serviceId, false),
+                        (Gauge<Long>) () -> lastUnsuccessfulRequestTimestamp);
+                unsuccessfulRequestCounter = getOrRegister(registry,
+                        getRequestCounterName(serviceId, false), createCounter());
+            }
 
-    private static void registerOrUpdateHistograms(MetricRegistry registry,
-            ServiceId serviceId, OperationalDataRecord rec) {
-        registerOrUpdateHistogram(registry, getRequestDurationName(serviceId), getRequestDuration(rec));
+            lastUnsuccessfulRequestTimestamp = rec.getResponseOutTs();
+            unsuccessfulRequestCounter.inc();
+        }
 
-        registerOrUpdateHistogram(registry, getRequestSizeName(serviceId), rec.getRequestSize());
-        registerOrUpdateHistogram(registry, getResponseSizeName(serviceId), rec.getResponseSize());
-    }
+        private Histogram updateHistogram(MetricRegistry registry, Histogram histogram,
+                Function<ServiceId, String> histogramName, Long newValue) {
+            if (newValue == null) {
+                return histogram;
+            }
 
-    private static void registerOrUpdateHistogram(MetricRegistry registry, String histogramName, Long newValue) {
+            Histogram result = histogram != null ? histogram
+                    : getOrRegister(registry, histogramName.apply(serviceId), createHistogram());
+            result.update(newValue);
 
-        if (newValue == null) return;
+            return result;
+        }
 
-        Histogram histogram = HealthDataMetricsUtil.findHistogram(registry, histogramName);
+        @SuppressWarnings("unchecked")
+        private static <T extends Metric> T getOrRegister(MetricRegistry registry,
+                String name, T metric) {
+            Metric existing = registry.getMetrics().get(name);
 
-        if (histogram == null) {
-            // Add a histogram corresponding to the service and update it.
-            histogram = registry.register(histogramName,
-                    new Histogram(new SlidingTimeWindowReservoir(
-                            OP_MONITOR_HEALTH_STATS_PERIOD_SECONDS,
-                            TimeUnit.SECONDS)));
+            return existing != null ? (T) existing : registry.register(name, metric);
         }
+    }
+
+    private static Counter createCounter() {
+        return new SlidingTimeWindowCounter(
+                OP_MONITOR_HEALTH_STATS_PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
 
-        histogram.update(newValue);
+    private static Histogram createHistogram() {
+        return new Histogram(new SlidingTimeWindowBucketReservoir(
+                OP_MONITOR_HEALTH_STATS_PERIOD_SECONDS, TimeUnit.SECONDS));
     }
 
     /**
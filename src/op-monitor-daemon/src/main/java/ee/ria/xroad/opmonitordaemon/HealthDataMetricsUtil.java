@@ -29,12 +29,12 @@ import ee.ria.xroad.common.identifier.ServiceId;
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Metric;
 import com.codahale.metrics.MetricRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringEscapeUtils;
 import org.apache.commons.lang3.StringUtils;
 
-import java.util.SortedMap;
 import java.util.regex.Pattern;
 
 /**
@@ -226,18 +226,9 @@ final class HealthDataMetricsUtil {
      * @return the found gauge or null if it does not exist
      */
     static Gauge findGauge(MetricRegistry registry, String expectedGaugeName) {
-        SortedMap<String, Gauge> gauges = registry.getGauges(
-                (name, metric) -> name.matches(HealthDataMetricsUtil
-                        .formatMetricMatchRegexp(expectedGaugeName))
-        );
-
-        if (gauges.size() > 1) {
-            // Should not happen because we use a strict regexp.
-            log.warn("Multiple gauges matched the name "
-                    + expectedGaugeName);
-        }
+        Metric metric = registry.getMetrics().get(expectedGaugeName);
 
-        return gauges.isEmpty() ? null : gauges.values().iterator().next();
+        return metric instanceof Gauge ? (Gauge) metric : null;
     }
 
     /**
@@ -247,18 +238,9 @@ final class HealthDataMetricsUtil {
      */
     static Counter findCounter(MetricRegistry registry,
             String expectedCounterName) {
-        SortedMap<String, Counter> counters = registry.getCounters(
-                (name, metric) -> name.matches(HealthDataMetricsUtil
-                        .formatMetricMatchRegexp(expectedCounterName))
-        );
-
-        if (counters.size() > 1) {
-            // Should not happen because we use a strict regexp.
-            log.warn("Multiple counters matched the name "
-                    + expectedCounterName);
-        }
+        Metric metric = registry.getMetrics().get(expectedCounterName);
 
-        return counters.isEmpty() ? null : counters.values().iterator().next();
+        return metric instanceof Counter ? (Counter) metric : null;
     }
 
     /**
@@ -269,18 +251,8 @@ final class HealthDataMetricsUtil {
      */
     static Histogram findHistogram(MetricRegistry registry,
             String expectedHistogramName) {
-        SortedMap<String, Histogram> histograms = registry.getHistograms(
-                (name, metric) -> name.matches(HealthDataMetricsUtil
-                        .formatMetricMatchRegexp(expectedHistogramName))
-        );
-
-        if (histograms.size() > 1) {
-            // Should not happen because we use a strict regexp.
-            log.warn("Multiple histograms matched the name "
-                    + expectedHistogramName);
-        }
+        Metric metric = registry.getMetrics().get(expectedHistogramName);
 
-        return histograms.isEmpty() ? null
-                : histograms.values().iterator().next();
+        return metric instanceof Histogram ? (Histogram) metric : null;
     }
 }
@@ -64,6 +64,17 @@ final class OpMonitorDaemonDatabaseCtx {
         return CTX.doInTransaction(callback);
     }
 
+    /**
+     * Truncates the string values of operational data record properties to the
+     * lengths of their columns, as done for records saved through the session.
+     * @param state the property values
+     * @param propertyNames the property names
+     * @param types the property types
+     */
+    static void truncateStringValues(Object[] state, String[] propertyNames, Type[] types) {
+        StringValueTruncator.truncateStringProperties(state, propertyNames, types);
+    }
+
     private static class StringValueTruncator extends EmptyInterceptor {
         private static final long serialVersionUID = 1L;
 
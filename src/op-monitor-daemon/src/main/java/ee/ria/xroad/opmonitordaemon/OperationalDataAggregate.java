@@ -0,0 +1,103 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.opmonitordaemon;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Represents a single aggregate in the payload of the request
+ * getSecurityServerOperationalData with aggregation.
+ */
+@Getter
+@ToString
+class OperationalDataAggregate {
+
+    private static final double P50 = 0.5;
+    private static final double P95 = 0.95;
+    private static final double P99 = 0.99;
+
+    private long periodStart;
+    private int periodLength;
+
+    private String securityServerType;
+    private String clientXRoadInstance;
+    private String clientMemberClass;
+    private String clientMemberCode;
+    private String clientSubsystemCode;
+    private String serviceXRoadInstance;
+    private String serviceMemberClass;
+    private String serviceMemberCode;
+    private String serviceSubsystemCode;
+    private String serviceCode;
+    private String serviceVersion;
+
+    private long requestCount;
+    private long failedRequestCount;
+    private double errorRate;
+
+    // The durations are in milliseconds.
+    private long durationMin;
+    private double durationAvg;
+    private long durationMax;
+    private double durationP50;
+    private double durationP95;
+    private double durationP99;
+
+    static OperationalDataAggregate of(OperationalDataRollup rollup) {
+        OperationalDataAggregate aggregate = new OperationalDataAggregate();
+
+        aggregate.periodStart = rollup.getPeriodStart();
+        aggregate.periodLength = rollup.getPeriodLength();
+        aggregate.securityServerType = rollup.getSecurityServerType();
+        aggregate.clientXRoadInstance = rollup.getClientXRoadInstance();
+        aggregate.clientMemberClass = rollup.getClientMemberClass();
+        aggregate.clientMemberCode = rollup.getClientMemberCode();
+        aggregate.clientSubsystemCode = rollup.getClientSubsystemCode();
+        aggregate.serviceXRoadInstance = rollup.getServiceXRoadInstance();
+        aggregate.serviceMemberClass = rollup.getServiceMemberClass();
+        aggregate.serviceMemberCode = rollup.getServiceMemberCode();
+        aggregate.serviceSubsystemCode = rollup.getServiceSubsystemCode();
+        aggregate.serviceCode = rollup.getServiceCode();
+        aggregate.serviceVersion = rollup.getServiceVersion();
+
+        aggregate.requestCount = rollup.getRequestCount();
+        aggregate.failedRequestCount = rollup.getFailedCount();
+        aggregate.errorRate = (double) rollup.getFailedCount() / rollup.getRequestCount();
+
+        DurationHistogram histogram = rollup.getDurationHistogram();
+        long min = rollup.getDurationMin();
+        long max = rollup.getDurationMax();
+
+        aggregate.durationMin = min;
+        aggregate.durationAvg = (double) rollup.getDurationSum() / rollup.getRequestCount();
+        aggregate.durationMax = max;
+        aggregate.durationP50 = histogram.percentile(P50, min, max);
+        aggregate.durationP95 = histogram.percentile(P95, min, max);
+        aggregate.durationP99 = histogram.percentile(P99, min, max);
+
+        return aggregate;
+    }
+}
@@ -92,11 +92,16 @@ final class OperationalDataRecordCleaner extends UntypedAbstractActor {
         log.trace("cleanRecords({})", before);
 
         return doInTransaction(session -> {
+            long beforeSeconds = TimeUnit.MILLISECONDS.toSeconds(before.getMillis());
             String hql =
                     "delete OperationalDataRecord r where r.monitoringDataTs < "
-                    + TimeUnit.MILLISECONDS.toSeconds(before.getMillis());
+                    + beforeSeconds;
 
             int removed = session.createQuery(hql).executeUpdate();
+            int removedRollups = OperationalDataRollupManager.deleteRollups(session, beforeSeconds);
+
+            log.debug("Removed {} outdated operational data rollups from the"
+                    + " database", removedRollups);
 
             if (removed == 0) {
                 log.info("No outdated operational data records to remove from"
@@ -0,0 +1,136 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.opmonitordaemon;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.type.Type;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Inserts operational data records with multi-row INSERT statements using the
+ * JDBC connection of the session. The records bypass the persistence context,
+ * so they are not tracked, dirty checked or inserted one statement at a time.
+ * The table, columns, types and identifier generator are taken from the
+ * Hibernate mapping of {@link OperationalDataRecord}, so the records are stored
+ * exactly like the ones saved through the session.
+ */
+@Slf4j
+final class OperationalDataRecordInserter {
+
+    // PostgreSQL accepts at most this many bind parameters in a statement.
+    private static final int MAX_BIND_PARAMETERS = 32767;
+
+    private final AbstractEntityPersister persister;
+    private final String[] propertyNames;
+    private final Type[] propertyTypes;
+
+    private final String insertPrefix;
+    private final String rowPlaceholders;
+    private final int maxRowsPerStatement;
+    private final ConcurrentMap<Integer, String> statements = new ConcurrentHashMap<>();
+
+    OperationalDataRecordInserter(SessionFactoryImplementor sessionFactory) {
+        persister = (AbstractEntityPersister) sessionFactory.getMetamodel()
+                .entityPersister(OperationalDataRecord.class);
+        propertyNames = persister.getPropertyNames();
+        propertyTypes = persister.getPropertyTypes();
+
+        StringJoiner columns = new StringJoiner(", ", "INSERT INTO " + persister.getTableName() + " (",
+                ") VALUES ");
+        columns.add(persister.getIdentifierColumnNames()[0]);
+
+        for (int i = 0; i < propertyNames.length; i++) {
+            columns.add(persister.getPropertyColumnNames(i)[0]);
+        }
+
+        insertPrefix = columns.toString();
+        rowPlaceholders = "(" + String.join(", ", Collections.nCopies(propertyNames.length + 1, "?")) + ")";
+        maxRowsPerStatement = MAX_BIND_PARAMETERS / (propertyNames.length + 1);
+    }
+
+    /**
+     * Inserts the records. The identifiers of the records are set.
+     * @param session the session whose connection and transaction are used
+     * @param records the records
+     * @param rowsPerStatement maximum number of records inserted with a single statement, further limited
+     * so that a statement does not exceed the bind parameter limit of the database
+     */
+    void insert(SessionImplementor session, List<OperationalDataRecord> records, int rowsPerStatement) {
+        int rows = Math.max(1, Math.min(rowsPerStatement, maxRowsPerStatement));
+
+        session.doWork(connection -> {
+            for (int from = 0; from < records.size(); from += rows) {
+                insert(session, connection, records.subList(from, Math.min(records.size(), from + rows)));
+            }
+        });
+    }
+
+    private void insert(SessionImplementor session, Connection connection, List<OperationalDataRecord> rows)
+            throws SQLException {
+        log.trace("insert({})", rows.size());
+
+        try (PreparedStatement stmt = connection.prepareStatement(getStatement(rows.size()))) {
+            int index = 1;
+
+            for (OperationalDataRecord record : rows) {
+                record.setId((Long) persister.getIdentifierGenerator().generate(session, record));
+
+                Object[] values = persister.getPropertyValues(record);
+                OpMonitorDaemonDatabaseCtx.truncateStringValues(values, propertyNames, propertyTypes);
+
+                stmt.setLong(index++, record.getId());
+
+                for (int i = 0; i < values.length; i++) {
+                    propertyTypes[i].nullSafeSet(stmt, values[i], index++, session);
+                }
+            }
+
+            stmt.executeUpdate();
+        }
+    }
+
+    private String getStatement(int rows) {
+        return statements.computeIfAbsent(rows, n -> {
+            StringJoiner sql = new StringJoiner(", ", insertPrefix, "");
+
+            for (int i = 0; i < n; i++) {
+                sql.add(rowPlaceholders);
+            }
+
+            return sql.toString();
+        });
+    }
+}
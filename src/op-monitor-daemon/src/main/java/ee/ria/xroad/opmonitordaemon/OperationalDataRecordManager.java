@@ -31,6 +31,7 @@ import ee.ria.xroad.common.opmonitoring.OpMonitoringSystemProperties;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionImplementor;
 import org.hibernate.query.Query;
 
 import java.util.Collections;
@@ -55,6 +56,8 @@ final class OperationalDataRecordManager {
 
     private static int configuredBatchSize = 0;
 
+    private static volatile OperationalDataRecordInserter inserter;
+
     private OperationalDataRecordManager() {
     }
 
@@ -86,22 +89,27 @@ final class OperationalDataRecordManager {
     }
 
     private static Void storeInTransaction(Session session, List<OperationalDataRecord> records, long timestamp) {
-        int storedCount = 0;
-        int batchSize = getConfiguredBatchSize(session);
-
         for (OperationalDataRecord record : records) {
             record.setMonitoringDataTs(timestamp);
-            session.save(record);
-
-            if (++storedCount % batchSize == 0) {
-                session.flush();
-                session.clear();
-            }
         }
 
+        SessionImplementor sessionImpl = (SessionImplementor) session;
+
+        getInserter(sessionImpl).insert(sessionImpl, records, getConfiguredBatchSize(session));
+
+        OperationalDataRollupManager.updateRollups(session, records);
+
         return null;
     }
 
+    private static OperationalDataRecordInserter getInserter(SessionImplementor session) {
+        if (inserter == null) {
+            inserter = new OperationalDataRecordInserter(session.getFactory());
+        }
+
+        return inserter;
+    }
+
     private static int getConfiguredBatchSize(Session session) {
         if (configuredBatchSize == 0) {
             configuredBatchSize = HibernateUtil.getConfiguredBatchSize(session, DEFAULT_BATCH_SIZE);
@@ -35,6 +35,7 @@ import ee.ria.xroad.common.message.SoapMessageImpl;
 import ee.ria.xroad.common.opmonitoring.OpMonitoringSystemProperties;
 import ee.ria.xroad.common.util.MimeTypes;
 import ee.ria.xroad.common.util.TimeUtils;
+import ee.ria.xroad.opmonitordaemon.message.AggregationType;
 import ee.ria.xroad.opmonitordaemon.message.GetSecurityServerOperationalDataResponseType;
 import ee.ria.xroad.opmonitordaemon.message.GetSecurityServerOperationalDataType;
 import ee.ria.xroad.opmonitordaemon.message.SearchCriteriaType;
@@ -95,17 +96,26 @@ class OperationalDataRequestHandler extends QueryRequestHandler {
 
         checkOutputFields(outputFields);
 
+        AggregationType aggregation = requestData.getAggregation();
+
         log.debug("Handle getSecurityServerOperationalData: clientId: {},"
                         + " recordsFrom: {}, recordsTo: {},"
-                        + " serviceProviderId: {}, outputFields: {}",
+                        + " serviceProviderId: {}, outputFields: {},"
+                        + " aggregation: {}",
                 clientId, recordsFrom, recordsTo, serviceProviderId,
-                outputFields);
+                outputFields, aggregation);
 
         GetSecurityServerOperationalDataResponseType opDataResponse =
-                buildOperationalDataResponse(
-                        getClientForFilter(clientId, serverId), recordsFrom,
-                        recordsTo, serviceProviderId, outputFields,
-                        recordsAvailableBefore);
+                aggregation == null
+                        ? buildOperationalDataResponse(
+                                getClientForFilter(clientId, serverId),
+                                recordsFrom, recordsTo, serviceProviderId,
+                                outputFields, recordsAvailableBefore)
+                        : buildAggregatesResponse(
+                                getClientForFilter(clientId, serverId),
+                                recordsFrom, recordsTo, serviceProviderId,
+                                getPeriodLength(aggregation),
+                                recordsAvailableBefore);
 
         try (SoapMessageEncoder responseEncoder = new MultipartSoapMessageEncoder(out)) {
             contentTypeCallback.accept(responseEncoder.getContentType());
@@ -200,6 +210,45 @@ class OperationalDataRequestHandler extends QueryRequestHandler {
         return opDataResponse;
     }
 
+    protected GetSecurityServerOperationalDataResponseType
+            buildAggregatesResponse(ClientId filterByClient,
+            long recordsFrom, long recordsTo, ClientId filterByServiceProvider,
+            int periodLength, long recordsAvailableBefore) throws IOException {
+        GetSecurityServerOperationalDataResponseType opDataResponse =
+                OBJECT_FACTORY
+                        .createGetSecurityServerOperationalDataResponseType();
+
+        if (recordsTo >= recordsAvailableBefore) {
+            log.debug("recordsTo({}) >= recordsAvailableBefore({}),"
+                            + " set nextRecordsFrom to {}", recordsTo,
+                    recordsAvailableBefore, recordsAvailableBefore);
+
+            recordsTo = recordsAvailableBefore - 1;
+
+            opDataResponse.setNextRecordsFrom(recordsAvailableBefore);
+        }
+
+        OperationalDataAggregates aggregates = getOperationalDataAggregates(
+                filterByClient, recordsFrom, recordsTo,
+                filterByServiceProvider, periodLength);
+
+        opDataResponse.setRecordsCount(aggregates.size());
+        opDataResponse.setRecords(createAttachmentDataSource(
+                compress(aggregates.getPayload(GSON)), CID, MimeTypes.GZIP));
+
+        if (aggregates.getNextRecordsFrom() != null) {
+            opDataResponse.setNextRecordsFrom(aggregates.getNextRecordsFrom());
+        }
+
+        return opDataResponse;
+    }
+
+    private static int getPeriodLength(AggregationType aggregation) {
+        return aggregation == AggregationType.HOUR
+                ? OperationalDataRollupManager.HOUR
+                : OperationalDataRollupManager.MINUTE;
+    }
+
     private static JAXBElement<?> createResponseElement(
             GetSecurityServerOperationalDataResponseType opDataResponse) {
         return OBJECT_FACTORY.createGetSecurityServerOperationalDataResponse(
@@ -221,6 +270,22 @@ class OperationalDataRequestHandler extends QueryRequestHandler {
         }
     }
 
+    protected OperationalDataAggregates getOperationalDataAggregates(
+            ClientId filterByClient, long recordsFrom, long recordsTo,
+            ClientId filterByServiceProvider, int periodLength) {
+        try {
+            return OperationalDataRollupManager.queryAggregates(recordsFrom,
+                    recordsTo, periodLength, filterByClient,
+                    filterByServiceProvider);
+        } catch (Exception e) {
+            log.error("Failed to get aggregates for response", e);
+
+            throw new CodedException(X_INTERNAL_ERROR,
+                    "Failed to get aggregates for response: "
+                            + e.getMessage());
+        }
+    }
+
     protected ClientId getClientForFilter(ClientId clientId,
             SecurityServerId serverId) throws Exception {
         return !isMonitoringClient(clientId)
@@ -0,0 +1,215 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.opmonitordaemon;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.Value;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.List;
+
+/**
+ * Represents a database record of aggregated operational monitoring data.
+ * Each such record sums up the requests of one client to one service that
+ * were stored at the monitoring daemon during one period (a minute or an
+ * hour). The period is based on the monitoringDataTs timestamp of the
+ * records, like the search criteria of the raw records.
+ */
+@Getter
+@Setter
+@ToString
+@EqualsAndHashCode
+public class OperationalDataRollup {
+
+    private static final int MAX_STRING_LENGTH = 255;
+
+    // The unique ID of the record in the database.
+    private Long id;
+
+    // The Unix timestamp (in seconds) of the start of the period.
+    private long periodStart;
+
+    // The length of the period in seconds.
+    private int periodLength;
+
+    private String securityServerType;
+
+    private String clientXRoadInstance;
+
+    private String clientMemberClass;
+
+    private String clientMemberCode;
+
+    private String clientSubsystemCode;
+
+    private String serviceXRoadInstance;
+
+    private String serviceMemberClass;
+
+    private String serviceMemberCode;
+
+    private String serviceSubsystemCode;
+
+    private String serviceCode;
+
+    private String serviceVersion;
+
+    private long requestCount;
+
+    private long failedCount;
+
+    // The durations (responseOutTs - requestInTs) in milliseconds.
+    private long durationSum;
+
+    private long durationMin;
+
+    private long durationMax;
+
+    // The encoded DurationHistogram of the durations.
+    private String durationBuckets;
+
+    /**
+     * Creates a rollup of the given records.
+     * @param key     the key shared by the records
+     * @param records the records
+     * @return the rollup
+     */
+    static OperationalDataRollup of(Key key, List<OperationalDataRecord> records) {
+        OperationalDataRollup rollup = new OperationalDataRollup();
+        rollup.setKey(key);
+
+        DurationHistogram histogram = new DurationHistogram();
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+
+        for (OperationalDataRecord record : records) {
+            long duration = getDuration(record);
+
+            rollup.requestCount++;
+            rollup.failedCount += Boolean.TRUE.equals(record.getSucceeded()) ? 0 : 1;
+            rollup.durationSum += duration;
+            min = Math.min(min, duration);
+            max = Math.max(max, duration);
+            histogram.add(duration);
+        }
+
+        rollup.durationMin = min;
+        rollup.durationMax = max;
+        rollup.durationBuckets = histogram.encode();
+
+        return rollup;
+    }
+
+    /**
+     * Adds the measures of the other rollup to the measures of this rollup.
+     * @param other the other rollup with the same key
+     */
+    void add(OperationalDataRollup other) {
+        DurationHistogram histogram = getDurationHistogram();
+        histogram.add(other.getDurationHistogram());
+
+        requestCount += other.requestCount;
+        failedCount += other.failedCount;
+        durationSum += other.durationSum;
+        durationMin = Math.min(durationMin, other.durationMin);
+        durationMax = Math.max(durationMax, other.durationMax);
+        durationBuckets = histogram.encode();
+    }
+
+    DurationHistogram getDurationHistogram() {
+        return DurationHistogram.decode(durationBuckets);
+    }
+
+    Key getKey() {
+        return new Key(periodStart, periodLength, securityServerType,
+                clientXRoadInstance, clientMemberClass, clientMemberCode, clientSubsystemCode,
+                serviceXRoadInstance, serviceMemberClass, serviceMemberCode, serviceSubsystemCode,
+                serviceCode, serviceVersion);
+    }
+
+    private void setKey(Key key) {
+        periodStart = key.getPeriodStart();
+        periodLength = key.getPeriodLength();
+        securityServerType = key.getSecurityServerType();
+        clientXRoadInstance = key.getClientXRoadInstance();
+        clientMemberClass = key.getClientMemberClass();
+        clientMemberCode = key.getClientMemberCode();
+        clientSubsystemCode = key.getClientSubsystemCode();
+        serviceXRoadInstance = key.getServiceXRoadInstance();
+        serviceMemberClass = key.getServiceMemberClass();
+        serviceMemberCode = key.getServiceMemberCode();
+        serviceSubsystemCode = key.getServiceSubsystemCode();
+        serviceCode = key.getServiceCode();
+        serviceVersion = key.getServiceVersion();
+    }
+
+    private static long getDuration(OperationalDataRecord record) {
+        return Math.max(0, record.getResponseOutTs() - record.getRequestInTs());
+    }
+
+    /**
+     * The period and the dimensions a rollup is aggregated by.
+     */
+    @Value
+    static class Key {
+        long periodStart;
+        int periodLength;
+        String securityServerType;
+        String clientXRoadInstance;
+        String clientMemberClass;
+        String clientMemberCode;
+        String clientSubsystemCode;
+        String serviceXRoadInstance;
+        String serviceMemberClass;
+        String serviceMemberCode;
+        String serviceSubsystemCode;
+        String serviceCode;
+        String serviceVersion;
+
+        /**
+         * @param record       the record with monitoringDataTs set
+         * @param periodLength the length of the period in seconds
+         * @return the key of the period the record belongs to
+         */
+        static Key of(OperationalDataRecord record, int periodLength) {
+            long timestamp = record.getMonitoringDataTs();
+
+            return new Key(timestamp - Math.floorMod(timestamp, (long) periodLength), periodLength,
+                    record.getSecurityServerType().getTypeString(),
+                    truncate(record.getClientXRoadInstance()), truncate(record.getClientMemberClass()),
+                    truncate(record.getClientMemberCode()), truncate(record.getClientSubsystemCode()),
+                    truncate(record.getServiceXRoadInstance()), truncate(record.getServiceMemberClass()),
+                    truncate(record.getServiceMemberCode()), truncate(record.getServiceSubsystemCode()),
+                    truncate(record.getServiceCode()), truncate(record.getServiceVersion()));
+        }
+
+        private static String truncate(String value) {
+            return StringUtils.truncate(value, MAX_STRING_LENGTH);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.opmonitordaemon;
+
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.opmonitoring.OpMonitoringSystemProperties;
+import ee.ria.xroad.opmonitordaemon.OperationalDataRollup.Key;
+
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+
+import javax.persistence.LockModeType;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static ee.ria.xroad.opmonitordaemon.OpMonitorDaemonDatabaseCtx.doInTransaction;
+
+/**
+ * This class encapsulates all the database access related to the
+ * operational_data_rollup table, mapped by the OperationalDataRollup class.
+ * The rollups are updated in the same transaction the records are stored in.
+ */
+@Slf4j
+final class OperationalDataRollupManager {
+
+    /** The length of a per-minute rollup period in seconds. */
+    static final int MINUTE = 60;
+
+    /** The length of a per-hour rollup period in seconds. */
+    static final int HOUR = 3600;
+
+    private static final int[] PERIOD_LENGTHS = {MINUTE, HOUR};
+
+    private static final String PERIOD_START = "periodStart";
+    private static final String PERIOD_LENGTH = "periodLength";
+
+    @Setter
+    private static int maxAggregatesInPayload = OpMonitoringSystemProperties.getOpMonitorMaxRecordsInPayload();
+
+    private OperationalDataRollupManager() {
+    }
+
+    /**
+     * Adds the given records to the rollups of the periods they belong to.
+     * The rows of the rollups are locked in a fixed order so that concurrent
+     * store requests cannot deadlock. Concurrent store requests may create
+     * several rows for the same rollup, these are summed up when queried.
+     * @param session the session of the transaction the records are stored in
+     * @param records the records with monitoringDataTs set
+     */
+    static void updateRollups(Session session, List<OperationalDataRecord> records) {
+        Map<Key, List<OperationalDataRecord>> recordsByKey = new TreeMap<>(Comparator.comparing(Key::toString));
+
+        for (OperationalDataRecord record : records) {
+            for (int periodLength : PERIOD_LENGTHS) {
+                recordsByKey.computeIfAbsent(Key.of(record, periodLength), k -> new ArrayList<>()).add(record);
+            }
+        }
+
+        for (Map.Entry<Key, List<OperationalDataRecord>> entry : recordsByKey.entrySet()) {
+            OperationalDataRollup delta = OperationalDataRollup.of(entry.getKey(), entry.getValue());
+            OperationalDataRollup existing = findForUpdate(session, entry.getKey());
+
+            if (existing == null) {
+                session.save(delta);
+            } else {
+                existing.add(delta);
+            }
+        }
+
+        log.trace("Updated {} rollups", recordsByKey.size());
+    }
+
+    /**
+     * Queries the aggregates of the periods of the given length that start
+     * within the given interval. The number of returned aggregates is limited
+     * by the configured value maxRecordsInPayload plus overflow aggregates of
+     * the same period as the last included aggregate. If the aggregates of
+     * some periods are left out, nextRecordsFrom is set to the start of the
+     * first such period.
+     * @see #queryRollups
+     */
+    static OperationalDataAggregates queryAggregates(long recordsFrom, long recordsTo, int periodLength,
+            ClientId clientFilter, ClientId serviceProviderFilter) throws Exception {
+        List<OperationalDataRollup> rollups =
+                queryRollups(recordsFrom, recordsTo, periodLength, clientFilter, serviceProviderFilter);
+        Long nextRecordsFrom = null;
+
+        if (rollups.size() > maxAggregatesInPayload) {
+            // Include the overflow aggregates of the last included period.
+            long lastPeriodStart = rollups.get(maxAggregatesInPayload - 1).getPeriodStart();
+
+            nextRecordsFrom = rollups.stream()
+                    .filter(r -> r.getPeriodStart() > lastPeriodStart)
+                    .findFirst()
+                    .map(OperationalDataRollup::getPeriodStart)
+                    .orElse(null);
+
+            if (nextRecordsFrom != null) {
+                log.debug("Aggregates overflow, set nextRecordsFrom to {}", nextRecordsFrom);
+
+                rollups.removeIf(r -> r.getPeriodStart() > lastPeriodStart);
+            }
+        }
+
+        OperationalDataAggregates aggregates = new OperationalDataAggregates(rollups.stream()
+                .map(OperationalDataAggregate::of)
+                .collect(Collectors.toList()));
+        aggregates.setNextRecordsFrom(nextRecordsFrom);
+
+        return aggregates;
+    }
+
+    /**
+     * Queries the rollups of the periods of the given length that start
+     * within the given interval. The start of the interval is rounded down
+     * to the start of the period it falls into.
+     * @param recordsFrom           the start of the interval (seconds)
+     * @param recordsTo             the end of the interval (seconds)
+     * @param periodLength          the length of the periods in seconds
+     * @param clientFilter          filter rollups by client in either role (if not null)
+     * @param serviceProviderFilter filter rollups by service provider (if not null)
+     * @return the rollups ordered by the start of the period
+     */
+    static List<OperationalDataRollup> queryRollups(long recordsFrom, long recordsTo, int periodLength,
+            ClientId clientFilter, ClientId serviceProviderFilter) throws Exception {
+        return doInTransaction(session -> queryRollupsInTransaction(session,
+                recordsFrom - Math.floorMod(recordsFrom, (long) periodLength), recordsTo, periodLength,
+                clientFilter, serviceProviderFilter));
+    }
+
+    /**
+     * Deletes the rollups of the periods that started before the given timestamp.
+     * @param session the session
+     * @param before  the timestamp in seconds
+     * @return the number of deleted rollups
+     */
+    static int deleteRollups(Session session, long before) {
+        return session.createQuery("delete OperationalDataRollup r where r.periodStart < :before")
+                .setParameter("before", before)
+                .executeUpdate();
+    }
+
+    private static OperationalDataRollup findForUpdate(Session session, Key key) {
+        CriteriaBuilder cb = session.getCriteriaBuilder();
+        CriteriaQuery<OperationalDataRollup> query = cb.createQuery(OperationalDataRollup.class);
+        Root<OperationalDataRollup> from = query.from(OperationalDataRollup.class);
+
+        query.where(
+                cb.equal(from.get(PERIOD_START), key.getPeriodStart()),
+                cb.equal(from.get(PERIOD_LENGTH), key.getPeriodLength()),
+                equalOrNull(cb, from, "securityServerType", key.getSecurityServerType()),
+                equalOrNull(cb, from, "clientXRoadInstance", key.getClientXRoadInstance()),
+                equalOrNull(cb, from, "clientMemberClass", key.getClientMemberClass()),
+                equalOrNull(cb, from, "clientMemberCode", key.getClientMemberCode()),
+                equalOrNull(cb, from, "clientSubsystemCode", key.getClientSubsystemCode()),
+                equalOrNull(cb, from, "serviceXRoadInstance", key.getServiceXRoadInstance()),
+                equalOrNull(cb, from, "serviceMemberClass", key.getServiceMemberClass()),
+                equalOrNull(cb, from, "serviceMemberCode", key.getServiceMemberCode()),
+                equalOrNull(cb, from, "serviceSubsystemCode", key.getServiceSubsystemCode()),
+                equalOrNull(cb, from, "serviceCode", key.getServiceCode()),
+                equalOrNull(cb, from, "serviceVersion", key.getServiceVersion()));
+
+        List<OperationalDataRollup> result = session.createQuery(query)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+
+        return result.isEmpty() ? null : result.get(0);
+    }
+
+    private static Predicate equalOrNull(CriteriaBuilder cb, Root<OperationalDataRollup> from, String field,
+            String value) {
+        return value == null ? cb.isNull(from.get(field)) : cb.equal(from.get(field), value);
+    }
+
+    private static List<OperationalDataRollup> queryRollupsInTransaction(Session session, long periodsFrom,
+            long periodsTo, int periodLength, ClientId clientFilter, ClientId serviceProviderFilter) {
+        CriteriaBuilder cb = session.getCriteriaBuilder();
+        CriteriaQuery<OperationalDataRollup> query = cb.createQuery(OperationalDataRollup.class);
+        Root<OperationalDataRollup> from = query.from(OperationalDataRollup.class);
+
+        Predicate pred = cb.and(
+                cb.equal(from.get(PERIOD_LENGTH), periodLength),
+                cb.between(from.get(PERIOD_START), periodsFrom, periodsTo));
+
+        if (clientFilter != null) {
+            // Filter by the client in either roles (client or service provider).
+            pred = cb.and(pred, cb.or(getMemberCriterion(cb, from, clientFilter, "client"),
+                    getMemberCriterion(cb, from, clientFilter, "service")));
+        }
+
+        if (serviceProviderFilter != null) {
+            // Filter by the service provider in its respective role.
+            pred = cb.and(pred, getMemberCriterion(cb, from, serviceProviderFilter, "service"));
+        }
+
+        query.where(pred).orderBy(cb.asc(from.get(PERIOD_START)));
+
+        return mergeDuplicates(session.createQuery(query).setReadOnly(true).getResultList());
+    }
+
+    private static Predicate getMemberCriterion(CriteriaBuilder cb, Root<OperationalDataRollup> from,
+            ClientId member, String role) {
+        return cb.and(
+                cb.equal(from.get(role + "XRoadInstance"), member.getXRoadInstance()),
+                cb.equal(from.get(role + "MemberClass"), member.getMemberClass()),
+                cb.equal(from.get(role + "MemberCode"), member.getMemberCode()),
+                equalOrNull(cb, from, role + "SubsystemCode", member.getSubsystemCode()));
+    }
+
+    private static List<OperationalDataRollup> mergeDuplicates(List<OperationalDataRollup> rollups) {
+        Map<Key, OperationalDataRollup> merged = new LinkedHashMap<>();
+
+        for (OperationalDataRollup rollup : rollups) {
+            merged.merge(rollup.getKey(), rollup, (existing, duplicate) -> {
+                existing.add(duplicate);
+
+                return existing;
+            });
+        }
+
+        return new ArrayList<>(merged.values());
+    }
+}
@@ -0,0 +1,294 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.opmonitordaemon;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static ee.ria.xroad.opmonitordaemon.SlidingTimeWindowBuckets.BUCKET_COUNT;
+import static ee.ria.xroad.opmonitordaemon.SlidingTimeWindowBuckets.UNUSED;
+import static ee.ria.xroad.opmonitordaemon.SlidingTimeWindowBuckets.isInWindow;
+import static ee.ria.xroad.opmonitordaemon.SlidingTimeWindowBuckets.slot;
+
+/**
+ * A reservoir that summarizes the values of a sliding window of time in a
+ * fixed ring of time buckets instead of storing every value (see
+ * {@link SlidingTimeWindowBuckets}).
+ * Each bucket keeps the count, sum, sum of squares, minimum and maximum of
+ * its values, so the minimum, maximum, mean and standard deviation of a
+ * snapshot are exact. In addition, the values are counted in power-of-two
+ * ranges, from which the quantiles of a snapshot are estimated.
+ */
+class SlidingTimeWindowBucketReservoir implements Reservoir {
+
+    private static final int VALUE_RANGE_COUNT = Long.SIZE;
+
+    private final SlidingTimeWindowBuckets buckets;
+
+    private final long[] bucketIds = new long[BUCKET_COUNT];
+    private final long[] counts = new long[BUCKET_COUNT];
+    private final double[] sums = new double[BUCKET_COUNT];
+    private final double[] sumsOfSquares = new double[BUCKET_COUNT];
+    private final long[] mins = new long[BUCKET_COUNT];
+    private final long[] maxs = new long[BUCKET_COUNT];
+
+    // Allocated on first use, so that rarely used services do not reserve
+    // memory for all the buckets.
+    private final int[][] rangeCounts = new int[BUCKET_COUNT][];
+
+    /**
+     * Creates a reservoir with the given window of time.
+     *
+     * @param window     the window of time
+     * @param windowUnit the unit of {@code window}
+     */
+    SlidingTimeWindowBucketReservoir(long window, TimeUnit windowUnit) {
+        this(window, windowUnit, Clock.defaultClock());
+    }
+
+    /**
+     * Creates a reservoir with the given window of time and clock.
+     *
+     * @param window     the window of time
+     * @param windowUnit the unit of {@code window}
+     * @param clock      the clock used for determining the time of values
+     */
+    SlidingTimeWindowBucketReservoir(long window, TimeUnit windowUnit, Clock clock) {
+        buckets = new SlidingTimeWindowBuckets(window, windowUnit, clock);
+        Arrays.fill(bucketIds, UNUSED);
+    }
+
+    @Override
+    public synchronized int size() {
+        long current = buckets.current();
+        long size = 0;
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (isInWindow(bucketIds[i], current)) {
+                size += counts[i];
+            }
+        }
+
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public synchronized void update(long value) {
+        long current = buckets.current();
+        int slot = slot(current);
+
+        if (bucketIds[slot] != current) {
+            bucketIds[slot] = current;
+            counts[slot] = 0;
+            sums[slot] = 0;
+            sumsOfSquares[slot] = 0;
+            mins[slot] = Long.MAX_VALUE;
+            maxs[slot] = Long.MIN_VALUE;
+
+            if (rangeCounts[slot] != null) {
+                Arrays.fill(rangeCounts[slot], 0);
+            }
+        }
+
+        if (rangeCounts[slot] == null) {
+            rangeCounts[slot] = new int[VALUE_RANGE_COUNT];
+        }
+
+        counts[slot]++;
+        sums[slot] += value;
+        sumsOfSquares[slot] += (double) value * value;
+        mins[slot] = Math.min(mins[slot], value);
+        maxs[slot] = Math.max(maxs[slot], value);
+        rangeCounts[slot][range(value)]++;
+    }
+
+    @Override
+    public synchronized Snapshot getSnapshot() {
+        long current = buckets.current();
+
+        long count = 0;
+        double sum = 0;
+        double sumOfSquares = 0;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        long[] ranges = new long[VALUE_RANGE_COUNT];
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (!isInWindow(bucketIds[i], current) || counts[i] == 0) {
+                continue;
+            }
+
+            count += counts[i];
+            sum += sums[i];
+            sumOfSquares += sumsOfSquares[i];
+            min = Math.min(min, mins[i]);
+            max = Math.max(max, maxs[i]);
+
+            for (int r = 0; r < VALUE_RANGE_COUNT; r++) {
+                ranges[r] += rangeCounts[i][r];
+            }
+        }
+
+        return count == 0 ? new BucketSnapshot(0, 0, 0, 0, 0, ranges)
+                : new BucketSnapshot(count, sum, sumOfSquares, min, max, ranges);
+    }
+
+    /**
+     * @return the index of the power-of-two range the value belongs to:
+     * 0 for values less than 1, n for values in [2^(n-1), 2^n - 1]
+     */
+    static int range(long value) {
+        return value < 1 ? 0 : Long.SIZE - Long.numberOfLeadingZeros(value);
+    }
+
+    /**
+     * A snapshot of the summarized values of the window.
+     */
+    private static final class BucketSnapshot extends Snapshot {
+        private final long count;
+        private final double sum;
+        private final double sumOfSquares;
+        private final long min;
+        private final long max;
+        private final long[] ranges;
+
+        BucketSnapshot(long count, double sum, double sumOfSquares, long min, long max, long[] ranges) {
+            this.count = count;
+            this.sum = sum;
+            this.sumOfSquares = sumOfSquares;
+            this.min = min;
+            this.max = max;
+            this.ranges = ranges;
+        }
+
+        @Override
+        public double getValue(double quantile) {
+            if (quantile < 0.0 || quantile > 1.0 || Double.isNaN(quantile)) {
+                throw new IllegalArgumentException(quantile + " is not in [0..1]");
+            }
+
+            if (count == 0) {
+                return 0.0;
+            }
+
+            double rank = quantile * count;
+            long seen = 0;
+
+            for (int r = 0; r < VALUE_RANGE_COUNT; r++) {
+                if (ranges[r] == 0) {
+                    continue;
+                }
+
+                if (seen + ranges[r] >= rank) {
+                    double lower = Math.max(min, lowerBound(r));
+                    double upper = Math.min(max, upperBound(r));
+
+                    return lower + (upper - lower) * (rank - seen) / ranges[r];
+                }
+
+                seen += ranges[r];
+            }
+
+            return max;
+        }
+
+        /**
+         * @return approximated values of the window, the values of each
+         * power-of-two range are spread evenly over the range
+         */
+        @Override
+        public long[] getValues() {
+            long[] values = new long[size()];
+            int i = 0;
+
+            for (int r = 0; r < VALUE_RANGE_COUNT && i < values.length; r++) {
+                double lower = Math.max(min, lowerBound(r));
+                double upper = Math.min(max, upperBound(r));
+
+                for (long n = 0; n < ranges[r] && i < values.length; n++) {
+                    values[i++] = Math.round(lower + (upper - lower) * (n + 1) / ranges[r]);
+                }
+            }
+
+            return values;
+        }
+
+        @Override
+        public int size() {
+            return (int) Math.min(count, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public long getMax() {
+            return max;
+        }
+
+        @Override
+        public double getMean() {
+            return count == 0 ? 0.0 : sum / count;
+        }
+
+        @Override
+        public long getMin() {
+            return min;
+        }
+
+        @Override
+        public double getStdDev() {
+            if (count <= 1) {
+                return 0.0;
+            }
+
+            double variance = (sumOfSquares - sum * sum / count) / (count - 1);
+
+            return Math.sqrt(Math.max(0.0, variance));
+        }
+
+        @Override
+        public void dump(OutputStream output) {
+            try (PrintWriter out = new PrintWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8))) {
+                for (long value : getValues()) {
+                    out.printf("%d%n", value);
+                }
+            }
+        }
+
+        private static long lowerBound(int range) {
+            return range == 0 ? Long.MIN_VALUE : 1L << (range - 1);
+        }
+
+        private static long upperBound(int range) {
+            return range == 0 ? 0 : range == Long.SIZE - 1 ? Long.MAX_VALUE : (1L << range) - 1;
+        }
+    }
+}
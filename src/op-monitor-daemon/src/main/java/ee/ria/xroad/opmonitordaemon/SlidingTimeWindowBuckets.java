@@ -0,0 +1,83 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.opmonitordaemon;
+
+import com.codahale.metrics.Clock;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Divides a sliding window of time into a fixed number of buckets that are
+ * reused in a ring. A bucket is identified by its sequence number since the
+ * start of the clock, and its slot in the ring is the sequence number modulo
+ * the number of buckets. The window consists of the current bucket and the
+ * preceding buckets, so the oldest events may be up to one bucket older
+ * than the window when they expire.
+ */
+final class SlidingTimeWindowBuckets {
+
+    /** The number of buckets the window is divided into. */
+    static final int BUCKET_COUNT = 20;
+
+    /** The identifier of a bucket slot that has not been used yet. */
+    static final long UNUSED = Long.MIN_VALUE;
+
+    private final long bucketNanos;
+    private final Clock clock;
+
+    /**
+     * @param window     the window of time
+     * @param windowUnit the unit of {@code window}
+     * @param clock      the clock used for determining the current bucket
+     */
+    SlidingTimeWindowBuckets(long window, TimeUnit windowUnit, Clock clock) {
+        this.bucketNanos = Math.max(1, windowUnit.toNanos(window) / BUCKET_COUNT);
+        this.clock = clock;
+    }
+
+    /**
+     * @return the sequence number of the current bucket
+     */
+    long current() {
+        return clock.getTick() / bucketNanos;
+    }
+
+    /**
+     * @param bucket the sequence number of a bucket
+     * @return the slot of the bucket in the ring
+     */
+    static int slot(long bucket) {
+        return (int) Math.floorMod(bucket, (long) BUCKET_COUNT);
+    }
+
+    /**
+     * @param bucket  the sequence number of a bucket
+     * @param current the sequence number of the current bucket
+     * @return true if the bucket belongs to the window ending with the current bucket
+     */
+    static boolean isInWindow(long bucket, long current) {
+        return bucket != UNUSED && bucket <= current && bucket > current - BUCKET_COUNT;
+    }
+}
@@ -24,15 +24,24 @@
  */
 package ee.ria.xroad.opmonitordaemon;
 
+import com.codahale.metrics.Clock;
 import com.codahale.metrics.Counter;
-import com.codahale.metrics.Reservoir;
-import com.codahale.metrics.SlidingTimeWindowReservoir;
 
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 
+import static ee.ria.xroad.opmonitordaemon.SlidingTimeWindowBuckets.BUCKET_COUNT;
+import static ee.ria.xroad.opmonitordaemon.SlidingTimeWindowBuckets.UNUSED;
+import static ee.ria.xroad.opmonitordaemon.SlidingTimeWindowBuckets.isInWindow;
+import static ee.ria.xroad.opmonitordaemon.SlidingTimeWindowBuckets.slot;
+
 /**
- * A counter metric that uses the sliding time window reservoir internally to
+ * A counter metric that counts the events of a sliding window of time to
  * support periodic and configurable resetting.
+ * The events are counted in a fixed ring of time buckets, so both
+ * incrementing the counter and reading the count take constant time and
+ * memory regardless of the number of events (see
+ * {@link SlidingTimeWindowBuckets}).
  * This counter does not support manually decrementing the count (the dec()
  * methods raise a runtime exception).
  * We extend Counter instead of implementing the Metric and Counting
@@ -41,7 +50,10 @@ import java.util.concurrent.TimeUnit;
  */
 class SlidingTimeWindowCounter extends Counter {
 
-    private final Reservoir reservoir;
+    private final SlidingTimeWindowBuckets buckets;
+
+    private final long[] bucketIds = new long[BUCKET_COUNT];
+    private final long[] counts = new long[BUCKET_COUNT];
 
     /**
      * Creates a counter with the given window of time.
@@ -50,27 +62,54 @@ class SlidingTimeWindowCounter extends Counter {
      * @param windowUnit the unit of {@code window}
      */
     SlidingTimeWindowCounter(long window, TimeUnit windowUnit) {
-        reservoir = new SlidingTimeWindowReservoir(window, windowUnit);
+        this(window, windowUnit, Clock.defaultClock());
+    }
+
+    /**
+     * Creates a counter with the given window of time and clock.
+     *
+     * @param window     the window of time
+     * @param windowUnit the unit of {@code window}
+     * @param clock      the clock used for determining the time of events
+     */
+    SlidingTimeWindowCounter(long window, TimeUnit windowUnit, Clock clock) {
+        buckets = new SlidingTimeWindowBuckets(window, windowUnit, clock);
+        Arrays.fill(bucketIds, UNUSED);
     }
 
     /**
-     * @return the snapshot size of the sliding time window reservoir.
+     * @return the number of events in the sliding time window.
      */
     @Override
-    public long getCount() {
-        return reservoir.getSnapshot().size();
+    public synchronized long getCount() {
+        long current = buckets.current();
+        long count = 0;
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (isInWindow(bucketIds[i], current)) {
+                count += counts[i];
+            }
+        }
+
+        return count;
     }
 
     @Override
     public void inc() {
-        reservoir.update(1L);
+        inc(1L);
     }
 
     @Override
-    public void inc(long n) {
-        for (int i = 0; i < n; ++i) {
-            inc();
+    public synchronized void inc(long n) {
+        long current = buckets.current();
+        int slot = slot(current);
+
+        if (bucketIds[slot] != current) {
+            bucketIds[slot] = current;
+            counts[slot] = 0;
         }
+
+        counts[slot] += n;
     }
 
     @Override
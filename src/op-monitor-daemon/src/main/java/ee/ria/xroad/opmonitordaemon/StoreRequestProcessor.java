@@ -30,10 +30,12 @@ import com.codahale.metrics.MetricRegistry;
 import com.google.gson.Gson;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang3.StringUtils;
 
 import javax.servlet.http.HttpServletRequest;
 
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 
@@ -65,12 +67,20 @@ class StoreRequestProcessor {
      * @throws Exception in case of any errors
      */
     void process() throws Exception {
-        String rawJson = IOUtils.toString(servletRequest.getInputStream(),
-                StandardCharsets.UTF_8);
+        List<OperationalDataRecord> records;
 
-        log.trace("Incoming JSON: {}", rawJson);
+        if (log.isTraceEnabled()) {
+            String rawJson = IOUtils.toString(servletRequest.getInputStream(),
+                    StandardCharsets.UTF_8);
 
-        List<OperationalDataRecord> records = prepareRawStoreData(rawJson);
+            log.trace("Incoming JSON: {}", rawJson);
+
+            records = prepareRawStoreData(new StringReader(rawJson));
+        } else {
+            // Parse the records straight from the request without holding the raw JSON in memory
+            records = prepareRawStoreData(new InputStreamReader(
+                    servletRequest.getInputStream(), StandardCharsets.UTF_8));
+        }
 
         log.debug("Process {} record{}", records.size(),
                 records.size() == 1 ? "" : "s");
@@ -83,12 +93,7 @@ class StoreRequestProcessor {
     // Get usable operational data to be stored. If no such data is found,
     // send an error message right away.
     private static List<OperationalDataRecord> prepareRawStoreData(
-            String rawJsonData) throws Exception {
-        if (StringUtils.isBlank(rawJsonData)) {
-            throw new Exception(
-                    "No data was found in the request to store data");
-        }
-
+            Reader rawJsonData) throws Exception {
         OperationalDataRecords records;
 
         try {
@@ -97,6 +102,12 @@ class StoreRequestProcessor {
             throw new Exception("Received invalid request", e);
         }
 
+        // Gson returns null for empty or blank input
+        if (records == null) {
+            throw new Exception(
+                    "No data was found in the request to store data");
+        }
+
         return records.getRecords();
     }
 
@@ -0,0 +1,73 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.opmonitordaemon;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the duration histogram of the operational data rollups.
+ */
+public class DurationHistogramTest {
+
+    @Test
+    public void countDurationsInBuckets() {
+        DurationHistogram histogram = new DurationHistogram();
+        histogram.add(0);
+        histogram.add(10);
+        histogram.add(11);
+        histogram.add(100000);
+
+        assertEquals("2,1,0,0,0,0,0,0,0,0,0,1", histogram.encode());
+    }
+
+    @Test
+    public void encodeAndDecodeCounts() {
+        DurationHistogram histogram = DurationHistogram.decode("1,2,3,4,5,6,7,8,9,10,11,12");
+        histogram.add(DurationHistogram.decode("1,1,1,1,1,1,1,1,1,1,1,1"));
+
+        assertEquals("2,3,4,5,6,7,8,9,10,11,12,13", histogram.encode());
+    }
+
+    @Test
+    public void estimatePercentiles() {
+        DurationHistogram histogram = new DurationHistogram();
+
+        for (int i = 0; i < 90; i++) {
+            histogram.add(5);
+        }
+
+        for (int i = 0; i < 10; i++) {
+            histogram.add(200);
+        }
+
+        assertEquals(0.0, new DurationHistogram().percentile(0.5, 0, 0), 0.0);
+        // Interpolated within [min, 10] and [100, max].
+        assertEquals(7.78, histogram.percentile(0.5, 5, 200), 0.01);
+        assertEquals(150.0, histogram.percentile(0.95, 5, 200), 0.0);
+        assertEquals(200.0, histogram.percentile(1, 5, 200), 0.0);
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.opmonitordaemon;
+
+import ee.ria.xroad.common.opmonitoring.OpMonitoringData.SecurityServerType;
+
+import com.codahale.metrics.MetricRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static ee.ria.xroad.opmonitordaemon.HealthDataMetricsUtil.findCounter;
+import static ee.ria.xroad.opmonitordaemon.HealthDataMetricsUtil.findHistogram;
+import static ee.ria.xroad.opmonitordaemon.HealthDataMetricsUtil.getRequestCounterName;
+import static ee.ria.xroad.opmonitordaemon.HealthDataMetricsUtil.getRequestDurationName;
+
+/**
+ * Health data metrics update and query throughput test program.
+ */
+@Slf4j
+public final class HealthDataMetricsPerformanceTest {
+
+    private static final int SERVICES = 10000;
+
+    // number of records processed per round and rounds per measurement
+    private static final int BATCH_SIZE = 1000;
+    private static final int ROUNDS = 1000;
+
+    private static final int MAX_DURATION_MILLIS = 5000;
+    private static final int MAX_MESSAGE_SIZE = 1_000_000;
+    private static final int FAILURE_PERCENT = 5;
+
+    private static final int NANOS_IN_MILLI = 1_000_000;
+
+    private HealthDataMetricsPerformanceTest() {
+    }
+
+    /**
+     * Main program access point.
+     * @param args command-line arguments
+     */
+    public static void main(String[] args) {
+        log.info("Starting health data metrics performance test with {} services...", SERVICES);
+
+        MetricRegistry registry = new MetricRegistry();
+        Random random = new Random(SERVICES);
+
+        List<List<OperationalDataRecord>> batches = new ArrayList<>();
+        for (int i = 0; i < ROUNDS; ++i) {
+            List<OperationalDataRecord> batch = new ArrayList<>(BATCH_SIZE);
+
+            for (int j = 0; j < BATCH_SIZE; ++j) {
+                batch.add(createRecord(random, (i * BATCH_SIZE + j) % SERVICES));
+            }
+
+            batches.add(batch);
+        }
+
+        // warm up, also registers the metrics of all the services
+        run(registry, batches, false);
+        run(registry, batches, true);
+
+        log.info("Registry contains {} metrics", registry.getMetrics().size());
+
+        long start = System.nanoTime();
+        long count = 0;
+
+        for (int i = 0; i < SERVICES; ++i) {
+            OperationalDataRecord rec = createRecord(random, i);
+
+            count += findCounter(registry, getRequestCounterName(HealthDataMetricsUtil.getServiceId(rec), true))
+                    .getCount();
+            findHistogram(registry, getRequestDurationName(HealthDataMetricsUtil.getServiceId(rec)))
+                    .getSnapshot().getStdDev();
+        }
+
+        log.info("Queried the statistics of {} services ({} requests) in {} ms", SERVICES, count,
+                (System.nanoTime() - start) / NANOS_IN_MILLI);
+    }
+
+    private static void run(MetricRegistry registry, List<List<OperationalDataRecord>> batches, boolean report) {
+        long start = System.nanoTime();
+
+        for (List<OperationalDataRecord> batch : batches) {
+            HealthDataMetrics.processRecords(registry, batch);
+        }
+
+        long nanos = System.nanoTime() - start;
+
+        if (report) {
+            long records = (long) batches.size() * BATCH_SIZE;
+
+            log.info("Processed {} records in {} ms, {} records/s", records, nanos / NANOS_IN_MILLI,
+                    records * 1000L * NANOS_IN_MILLI / Math.max(nanos, 1));
+        }
+    }
+
+    private static OperationalDataRecord createRecord(Random random, int service) {
+        long now = System.currentTimeMillis();
+
+        OperationalDataRecord rec = new OperationalDataRecord();
+        rec.setSecurityServerType(SecurityServerType.PRODUCER.getTypeString());
+        rec.setServiceXRoadInstance("EE");
+        rec.setServiceMemberClass("GOV");
+        rec.setServiceMemberCode("member" + service % 100);
+        rec.setServiceSubsystemCode("subsystem");
+        rec.setServiceCode("service" + service);
+        rec.setServiceType("WSDL");
+        rec.setRequestInTs(now - random.nextInt(MAX_DURATION_MILLIS));
+        rec.setResponseOutTs(now);
+        rec.setRequestSize((long) random.nextInt(MAX_MESSAGE_SIZE));
+        rec.setResponseSize((long) random.nextInt(MAX_MESSAGE_SIZE));
+        rec.setSucceeded(random.nextInt(100) >= FAILURE_PERCENT);
+
+        return rec;
+    }
+}
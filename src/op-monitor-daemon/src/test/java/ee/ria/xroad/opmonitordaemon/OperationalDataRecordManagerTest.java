@@ -376,4 +376,19 @@ public class OperationalDataRecordManagerTest extends BaseTestUsingDB {
         assertEquals(("2" + LONG_STRING).substring(0, 255),
                 updatedResultRecord.getMessageIssue());
     }
+
+    @Test
+    public void storeRecordsInMultipleStatements() throws Exception {
+        // The test configuration inserts up to 100 records with a single statement
+        storeFullOperationalDataRecords(250, 1474968965L);
+
+        OperationalDataRecords result = queryAllRecords();
+
+        assertEquals(250, result.size());
+        assertEquals(250, result.getRecords().stream().map(OperationalDataRecord::getId).distinct().count());
+
+        for (OperationalDataRecord rec : result.getRecords()) {
+            assertEquals(Long.valueOf(1474968965L), rec.getMonitoringDataTs());
+        }
+    }
 }
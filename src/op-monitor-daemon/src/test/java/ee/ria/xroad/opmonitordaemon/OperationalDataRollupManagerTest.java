@@ -0,0 +1,204 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.opmonitordaemon;
+
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.opmonitoring.OpMonitoringSystemProperties;
+
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static ee.ria.xroad.opmonitordaemon.OpMonitorDaemonDatabaseCtx.doInTransaction;
+import static ee.ria.xroad.opmonitordaemon.OperationalDataRecordManager.storeRecords;
+import static ee.ria.xroad.opmonitordaemon.OperationalDataRollupManager.HOUR;
+import static ee.ria.xroad.opmonitordaemon.OperationalDataRollupManager.MINUTE;
+import static ee.ria.xroad.opmonitordaemon.OperationalDataRollupManager.queryAggregates;
+import static ee.ria.xroad.opmonitordaemon.OperationalDataRollupManager.queryRollups;
+import static ee.ria.xroad.opmonitordaemon.OperationalDataTestUtil.GSON;
+import static ee.ria.xroad.opmonitordaemon.OperationalDataTestUtil.formatFullOperationalDataAsJson;
+import static ee.ria.xroad.opmonitordaemon.OperationalDataTestUtil.storeFullOperationalDataRecord;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases related to the per-minute and per-hour rollups of the
+ * operational monitoring data.
+ */
+public class OperationalDataRollupManagerTest extends BaseTestUsingDB {
+
+    private static final long HOUR_START = 1474966800L;
+
+    /**
+     * Cleanup the stored records and rollups before each test.
+     * @throws Exception if an error occurs.
+     */
+    @Before
+    public void beforeTest() throws Exception {
+        doInTransaction(session -> {
+            session.createQuery("delete OperationalDataRecord").executeUpdate();
+
+            return session.createQuery("delete OperationalDataRollup").executeUpdate();
+        });
+
+        OperationalDataRollupManager.setMaxAggregatesInPayload(
+                OpMonitoringSystemProperties.getOpMonitorMaxRecordsInPayload());
+    }
+
+    @Test
+    public void updateRollupsWhenStoringRecords() throws Exception {
+        storeRecords(createRecords(3, 40L, false), HOUR_START + 10);
+        storeRecords(createRecords(2, 20L, true), HOUR_START + 50);
+        storeRecords(createRecords(1, 1000L, true), HOUR_START + 70);
+
+        List<OperationalDataRollup> minutes = queryRollups(HOUR_START, HOUR_START + 100, MINUTE, null, null);
+
+        assertEquals(2, minutes.size());
+
+        OperationalDataRollup first = minutes.get(0);
+        assertEquals(HOUR_START, first.getPeriodStart());
+        assertEquals(MINUTE, first.getPeriodLength());
+        assertEquals(5, first.getRequestCount());
+        assertEquals(3, first.getFailedCount());
+        assertEquals(160, first.getDurationSum());
+        assertEquals(20, first.getDurationMin());
+        assertEquals(40, first.getDurationMax());
+        assertEquals("Client", first.getSecurityServerType());
+        assertEquals("xroadGetRandom", first.getServiceCode());
+
+        assertEquals(HOUR_START + MINUTE, minutes.get(1).getPeriodStart());
+        assertEquals(1, minutes.get(1).getRequestCount());
+
+        List<OperationalDataRollup> hours = queryRollups(HOUR_START + 30, HOUR_START + 30, HOUR, null, null);
+
+        assertEquals(1, hours.size());
+        assertEquals(HOUR_START, hours.get(0).getPeriodStart());
+        assertEquals(6, hours.get(0).getRequestCount());
+        assertEquals(1000, hours.get(0).getDurationMax());
+    }
+
+    @Test
+    public void mergeDuplicateRollups() throws Exception {
+        OperationalDataRecord record = createRecords(1, 100L, true).get(0);
+        record.setMonitoringDataTs(HOUR_START);
+
+        OperationalDataRollup.Key key = OperationalDataRollup.Key.of(record, MINUTE);
+        List<OperationalDataRecord> records = new ArrayList<>();
+        records.add(record);
+
+        // Concurrent store requests may create several rows for the same rollup.
+        doInTransaction(session -> {
+            session.save(OperationalDataRollup.of(key, records));
+            session.save(OperationalDataRollup.of(key, records));
+
+            return null;
+        });
+
+        List<OperationalDataRollup> result = queryRollups(HOUR_START, HOUR_START, MINUTE, null, null);
+
+        assertEquals(1, result.size());
+        assertEquals(2, result.get(0).getRequestCount());
+        assertEquals(200, result.get(0).getDurationSum());
+    }
+
+    @Test
+    public void filterRollupsByClientAndServiceProvider() throws Exception {
+        ClientId client = ClientId.create("XTEE-CI-XM", "GOV", "00000001", "System1");
+        ClientId otherClient = ClientId.create("XTEE-CI-XM", "COM", "00000002");
+        ClientId serviceProvider = ClientId.create("XTEE-CI-XM", "GOV", "00000000", "Center");
+
+        storeFullOperationalDataRecord(HOUR_START, client, serviceProvider);
+        storeFullOperationalDataRecord(HOUR_START, otherClient, serviceProvider);
+        storeFullOperationalDataRecord(HOUR_START, serviceProvider, otherClient);
+
+        assertEquals(3, queryRollups(HOUR_START, HOUR_START, MINUTE, null, null).size());
+        assertEquals(1, queryRollups(HOUR_START, HOUR_START, MINUTE, client, null).size());
+        assertEquals(2, queryRollups(HOUR_START, HOUR_START, MINUTE, otherClient, null).size());
+        assertEquals(2, queryRollups(HOUR_START, HOUR_START, MINUTE, null, serviceProvider).size());
+        assertEquals(1, queryRollups(HOUR_START, HOUR_START, MINUTE, otherClient, serviceProvider).size());
+        assertEquals(0, queryRollups(HOUR_START, HOUR_START, MINUTE, client, otherClient).size());
+    }
+
+    @Test
+    public void limitAggregatesByPeriod() throws Exception {
+        ClientId client = ClientId.create("XTEE-CI-XM", "GOV", "00000001", "System1");
+        ClientId serviceProvider = ClientId.create("XTEE-CI-XM", "GOV", "00000000", "Center");
+
+        storeFullOperationalDataRecord(HOUR_START, client, serviceProvider);
+        storeFullOperationalDataRecord(HOUR_START, serviceProvider, client);
+        storeFullOperationalDataRecord(HOUR_START + MINUTE, client, serviceProvider);
+
+        OperationalDataRollupManager.setMaxAggregatesInPayload(1);
+
+        // The overflow aggregates of the same period are included.
+        OperationalDataAggregates result = queryAggregates(HOUR_START, HOUR_START + 2 * MINUTE, MINUTE, null, null);
+
+        assertEquals(2, result.size());
+        assertEquals(HOUR_START + MINUTE, result.getNextRecordsFrom().longValue());
+
+        result = queryAggregates(result.getNextRecordsFrom(), HOUR_START + 2 * MINUTE, MINUTE, null, null);
+
+        assertEquals(1, result.size());
+        assertNull(result.getNextRecordsFrom());
+
+        OperationalDataAggregate aggregate = result.getAggregates().get(0);
+        assertEquals(1, aggregate.getRequestCount());
+        assertEquals(0.0, aggregate.getErrorRate(), 0.0);
+        assertEquals(10000000L, aggregate.getDurationMax());
+        assertTrue(aggregate.getDurationP99() <= aggregate.getDurationMax());
+    }
+
+    @Test
+    public void cleanOutdatedRollups() throws Exception {
+        storeRecords(createRecords(1, 10L, true), HOUR_START);
+        storeRecords(createRecords(1, 10L, true), HOUR_START + HOUR);
+
+        OperationalDataRecordCleaner.cleanRecords(new DateTime((HOUR_START + HOUR) * 1000L));
+
+        List<OperationalDataRollup> result = queryRollups(HOUR_START, HOUR_START + HOUR, MINUTE, null, null);
+
+        assertEquals(1, result.size());
+        assertEquals(HOUR_START + HOUR, result.get(0).getPeriodStart());
+    }
+
+    private static List<OperationalDataRecord> createRecords(int count, long duration, boolean succeeded) {
+        List<OperationalDataRecord> records = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            OperationalDataRecord record = GSON.fromJson(formatFullOperationalDataAsJson(),
+                    OperationalDataRecord.class);
+            record.setResponseOutTs(record.getRequestInTs() + duration);
+            record.setSucceeded(succeeded);
+
+            records.add(record);
+        }
+
+        return records;
+    }
+}
@@ -0,0 +1,167 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.opmonitordaemon;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Snapshot;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the sliding time window counter and histogram reservoir.
+ */
+public class SlidingTimeWindowMetricsTest {
+
+    private static final long WINDOW_SECONDS = 60;
+
+    private static final double DELTA = 0.0001;
+
+    @Test
+    public void counterExpiresOldEvents() {
+        TestClock clock = new TestClock();
+        SlidingTimeWindowCounter counter = new SlidingTimeWindowCounter(WINDOW_SECONDS, TimeUnit.SECONDS, clock);
+
+        assertEquals(0, counter.getCount());
+
+        counter.inc();
+        clock.advance(WINDOW_SECONDS / 2);
+        counter.inc(2);
+
+        assertEquals(3, counter.getCount());
+
+        clock.advance(WINDOW_SECONDS / 2);
+
+        assertEquals(2, counter.getCount());
+
+        clock.advance(WINDOW_SECONDS / 2);
+
+        assertEquals(0, counter.getCount());
+
+        // Slots of the ring that are reused must not keep their old counts.
+        clock.advance(WINDOW_SECONDS * 2);
+        counter.inc();
+
+        assertEquals(1, counter.getCount());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void counterCannotBeDecremented() {
+        new SlidingTimeWindowCounter(WINDOW_SECONDS, TimeUnit.SECONDS).dec();
+    }
+
+    @Test
+    public void reservoirComputesExactStatistics() {
+        TestClock clock = new TestClock();
+        SlidingTimeWindowBucketReservoir reservoir =
+                new SlidingTimeWindowBucketReservoir(WINDOW_SECONDS, TimeUnit.SECONDS, clock);
+
+        reservoir.update(2);
+        reservoir.update(4);
+        clock.advance(WINDOW_SECONDS / 2);
+        reservoir.update(4);
+        reservoir.update(4);
+        reservoir.update(5);
+        reservoir.update(5);
+        reservoir.update(7);
+        reservoir.update(9);
+
+        Snapshot snapshot = reservoir.getSnapshot();
+
+        assertEquals(8, reservoir.size());
+        assertEquals(8, snapshot.size());
+        assertEquals(2, snapshot.getMin());
+        assertEquals(9, snapshot.getMax());
+        assertEquals(5.0, snapshot.getMean(), DELTA);
+        assertEquals(Math.sqrt(32.0 / 7), snapshot.getStdDev(), DELTA);
+
+        clock.advance(WINDOW_SECONDS / 2);
+        snapshot = reservoir.getSnapshot();
+
+        assertEquals(6, snapshot.size());
+        assertEquals(4, snapshot.getMin());
+        assertEquals(9, snapshot.getMax());
+        assertEquals(34.0 / 6, snapshot.getMean(), DELTA);
+    }
+
+    @Test
+    public void reservoirEstimatesQuantiles() {
+        TestClock clock = new TestClock();
+        SlidingTimeWindowBucketReservoir reservoir =
+                new SlidingTimeWindowBucketReservoir(WINDOW_SECONDS, TimeUnit.SECONDS, clock);
+
+        for (int i = 1; i <= 1000; i++) {
+            reservoir.update(i);
+        }
+
+        Snapshot snapshot = reservoir.getSnapshot();
+
+        assertEquals(1, snapshot.getValue(0.0), DELTA);
+        assertEquals(1000, snapshot.getValue(1.0), DELTA);
+
+        // The estimates are accurate within the power-of-two range of the value.
+        assertTrue(Math.abs(snapshot.getMedian() - 500) < 256);
+        assertTrue(Math.abs(snapshot.get99thPercentile() - 990) < 512);
+        assertEquals(1000, snapshot.getValues().length);
+    }
+
+    @Test
+    public void emptyReservoirReturnsZeros() {
+        Snapshot snapshot = new SlidingTimeWindowBucketReservoir(WINDOW_SECONDS, TimeUnit.SECONDS).getSnapshot();
+
+        assertEquals(0, snapshot.size());
+        assertEquals(0, snapshot.getMin());
+        assertEquals(0, snapshot.getMax());
+        assertEquals(0.0, snapshot.getMean(), DELTA);
+        assertEquals(0.0, snapshot.getStdDev(), DELTA);
+        assertEquals(0.0, snapshot.getMedian(), DELTA);
+    }
+
+    @Test
+    public void valueRanges() {
+        assertEquals(0, SlidingTimeWindowBucketReservoir.range(-1));
+        assertEquals(0, SlidingTimeWindowBucketReservoir.range(0));
+        assertEquals(1, SlidingTimeWindowBucketReservoir.range(1));
+        assertEquals(2, SlidingTimeWindowBucketReservoir.range(2));
+        assertEquals(2, SlidingTimeWindowBucketReservoir.range(3));
+        assertEquals(Long.SIZE - 1, SlidingTimeWindowBucketReservoir.range(Long.MAX_VALUE));
+    }
+
+    private static final class TestClock extends Clock {
+        private long tick = TimeUnit.DAYS.toNanos(1);
+
+        void advance(long seconds) {
+            tick += TimeUnit.SECONDS.toNanos(seconds);
+        }
+
+        @Override
+        public long getTick() {
+            return tick;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.opmonitordaemon;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static ee.ria.xroad.opmonitordaemon.OpMonitorDaemonDatabaseCtx.doInTransaction;
+import static ee.ria.xroad.opmonitordaemon.OperationalDataTestUtil.GSON;
+import static ee.ria.xroad.opmonitordaemon.OperationalDataTestUtil.formatFullOperationalDataAsJson;
+import static ee.ria.xroad.opmonitordaemon.OperationalDataTestUtil.prepareDatabase;
+
+/**
+ * Operational data store request ingestion rate test program. Store requests
+ * are sent by several security servers in parallel, each thread plays one
+ * security server. Compares storing the records through the Hibernate session
+ * with the multi-row insert used by {@link OperationalDataRecordManager}.
+ * Uses the in-memory test database, run from the op-monitor-daemon directory.
+ */
+@Slf4j
+public final class StoreRequestPerformanceTest {
+
+    private static final int DEFAULT_THREADS = 4;
+
+    // records per store request and requests per thread
+    private static final int RECORDS_IN_REQUEST = 100;
+    private static final int REQUESTS = 200;
+
+    private static final int NANOS_IN_MILLI = 1_000_000;
+
+    private StoreRequestPerformanceTest() {
+    }
+
+    /**
+     * Main program access point.
+     * @param args command-line arguments, the optional first argument is the number of threads
+     * @throws Exception if an error occurs
+     */
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_THREADS;
+
+        log.info("Starting store request performance test with {} threads...", threads);
+
+        prepareDatabase();
+
+        String request = createRequest();
+
+        // warm up
+        run(threads, request, false, false);
+        run(threads, request, true, false);
+
+        run(threads, request, false, true);
+        run(threads, request, true, true);
+    }
+
+    private static void run(int threads, String request, boolean session, boolean report) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> results = new ArrayList<>();
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < threads; i++) {
+            results.add(executor.submit(() -> {
+                for (int j = 0; j < REQUESTS; j++) {
+                    List<OperationalDataRecord> records = GSON.fromJson(new StringReader(request),
+                            OperationalDataRecords.class).getRecords();
+
+                    if (session) {
+                        storeWithSession(records, j);
+                    } else {
+                        OperationalDataRecordManager.storeRecords(records, j);
+                    }
+                }
+
+                return null;
+            }));
+        }
+
+        for (Future<?> result : results) {
+            result.get();
+        }
+
+        long nanos = System.nanoTime() - start;
+
+        executor.shutdown();
+
+        if (report) {
+            long records = (long) threads * REQUESTS * RECORDS_IN_REQUEST;
+
+            log.info("{}: stored {} records in {} ms, {} records/s", session ? "Session" : "Multi-row insert",
+                    records, nanos / NANOS_IN_MILLI, records * 1000L * NANOS_IN_MILLI / Math.max(nanos, 1));
+        }
+    }
+
+    // The way records were stored before the multi-row insert
+    private static void storeWithSession(List<OperationalDataRecord> records, long timestamp) throws Exception {
+        doInTransaction(session -> {
+            int storedCount = 0;
+
+            for (OperationalDataRecord record : records) {
+                record.setMonitoringDataTs(timestamp);
+                session.save(record);
+
+                if (++storedCount % RECORDS_IN_REQUEST == 0) {
+                    session.flush();
+                    session.clear();
+                }
+            }
+
+            return null;
+        });
+    }
+
+    private static String createRequest() {
+        StringJoiner records = new StringJoiner(",", "{\"records\":[", "]}");
+
+        for (int i = 0; i < RECORDS_IN_REQUEST; i++) {
+            records.add(formatFullOperationalDataAsJson());
+        }
+
+        return records.toString();
+    }
+}
@@ -0,0 +1,243 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.niis.xroad.restapi.cache;
+
+import ee.ria.xroad.common.CodedException;
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.conf.globalconf.GlobalGroupInfo;
+import ee.ria.xroad.common.conf.globalconf.MemberInfo;
+import ee.ria.xroad.common.identifier.ClientId;
+
+import lombok.extern.slf4j.Slf4j;
+import org.niis.xroad.restapi.facade.GlobalConfFacade;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory search index of the members, subsystems and global groups in global configuration.
+ * Searching global configuration directly converts all the members on every call, which gets
+ * slow with tens of thousands of members.
+ *
+ * The index is rebuilt when the shared parameters files change, and at least once per
+ * configuration client update interval, so it never lags behind the cached global configuration.
+ * If the shared parameters files cannot be checked, the index is rebuilt on every call.
+ */
+@Slf4j
+@Component
+public class GlobalConfMemberIndex {
+
+    private final GlobalConfFacade globalConfFacade;
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * GlobalConfMemberIndex constructor
+     * @param globalConfFacade
+     */
+    @Autowired
+    public GlobalConfMemberIndex(GlobalConfFacade globalConfFacade) {
+        this.globalConfFacade = globalConfFacade;
+    }
+
+    /**
+     * @return all members and subsystems in global configuration
+     */
+    public List<MemberInfo> getMembers() {
+        List<Entry> entries = getSnapshot().members;
+        List<MemberInfo> members = new ArrayList<>(entries.size());
+        entries.forEach(entry -> members.add(entry.info));
+        return members;
+    }
+
+    /**
+     * Find members and subsystems whose fields contain the search terms, ignoring case.
+     * Null or empty search term is considered a match
+     * @param name search term for member name
+     * @param instance search term for instance
+     * @param memberClass search term for member class
+     * @param memberCode search term for member code
+     * @param subsystemCode search term for subsystem code
+     * @param showMembers include members (without subsystemCode) in the results
+     * @return matching members and subsystems
+     */
+    public List<MemberInfo> findMembers(String name, String instance, String memberClass, String memberCode,
+            String subsystemCode, boolean showMembers) {
+        String nameTerm = toSearchTerm(name);
+        String instanceTerm = toSearchTerm(instance);
+        String memberClassTerm = toSearchTerm(memberClass);
+        String memberCodeTerm = toSearchTerm(memberCode);
+        String subsystemCodeTerm = toSearchTerm(subsystemCode);
+
+        List<MemberInfo> result = new ArrayList<>();
+        for (Entry entry : getSnapshot().members) {
+            if ((showMembers || entry.subsystemCode != null)
+                    && matches(entry.name, nameTerm)
+                    && matches(entry.instance, instanceTerm)
+                    && matches(entry.memberClass, memberClassTerm)
+                    && matches(entry.memberCode, memberCodeTerm)
+                    && matches(entry.subsystemCode, subsystemCodeTerm)) {
+                result.add(entry.info);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Find global groups of the instances containing the search term.
+     * @param instance search term for instance. Null or empty value is considered a match
+     * @return matching global groups
+     */
+    public List<GlobalGroupInfo> findGlobalGroups(String instance) {
+        String instanceTerm = toSearchTerm(instance);
+
+        List<GlobalGroupInfo> result = new ArrayList<>();
+        for (GlobalGroupInfo group : getSnapshot().globalGroups) {
+            if (instanceTerm == null || group.getId().getXRoadInstance().contains(instance)) {
+                result.add(group);
+            }
+        }
+        return result;
+    }
+
+    private Snapshot getSnapshot() {
+        String version = getVersion();
+        Snapshot current = snapshot;
+
+        if (current == null || version == null || !version.equals(current.version) || current.isExpired()) {
+            current = buildSnapshot(version);
+            snapshot = current;
+        }
+
+        return current;
+    }
+
+    private Snapshot buildSnapshot(String version) {
+        long start = System.currentTimeMillis();
+
+        List<MemberInfo> memberInfos = globalConfFacade.getMembers();
+        List<Entry> members = new ArrayList<>(memberInfos.size());
+        memberInfos.forEach(memberInfo -> members.add(new Entry(memberInfo)));
+
+        List<GlobalGroupInfo> globalGroups;
+        try {
+            globalGroups = globalConfFacade.getGlobalGroups();
+        } catch (CodedException e) {
+            // core throws CodedException if no global groups are found
+            globalGroups = Collections.emptyList();
+        }
+
+        log.debug("Indexed {} global members and {} global groups in {} ms", members.size(),
+                globalGroups.size(), System.currentTimeMillis() - start);
+
+        return new Snapshot(version, Collections.unmodifiableList(members),
+                globalGroups != null ? new ArrayList<>(globalGroups) : Collections.emptyList());
+    }
+
+    /**
+     * @return identifier of the current shared parameters files, or null if they cannot be checked
+     */
+    private String getVersion() {
+        List<String> instances = globalConfFacade.getInstanceIdentifiers();
+        if (instances == null || instances.isEmpty()) {
+            return null;
+        }
+
+        StringBuilder version = new StringBuilder();
+        for (String instance : instances) {
+            Path file = globalConfFacade.getSharedParametersFile(instance);
+            if (file == null) {
+                return null;
+            }
+            try {
+                version.append(instance).append('=').append(Files.getLastModifiedTime(file).toMillis())
+                        .append(';');
+            } catch (IOException e) {
+                log.debug("Cannot check modification time of {}", file, e);
+                return null;
+            }
+        }
+        return version.toString();
+    }
+
+    private static String toSearchTerm(String value) {
+        return StringUtils.isEmpty(value) ? null : value.toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean matches(String value, String term) {
+        return term == null || (value != null && value.contains(term));
+    }
+
+    private static String toLowerCase(String value) {
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Entry {
+        private final MemberInfo info;
+        private final String name;
+        private final String instance;
+        private final String memberClass;
+        private final String memberCode;
+        private final String subsystemCode;
+
+        Entry(MemberInfo info) {
+            ClientId id = info.getId();
+            this.info = info;
+            this.name = toLowerCase(info.getName());
+            this.instance = toLowerCase(id.getXRoadInstance());
+            this.memberClass = toLowerCase(id.getMemberClass());
+            this.memberCode = toLowerCase(id.getMemberCode());
+            this.subsystemCode = toLowerCase(id.getSubsystemCode());
+        }
+    }
+
+    private static final class Snapshot {
+        private final String version;
+        private final List<Entry> members;
+        private final List<GlobalGroupInfo> globalGroups;
+        private final long expiresAt;
+
+        Snapshot(String version, List<Entry> members, List<GlobalGroupInfo> globalGroups) {
+            this.version = version;
+            this.members = members;
+            this.globalGroups = globalGroups;
+            this.expiresAt = System.currentTimeMillis()
+                    + TimeUnit.SECONDS.toMillis(SystemProperties.getConfigurationClientUpdateIntervalSeconds());
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.niis.xroad.restapi.cache;
+
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.signer.protocol.dto.CertificateInfo;
+import ee.ria.xroad.signer.protocol.dto.KeyInfo;
+import ee.ria.xroad.signer.protocol.dto.TokenInfo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable copy of the tokens, keys and certificates in signer, with the certificates
+ * indexed by member.
+ */
+public final class TokenSnapshot {
+
+    private final Long version;
+    private final List<TokenInfo> tokens;
+    private final Map<ClientId, List<CertificateInfo>> certificatesByMember = new HashMap<>();
+    private final Map<ClientId, List<CertificateInfo>> signCertificatesByMember = new HashMap<>();
+
+    TokenSnapshot(Long version, List<TokenInfo> tokens) {
+        this.version = version;
+        this.tokens = Collections.unmodifiableList(new ArrayList<>(tokens));
+
+        for (TokenInfo token : tokens) {
+            for (KeyInfo key : token.getKeyInfo()) {
+                for (CertificateInfo cert : key.getCerts()) {
+                    if (cert.getMemberId() == null) {
+                        continue;
+                    }
+                    ClientId memberId = toMemberId(cert.getMemberId());
+                    certificatesByMember.computeIfAbsent(memberId, id -> new ArrayList<>()).add(cert);
+                    if (key.isForSigning()) {
+                        signCertificatesByMember.computeIfAbsent(memberId, id -> new ArrayList<>()).add(cert);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return version of the token state in signer this snapshot was taken from,
+     * or null if the version is not known
+     */
+    public Long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return all tokens
+     */
+    public List<TokenInfo> getTokens() {
+        return tokens;
+    }
+
+    /**
+     * Return certificates of the member, in token and key order
+     * @param clientId member or subsystem whose member's certificates are returned
+     * @param onlySignCertificates if true, return only certificates of signing keys
+     * @return
+     */
+    public List<CertificateInfo> getCertificates(ClientId clientId, boolean onlySignCertificates) {
+        Map<ClientId, List<CertificateInfo>> index = onlySignCertificates
+                ? signCertificatesByMember : certificatesByMember;
+        List<CertificateInfo> certificates = index.get(toMemberId(clientId));
+        return certificates != null ? new ArrayList<>(certificates) : new ArrayList<>();
+    }
+
+    private static ClientId toMemberId(ClientId clientId) {
+        return ClientId.create(clientId.getXRoadInstance(), clientId.getMemberClass(), clientId.getMemberCode());
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.niis.xroad.restapi.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.niis.xroad.restapi.facade.SignerProxyFacade;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caches the tokens listed from signer. Listing tokens transfers every key, certificate and
+ * OCSP response from signer, while asking the token state version is cheap. The tokens are
+ * listed again only when the version in signer has changed, so the cache never returns
+ * stale data. If the version cannot be asked, tokens are listed on every call.
+ */
+@Slf4j
+@Component
+public class TokenSnapshotCache {
+
+    private final SignerProxyFacade signerProxyFacade;
+
+    private volatile TokenSnapshot snapshot;
+
+    /**
+     * TokenSnapshotCache constructor
+     * @param signerProxyFacade
+     */
+    @Autowired
+    public TokenSnapshotCache(SignerProxyFacade signerProxyFacade) {
+        this.signerProxyFacade = signerProxyFacade;
+    }
+
+    /**
+     * @return snapshot of the current tokens in signer
+     * @throws Exception if listing tokens failed
+     */
+    public TokenSnapshot getSnapshot() throws Exception {
+        // read version before listing, so that a concurrent change causes a refresh on next call
+        Long version = getVersion();
+        TokenSnapshot current = snapshot;
+
+        if (current == null || version == null || !version.equals(current.getVersion())) {
+            current = new TokenSnapshot(version, signerProxyFacade.getTokens());
+            snapshot = current;
+        }
+
+        return current;
+    }
+
+    private Long getVersion() {
+        try {
+            return signerProxyFacade.getTokensVersion();
+        } catch (Exception e) {
+            log.warn("Could not get tokens version from signer, listing all tokens", e);
+            return null;
+        }
+    }
+}
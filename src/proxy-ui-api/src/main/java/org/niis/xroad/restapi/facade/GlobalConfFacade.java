@@ -27,6 +27,7 @@ package org.niis.xroad.restapi.facade;
 import ee.ria.xroad.common.certificateprofile.SignCertificateProfileInfo;
 import ee.ria.xroad.common.certificateprofile.impl.SignCertificateProfileInfoParameters;
 import ee.ria.xroad.common.conf.globalconf.ApprovedCAInfo;
+import ee.ria.xroad.common.conf.globalconf.ConfigurationConstants;
 import ee.ria.xroad.common.conf.globalconf.GlobalConf;
 import ee.ria.xroad.common.conf.globalconf.GlobalGroupInfo;
 import ee.ria.xroad.common.conf.globalconf.MemberInfo;
@@ -37,6 +38,7 @@ import ee.ria.xroad.common.identifier.SecurityServerId;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.nio.file.Path;
 import java.security.cert.X509Certificate;
 import java.util.Collection;
 import java.util.List;
@@ -101,6 +103,13 @@ public class GlobalConfFacade {
         return GlobalConf.getInstanceIdentifiers();
     }
 
+    /**
+     * {@link GlobalConf#getFile(String, String)} of the shared parameters of the instance
+     */
+    public Path getSharedParametersFile(String instanceIdentifier) {
+        return GlobalConf.getFile(instanceIdentifier, ConfigurationConstants.FILE_NAME_SHARED_PARAMETERS);
+    }
+
     /**
      * {@link GlobalConf#getGlobalGroups(String...)} ()}
      */
@@ -62,6 +62,13 @@ public class SignerProxyFacade {
         return SignerProxy.getTokens();
     }
 
+    /**
+     * {@link SignerProxy#getTokensVersion()}
+     */
+    public Long getTokensVersion() throws Exception {
+        return SignerProxy.getTokensVersion();
+    }
+
     /**
      * {@link SignerProxy#getToken(String)}
      */
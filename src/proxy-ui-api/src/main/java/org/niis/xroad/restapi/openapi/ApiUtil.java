@@ -37,6 +37,12 @@ import javax.servlet.http.HttpServletResponse;
 
 import java.io.IOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * api util
@@ -44,6 +50,8 @@ import java.net.URI;
 @SuppressWarnings("checkstyle:HideUtilityClassConstructor")
 public class ApiUtil {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     /**
      * Create a specified example response, to return from endpoints not implemented yet
      * @param req
@@ -99,4 +107,54 @@ public class ApiUtil {
         Resource resource = new ByteArrayResource(attachmentBytes);
         return new ResponseEntity<>(resource, headers, HttpStatus.OK);
     }
+
+    /**
+     * Creates a ResponseEntity with status code 200 OK that contains one page of <code>items</code>.
+     * If neither <code>limit</code> nor <code>cursor</code> is given, all items are returned in their
+     * original order. Otherwise items are sorted by <code>keyExtractor</code>, the items after the
+     * key in <code>cursor</code> are returned, and if more items remain, the cursor for the next
+     * page is returned in <code>X-Next-Cursor</code> header
+     * @param items all items matching the search
+     * @param keyExtractor function that returns a unique key of an item
+     * @param limit maximum number of items to return, or null for no limit
+     * @param cursor cursor returned with the previous page, or null for the first page
+     * @param <T>
+     * @return
+     * @throws BadRequestException if limit or cursor is invalid
+     */
+    public static <T> ResponseEntity<List<T>> createPagedResponse(List<T> items, Function<T, String> keyExtractor,
+            Integer limit, String cursor) {
+        if (limit == null && cursor == null) {
+            return new ResponseEntity<>(items, HttpStatus.OK);
+        }
+        if (limit != null && limit < 1) {
+            throw new BadRequestException("Invalid limit " + limit);
+        }
+        String lastKey = cursor != null ? decodeCursor(cursor) : null;
+
+        List<T> remaining = items.stream()
+                .filter(item -> lastKey == null || keyExtractor.apply(item).compareTo(lastKey) > 0)
+                .sorted(Comparator.comparing(keyExtractor))
+                .collect(Collectors.toList());
+
+        HttpHeaders headers = new HttpHeaders();
+        List<T> page = remaining;
+        if (limit != null && remaining.size() > limit) {
+            page = remaining.subList(0, limit);
+            headers.add(NEXT_CURSOR_HEADER, encodeCursor(keyExtractor.apply(page.get(limit - 1))));
+        }
+        return new ResponseEntity<>(page, headers, HttpStatus.OK);
+    }
+
+    private static String encodeCursor(String key) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeCursor(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor " + cursor);
+        }
+    }
 }
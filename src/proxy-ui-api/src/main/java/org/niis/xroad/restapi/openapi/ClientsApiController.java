@@ -161,12 +161,13 @@ public class ClientsApiController implements ClientsApi {
     @Override
     @PreAuthorize("hasAuthority('VIEW_CLIENTS')")
     public ResponseEntity<List<Client>> findClients(String name, String instance, String memberClass,
-            String memberCode, String subsystemCode, Boolean showMembers, Boolean internalSearch) {
+            String memberCode, String subsystemCode, Boolean showMembers, Boolean internalSearch, Integer limit,
+            String cursor) {
         boolean unboxedShowMembers = Boolean.TRUE.equals(showMembers);
         boolean unboxedInternalSearch = Boolean.TRUE.equals(internalSearch);
         List<Client> clients = clientConverter.convert(clientService.findClients(name,
                 instance, memberClass, memberCode, subsystemCode, unboxedShowMembers, unboxedInternalSearch));
-        return new ResponseEntity<>(clients, HttpStatus.OK);
+        return ApiUtil.createPagedResponse(clients, Client::getId, limit, cursor);
     }
 
     @Override
@@ -390,7 +391,7 @@ public class ClientsApiController implements ClientsApi {
     @PreAuthorize("hasAuthority('VIEW_CLIENT_ACL_SUBJECTS')")
     public ResponseEntity<List<Subject>> findSubjects(String encodedClientId, String memberNameOrGroupDescription,
             SubjectType subjectType, String instance, String memberClass, String memberGroupCode,
-            String subsystemCode) {
+            String subsystemCode, Integer limit, String cursor) {
         ClientId clientId = clientConverter.convertId(encodedClientId);
         XRoadObjectType xRoadObjectType = SubjectTypeMapping.map(subjectType).orElse(null);
         List<AccessRightHolderDto> accessRightHolderDtos = null;
@@ -401,6 +402,7 @@ public class ClientsApiController implements ClientsApi {
             throw new ResourceNotFoundException(e);
         }
         List<Subject> subjects = subjectConverter.convert(accessRightHolderDtos);
-        return new ResponseEntity<>(subjects, HttpStatus.OK);
+        return ApiUtil.createPagedResponse(subjects, subject -> subject.getSubjectType() + ":" + subject.getId(),
+                limit, cursor);
     }
 }
@@ -25,8 +25,6 @@
 
 package org.niis.xroad.restapi.service;
 
-import ee.ria.xroad.common.CodedException;
-import ee.ria.xroad.common.conf.globalconf.GlobalGroupInfo;
 import ee.ria.xroad.common.conf.serverconf.model.AccessRightType;
 import ee.ria.xroad.common.conf.serverconf.model.ClientType;
 import ee.ria.xroad.common.conf.serverconf.model.EndpointType;
@@ -40,6 +38,7 @@ import ee.ria.xroad.common.identifier.XRoadObjectType;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.niis.xroad.restapi.cache.GlobalConfMemberIndex;
 import org.niis.xroad.restapi.dto.AccessRightHolderDto;
 import org.niis.xroad.restapi.exceptions.ErrorDeviation;
 import org.niis.xroad.restapi.facade.GlobalConfFacade;
@@ -76,17 +75,19 @@ public class AccessRightService {
     private final ServiceService serviceService;
     private final IdentifierService identifierService;
     private final GlobalConfService globalConfService;
+    private final GlobalConfMemberIndex globalConfMemberIndex;
 
     @Autowired
     public AccessRightService(LocalGroupRepository localGroupRepository, GlobalConfFacade globalConfFacade,
             ClientRepository clientRepository, ServiceService serviceService, IdentifierService identifierService,
-            GlobalConfService globalConfService) {
+            GlobalConfService globalConfService, GlobalConfMemberIndex globalConfMemberIndex) {
         this.localGroupRepository = localGroupRepository;
         this.globalConfFacade = globalConfFacade;
         this.clientRepository = clientRepository;
         this.serviceService = serviceService;
         this.identifierService = identifierService;
         this.globalConfService = globalConfService;
+        this.globalConfMemberIndex = globalConfMemberIndex;
     }
 
     /**
@@ -437,15 +438,15 @@ public class AccessRightService {
             throw new ClientNotFoundException("Client " + clientId.toShortString() + " not found");
         }
 
-        // get global members
-        List<AccessRightHolderDto> globalMembers = getGlobalMembersAsDtos();
-        if (globalMembers.size() > 0) {
-            dtos.addAll(globalMembers);
+        // get global subsystems, members cannot have access rights and are never included
+        if (subjectType == null || subjectType == XRoadObjectType.SUBSYSTEM) {
+            dtos.addAll(getGlobalSubsystemsAsDtos(memberNameOrGroupDescription, instance, memberClass,
+                    memberGroupCode, subsystemCode));
         }
 
         // get global groups
         List<AccessRightHolderDto> globalGroups = getGlobalGroupsAsDtos(instance);
-        if (globalMembers.size() > 0) {
+        if (globalGroups.size() > 0) {
             dtos.addAll(globalGroups);
         }
 
@@ -475,8 +476,10 @@ public class AccessRightService {
                 }).collect(Collectors.toList());
     }
 
-    private List<AccessRightHolderDto> getGlobalMembersAsDtos() {
-        return globalConfFacade.getMembers().stream()
+    private List<AccessRightHolderDto> getGlobalSubsystemsAsDtos(String name, String instance,
+            String memberClass, String memberCode, String subsystemCode) {
+        return globalConfMemberIndex.findMembers(name, instance, memberClass, memberCode, subsystemCode, false)
+                .stream()
                 .map(memberInfo -> {
                     AccessRightHolderDto accessRightHolderDto = new AccessRightHolderDto();
                     accessRightHolderDto.setSubjectId(memberInfo.getId());
@@ -487,34 +490,15 @@ public class AccessRightService {
     }
 
     private List<AccessRightHolderDto> getGlobalGroupsAsDtos(String instance) {
-        List<AccessRightHolderDto> globalGroups = new ArrayList<>();
-        List<String> globalGroupInstances = globalConfFacade.getInstanceIdentifiers();
-        List<GlobalGroupInfo> globalGroupInfos = null;
-        // core throws CodedException if nothing is found for the provided instance/instances
-        try {
-            if (!StringUtils.isEmpty(instance)) {
-                List<String> globalGroupInstancesMatchingSearch = globalGroupInstances.stream()
-                        .filter(s -> s.contains(instance))
-                        .collect(Collectors.toList());
-                if (globalGroupInstancesMatchingSearch.size() > 0) {
-                    globalGroupInfos = globalConfFacade
-                            .getGlobalGroups(globalGroupInstancesMatchingSearch.toArray(new String[] {}));
-                }
-            } else {
-                globalGroupInfos = globalConfFacade.getGlobalGroups();
-            }
-        } catch (CodedException e) {
-            // no GlobalGroups found for the provided instance -> GlobalGroups are just ignored in the results
-        }
-        if (globalGroupInfos != null && globalGroupInfos.size() > 0) {
-            globalGroupInfos.forEach(globalGroupInfo -> {
-                AccessRightHolderDto accessRightHolderDto = new AccessRightHolderDto();
-                accessRightHolderDto.setSubjectId(globalGroupInfo.getId());
-                accessRightHolderDto.setLocalGroupDescription(globalGroupInfo.getDescription());
-                globalGroups.add(accessRightHolderDto);
-            });
-        }
-        return globalGroups;
+        return globalConfMemberIndex.findGlobalGroups(instance)
+                .stream()
+                .map(globalGroupInfo -> {
+                    AccessRightHolderDto accessRightHolderDto = new AccessRightHolderDto();
+                    accessRightHolderDto.setSubjectId(globalGroupInfo.getId());
+                    accessRightHolderDto.setLocalGroupDescription(globalGroupInfo.getDescription());
+                    return accessRightHolderDto;
+                })
+                .collect(Collectors.toList());
     }
 
     /**
@@ -24,6 +24,7 @@
  */
 package org.niis.xroad.restapi.service;
 
+import ee.ria.xroad.common.conf.globalconf.MemberInfo;
 import ee.ria.xroad.common.conf.serverconf.IsAuthentication;
 import ee.ria.xroad.common.conf.serverconf.model.CertificateType;
 import ee.ria.xroad.common.conf.serverconf.model.ClientType;
@@ -34,6 +35,7 @@ import ee.ria.xroad.common.util.CryptoUtils;
 
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.Hibernate;
+import org.niis.xroad.restapi.cache.GlobalConfMemberIndex;
 import org.niis.xroad.restapi.facade.GlobalConfFacade;
 import org.niis.xroad.restapi.repository.ClientRepository;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -66,16 +68,20 @@ public class ClientService {
 
     private final ClientRepository clientRepository;
     private final GlobalConfFacade globalConfFacade;
+    private final GlobalConfMemberIndex globalConfMemberIndex;
 
     /**
      * ClientService constructor
      * @param clientRepository
      * @param globalConfFacade
+     * @param globalConfMemberIndex
      */
     @Autowired
-    public ClientService(ClientRepository clientRepository, GlobalConfFacade globalConfFacade) {
+    public ClientService(ClientRepository clientRepository, GlobalConfFacade globalConfFacade,
+            GlobalConfMemberIndex globalConfMemberIndex) {
         this.clientRepository = clientRepository;
         this.globalConfFacade = globalConfFacade;
+        this.globalConfMemberIndex = globalConfMemberIndex;
     }
 
     /**
@@ -112,7 +118,11 @@ public class ClientService {
      * @return
      */
     public List<ClientType> getAllGlobalClients() {
-        return globalConfFacade.getMembers()
+        return toClientTypes(globalConfMemberIndex.getMembers());
+    }
+
+    private static List<ClientType> toClientTypes(List<MemberInfo> memberInfos) {
+        return memberInfos
                 .stream()
                 .map(memberInfo -> {
                     ClientType clientType = new ClientType();
@@ -347,12 +357,8 @@ public class ClientService {
      */
     public List<ClientType> findGlobalClients(String name, String instance, String propertyClass, String memberCode,
             String subsystemCode, boolean showMembers) {
-        Predicate<ClientType> matchingSearchTerms = buildClientSearchPredicate(name, instance, propertyClass,
-                memberCode, subsystemCode);
-        return getAllGlobalClients().stream()
-                .filter(matchingSearchTerms)
-                .filter(clientType -> showMembers || clientType.getIdentifier().getSubsystemCode() != null)
-                .collect(Collectors.toList());
+        return toClientTypes(globalConfMemberIndex.findMembers(name, instance, propertyClass, memberCode,
+                subsystemCode, showMembers));
     }
 
     /**
@@ -27,11 +27,12 @@ package org.niis.xroad.restapi.service;
 import ee.ria.xroad.common.CodedException;
 import ee.ria.xroad.common.conf.serverconf.model.ClientType;
 import ee.ria.xroad.signer.protocol.dto.CertificateInfo;
-import ee.ria.xroad.signer.protocol.dto.KeyInfo;
 import ee.ria.xroad.signer.protocol.dto.TokenInfo;
 import ee.ria.xroad.signer.protocol.dto.TokenInfoAndKeyId;
 
 import lombok.extern.slf4j.Slf4j;
+import org.niis.xroad.restapi.cache.TokenSnapshot;
+import org.niis.xroad.restapi.cache.TokenSnapshotCache;
 import org.niis.xroad.restapi.exceptions.ErrorDeviation;
 import org.niis.xroad.restapi.facade.SignerProxyFacade;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -40,7 +41,6 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
-import java.util.function.Predicate;
 
 import static ee.ria.xroad.common.ErrorCodes.SIGNER_X;
 import static ee.ria.xroad.common.ErrorCodes.X_CERT_NOT_FOUND;
@@ -50,7 +50,6 @@ import static ee.ria.xroad.common.ErrorCodes.X_LOGIN_FAILED;
 import static ee.ria.xroad.common.ErrorCodes.X_PIN_INCORRECT;
 import static ee.ria.xroad.common.ErrorCodes.X_TOKEN_NOT_ACTIVE;
 import static ee.ria.xroad.common.ErrorCodes.X_TOKEN_NOT_FOUND;
-import static java.util.stream.Collectors.toList;
 
 /**
  * Service that handles tokens
@@ -63,15 +62,17 @@ public class TokenService {
 
     private final SignerProxyFacade signerProxyFacade;
     private final PossibleActionsRuleEngine possibleActionsRuleEngine;
+    private final TokenSnapshotCache tokenSnapshotCache;
 
     /**
      * TokenService constructor
      */
     @Autowired
     public TokenService(SignerProxyFacade signerProxyFacade,
-            PossibleActionsRuleEngine possibleActionsRuleEngine) {
+            PossibleActionsRuleEngine possibleActionsRuleEngine, TokenSnapshotCache tokenSnapshotCache) {
         this.signerProxyFacade = signerProxyFacade;
         this.possibleActionsRuleEngine = possibleActionsRuleEngine;
+        this.tokenSnapshotCache = tokenSnapshotCache;
     }
 
     /**
@@ -79,8 +80,12 @@ public class TokenService {
      * @return
      */
     public List<TokenInfo> getAllTokens() {
+        return getTokenSnapshot().getTokens();
+    }
+
+    private TokenSnapshot getTokenSnapshot() {
         try {
-            return signerProxyFacade.getTokens();
+            return tokenSnapshotCache.getSnapshot();
         } catch (Exception e) {
             throw new RuntimeException("could not list all tokens", e);
         }
@@ -115,17 +120,7 @@ public class TokenService {
      * @return
      */
     private List<CertificateInfo> getCertificates(ClientType clientType, boolean onlySignCertificates) {
-        List<TokenInfo> tokenInfos = getAllTokens();
-        Predicate<KeyInfo> keyInfoPredicate = keyInfo -> true;
-        if (onlySignCertificates) {
-            keyInfoPredicate = keyInfo -> keyInfo.isForSigning();
-        }
-        return tokenInfos.stream()
-                .flatMap(tokenInfo -> tokenInfo.getKeyInfo().stream())
-                .filter(keyInfoPredicate)
-                .flatMap(keyInfo -> keyInfo.getCerts().stream())
-                .filter(certificateInfo -> clientType.getIdentifier().memberEquals(certificateInfo.getMemberId()))
-                .collect(toList());
+        return getTokenSnapshot().getCertificates(clientType.getIdentifier(), onlySignCertificates);
     }
 
     /**
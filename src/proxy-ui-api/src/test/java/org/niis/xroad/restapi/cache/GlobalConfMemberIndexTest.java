@@ -0,0 +1,106 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.niis.xroad.restapi.cache;
+
+import ee.ria.xroad.common.conf.globalconf.MemberInfo;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.niis.xroad.restapi.facade.GlobalConfFacade;
+import org.niis.xroad.restapi.util.TestUtils;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test GlobalConfMemberIndex
+ */
+public class GlobalConfMemberIndexTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private GlobalConfFacade globalConfFacade;
+    private GlobalConfMemberIndex index;
+    private File sharedParameters;
+
+    @Before
+    public void setup() throws Exception {
+        globalConfFacade = mock(GlobalConfFacade.class);
+        sharedParameters = tempFolder.newFile("shared-params.xml");
+        when(globalConfFacade.getInstanceIdentifiers()).thenReturn(Arrays.asList(TestUtils.INSTANCE_FI));
+        when(globalConfFacade.getSharedParametersFile(TestUtils.INSTANCE_FI)).thenReturn(sharedParameters.toPath());
+        when(globalConfFacade.getMembers()).thenReturn(Arrays.asList(
+                TestUtils.getMemberInfo(TestUtils.INSTANCE_FI, TestUtils.MEMBER_CLASS_GOV, TestUtils.MEMBER_CODE_M1,
+                        null),
+                TestUtils.getMemberInfo(TestUtils.INSTANCE_FI, TestUtils.MEMBER_CLASS_GOV, TestUtils.MEMBER_CODE_M1,
+                        TestUtils.SUBSYSTEM1),
+                TestUtils.getMemberInfo(TestUtils.INSTANCE_FI, TestUtils.MEMBER_CLASS_PRO, TestUtils.MEMBER_CODE_M2,
+                        TestUtils.SUBSYSTEM2)));
+        index = new GlobalConfMemberIndex(globalConfFacade);
+    }
+
+    @Test
+    public void findMembers() {
+        assertEquals(3, index.findMembers(null, null, null, null, null, true).size());
+        assertEquals(2, index.findMembers(null, null, null, null, null, false).size());
+        assertEquals(2, index.findMembers(null, null, null, "m1", null, true).size());
+        assertEquals(1, index.findMembers("ss2", null, null, null, null, true).size());
+        assertEquals(0, index.findMembers(null, TestUtils.INSTANCE_EE, null, null, null, true).size());
+
+        List<MemberInfo> members = index.findMembers(null, "fi", "Go", null, "s", false);
+        assertEquals(1, members.size());
+        assertEquals(TestUtils.SUBSYSTEM1, members.get(0).getId().getSubsystemCode());
+    }
+
+    @Test
+    public void rebuildWhenSharedParametersChange() {
+        index.getMembers();
+        index.findMembers(null, null, null, null, null, true);
+        verify(globalConfFacade, times(1)).getMembers();
+
+        assertTrue(sharedParameters.setLastModified(sharedParameters.lastModified() - 60000));
+        index.getMembers();
+        verify(globalConfFacade, times(2)).getMembers();
+    }
+
+    @Test
+    public void rebuildOnEveryCallWhenSharedParametersAreMissing() {
+        when(globalConfFacade.getSharedParametersFile(TestUtils.INSTANCE_FI)).thenReturn(null);
+        index.getMembers();
+        index.getMembers();
+        verify(globalConfFacade, times(2)).getMembers();
+    }
+}
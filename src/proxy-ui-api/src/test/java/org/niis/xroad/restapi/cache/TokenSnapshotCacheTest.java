@@ -0,0 +1,125 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.niis.xroad.restapi.cache;
+
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.signer.protocol.dto.CertificateInfo;
+import ee.ria.xroad.signer.protocol.dto.KeyUsageInfo;
+import ee.ria.xroad.signer.protocol.dto.TokenInfo;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.niis.xroad.restapi.facade.SignerProxyFacade;
+import org.niis.xroad.restapi.util.CertificateTestUtils;
+import org.niis.xroad.restapi.util.TokenTestUtils.KeyInfoBuilder;
+import org.niis.xroad.restapi.util.TokenTestUtils.TokenInfoBuilder;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test TokenSnapshotCache
+ */
+public class TokenSnapshotCacheTest {
+
+    private static final ClientId MEMBER = ClientId.create("FI", "GOV", "M1");
+    private static final ClientId OTHER_MEMBER = ClientId.create("FI", "GOV", "M2");
+
+    private SignerProxyFacade signerProxyFacade;
+    private TokenSnapshotCache cache;
+
+    @Before
+    public void setup() throws Exception {
+        TokenInfo tokenInfo = new TokenInfoBuilder()
+                .key(new KeyInfoBuilder()
+                        .id("sign-key")
+                        .keyUsageInfo(KeyUsageInfo.SIGNING)
+                        .cert(createCertificateInfo("sign-cert", MEMBER))
+                        .cert(createCertificateInfo("other-sign-cert", OTHER_MEMBER))
+                        .build())
+                .key(new KeyInfoBuilder()
+                        .id("auth-key")
+                        .keyUsageInfo(KeyUsageInfo.AUTHENTICATION)
+                        .cert(createCertificateInfo("auth-cert", MEMBER))
+                        .cert(createCertificateInfo("server-cert", null))
+                        .build())
+                .build();
+        signerProxyFacade = mock(SignerProxyFacade.class);
+        when(signerProxyFacade.getTokens()).thenReturn(Collections.singletonList(tokenInfo));
+        cache = new TokenSnapshotCache(signerProxyFacade);
+    }
+
+    private static CertificateInfo createCertificateInfo(String id, ClientId memberId) {
+        return new CertificateInfo(memberId, true, true, CertificateInfo.STATUS_REGISTERED, id,
+                CertificateTestUtils.getMockCertificateBytes(), null);
+    }
+
+    @Test
+    public void listTokensOnlyWhenVersionChanges() throws Exception {
+        when(signerProxyFacade.getTokensVersion()).thenReturn(1L);
+        cache.getSnapshot();
+        cache.getSnapshot();
+        verify(signerProxyFacade, times(1)).getTokens();
+
+        when(signerProxyFacade.getTokensVersion()).thenReturn(2L);
+        cache.getSnapshot();
+        cache.getSnapshot();
+        verify(signerProxyFacade, times(2)).getTokens();
+    }
+
+    @Test
+    public void listTokensEveryTimeWithoutVersion() throws Exception {
+        when(signerProxyFacade.getTokensVersion()).thenThrow(new RuntimeException("unsupported"));
+        cache.getSnapshot();
+        cache.getSnapshot();
+        verify(signerProxyFacade, times(2)).getTokens();
+    }
+
+    @Test
+    public void getCertificatesByMember() throws Exception {
+        TokenSnapshot snapshot = cache.getSnapshot();
+        assertEquals(1, snapshot.getTokens().size());
+
+        List<CertificateInfo> all = snapshot.getCertificates(ClientId.create("FI", "GOV", "M1", "SS1"), false);
+        assertEquals(new HashSet<>(Arrays.asList("sign-cert", "auth-cert")),
+                all.stream().map(CertificateInfo::getId).collect(Collectors.toSet()));
+
+        List<CertificateInfo> sign = snapshot.getCertificates(MEMBER, true);
+        assertEquals(1, sign.size());
+        assertEquals("sign-cert", sign.get(0).getId());
+
+        assertTrue(snapshot.getCertificates(ClientId.create("FI", "GOV", "M3"), false).isEmpty());
+    }
+}
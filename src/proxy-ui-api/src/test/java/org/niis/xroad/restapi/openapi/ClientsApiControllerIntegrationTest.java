@@ -167,16 +167,41 @@ public class ClientsApiControllerIntegrationTest {
     @WithMockUser(authorities = "VIEW_CLIENTS")
     public void getAllClients() {
         ResponseEntity<List<Client>> response =
-                clientsApiController.findClients(null, null, null, null, null, true, false);
+                clientsApiController.findClients(null, null, null, null, null, true, false, null, null);
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(9, response.getBody().size());
     }
 
+    @Test
+    @WithMockUser(authorities = "VIEW_CLIENTS")
+    public void getAllClientsPaged() {
+        List<String> clientIds = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            ResponseEntity<List<Client>> response =
+                    clientsApiController.findClients(null, null, null, null, null, true, false, 4, cursor);
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+            assertTrue(response.getBody().size() <= 4);
+            response.getBody().forEach(client -> clientIds.add(client.getId()));
+            cursor = response.getHeaders().getFirst(ApiUtil.NEXT_CURSOR_HEADER);
+            pages++;
+        } while (cursor != null);
+        assertEquals(3, pages);
+        assertEquals(9, clientIds.size());
+        assertEquals(clientIds.stream().sorted().collect(Collectors.toList()), clientIds);
+        try {
+            clientsApiController.findClients(null, null, null, null, null, true, false, 4, "not a cursor");
+            fail("should throw BadRequestException");
+        } catch (BadRequestException expected) {
+        }
+    }
+
     @Test
     @WithMockUser(authorities = "VIEW_CLIENTS")
     public void ownerMemberFlag() {
         ResponseEntity<List<Client>> response =
-                clientsApiController.findClients(null, null, null, null, null, true, false);
+                clientsApiController.findClients(null, null, null, null, null, true, false, null, null);
         assertEquals(9, response.getBody().size());
         List<Client> owners = response.getBody().stream()
                 .filter(Client::getOwner)
@@ -189,7 +214,7 @@ public class ClientsApiControllerIntegrationTest {
     @WithMockUser(authorities = "VIEW_CLIENTS")
     public void getAllLocalClients() {
         ResponseEntity<List<Client>> response = clientsApiController.findClients(null, null, null, null, null, true,
-                true);
+                true, null, null);
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(5, response.getBody().size());
         Client client = response.getBody().get(0);
@@ -287,7 +312,7 @@ public class ClientsApiControllerIntegrationTest {
     public void forbidden() {
         try {
             ResponseEntity<List<Client>> response = clientsApiController.findClients(null, null, null, null, null, null,
-                    null);
+                    null, null, null);
             fail("should throw AccessDeniedException");
         } catch (AccessDeniedException expected) {
         }
@@ -439,7 +464,7 @@ public class ClientsApiControllerIntegrationTest {
         ResponseEntity<List<Client>> clientsResponse = clientsApiController.findClients(
                 TestUtils.NAME_FOR + TestUtils.SUBSYSTEM1,
                 TestUtils.INSTANCE_FI, TestUtils.MEMBER_CLASS_GOV, TestUtils.MEMBER_CODE_M1, TestUtils.SUBSYSTEM1,
-                false, false);
+                false, false, null, null);
         assertEquals(HttpStatus.OK, clientsResponse.getStatusCode());
         assertEquals(1, clientsResponse.getBody().size());
         List<Client> clients = clientsResponse.getBody();
@@ -456,7 +481,7 @@ public class ClientsApiControllerIntegrationTest {
     @WithMockUser(authorities = "VIEW_CLIENTS")
     public void findAllClients() {
         ResponseEntity<List<Client>> clientsResponse = clientsApiController.findClients(null, null, null, null, null,
-                true, false);
+                true, false, null, null);
         assertEquals(HttpStatus.OK, clientsResponse.getStatusCode());
         assertEquals(9, clientsResponse.getBody().size());
     }
@@ -465,7 +490,7 @@ public class ClientsApiControllerIntegrationTest {
     @WithMockUser(authorities = "VIEW_CLIENTS")
     public void findAllClientsByMemberCodeIncludeMembers() {
         ResponseEntity<List<Client>> clientsResponse = clientsApiController.findClients(null, null, null,
-                TestUtils.MEMBER_CODE_M1, null, true, false);
+                TestUtils.MEMBER_CODE_M1, null, true, false, null, null);
         assertEquals(HttpStatus.OK, clientsResponse.getStatusCode());
         assertEquals(5, clientsResponse.getBody().size());
     }
@@ -475,7 +500,7 @@ public class ClientsApiControllerIntegrationTest {
     public void findAllClientsByMemberClassIncludeMembers() {
         ResponseEntity<List<Client>> clientsResponse = clientsApiController.findClients(null, null,
                 TestUtils.MEMBER_CLASS_PRO,
-                null, null, true, false);
+                null, null, true, false, null, null);
         assertEquals(HttpStatus.OK, clientsResponse.getStatusCode());
         assertEquals(2, clientsResponse.getBody().size());
     }
@@ -485,11 +510,12 @@ public class ClientsApiControllerIntegrationTest {
     public void findAllClientsByNameIncludeMembers() {
         ResponseEntity<List<Client>> clientsResponse = clientsApiController.findClients(
                 TestUtils.NAME_FOR + TestUtils.SUBSYSTEM2,
-                null, null, null, null, false, true);
+                null, null, null, null, false, true, null, null);
         assertEquals(HttpStatus.OK, clientsResponse.getStatusCode());
         assertEquals(1, clientsResponse.getBody().size());
         // not found
-        clientsResponse = clientsApiController.findClients("DOES_NOT_EXIST", null, null, null, null, true, false);
+        clientsResponse = clientsApiController.findClients("DOES_NOT_EXIST", null, null, null, null, true, false,
+                null, null);
         assertEquals(0, clientsResponse.getBody().size());
     }
 
@@ -499,7 +525,7 @@ public class ClientsApiControllerIntegrationTest {
         ResponseEntity<List<Client>> clientsResponse = clientsApiController.findClients(
                 TestUtils.NAME_FOR + TestUtils.SUBSYSTEM1,
                 TestUtils.INSTANCE_FI, TestUtils.MEMBER_CLASS_GOV, TestUtils.MEMBER_CODE_M1, TestUtils.SUBSYSTEM1,
-                false, true);
+                false, true, null, null);
         assertEquals(HttpStatus.OK, clientsResponse.getStatusCode());
         assertEquals(1, clientsResponse.getBody().size());
     }
@@ -508,11 +534,12 @@ public class ClientsApiControllerIntegrationTest {
     @WithMockUser(authorities = "VIEW_CLIENTS")
     public void findInternalClientsBySubsystemExcludeMembers() {
         ResponseEntity<List<Client>> clientsResponse = clientsApiController.findClients(null, null, null, null,
-                TestUtils.SUBSYSTEM2, false, true);
+                TestUtils.SUBSYSTEM2, false, true, null, null);
         assertEquals(HttpStatus.OK, clientsResponse.getStatusCode());
         assertEquals(1, clientsResponse.getBody().size());
         // not found
-        clientsResponse = clientsApiController.findClients(null, null, null, null, TestUtils.SUBSYSTEM3, false, true);
+        clientsResponse = clientsApiController.findClients(null, null, null, null, TestUtils.SUBSYSTEM3, false, true,
+                null, null);
         assertEquals(0, clientsResponse.getBody().size());
     }
 
@@ -579,7 +606,7 @@ public class ClientsApiControllerIntegrationTest {
     @WithMockUser(authorities = { "VIEW_CLIENTS" })
     public void findAllClientsByPartialNameIncludeMembers() {
         ResponseEntity<List<Client>> clientsResponse = clientsApiController.findClients(TestUtils.SUBSYSTEM3, null,
-                null, null, null, false, false);
+                null, null, null, false, false, null, null);
         assertEquals(HttpStatus.OK, clientsResponse.getStatusCode());
         assertEquals(1, clientsResponse.getBody().size());
     }
@@ -588,7 +615,7 @@ public class ClientsApiControllerIntegrationTest {
     @WithMockUser(authorities = { "VIEW_CLIENTS" })
     public void findAllClientsByPartialSearchTermsIncludeMembers() {
         ResponseEntity<List<Client>> clientsResponse = clientsApiController.findClients(null, "F",
-                "OV", "1", "1", false, true);
+                "OV", "1", "1", false, true, null, null);
         assertEquals(HttpStatus.OK, clientsResponse.getStatusCode());
         assertEquals(1, clientsResponse.getBody().size());
     }
@@ -717,7 +744,7 @@ public class ClientsApiControllerIntegrationTest {
     public void findAllSubjects() {
         ResponseEntity<List<Subject>> subjectsResponse = clientsApiController.findSubjects(TestUtils.CLIENT_ID_SS1,
                 null,
-                null, null, null, null, null);
+                null, null, null, null, null, null, null);
         List<Subject> subjects = subjectsResponse.getBody();
         assertEquals(9, subjects.size());
     }
@@ -726,7 +753,7 @@ public class ClientsApiControllerIntegrationTest {
     @WithMockUser(authorities = { "VIEW_CLIENT_ACL_SUBJECTS" })
     public void findSubjectsByName() {
         ResponseEntity<List<Subject>> subjectsResponse = clientsApiController.findSubjects(TestUtils.CLIENT_ID_SS1,
-                TestUtils.NAME_FOR + TestUtils.SUBSYSTEM2, null, null, null, null, null);
+                TestUtils.NAME_FOR + TestUtils.SUBSYSTEM2, null, null, null, null, null, null, null);
         List<Subject> subjects = subjectsResponse.getBody();
         assertEquals(1, subjects.size());
     }
@@ -735,12 +762,12 @@ public class ClientsApiControllerIntegrationTest {
     @WithMockUser(authorities = { "VIEW_CLIENT_ACL_SUBJECTS" })
     public void findSubjectsByGroupDescription() {
         ResponseEntity<List<Subject>> subjectsResponse = clientsApiController.findSubjects(TestUtils.CLIENT_ID_SS1,
-                TestUtils.GLOBALGROUP, null, null, null, null, null);
+                TestUtils.GLOBALGROUP, null, null, null, null, null, null, null);
         List<Subject> subjects = subjectsResponse.getBody();
         assertEquals(3, subjects.size());
 
         subjectsResponse = clientsApiController.findSubjects(TestUtils.CLIENT_ID_SS1,
-                "foo", null, null, null, null, null);
+                "foo", null, null, null, null, null, null, null);
         subjects = subjectsResponse.getBody();
         assertEquals(2, subjects.size());
     }
@@ -749,7 +776,7 @@ public class ClientsApiControllerIntegrationTest {
     @WithMockUser(authorities = { "VIEW_CLIENT_ACL_SUBJECTS" })
     public void findSubjectsByType() {
         ResponseEntity<List<Subject>> subjectsResponse = clientsApiController.findSubjects(TestUtils.CLIENT_ID_SS1,
-                null, SubjectType.LOCALGROUP, null, null, null, null);
+                null, SubjectType.LOCALGROUP, null, null, null, null, null, null);
         List<Subject> subjects = subjectsResponse.getBody();
         assertEquals(2, subjects.size());
     }
@@ -758,7 +785,7 @@ public class ClientsApiControllerIntegrationTest {
     @WithMockUser(authorities = { "VIEW_CLIENT_ACL_SUBJECTS" })
     public void findSubjectsByInstance() {
         ResponseEntity<List<Subject>> subjectsResponse = clientsApiController.findSubjects(TestUtils.CLIENT_ID_SS1,
-                null, null, TestUtils.INSTANCE_EE, null, null, null);
+                null, null, TestUtils.INSTANCE_EE, null, null, null, null, null);
         List<Subject> subjects = subjectsResponse.getBody();
         assertEquals(5, subjects.size()); // includes localgroups
     }
@@ -767,7 +794,7 @@ public class ClientsApiControllerIntegrationTest {
     @WithMockUser(authorities = { "VIEW_CLIENT_ACL_SUBJECTS" })
     public void findSubjectsByMemberClass() {
         ResponseEntity<List<Subject>> subjectsResponse = clientsApiController.findSubjects(TestUtils.CLIENT_ID_SS1,
-                null, null, null, TestUtils.MEMBER_CLASS_GOV, null, null);
+                null, null, null, TestUtils.MEMBER_CLASS_GOV, null, null, null, null);
         List<Subject> subjects = subjectsResponse.getBody();
         assertEquals(3, subjects.size());
     }
@@ -776,17 +803,17 @@ public class ClientsApiControllerIntegrationTest {
     @WithMockUser(authorities = { "VIEW_CLIENT_ACL_SUBJECTS" })
     public void findSubjectsByMemberOrGroupCode() {
         ResponseEntity<List<Subject>> subjectsResponse = clientsApiController.findSubjects(TestUtils.CLIENT_ID_SS1,
-                null, null, null, null, TestUtils.MEMBER_CODE_M1, null);
+                null, null, null, null, TestUtils.MEMBER_CODE_M1, null, null, null);
         List<Subject> subjects = subjectsResponse.getBody();
         assertEquals(3, subjects.size());
 
         subjectsResponse = clientsApiController.findSubjects(TestUtils.CLIENT_ID_SS1,
-                null, null, null, null, "group1", null);
+                null, null, null, null, "group1", null, null, null);
         subjects = subjectsResponse.getBody();
         assertEquals(2, subjects.size());
 
         subjectsResponse = clientsApiController.findSubjects(TestUtils.CLIENT_ID_SS1,
-                null, null, null, null, "group2", null);
+                null, null, null, null, "group2", null, null, null);
         subjects = subjectsResponse.getBody();
         assertEquals(2, subjects.size());
     }
@@ -795,7 +822,7 @@ public class ClientsApiControllerIntegrationTest {
     @WithMockUser(authorities = { "VIEW_CLIENT_ACL_SUBJECTS" })
     public void findSubjectsBySubsystemCode() {
         ResponseEntity<List<Subject>> subjectsResponse = clientsApiController.findSubjects(TestUtils.CLIENT_ID_SS1,
-                null, null, null, null, null, TestUtils.SUBSYSTEM2);
+                null, null, null, null, null, TestUtils.SUBSYSTEM2, null, null);
         List<Subject> subjects = subjectsResponse.getBody();
         assertEquals(1, subjects.size());
     }
@@ -806,7 +833,7 @@ public class ClientsApiControllerIntegrationTest {
         ResponseEntity<List<Subject>> subjectsResponse = clientsApiController.findSubjects(TestUtils.CLIENT_ID_SS1,
                 TestUtils.NAME_FOR + TestUtils.SUBSYSTEM3, SubjectType.SUBSYSTEM, TestUtils.INSTANCE_EE,
                 TestUtils.MEMBER_CLASS_GOV, TestUtils.MEMBER_CODE_M2,
-                TestUtils.SUBSYSTEM3);
+                TestUtils.SUBSYSTEM3, null, null);
         List<Subject> subjects = subjectsResponse.getBody();
         assertEquals(1, subjects.size());
     }
@@ -814,7 +841,7 @@ public class ClientsApiControllerIntegrationTest {
     @Test(expected = ResourceNotFoundException.class)
     @WithMockUser(authorities = { "VIEW_CLIENT_ACL_SUBJECTS" })
     public void findSubjectsClientNotFound() {
-        clientsApiController.findSubjects(TestUtils.CLIENT_ID_SS4, null, null, null, null, null, null);
+        clientsApiController.findSubjects(TestUtils.CLIENT_ID_SS4, null, null, null, null, null, null, null, null);
     }
 
     @Test
@@ -823,12 +850,12 @@ public class ClientsApiControllerIntegrationTest {
         ResponseEntity<List<Subject>> subjectsResponse = clientsApiController.findSubjects(TestUtils.CLIENT_ID_SS1,
                 TestUtils.NAME_FOR + TestUtils.SUBSYSTEM3, SubjectType.LOCALGROUP, TestUtils.INSTANCE_EE,
                 TestUtils.MEMBER_CLASS_GOV, TestUtils.MEMBER_CODE_M2,
-                TestUtils.SUBSYSTEM3);
+                TestUtils.SUBSYSTEM3, null, null);
         List<Subject> subjects = subjectsResponse.getBody();
         assertEquals(0, subjects.size());
 
         subjectsResponse = clientsApiController.findSubjects(TestUtils.CLIENT_ID_SS1,
-                "nothing", null, null, null, "unknown-code", null);
+                "nothing", null, null, null, "unknown-code", null, null, null);
         subjects = subjectsResponse.getBody();
         assertEquals(0, subjects.size());
     }
@@ -33,6 +33,7 @@ import org.apache.commons.io.IOUtils;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.niis.xroad.restapi.cache.GlobalConfMemberIndex;
 import org.niis.xroad.restapi.facade.GlobalConfFacade;
 import org.niis.xroad.restapi.repository.ClientRepository;
 import org.niis.xroad.restapi.util.TestUtils;
@@ -102,7 +103,8 @@ public class ClientServiceIntegrationTest {
             return clientId.getSubsystemCode() != null ? TestUtils.NAME_FOR + clientId.getSubsystemCode()
                     : TestUtils.NAME_FOR + "test-member";
         });
-        clientService = new ClientService(clientRepository, globalConfFacade);
+        clientService = new ClientService(clientRepository, globalConfFacade,
+                new GlobalConfMemberIndex(globalConfFacade));
         pemBytes = IOUtils.toByteArray(this.getClass().getClassLoader().
                 getResourceAsStream("google-cert.pem"));
         derBytes = IOUtils.toByteArray(this.getClass().getClassLoader().
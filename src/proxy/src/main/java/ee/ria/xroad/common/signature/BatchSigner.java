@@ -26,6 +26,7 @@ package ee.ria.xroad.common.signature;
 
 import ee.ria.xroad.common.CodedException;
 import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.util.ServiceMetricRegistry;
 import ee.ria.xroad.signer.protocol.SignerClient;
 import ee.ria.xroad.signer.protocol.message.GetTokenBatchSigningEnabled;
 import ee.ria.xroad.signer.protocol.message.Sign;
@@ -34,23 +35,24 @@ import ee.ria.xroad.signer.protocol.message.SignResponse;
 import akka.actor.AbstractActorWithStash;
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
+import akka.actor.Cancellable;
 import akka.actor.Props;
 import akka.actor.UntypedAbstractActor;
 import akka.pattern.Patterns;
 import akka.util.Timeout;
+import com.codahale.metrics.Histogram;
 import lombok.Data;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
-import org.bouncycastle.operator.OperatorCreationException;
 import scala.concurrent.Await;
+import scala.concurrent.duration.Duration;
 
-import java.io.IOException;
-import java.security.NoSuchAlgorithmException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
+import static com.codahale.metrics.MetricRegistry.name;
 import static ee.ria.xroad.common.ErrorCodes.SIGNER_X;
 import static ee.ria.xroad.common.ErrorCodes.X_INTERNAL_ERROR;
 import static ee.ria.xroad.common.ErrorCodes.translateException;
@@ -156,8 +158,29 @@ public class BatchSigner extends UntypedAbstractActor {
 
     /**
      * This is the worker that does the heavy lifting.
+     *
+     * When batch signing is enabled, requests that arrive while a signature
+     * is being calculated are collected to the next batch. An idle worker can
+     * additionally wait for more requests for a short time (linger) before
+     * signing. The linger time is bounded by the configured maximum and by the
+     * observed signer latency, so that waiting never costs more than one
+     * signature calculation.
      */
-    private static class WorkerImpl extends AbstractActorWithStash {
+    static class WorkerImpl extends AbstractActorWithStash {
+
+        private static final Object FLUSH_BATCH = "FlushBatch";
+        private static final Object BATCH_SIGNING_QUERY_TIMEOUT = "BatchSigningQueryTimeout";
+
+        // Weight of the latest observation in the signer latency average.
+        private static final double LATENCY_WEIGHT = 0.2;
+
+        private final int maxBatchSize = Math.max(1, SystemProperties.getBatchSignerMaxBatchSize());
+        private final long maxLingerMillis = SystemProperties.getBatchSignerMaxLingerMs();
+
+        private final Histogram batchSizeHistogram =
+                ServiceMetricRegistry.getMetrics().histogram(name(BatchSigner.class, "batchSize"));
+        private final Histogram waitTimeHistogram =
+                ServiceMetricRegistry.getMetrics().histogram(name(BatchSigner.class, "signingWaitTime"));
 
         // The currently active signing ctx.
         private BatchSignatureCtx workingSigningCtx;
@@ -168,120 +191,248 @@ public class BatchSigner extends UntypedAbstractActor {
         private long signStartTime;
         private boolean workerBusy;
 
+        // Moving average of the signature calculation time, in milliseconds.
+        private double signerLatencyMillis = -1;
+
+        private Cancellable flushTask;
+
         private Boolean batchSigningEnabled;
+        private boolean batchSigningQueryPending;
+        private Cancellable batchSigningQueryTimeout;
+
+        // The signer the requests are sent to, null for the one of SignerClient.
+        private final ActorRef signer;
+        private final long batchSigningQueryTimeoutMillis;
+
+        WorkerImpl() {
+            this(null, TIMEOUT_MILLIS);
+        }
+
+        WorkerImpl(ActorRef signer, long batchSigningQueryTimeoutMillis) {
+            this.signer = signer;
+            this.batchSigningQueryTimeoutMillis = batchSigningQueryTimeoutMillis;
+        }
 
         @Override
         public Receive createReceive() {
             return receiveBuilder()
                     .match(SigningRequestWrapper.class, this::handleSignRequest)
                     .match(SignResponse.class, this::handleSignResponse)
+                    .match(Boolean.class, this::handleBatchSigningEnabled)
                     .match(Exception.class, this::handleException)
+                    .matchEquals(FLUSH_BATCH, m -> handleFlushBatch())
+                    .matchEquals(BATCH_SIGNING_QUERY_TIMEOUT, m -> handleBatchSigningQueryTimeout())
                     .matchAny(this::unhandled)
                     .build();
         }
 
+        @Override
+        public void postStop() {
+            cancelFlush();
+            cancelBatchSigningQueryTimeout();
+        }
+
         private void handleSignRequest(SigningRequestWrapper signRequest) throws Exception {
             log.trace("handleSignRequest()");
 
             // If we do not know whether batch signing is enabled for the token,
-            // we ask from Signer. This call will block until response is
-            // received or error occurs.
+            // we ask from Signer and keep the requests until the answer arrives.
             if (batchSigningEnabled == null) {
+                stash();
                 queryBatchSigningEnabled(signRequest.getKeyId());
+                return;
             }
 
             // Handle incoming sign request. If the token worker is currently
             // busy (signing, generating key, etc...) and batch signing is
             // enabled then create signing context and collect all following
-            // sign requests to be signed in batch. Otherwise just sign the
-            // data straight away.
+            // sign requests to be signed in batch. Otherwise sign the data
+            // straight away, or after lingering for more requests.
             if (isWorkerBusy()) {
-                if (batchSigningEnabled) {
-                    doBatchSign(signRequest);
+                if (batchSigningEnabled && !isNextBatchFull()) {
+                    addToNextBatch(signRequest);
                 } else {
-                    log.trace("Batch signing not enabled, stashing request");
-                    // Batch signing not enabled, but currently busy,
-                    // so stash this message for future.
+                    log.trace("Batch signing not enabled or batch full, stashing request");
+                    // Currently busy and the request cannot be added to the
+                    // next batch, so stash this message for future.
                     stash();
                 }
+            } else if (batchSigningEnabled && getLingerMillis() > 0) {
+                addToNextBatch(signRequest);
+
+                if (isNextBatchFull()) {
+                    startNextBatchSigning();
+                } else if (flushTask == null) {
+                    flushTask = getContext().system().scheduler().scheduleOnce(
+                            Duration.create(getLingerMillis(), TimeUnit.MILLISECONDS), getSelf(), FLUSH_BATCH,
+                            getContext().dispatcher(), ActorRef.noSender());
+                }
             } else {
                 doSign(signRequest);
             }
         }
 
         private void queryBatchSigningEnabled(String keyId) {
-            try {
-                batchSigningEnabled = SignerClient.execute(new GetTokenBatchSigningEnabled(keyId));
-            } catch (Exception e) {
-                log.error("Failed to query if batch signing is enabled for token with key {}", keyId, e);
+            if (!batchSigningQueryPending) {
+                batchSigningQueryPending = true;
+
+                // The answer (or an exception) arrives as a message to this actor. If neither
+                // arrives in time (e.g. the signer is down), the stashed requests are released
+                // by the timeout.
+                sendToSigner(new GetTokenBatchSigningEnabled(keyId));
+
+                batchSigningQueryTimeout = getContext().system().scheduler().scheduleOnce(
+                        Duration.create(batchSigningQueryTimeoutMillis, TimeUnit.MILLISECONDS), getSelf(),
+                        BATCH_SIGNING_QUERY_TIMEOUT, getContext().dispatcher(), ActorRef.noSender());
+            }
+        }
+
+        private void handleBatchSigningEnabled(Boolean enabled) {
+            log.trace("handleBatchSigningEnabled({})", enabled);
+
+            cancelBatchSigningQueryTimeout();
+
+            batchSigningQueryPending = false;
+            batchSigningEnabled = enabled;
+
+            unstashAll();
+        }
+
+        private void handleBatchSigningQueryTimeout() {
+            log.trace("handleBatchSigningQueryTimeout()");
+
+            batchSigningQueryTimeout = null;
+
+            if (batchSigningQueryPending) {
+                log.error("Timed out querying if batch signing is enabled for token");
+
+                // Fall back to signing one request at a time.
+                handleBatchSigningEnabled(Boolean.FALSE);
+            }
+        }
+
+        private void cancelBatchSigningQueryTimeout() {
+            if (batchSigningQueryTimeout != null) {
+                batchSigningQueryTimeout.cancel();
+                batchSigningQueryTimeout = null;
+            }
+        }
+
+        private void handleFlushBatch() {
+            log.trace("handleFlushBatch()");
+
+            flushTask = null;
+
+            if (!workerBusy && nextSigningCtx != null) {
+                startNextBatchSigning();
             }
         }
 
-        private void doBatchSign(SigningRequestWrapper wrapper) {
-            log.trace("doBatchSign()");
+        private boolean isNextBatchFull() {
+            return nextSigningCtx != null && nextSigningCtx.getClients().size() >= maxBatchSize;
+        }
+
+        private long getLingerMillis() {
+            if (maxLingerMillis <= 0 || signerLatencyMillis < 0) {
+                return maxLingerMillis;
+            }
+
+            return Math.min(maxLingerMillis, Math.round(signerLatencyMillis));
+        }
+
+        private void addToNextBatch(SigningRequestWrapper wrapper) {
+            log.trace("addToNextBatch()");
 
             if (nextSigningCtx == null) {
                 nextSigningCtx = new BatchSignatureCtx(wrapper.getKeyId(), wrapper.getSignatureAlgorithmId());
             }
 
-            nextSigningCtx.add(getSender(), wrapper.getRequest());
+            nextSigningCtx.add(getSender(), wrapper);
         }
 
         private void doSign(SigningRequestWrapper wrapper) throws Exception {
             log.trace("doSign()");
 
             BatchSignatureCtx ctx = new BatchSignatureCtx(wrapper.getKeyId(), wrapper.getSignatureAlgorithmId());
-            ctx.add(getSender(), wrapper.getRequest());
+            ctx.add(getSender(), wrapper);
 
             workingSigningCtx = ctx;
 
-            doCalculateSignature(ctx.getKeyId(), ctx.getSignatureAlgorithmId(), ctx.getDataToBeSigned());
+            doCalculateSignature(ctx);
         }
 
         private void handleSignResponse(SignResponse signResponse) {
             log.trace("handleSignResponse()");
 
             workerBusy = false;
+            updateSignerLatency();
 
             // Handle the (successful) signature calculation result that came
             // from Signer -- send the signature to the clients.
             sendResponse(signResponse);
 
-            // If batch signing is not enabled, then start signing the next
-            // stashed messages.
-            if (!batchSigningEnabled) {
-                unstashAll();
-            } else if (nextSigningCtx != null) {
-                // Start the next batch signing (if any).
-                startNextBatchSigning();
-            }
+            continueSigning();
         }
 
         private void handleException(Exception exception) {
             log.trace("handleException()");
 
+            if (batchSigningQueryPending) {
+                log.error("Failed to query if batch signing is enabled for token", exception);
+
+                // Fall back to signing one request at a time.
+                handleBatchSigningEnabled(Boolean.FALSE);
+                return;
+            }
+
+            if (workingSigningCtx == null) {
+                // E.g. a failed batch signing query answered after its timeout.
+                log.warn("Ignoring error without a pending signature", exception);
+                return;
+            }
+
             workerBusy = false;
 
             sendResponse(exception);
+
+            continueSigning();
+        }
+
+        private void continueSigning() {
+            // Start the next batch signing (if any) and return the
+            // requests that did not fit to a batch to the mailbox.
+            if (Boolean.TRUE.equals(batchSigningEnabled) && nextSigningCtx != null) {
+                startNextBatchSigning();
+            }
+
+            unstashAll();
         }
 
         private void startNextBatchSigning() {
             log.trace("startNextBatchSigning()");
 
+            cancelFlush();
+
             workingSigningCtx = nextSigningCtx;
             nextSigningCtx = null;
 
             try {
-                doCalculateSignature(workingSigningCtx.getKeyId(), workingSigningCtx.getSignatureAlgorithmId(),
-                        workingSigningCtx.getDataToBeSigned());
+                doCalculateSignature(workingSigningCtx);
             } catch (Exception e) {
                 sendResponse(workingSigningCtx, translateException(e));
 
-                workerBusy = true;
+                workerBusy = false;
                 workingSigningCtx = null;
             }
         }
 
+        private void cancelFlush() {
+            if (flushTask != null) {
+                flushTask.cancel();
+                flushTask = null;
+            }
+        }
+
         private boolean isWorkerBusy() {
             if (isSignatureCreationTimedOut()) {
                 workerBusy = false;
@@ -296,15 +447,32 @@ public class BatchSigner extends UntypedAbstractActor {
             return workerBusy && System.currentTimeMillis() - signStartTime >= DEFAULT_TIMEOUT.duration().length();
         }
 
-        private void doCalculateSignature(String keyId, String signatureAlgorithmId, byte[] data)
-                throws NoSuchAlgorithmException, IOException, OperatorCreationException {
+        private void updateSignerLatency() {
+            long latency = System.currentTimeMillis() - signStartTime;
+
+            signerLatencyMillis = signerLatencyMillis < 0
+                    ? latency : LATENCY_WEIGHT * latency + (1 - LATENCY_WEIGHT) * signerLatencyMillis;
+        }
+
+        private void doCalculateSignature(BatchSignatureCtx ctx) throws Exception {
             workerBusy = true;
             signStartTime = System.currentTimeMillis();
 
-            byte[] digest = calculateDigest(getDigestAlgorithmId(signatureAlgorithmId), data);
+            batchSizeHistogram.update(ctx.getClients().size());
+
+            byte[] digest = calculateDigest(getDigestAlgorithmId(ctx.getSignatureAlgorithmId()),
+                    ctx.getDataToBeSigned());
 
             // Proxy this request to the Signer.
-            SignerClient.execute(new Sign(keyId, signatureAlgorithmId, digest), getSelf());
+            sendToSigner(new Sign(ctx.getKeyId(), ctx.getSignatureAlgorithmId(), digest));
+        }
+
+        private void sendToSigner(Object message) {
+            if (signer != null) {
+                signer.tell(message, getSelf());
+            } else {
+                SignerClient.execute(message, getSelf());
+            }
         }
 
         private void sendResponse(Object message) {
@@ -336,12 +504,16 @@ public class BatchSigner extends UntypedAbstractActor {
                 ActorRef client = ctx.getClients().get(i);
                 client.tell(ctx.createSignatureData(signature, i), getSelf());
             }
+
+            recordWaitTimes(ctx);
         }
 
         private void sendResponse(BatchSignatureCtx ctx, Object message) {
             for (ActorRef client : ctx.getClients()) {
                 sendResponse(client, message);
             }
+
+            recordWaitTimes(ctx);
         }
 
         private void sendResponse(ActorRef client, Object message) {
@@ -354,6 +526,14 @@ public class BatchSigner extends UntypedAbstractActor {
             }
         }
 
+        private void recordWaitTimes(BatchSignatureCtx ctx) {
+            long now = System.currentTimeMillis();
+
+            for (long receivedTime : ctx.getReceivedTimes()) {
+                waitTimeHistogram.update(now - receivedTime);
+            }
+        }
+
     }
 
     /**
@@ -361,10 +541,11 @@ public class BatchSigner extends UntypedAbstractActor {
      * and algorithm id.
      */
     @Data
-    private static class SigningRequestWrapper {
+    static class SigningRequestWrapper {
         private final String keyId;
         private final String signatureAlgorithmId;
         private final SigningRequest request;
+        private final long receivedTime = System.currentTimeMillis();
 
         X509Certificate getSigningCert() {
             return request.getSigningCert();
@@ -380,6 +561,9 @@ public class BatchSigner extends UntypedAbstractActor {
         @Getter
         private final List<ActorRef> clients = new ArrayList<>();
 
+        @Getter
+        private final List<Long> receivedTimes = new ArrayList<>();
+
         @Getter
         private final String keyId;
 
@@ -389,9 +573,10 @@ public class BatchSigner extends UntypedAbstractActor {
             this.keyId = keyId;
         }
 
-        void add(ActorRef client, SigningRequest request) {
+        void add(ActorRef client, SigningRequestWrapper wrapper) {
             clients.add(client);
-            add(request);
+            receivedTimes.add(wrapper.getReceivedTime());
+            add(wrapper.getRequest());
         }
     }
 
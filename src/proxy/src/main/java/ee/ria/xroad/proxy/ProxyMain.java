@@ -40,6 +40,7 @@ import ee.ria.xroad.common.signature.BatchSigner;
 import ee.ria.xroad.common.util.AdminPort;
 import ee.ria.xroad.common.util.JobManager;
 import ee.ria.xroad.common.util.JsonUtils;
+import ee.ria.xroad.common.util.ServiceMetricRegistry;
 import ee.ria.xroad.common.util.StartStop;
 import ee.ria.xroad.common.util.healthcheck.HealthCheckPort;
 import ee.ria.xroad.proxy.addon.AddOn;
@@ -174,12 +175,15 @@ public final class ProxyMain {
     private static void shutdown() throws Exception {
         log.trace("shutdown()");
         stopServices();
+        ServiceMetricRegistry.stopJmxReporter();
         Await.ready(actorSystem.terminate(), Duration.Inf());
     }
 
     private static void createServices() throws Exception {
         JobManager jobManager = new JobManager();
 
+        ServiceMetricRegistry.startJmxReporter("xroad.proxy");
+
         MonitorAgent.init(actorSystem);
         SignerClient.init(actorSystem);
         BatchSigner.init(actorSystem);
@@ -26,6 +26,14 @@ package ee.ria.xroad.proxy.antidos;
 
 import ee.ria.xroad.common.SystemProperties;
 
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Slf4j
 class AntiDosConfiguration {
 
     /**
@@ -58,4 +66,41 @@ class AntiDosConfiguration {
     double getMaxHeapUsage() {
         return SystemProperties.getAntiDosMaxHeapUsage();
     }
+
+    /**
+     * @return the interval in milliseconds during which the result of the
+     * previous resource check is reused
+     */
+    long getResourceCheckInterval() {
+        return SystemProperties.getAntiDosResourceCheckInterval();
+    }
+
+    /**
+     * @return the interval in seconds at which the known member addresses
+     * are checked from global configuration
+     */
+    int getPartnerSyncInterval() {
+        return SystemProperties.getAntiDosPartnerSyncInterval();
+    }
+
+    /**
+     * @return scheduling weights of partner addresses. Addresses not in the
+     * map have weight 1.
+     */
+    Map<String, Integer> getPartnerWeights() {
+        Map<String, Integer> weights = new HashMap<>();
+
+        for (String pair : StringUtils.split(SystemProperties.getAntiDosPartnerWeights(), ',')) {
+            String address = StringUtils.substringBeforeLast(pair, "=").trim();
+            int weight = NumberUtils.toInt(StringUtils.substringAfterLast(pair, "=").trim(), 0);
+
+            if (address.isEmpty() || weight < 1) {
+                log.warn("Ignoring invalid Anti-Dos partner weight '{}'", pair);
+            } else {
+                weights.put(address, weight);
+            }
+        }
+
+        return weights;
+    }
 }
@@ -25,46 +25,94 @@
 package ee.ria.xroad.proxy.antidos;
 
 import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+import ee.ria.xroad.common.util.ServiceMetricRegistry;
 import ee.ria.xroad.common.util.SystemMetrics;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Collections;
 import java.util.Deque;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.LinkedBlockingDeque;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.codahale.metrics.MetricRegistry.name;
 
 /**
  * Manages the incoming connections and prevents system resource exhaustion.
+ *
+ * Partners with waiting connections are served with deficit round robin:
+ * on its turn a partner may have as many connections processed as its
+ * weight is, after which it is moved to the end of the queue.
+ *
+ * The total number of waiting connections, the number of partners with
+ * waiting connections and the queue depths of the partners with the most
+ * waiting connections are published as gauges in the service metric registry.
  */
 @Slf4j
 class AntiDosConnectionManager<T extends SocketChannelWrapper> {
 
-    // Tiny wrapper class for active connections of a partner
+    // Waiting connections and scheduling state of a partner
     private class HostData {
-        final Deque<T> connections = new LinkedBlockingDeque<>();
+        final String address;
+        final Deque<T> connections = new ConcurrentLinkedDeque<>();
+        final AtomicInteger queueDepth = new AtomicInteger();
+        // Whether the partner is in the active partners buffer
+        final AtomicBoolean active = new AtomicBoolean();
+        volatile int weight = 1;
+        // Connections the partner may still have processed on its turn,
+        // only accessed by the thread taking the connections
+        int deficit;
+
+        HostData(String address) {
+            this.address = address;
+        }
     }
 
     // The IP used for unknown members
     private static final String UNKNOWN_ORG_IP = "0.0.0.0";
 
+    // Number of partners whose queue depths are published
+    private static final int TOP_PARTNERS = 10;
+
     // Holds the configuration
     protected final AntiDosConfiguration configuration;
 
     // IP to HostData mapping
-    protected Map<String, HostData> database = new HashMap<>();
+    protected final Map<String, HostData> database = new ConcurrentHashMap<>();
 
     // Buffer of partners with waiting connections
-    protected LinkedBlockingQueue<HostData> activePartners =
-            new LinkedBlockingQueue<>();
+    protected final LinkedBlockingDeque<HostData> activePartners =
+            new LinkedBlockingDeque<>();
 
     // Holds a cache of previously known member IPs.
     // Used to determine if should sync the database when conf changed.
-    private Set<String> previousKnownOrganizations = new HashSet<>();
+    private Set<String> previousKnownOrganizations = Collections.emptySet();
+
+    private Map<String, Integer> partnerWeights = Collections.emptyMap();
+
+    private final Lock syncLock = new ReentrantLock();
+
+    private final AtomicInteger queuedConnections = new AtomicInteger();
+
+    private volatile long nextSyncTime;
+
+    private long resourcesCheckedTime;
+
+    private boolean sufficientResources;
 
     AntiDosConnectionManager(AntiDosConfiguration configuration) {
         if (configuration == null) {
@@ -72,13 +120,20 @@ class AntiDosConnectionManager<T extends SocketChannelWrapper> {
         }
 
         this.configuration = configuration;
-        this.previousKnownOrganizations.add(UNKNOWN_ORG_IP);
-        this.database.put(UNKNOWN_ORG_IP, new HostData());
     }
 
     void init() throws Exception {
         // Populate the database based on registered members' IPs.
-        syncDatabase();
+        syncLock.lock();
+        try {
+            partnerWeights = configuration.getPartnerWeights();
+            registerHostData(UNKNOWN_ORG_IP);
+            syncDatabase();
+        } finally {
+            syncLock.unlock();
+        }
+
+        registerMetrics();
     }
 
     /**
@@ -94,20 +149,26 @@ class AntiDosConnectionManager<T extends SocketChannelWrapper> {
     /**
      * Adds the connection into the partner's connection queue.
      */
-    synchronized void accept(T connection) {
-        // We need to synchronize the database with the existing members.
-        syncDatabase();
+    void accept(T connection) {
+        // Synchronize the database with the existing members when it is due.
+        if (System.currentTimeMillis() >= nextSyncTime && syncLock.tryLock()) {
+            try {
+                syncDatabase();
+            } finally {
+                syncLock.unlock();
+            }
+        }
 
         // Find the host data for the incoming connection and register
         // the new connection to this host data
         HostData currentPartner = getHostData(connection.getHostAddress());
         currentPartner.connections.addFirst(connection);
+        currentPartner.queueDepth.incrementAndGet();
+        queuedConnections.incrementAndGet();
 
         // If the host data is not for an active partner,
         // add it to the connection buffer as the newest partner.
-        if (!activePartners.contains(currentPartner)) {
-            activePartners.add(currentPartner);
-        }
+        activate(currentPartner);
     }
 
     /**
@@ -132,19 +193,31 @@ class AntiDosConnectionManager<T extends SocketChannelWrapper> {
      * If not, then the connection is closed thus freeing some resources.
      */
     protected T getNextConnection() throws InterruptedException {
-        // Take the oldest partner from the buffer (blocks until available).
-        HostData oldestPartner = activePartners.take();
+        // Take the partner whose turn it is (blocks until available).
+        HostData partner = activePartners.takeFirst();
+
+        if (partner.deficit <= 0) {
+            partner.deficit += partner.weight;
+        }
 
         // Take the oldest connection.
-        T sock = oldestPartner.connections.pollLast();
+        T sock = partner.connections.pollLast();
         if (sock == null) {
+            deactivate(partner);
             return null;
         }
 
-        // If there are more connections left for this partner, add the partner
-        // back to the buffer as the first partner.
-        if (!oldestPartner.connections.isEmpty()) {
-            activePartners.add(oldestPartner);
+        partner.queueDepth.decrementAndGet();
+        queuedConnections.decrementAndGet();
+        partner.deficit--;
+
+        if (partner.connections.isEmpty()) {
+            deactivate(partner);
+        } else if (partner.deficit > 0) {
+            // The partner still has its turn
+            activePartners.addFirst(partner);
+        } else {
+            activePartners.addLast(partner);
         }
 
         // Processing a connection consumes file handles and other resources
@@ -180,12 +253,31 @@ class AntiDosConnectionManager<T extends SocketChannelWrapper> {
         return SystemMetrics.getHeapUsage();
     }
 
+    private void activate(HostData partner) {
+        if (partner.active.compareAndSet(false, true)) {
+            activePartners.addLast(partner);
+        }
+    }
+
+    private void deactivate(HostData partner) {
+        partner.deficit = 0;
+        partner.active.set(false);
+
+        // A connection may have been accepted after the queue was found empty
+        if (!partner.connections.isEmpty()) {
+            activate(partner);
+        }
+    }
+
     private HostData getHostData(String ip) {
-        return database.containsKey(ip)
-                ? database.get(ip) : database.get(UNKNOWN_ORG_IP);
+        HostData hostData = database.get(ip);
+        return hostData != null ? hostData : database.get(UNKNOWN_ORG_IP);
     }
 
     private void syncDatabase() {
+        nextSyncTime = System.currentTimeMillis()
+                + TimeUnit.SECONDS.toMillis(configuration.getPartnerSyncInterval());
+
         Set<String> knownAddresses = getAllAddresses();
 
         if (previousKnownOrganizations.equals(knownAddresses)) {
@@ -193,31 +285,77 @@ class AntiDosConnectionManager<T extends SocketChannelWrapper> {
             return;
         }
 
-        Map<String, HostData> newDatabase = new HashMap<>();
-
-        // Retain existing members connections
+        // Remove partners that are no longer members, their waiting
+        // connections are still processed
         database.keySet().stream()
-                .filter(knownAddresses::contains)
-                .forEach(existingAddress -> newDatabase.put(
-                        existingAddress, database.get(existingAddress)));
+                .filter(existingAddress -> !knownAddresses.contains(existingAddress))
+                .forEach(this::unregisterHostData);
 
         // Add new members
         knownAddresses.stream()
                 .filter(knownAddress -> !database.containsKey(knownAddress))
-                .forEach(knownAddress ->
-                        registerHostData(newDatabase, knownAddress));
+                .forEach(this::registerHostData);
 
         previousKnownOrganizations = knownAddresses;
-        database = newDatabase;
     }
 
-    private void registerHostData(
-            Map<String, HostData> newDatabase, String knownAddress) {
+    private void registerHostData(String knownAddress) {
         log.trace("Registering HostData for " + knownAddress);
-        newDatabase.put(knownAddress, new HostData());
+
+        HostData hostData = new HostData(knownAddress);
+        hostData.weight = partnerWeights.getOrDefault(knownAddress, 1);
+        database.put(knownAddress, hostData);
+    }
+
+    private void unregisterHostData(String address) {
+        log.trace("Unregistering HostData for " + address);
+
+        database.remove(address);
+    }
+
+    private void registerMetrics() {
+        MetricRegistry metrics = ServiceMetricRegistry.getMetrics();
+
+        register(metrics, "queuedConnections", (Gauge<Integer>) queuedConnections::get);
+        register(metrics, "activePartners", (Gauge<Integer>) activePartners::size);
+        register(metrics, "topQueueDepths", (Gauge<Map<String, Integer>>) this::getTopQueueDepths);
+    }
+
+    private static void register(MetricRegistry metrics, String metricName, Gauge<?> gauge) {
+        String name = name(AntiDosConnectionManager.class, metricName);
+        metrics.remove(name);
+        metrics.register(name, gauge);
+    }
+
+    // Queue depths of the partners with the most waiting connections, deepest first
+    private Map<String, Integer> getTopQueueDepths() {
+        Map<String, Integer> depths = new LinkedHashMap<>();
+
+        // Read each depth once, so that concurrent changes do not affect the sort
+        database.values().stream()
+                .map(partner -> new SimpleImmutableEntry<>(partner.address, partner.queueDepth.get()))
+                .filter(partner -> partner.getValue() > 0)
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .limit(TOP_PARTNERS)
+                .forEach(partner -> depths.put(partner.getKey(), partner.getValue()));
+
+        return depths;
     }
 
     private boolean hasSufficientResources() {
+        long now = System.currentTimeMillis();
+
+        // Checking the resources is relatively expensive, so under a
+        // connection flood the previous decision is reused for a while
+        if (now - resourcesCheckedTime >= configuration.getResourceCheckInterval()) {
+            sufficientResources = checkResources();
+            resourcesCheckedTime = now;
+        }
+
+        return sufficientResources;
+    }
+
+    private boolean checkResources() {
         long freeFileDescriptorCount = getFreeFileDescriptorCount();
         int minFreeFileHandles = configuration.getMinFreeFileHandles();
         double cpuLoad = getCpuLoad();
@@ -39,6 +39,7 @@ import ee.ria.xroad.common.opmonitoring.OpMonitoringData;
 import ee.ria.xroad.common.util.HttpSender;
 import ee.ria.xroad.proxy.ProxyMain;
 import ee.ria.xroad.proxy.util.MessageProcessorBase;
+import ee.ria.xroad.proxy.util.PhaseTimer;
 
 import lombok.EqualsAndHashCode;
 import lombok.extern.slf4j.Slf4j;
@@ -120,6 +121,7 @@ abstract class AbstractClientMessageProcessor extends MessageProcessorBase {
         updateOpMonitoringServiceSecurityServerAddress(addresses, httpSender);
 
         httpSender.setAttribute(ID_TARGETS, addresses);
+        httpSender.setAttribute(PhaseTimer.class.getName(), phaseTimer);
 
         if (SystemProperties.isEnableClientProxyPooledConnectionReuse()) {
             // set the servers with this subsystem as the user token, this will pool the connections per groups of
@@ -50,6 +50,8 @@ import ee.ria.xroad.proxy.messagelog.MessageLog;
 import ee.ria.xroad.proxy.protocol.ProxyMessage;
 import ee.ria.xroad.proxy.protocol.ProxyMessageDecoder;
 import ee.ria.xroad.proxy.protocol.ProxyMessageEncoder;
+import ee.ria.xroad.proxy.util.PhaseTimer;
+import ee.ria.xroad.proxy.util.PhaseTimer.Phase;
 
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
@@ -180,10 +182,13 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
 
             // Verify that the client is registered.
             ClientId client = requestSoap.getClient();
-            verifyClientStatus(client);
 
-            // Check client authentication mode.
-            verifyClientAuthentication(client);
+            try (PhaseTimer.Measurement ignored = phaseTimer.start(Phase.AUTHORIZATION)) {
+                verifyClientStatus(client);
+
+                // Check client authentication mode.
+                verifyClientAuthentication(client);
+            }
 
             processRequest();
 
@@ -203,6 +208,10 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
             if (response != null) {
                 response.consume();
             }
+
+            if (requestSoap != null) {
+                requestSoap.consume();
+            }
         }
     }
 
@@ -249,7 +258,7 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
             // Add unique id to distinguish request/response pairs
             httpSender.addHeader(HEADER_REQUEST_ID, xRequestId);
 
-            try {
+            try (PhaseTimer.Measurement ignored = phaseTimer.start(Phase.SERVICE_WAIT)) {
                 opMonitoringData.setRequestOutTs(getEpochMillisecond());
                 httpSender.doPost(getServiceAddress(addresses), reqIns, CHUNKED_LENGTH, outputContentType);
                 opMonitoringData.setResponseInTs(getEpochMillisecond());
@@ -274,7 +283,7 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
 
         ProxyMessageDecoder decoder = new ProxyMessageDecoder(response, httpSender.getResponseContentType(),
                 getHashAlgoId(httpSender));
-        try {
+        try (PhaseTimer.Measurement ignored = phaseTimer.start(Phase.PARSING)) {
             decoder.parse(httpSender.getResponseContent());
         } catch (CodedException ex) {
             throw ex.withPrefix(X_SERVICE_FAILED_X);
@@ -285,12 +294,14 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
         // Ensure we have the required parts.
         checkResponse();
 
-        decoder.verify(requestServiceId.getClientId(), response.getSignature());
+        try (PhaseTimer.Measurement ignored = phaseTimer.start(Phase.SIGNATURE_VERIFICATION)) {
+            decoder.verify(requestServiceId.getClientId(), response.getSignature());
+        }
     }
 
     private void updateOpMonitoringDataByResponse(ProxyMessageDecoder decoder) {
         if (response.getSoap() != null) {
-            long responseSize = response.getSoap().getBytes().length;
+            long responseSize = response.getSoap().getSize();
 
             opMonitoringData.setResponseSize(responseSize);
             opMonitoringData.setResponseAttachmentCount(decoder.getAttachmentCount());
@@ -358,7 +369,9 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
     private void logResponseMessage() throws Exception {
         log.trace("logResponseMessage()");
 
-        MessageLog.log(response.getSoap(), response.getSignature(), true, xRequestId);
+        try (PhaseTimer.Measurement ignored = phaseTimer.start(Phase.MESSAGE_LOG)) {
+            MessageLog.log(response.getSoap(), response.getSignature(), true, xRequestId);
+        }
     }
 
     private void sendResponse() throws Exception {
@@ -460,8 +473,13 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
 
     private class SoapMessageHandler implements SoapMessageDecoder.Callback {
 
+        // The handler is created when parsing of the request starts
+        private final PhaseTimer.Measurement parsing = phaseTimer.start(Phase.PARSING);
+
         @Override
         public void soap(SoapMessage message, Map<String, String> headers) throws Exception {
+            parsing.stop();
+
             if (log.isTraceEnabled()) {
                 log.trace("soap({})", message.getXml());
             }
@@ -514,7 +532,10 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
             updateOpMonitoringData();
 
             try {
-                request.sign(KeyConf.getSigningCtx(requestSoap.getClient()));
+                try (PhaseTimer.Measurement ignored = phaseTimer.start(Phase.SIGNING)) {
+                    request.sign(KeyConf.getSigningCtx(requestSoap.getClient()));
+                }
+
                 logRequestMessage();
                 request.writeSignature();
             } catch (Exception ex) {
@@ -526,14 +547,16 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
             opMonitoringData.setRequestAttachmentCount(request.getAttachmentCount());
 
             if (request.getAttachmentCount() > 0) {
-                opMonitoringData.setRequestMimeSize(requestSoap.getBytes().length + request.getAttachmentsByteCount());
+                opMonitoringData.setRequestMimeSize(requestSoap.getSize() + request.getAttachmentsByteCount());
             }
         }
 
         private void logRequestMessage() throws Exception {
             log.trace("logRequestMessage()");
 
-            MessageLog.log(requestSoap, request.getSignature(), true, xRequestId);
+            try (PhaseTimer.Measurement ignored = phaseTimer.start(Phase.MESSAGE_LOG)) {
+                MessageLog.log(requestSoap, request.getSignature(), true, xRequestId);
+            }
         }
 
         @Override
@@ -35,6 +35,7 @@ import ee.ria.xroad.common.message.RestResponse;
 import ee.ria.xroad.common.monitoring.MessageInfo;
 import ee.ria.xroad.common.monitoring.MonitorAgent;
 import ee.ria.xroad.common.opmonitoring.OpMonitoringData;
+import ee.ria.xroad.common.util.CacheInputStream;
 import ee.ria.xroad.common.util.CachingStream;
 import ee.ria.xroad.common.util.CryptoUtils;
 import ee.ria.xroad.common.util.HttpSender;
@@ -44,6 +45,8 @@ import ee.ria.xroad.proxy.messagelog.MessageLog;
 import ee.ria.xroad.proxy.protocol.ProxyMessage;
 import ee.ria.xroad.proxy.protocol.ProxyMessageDecoder;
 import ee.ria.xroad.proxy.protocol.ProxyMessageEncoder;
+import ee.ria.xroad.proxy.util.PhaseTimer;
+import ee.ria.xroad.proxy.util.PhaseTimer.Phase;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
@@ -122,8 +125,10 @@ class ClientRestMessageProcessor extends AbstractClientMessageProcessor {
             senderId = restRequest.getClientId();
             requestServiceId = restRequest.getServiceId();
 
-            verifyClientStatus(senderId);
-            verifyClientAuthentication(senderId);
+            try (PhaseTimer.Measurement ignored = phaseTimer.start(Phase.AUTHORIZATION)) {
+                verifyClientStatus(senderId);
+                verifyClientAuthentication(senderId);
+            }
 
             processRequest();
             if (response != null) {
@@ -177,7 +182,7 @@ class ClientRestMessageProcessor extends AbstractClientMessageProcessor {
         // Add unique id to distinguish request/response pairs
         httpSender.addHeader(HEADER_REQUEST_ID, xRequestId);
 
-        try {
+        try (PhaseTimer.Measurement ignored = phaseTimer.start(Phase.SERVICE_WAIT)) {
             final String contentType = MimeUtils.mpMixedContentType("xtop" + RandomStringUtils.randomAlphabetic(30));
             opMonitoringData.setRequestOutTs(getEpochMillisecond());
             httpSender.doPost(getServiceAddress(addresses), new ProxyMessageEntity(contentType));
@@ -192,7 +197,7 @@ class ClientRestMessageProcessor extends AbstractClientMessageProcessor {
         response = new ProxyMessage(httpSender.getResponseHeaders().get(HEADER_ORIGINAL_CONTENT_TYPE));
         ProxyMessageDecoder decoder = new ProxyMessageDecoder(response, httpSender.getResponseContentType(),
                 getHashAlgoId(httpSender));
-        try {
+        try (PhaseTimer.Measurement ignored = phaseTimer.start(Phase.PARSING)) {
             decoder.parse(httpSender.getResponseContent());
         } catch (CodedException ex) {
             throw ex.withPrefix(X_SERVICE_FAILED_X);
@@ -201,7 +206,9 @@ class ClientRestMessageProcessor extends AbstractClientMessageProcessor {
         // Ensure we have the required parts.
         checkResponse();
         opMonitoringData.setRestResponseStatusCode(response.getRestResponse().getResponseCode());
-        decoder.verify(requestServiceId.getClientId(), response.getSignature());
+        try (PhaseTimer.Measurement ignored = phaseTimer.start(Phase.SIGNATURE_VERIFICATION)) {
+            decoder.verify(requestServiceId.getClientId(), response.getSignature());
+        }
     }
 
     @Override
@@ -257,10 +264,12 @@ class ClientRestMessageProcessor extends AbstractClientMessageProcessor {
     }
 
     private void logResponseMessage() {
-        MessageLog.log(restRequest,
-                response.getRestResponse(),
-                response.getSignature(),
-                response.getRestBody(), true, xRequestId);
+        try (PhaseTimer.Measurement ignored = phaseTimer.start(Phase.MESSAGE_LOG)) {
+            MessageLog.log(restRequest,
+                    response.getRestResponse(),
+                    response.getSignature(),
+                    response.getRestBody(), true, xRequestId);
+        }
     }
 
     private void sendResponse() throws Exception {
@@ -330,25 +339,25 @@ class ClientRestMessageProcessor extends AbstractClientMessageProcessor {
                 enc.restRequest(restRequest);
 
                 //Optimize the case without request body (e.g. simple get requests)
-                //TBD: Optimize the case without body logging
                 try (InputStream in = servletRequest.getInputStream()) {
                     @SuppressWarnings("checkstyle:magicnumber")
                     byte[] buf = new byte[4096];
                     int count = in.read(buf);
-                    if (count >= 0) {
+                    if (count >= 0 && !MessageLog.isBodyLogged(restRequest, true)) {
+                        // the body is not logged, so there is no need to cache it
+                        enc.restBody(buf, count, in);
+                        signAndLog(enc, null);
+                    } else if (count >= 0) {
                         final CachingStream cache = new CachingStream();
                         try (TeeInputStream tee = new TeeInputStream(in, cache)) {
                             cache.write(buf, 0, count);
                             enc.restBody(buf, count, tee);
-                            enc.sign(KeyConf.getSigningCtx(senderId));
-                            MessageLog.log(restRequest, enc.getSignature(), cache.getCachedContents(), true,
-                                    xRequestId);
+                            signAndLog(enc, cache.getCachedContents());
                         } finally {
                             cache.consume();
                         }
                     } else {
-                        enc.sign(KeyConf.getSigningCtx(senderId));
-                        MessageLog.log(restRequest, enc.getSignature(), null, true, xRequestId);
+                        signAndLog(enc, null);
                     }
                 }
 
@@ -369,6 +378,16 @@ class ClientRestMessageProcessor extends AbstractClientMessageProcessor {
         public boolean isStreaming() {
             return true;
         }
+
+        private void signAndLog(ProxyMessageEncoder enc, CacheInputStream body) throws Exception {
+            try (PhaseTimer.Measurement ignored = phaseTimer.start(Phase.SIGNING)) {
+                enc.sign(KeyConf.getSigningCtx(senderId));
+            }
+
+            try (PhaseTimer.Measurement ignored = phaseTimer.start(Phase.MESSAGE_LOG)) {
+                MessageLog.log(restRequest, enc.getSignature(), body, true, xRequestId);
+            }
+        }
     }
 
     private List<Header> headers(HttpServletRequest req) {
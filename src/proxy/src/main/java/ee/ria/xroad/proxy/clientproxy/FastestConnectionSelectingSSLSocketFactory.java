@@ -29,6 +29,8 @@ import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.opmonitoring.OpMonitoringData;
 import ee.ria.xroad.common.util.CryptoUtils;
 import ee.ria.xroad.proxy.clientproxy.FastestSocketSelector.SocketInfo;
+import ee.ria.xroad.proxy.util.PhaseTimer;
+import ee.ria.xroad.proxy.util.PhaseTimer.Phase;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
@@ -105,6 +107,12 @@ class FastestConnectionSelectingSSLSocketFactory
     @Override
     public Socket connectSocket(int timeout, Socket socket, HttpHost host, InetSocketAddress remoteAddress,
             InetSocketAddress localAddress, HttpContext context) throws IOException {
+        try (PhaseTimer.Measurement ignored = getPhaseTimer(context).start(Phase.CONNECTION_SETUP)) {
+            return selectAndConnect(timeout, socket, context);
+        }
+    }
+
+    private Socket selectAndConnect(int timeout, Socket socket, HttpContext context) throws IOException {
         // Discard dummy socket.
         closeQuietly(socket);
 
@@ -201,6 +209,13 @@ class FastestConnectionSelectingSSLSocketFactory
         }
     }
 
+    private static PhaseTimer getPhaseTimer(HttpContext context) {
+        PhaseTimer phaseTimer = (PhaseTimer) context.getAttribute(PhaseTimer.class.getName());
+
+        // Connections opened outside of a message processor are still added to the phase metrics
+        return phaseTimer != null ? phaseTimer : new PhaseTimer();
+    }
+
     private static void updateOpMonitoringData(HttpContext context,
             SocketInfo socketInfo) {
         try {
@@ -25,12 +25,14 @@
 package ee.ria.xroad.proxy.conf;
 
 import ee.ria.xroad.common.CodedException;
+import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.cert.CertChain;
 import ee.ria.xroad.common.conf.globalconf.AuthKey;
 import ee.ria.xroad.common.conf.globalconf.GlobalConf;
 import ee.ria.xroad.common.conf.serverconf.ServerConf;
 import ee.ria.xroad.common.identifier.ClientId;
 import ee.ria.xroad.common.identifier.SecurityServerId;
+import ee.ria.xroad.common.ocsp.OcspResponseStore;
 import ee.ria.xroad.proxy.signedmessage.SignerSigningKey;
 import ee.ria.xroad.signer.protocol.SignerClient;
 import ee.ria.xroad.signer.protocol.dto.AuthKeyInfo;
@@ -45,10 +47,12 @@ import lombok.extern.slf4j.Slf4j;
 import org.bouncycastle.cert.ocsp.OCSPResp;
 
 import java.io.File;
+import java.io.IOException;
 import java.security.KeyStore;
 import java.security.PrivateKey;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
 import static ee.ria.xroad.common.ErrorCodes.X_CANNOT_CREATE_SIGNATURE;
@@ -65,6 +69,14 @@ import static ee.ria.xroad.common.util.CryptoUtils.readCertificate;
 @Slf4j
 class KeyConfImpl implements KeyConfProvider {
 
+    // Specifies how often the OCSP response store is checked for changes
+    private static final long OCSP_STORE_REFRESH_INTERVAL_MS = 1000;
+
+    private final OcspResponseStore ocspResponseStore = SystemProperties.isProxyReadOcspResponseStore()
+            ? new OcspResponseStore(OcspResponseStore.getDefaultStoreFile(), true) : null;
+
+    private volatile long ocspStoreRefreshedAt;
+
     KeyConfImpl() {
     }
 
@@ -119,6 +131,12 @@ class KeyConfImpl implements KeyConfProvider {
 
     @Override
     public OCSPResp getOcspResponse(String certHash) throws Exception {
+        OCSPResp storedResponse = getStoredOcspResponse(certHash);
+
+        if (storedResponse != null) {
+            return storedResponse;
+        }
+
         GetOcspResponsesResponse response =
                 SignerClient.execute(
                         new GetOcspResponses(new String[] {certHash}));
@@ -134,9 +152,16 @@ class KeyConfImpl implements KeyConfProvider {
     @Override
     public List<OCSPResp> getOcspResponses(List<X509Certificate> certs)
             throws Exception {
+        String[] certHashes = getCertHashes(certs);
+
+        List<OCSPResp> storedResponses = getStoredOcspResponses(certHashes);
+
+        if (storedResponses != null) {
+            return storedResponses;
+        }
+
         GetOcspResponsesResponse response =
-                SignerClient.execute(
-                        new GetOcspResponses(getCertHashes(certs)));
+                SignerClient.execute(new GetOcspResponses(certHashes));
 
         List<OCSPResp> ocspResponses = new ArrayList<>();
         for (String base64Encoded : response.getBase64EncodedResponses()) {
@@ -164,6 +189,51 @@ class KeyConfImpl implements KeyConfProvider {
                 base64EncodedResponses));
     }
 
+    /**
+     * Reads the OCSP responses directly from the signer's OCSP response store.
+     * @return the responses or null, if any of them is not available in the store
+     */
+    private List<OCSPResp> getStoredOcspResponses(String[] certHashes) {
+        List<OCSPResp> responses = new ArrayList<>(certHashes.length);
+
+        for (String certHash : certHashes) {
+            OCSPResp response = getStoredOcspResponse(certHash);
+
+            if (response == null) {
+                return null;
+            }
+
+            responses.add(response);
+        }
+
+        return responses;
+    }
+
+    private OCSPResp getStoredOcspResponse(String certHash) {
+        if (ocspResponseStore == null) {
+            return null;
+        }
+
+        try {
+            refreshOcspResponseStore();
+
+            return ocspResponseStore.get(certHash, new Date());
+        } catch (Exception e) {
+            log.warn("Failed to read OCSP response from the store, falling back to signer: {}", e.getMessage());
+
+            return null;
+        }
+    }
+
+    private void refreshOcspResponseStore() throws IOException {
+        long now = System.currentTimeMillis();
+
+        if (now - ocspStoreRefreshedAt > OCSP_STORE_REFRESH_INTERVAL_MS) {
+            ocspStoreRefreshedAt = now;
+            ocspResponseStore.refresh();
+        }
+    }
+
     static SigningCtx createSigningCtx(ClientId subject, String keyId,
             byte[] certBytes, String signMechanismName) throws Exception {
         return new SigningCtxImpl(subject, new SignerSigningKey(keyId, signMechanismName), readCertificate(certBytes));
@@ -71,6 +71,8 @@ public final class MessageLog {
 
     private static ActorRef logManager;
 
+    private static boolean bodiesLogged = true;
+
     private MessageLog() {
     }
 
@@ -86,6 +88,8 @@ public final class MessageLog {
 
         log.trace("Using implementation class: {}", clazz);
 
+        bodiesLogged = !NullLogManager.class.equals(clazz);
+
         logManager = actorSystem.actorOf(Props.create(clazz, jobManager).withDispatcher(CONTROL_AWARE_DISPATCHER),
                 LOG_MANAGER);
     }
@@ -133,6 +137,19 @@ public final class MessageLog {
         }
     }
 
+    /**
+     * Tells whether the body of a REST message belonging to the given request is saved to the message log.
+     * When it is not, the body does not need to be cached for logging.
+     *
+     * @param request    the REST request
+     * @param clientSide whether the message is logged by the client proxy
+     * @return true if the message body is logged
+     */
+    public static boolean isBodyLogged(RestRequest request, boolean clientSide) {
+        return bodiesLogged && new MessageBodyManipulator().isBodyLogged(new RestLogMessage(request.getQueryId(),
+                request.getClientId(), request.getServiceId(), request, null, null, clientSide));
+    }
+
     public static void log(SoapMessageImpl message, SignatureData signature, boolean clientSide) {
         log(message, signature, clientSide, null);
     }
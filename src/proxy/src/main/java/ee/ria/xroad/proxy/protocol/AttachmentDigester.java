@@ -0,0 +1,220 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.protocol;
+
+import ee.ria.xroad.common.SystemProperties;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Copies attachments to the encoded message and calculates their digests
+ * on a shared pool of worker threads. The writing thread hands every chunk
+ * of an attachment to the digest of that attachment in order, so the
+ * digests of several large attachments are calculated concurrently with
+ * writing them. The number of chunks an encoder has in flight is bounded,
+ * so a slow digest holds back the writer instead of buffering the attachment.
+ */
+@Slf4j
+final class AttachmentDigester {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int MAX_CHUNKS = 16;
+
+    /** The provider whose digests use the SHA intrinsics of the JVM where available. */
+    private static final String DIGEST_PROVIDER = "SUN";
+
+    private static ExecutorService executor;
+
+    private final String hashAlgoId;
+
+    private final BlockingQueue<byte[]> freeChunks = new ArrayBlockingQueue<>(MAX_CHUNKS);
+    private int allocatedChunks;
+
+    /**
+     * @param hashAlgoId hash algorithm id used when hashing attachments
+     */
+    AttachmentDigester(String hashAlgoId) {
+        this.hashAlgoId = hashAlgoId;
+    }
+
+    /**
+     * @return whether attachments should be digested on worker threads
+     */
+    static boolean isEnabled() {
+        return SystemProperties.getProxyAttachmentDigestThreads() > 0;
+    }
+
+    /**
+     * Copies the content to the output and starts calculating its digest.
+     * @param content the attachment content
+     * @param out the output receiving the content
+     * @return the number of bytes copied and the pending digest of the content
+     * @throws IOException if reading or writing the content fails
+     */
+    PendingDigest copy(InputStream content, ChunkWriter out) throws IOException {
+        Digest digest = new Digest(createMessageDigest(hashAlgoId));
+        long byteCount = 0;
+
+        while (true) {
+            byte[] chunk = takeChunk();
+            int count = IOUtils.read(content, chunk);
+
+            if (count == 0) {
+                freeChunks.offer(chunk);
+                break;
+            }
+
+            out.write(chunk, 0, count);
+            digest.update(chunk, count);
+            byteCount += count;
+        }
+
+        return new PendingDigest(byteCount, digest.finish());
+    }
+
+    private byte[] takeChunk() throws InterruptedIOException {
+        byte[] chunk = freeChunks.poll();
+
+        if (chunk != null) {
+            return chunk;
+        }
+
+        if (allocatedChunks < MAX_CHUNKS) {
+            allocatedChunks++;
+
+            return new byte[CHUNK_SIZE];
+        }
+
+        try {
+            return freeChunks.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new InterruptedIOException("Interrupted while waiting for attachment digest");
+        }
+    }
+
+    static MessageDigest createMessageDigest(String hashAlgoId) {
+        try {
+            return MessageDigest.getInstance(hashAlgoId, DIGEST_PROVIDER);
+        } catch (NoSuchAlgorithmException | NoSuchProviderException e) {
+            try {
+                return MessageDigest.getInstance(hashAlgoId);
+            } catch (NoSuchAlgorithmException ex) {
+                throw new IllegalArgumentException("Unsupported hash algorithm: " + hashAlgoId, ex);
+            }
+        }
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            int threads = Math.max(1, SystemProperties.getProxyAttachmentDigestThreads());
+            AtomicInteger count = new AtomicInteger();
+
+            log.info("Digesting attachments with {} threads", threads);
+
+            executor = Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "attachment-digest-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
+        return executor;
+    }
+
+    /**
+     * The digest of one attachment. The chunks are digested one after
+     * another, possibly on different worker threads.
+     */
+    private final class Digest {
+
+        private final MessageDigest md;
+
+        private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+
+        private volatile RuntimeException failure;
+
+        Digest(MessageDigest md) {
+            this.md = md;
+        }
+
+        void update(byte[] chunk, int count) {
+            tail = tail.thenRunAsync(() -> {
+                try {
+                    if (failure == null) {
+                        md.update(chunk, 0, count);
+                    }
+                } catch (RuntimeException e) {
+                    failure = e;
+                } finally {
+                    freeChunks.offer(chunk);
+                }
+            }, getExecutor());
+        }
+
+        CompletableFuture<byte[]> finish() {
+            return tail.thenApply(v -> {
+                if (failure != null) {
+                    throw failure;
+                }
+
+                return md.digest();
+            });
+        }
+    }
+
+    /**
+     * Receives the chunks of an attachment.
+     */
+    @FunctionalInterface
+    interface ChunkWriter {
+        void write(byte[] buffer, int offset, int length) throws IOException;
+    }
+
+    /**
+     * The number of bytes of an attachment and its digest that is being calculated.
+     */
+    @Value
+    static class PendingDigest {
+        private final long byteCount;
+        private final CompletableFuture<byte[]> digest;
+    }
+}
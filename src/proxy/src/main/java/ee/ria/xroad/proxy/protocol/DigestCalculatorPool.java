@@ -0,0 +1,96 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.protocol;
+
+import ee.ria.xroad.common.util.CryptoUtils;
+
+import org.bouncycastle.operator.DigestCalculator;
+import org.bouncycastle.operator.OperatorCreationException;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static ee.ria.xroad.common.ErrorCodes.translateException;
+
+/**
+ * Reuses digest calculators per thread and hash algorithm. A calculator
+ * is reset when its digest is taken, so it can be released to the pool
+ * right after {@link DigestCalculator#getDigest()}. A calculator whose
+ * digesting failed half-way must not be released.
+ */
+final class DigestCalculatorPool {
+
+    private static final Map<String, PerThreadPool<DigestCalculator>> POOLS = new ConcurrentHashMap<>();
+
+    private DigestCalculatorPool() {
+    }
+
+    /**
+     * @param hashAlgoId the hash algorithm id
+     * @return an idle digest calculator of the current thread or a new one
+     */
+    static DigestCalculator borrow(String hashAlgoId) {
+        return POOLS.computeIfAbsent(hashAlgoId, DigestCalculatorPool::createPool).borrow();
+    }
+
+    /**
+     * Returns the calculator to the pool of the current thread.
+     * @param hashAlgoId the hash algorithm id of the calculator
+     * @param calculator the calculator whose digest has been taken
+     */
+    static void release(String hashAlgoId, DigestCalculator calculator) {
+        POOLS.computeIfAbsent(hashAlgoId, DigestCalculatorPool::createPool).release(calculator);
+    }
+
+    /**
+     * Calculates the digest of the data with a pooled calculator.
+     * @param hashAlgoId the hash algorithm id
+     * @param data       the data
+     * @param offset     the offset of the data in the array
+     * @param length     the length of the data
+     * @return the digest
+     * @throws IOException if the data cannot be digested
+     */
+    static byte[] calculateDigest(String hashAlgoId, byte[] data, int offset, int length) throws IOException {
+        DigestCalculator calculator = borrow(hashAlgoId);
+        calculator.getOutputStream().write(data, offset, length);
+
+        byte[] digest = calculator.getDigest();
+        release(hashAlgoId, calculator);
+
+        return digest;
+    }
+
+    private static PerThreadPool<DigestCalculator> createPool(String hashAlgoId) {
+        return new PerThreadPool<>(() -> {
+            try {
+                return CryptoUtils.createDigestCalculator(hashAlgoId);
+            } catch (OperatorCreationException e) {
+                throw translateException(e);
+            }
+        });
+    }
+}
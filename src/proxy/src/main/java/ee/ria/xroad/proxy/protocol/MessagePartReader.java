@@ -0,0 +1,170 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.protocol;
+
+import ee.ria.xroad.common.SystemProperties;
+
+import lombok.Value;
+import org.bouncycastle.asn1.ASN1InputStream;
+import org.bouncycastle.asn1.ASN1Primitive;
+import org.bouncycastle.asn1.ocsp.OCSPResponse;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Reads small message parts (REST message headers, OCSP responses, hash
+ * chains and signatures) into a buffer that is reused by the thread, instead of
+ * growing a new buffer for every part. The initial size of the buffer
+ * is configured with {@link SystemProperties#PROXY_MESSAGE_DECODER_BUFFER_SIZE};
+ * a buffer grown above {@link #MAX_RETAINED_FACTOR} times the initial
+ * size is dropped after use.
+ */
+final class MessagePartReader {
+
+    private static final int MAX_RETAINED_FACTOR = 16;
+
+    private static final ThreadLocal<MessagePartReader> READERS = ThreadLocal.withInitial(
+            () -> new MessagePartReader(Math.max(1, SystemProperties.getProxyMessageDecoderBufferSize())));
+
+    private final int initialSize;
+
+    private byte[] buffer;
+
+    private int count;
+
+    private MessagePartReader(int initialSize) {
+        this.initialSize = initialSize;
+        this.buffer = new byte[initialSize];
+    }
+
+    /**
+     * Reads the part and digests it with a pooled digest calculator.
+     * @param is         the part
+     * @param hashAlgoId the hash algorithm id
+     * @return the content and the digest of the part
+     * @throws IOException if reading or digesting fails
+     */
+    static DigestedPart readDigested(InputStream is, String hashAlgoId) throws IOException {
+        MessagePartReader reader = READERS.get();
+
+        try {
+            reader.readFully(is);
+
+            byte[] digest = DigestCalculatorPool.calculateDigest(hashAlgoId, reader.buffer, 0, reader.count);
+
+            return new DigestedPart(Arrays.copyOf(reader.buffer, reader.count), digest);
+        } finally {
+            reader.shrink();
+        }
+    }
+
+    /**
+     * Reads the part as a string.
+     * @param is      the part
+     * @param charset the charset of the part
+     * @return the content of the part
+     * @throws IOException if reading fails
+     */
+    static String readString(InputStream is, Charset charset) throws IOException {
+        MessagePartReader reader = READERS.get();
+
+        try {
+            reader.readFully(is);
+
+            return new String(reader.buffer, 0, reader.count, charset);
+        } finally {
+            reader.shrink();
+        }
+    }
+
+    /**
+     * Reads the part as a DER encoded OCSP response. The response is parsed
+     * from the bytes actually received, so a declared length larger than
+     * the part is rejected instead of being allocated.
+     * @param is the part
+     * @return the OCSP response
+     * @throws IOException if reading or parsing fails
+     */
+    static OCSPResp readOcspResponse(InputStream is) throws IOException {
+        MessagePartReader reader = READERS.get();
+
+        try {
+            reader.readFully(is);
+
+            try (ASN1InputStream asn1 = new ASN1InputStream(
+                    new ByteArrayInputStream(reader.buffer, 0, reader.count), reader.count)) {
+                ASN1Primitive response = asn1.readObject();
+
+                if (response == null) {
+                    throw new IOException("Malformed OCSP response: no response data found");
+                }
+
+                return new OCSPResp(OCSPResponse.getInstance(response));
+            }
+        } finally {
+            reader.shrink();
+        }
+    }
+
+    private void readFully(InputStream is) throws IOException {
+        count = 0;
+
+        int read;
+
+        do {
+            if (count == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+
+            read = is.read(buffer, count, buffer.length - count);
+
+            if (read > 0) {
+                count += read;
+            }
+        } while (read != -1);
+    }
+
+    private void shrink() {
+        if (buffer.length / MAX_RETAINED_FACTOR > initialSize) {
+            buffer = new byte[initialSize];
+        }
+
+        count = 0;
+    }
+
+    /**
+     * The content and the digest of a message part.
+     */
+    @Value
+    static class DigestedPart {
+        byte[] content;
+        byte[] digest;
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.protocol;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Supplier;
+
+/**
+ * Keeps idle instances of a reusable object per thread. Unlike a plain
+ * thread local, an instance is taken out of the pool while it is used,
+ * so the same thread can use several instances at once (for example when
+ * an attachment is parsed inside the body callback of a multipart parser).
+ * @param <T> the type of the pooled objects
+ */
+final class PerThreadPool<T> {
+
+    /** The maximum number of idle instances kept per thread. */
+    private static final int MAX_IDLE = 4;
+
+    private final Supplier<T> factory;
+
+    private final ThreadLocal<Deque<T>> idle = ThreadLocal.withInitial(ArrayDeque::new);
+
+    /**
+     * @param factory creates new instances when the pool of the thread is empty
+     */
+    PerThreadPool(Supplier<T> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * @return an idle instance of the current thread or a new instance
+     */
+    T borrow() {
+        T instance = idle.get().pollFirst();
+
+        return instance != null ? instance : factory.get();
+    }
+
+    /**
+     * Returns the instance to the pool of the current thread. The instance
+     * must be in a reusable state and must not be used by the caller anymore.
+     * @param instance the instance
+     */
+    void release(T instance) {
+        Deque<T> instances = idle.get();
+
+        if (instances.size() < MAX_IDLE) {
+            instances.addFirst(instance);
+        }
+    }
+}
@@ -41,8 +41,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
 import org.bouncycastle.cert.ocsp.OCSPResp;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
@@ -73,6 +71,7 @@ public class ProxyMessage implements ProxyMessageConsumer {
     protected Map<String, String> soapPartHeaders;
 
     protected CachingStream attachmentCache;
+    private CachingStream mimeSoapCache;
     protected SoapMessageEncoder encoder;
 
     private boolean hasBeenConsumed;
@@ -140,13 +139,18 @@ public class ProxyMessage implements ProxyMessageConsumer {
      */
     public InputStream getSoapContent() throws Exception {
         if (isMimeEncodedSoap()) {
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            MultipartEncoder mp = new MultipartEncoder(out, originalMimeBoundary);
+            // Release the temporary file of a previous call before encoding again.
+            if (mimeSoapCache != null) {
+                mimeSoapCache.consume();
+            }
+
+            mimeSoapCache = new CachingStream();
+            MultipartEncoder mp = new MultipartEncoder(mimeSoapCache, originalMimeBoundary);
             mp.startPart(getSoap().getContentType(), MimeUtils.toHeaders(soapPartHeaders));
-            mp.write(getSoap().getBytes());
+            mp.write(getSoap().getContent());
             mp.close();
 
-            return new ByteArrayInputStream(out.toByteArray());
+            return mimeSoapCache.getCachedContents();
         } else if (hasAttachments()) {
             // Finish writing to the attachment cache.
             encoder.close();
@@ -155,7 +159,7 @@ public class ProxyMessage implements ProxyMessageConsumer {
 
             return attachmentCache.getCachedContents();
         } else {
-            return new ByteArrayInputStream(soapMessage.getBytes());
+            return soapMessage.getContent();
         }
     }
 
@@ -176,6 +180,14 @@ public class ProxyMessage implements ProxyMessageConsumer {
         if (attachmentCache != null) {
             attachmentCache.consume();
         }
+
+        if (mimeSoapCache != null) {
+            mimeSoapCache.consume();
+        }
+
+        if (soapMessage != null) {
+            soapMessage.consume();
+        }
     }
 
     @Override
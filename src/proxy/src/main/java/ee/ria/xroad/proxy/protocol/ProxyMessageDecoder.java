@@ -33,22 +33,19 @@ import ee.ria.xroad.common.message.Soap;
 import ee.ria.xroad.common.message.SoapFault;
 import ee.ria.xroad.common.message.SoapMessageImpl;
 import ee.ria.xroad.common.signature.SignatureData;
-import ee.ria.xroad.common.util.CryptoUtils;
 import ee.ria.xroad.common.util.MessageFileNames;
 import ee.ria.xroad.common.util.MimeTypes;
 import ee.ria.xroad.common.util.MimeUtils;
+import ee.ria.xroad.proxy.protocol.MessagePartReader.DigestedPart;
 import ee.ria.xroad.proxy.signedmessage.Verifier;
 
 import lombok.Getter;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.input.TeeInputStream;
 import org.apache.commons.io.output.CountingOutputStream;
 import org.apache.james.mime4j.MimeException;
 import org.apache.james.mime4j.parser.AbstractContentHandler;
-import org.apache.james.mime4j.parser.MimeStreamParser;
 import org.apache.james.mime4j.stream.BodyDescriptor;
 import org.apache.james.mime4j.stream.Field;
-import org.apache.james.mime4j.stream.MimeConfig;
 import org.bouncycastle.cert.ocsp.OCSPResp;
 import org.bouncycastle.operator.DigestCalculator;
 import org.eclipse.jetty.http.HttpFields;
@@ -76,12 +73,18 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * Decodes proxy SOAP messages from an input stream.
+ *
+ * The MIME parsers, digest calculators and the buffer for reading small
+ * parts are reused by the thread, so decoding a message allocates little
+ * besides the decoded content itself.
  */
 public class ProxyMessageDecoder {
 
     private static final Logger LOG =
             LoggerFactory.getLogger(ProxyMessageDecoder.class);
 
+    private static final SaxSoapParserImpl SOAP_PARSER = new SaxSoapParserImpl();
+
     private final ProxyMessageConsumer callback;
 
     /**
@@ -104,11 +107,6 @@ public class ProxyMessageDecoder {
      */
     private final String hashAlgoId;
 
-    /**
-     * Parser does the main work.
-     */
-    private MimeStreamParser parser;
-
     /**
      * The signature that is read from the message
      */
@@ -190,7 +188,7 @@ public class ProxyMessageDecoder {
     }
 
     private void parseFault(InputStream is) throws Exception {
-        Soap soap = new SaxSoapParserImpl().parse(MimeTypes.TEXT_XML_UTF8, is);
+        Soap soap = SOAP_PARSER.parse(MimeTypes.TEXT_XML_UTF8, is);
         if (!(soap instanceof SoapFault)) {
             throw new CodedException(X_INVALID_MESSAGE,
                     "Expected fault message, but got reqular SOAP message");
@@ -206,12 +204,7 @@ public class ProxyMessageDecoder {
                     "Multipart content type is missing required boundary");
         }
 
-        MimeConfig config = new MimeConfig.Builder().setHeadlessParsing(contentType).build();
-
-        parser = new MimeStreamParser(config);
-
-        parser.setContentHandler(new ContentHandler());
-        parser.parse(is);
+        ReusableMimeParser.parseFlat(is, contentType, new ContentHandler());
     }
 
     private enum NextPart {
@@ -224,13 +217,6 @@ public class ProxyMessageDecoder {
         private Map<String, String> headers;
         private String partContentType;
 
-        @Override
-        public void startMultipart(BodyDescriptor bd) {
-            // Do not parse SOAP attachments in the (optional) second
-            // part of the message. We will create separate parser for them.
-            parser.setFlat();
-        }
-
         @Override
         public void startHeader() throws MimeException {
             headers = new HashMap<>();
@@ -327,8 +313,7 @@ public class ProxyMessageDecoder {
         try {
             LOG.trace("Looking for OCSP, got: {} {}", bd.getMimeType(),
                     bd.getCharset());
-            byte[] buffer = IOUtils.toByteArray(is);
-            OCSPResp response = new OCSPResp(buffer);
+            OCSPResp response = MessagePartReader.readOcspResponse(is);
             callback.ocspResponse(response);
         } catch (Exception ex) {
             throw translateException(ex);
@@ -351,7 +336,7 @@ public class ProxyMessageDecoder {
                             bd.getMimeType());
             }
 
-            Soap soap = new SaxSoapParserImpl().parse(partContentType, is);
+            Soap soap = SOAP_PARSER.parse(partContentType, is);
             if (soap instanceof SoapFault) {
                 callback.fault((SoapFault) soap);
             } else {
@@ -368,10 +353,9 @@ public class ProxyMessageDecoder {
     private void handleRest(BodyDescriptor bd, InputStream is) {
         try {
             //The request size is unbounded; should have a limit?
-            final byte[] request = IOUtils.toByteArray(is);
-            final byte[] digest = CryptoUtils.calculateDigest(getHashAlgoId(), request);
-            callback.rest(new RestRequest(request));
-            verifier.addPart(MessageFileNames.MESSAGE, getHashAlgoId(), digest, request);
+            final DigestedPart request = MessagePartReader.readDigested(is, getHashAlgoId());
+            callback.rest(new RestRequest(request.getContent()));
+            verifier.addPart(MessageFileNames.MESSAGE, getHashAlgoId(), request.getDigest(), request.getContent());
         } catch (Exception ex) {
             throw translateException(ex);
         }
@@ -380,12 +364,12 @@ public class ProxyMessageDecoder {
     private void handleRestResponse(BodyDescriptor bd, InputStream is) {
         try {
             //The response size is unbounded; should have a limit?
-            final byte[] request = IOUtils.toByteArray(is);
-            callback.rest(RestResponse.of(request));
+            final DigestedPart response = MessagePartReader.readDigested(is, getHashAlgoId());
+            callback.rest(RestResponse.of(response.getContent()));
             verifier.addPart(MessageFileNames.MESSAGE,
                     getHashAlgoId(),
-                    CryptoUtils.calculateDigest(getHashAlgoId(), request),
-                    request);
+                    response.getDigest(),
+                    response.getContent());
         } catch (Exception ex) {
             throw translateException(ex);
         }
@@ -393,13 +377,14 @@ public class ProxyMessageDecoder {
 
     private void handleRestBody(BodyDescriptor bd, InputStream is) {
         try {
-            final DigestCalculator dc = CryptoUtils.createDigestCalculator(getHashAlgoId());
+            final DigestCalculator dc = DigestCalculatorPool.borrow(getHashAlgoId());
             final CountingOutputStream cos = new CountingOutputStream(dc.getOutputStream());
             final TeeInputStream proxyIs = new TeeInputStream(is, cos, true);
 
             callback.restBody(proxyIs);
             attachmentsByteCount += cos.getByteCount();
             restBodyDigest = dc.getDigest();
+            DigestCalculatorPool.release(getHashAlgoId(), dc);
             verifier.addPart(MessageFileNames.attachment(++attachmentNo), getHashAlgoId(), restBodyDigest);
         } catch (Exception ex) {
             throw translateException(ex);
@@ -410,16 +395,13 @@ public class ProxyMessageDecoder {
             throws MimeException, IOException {
         LOG.debug("Found attachments: {}, {}", bd.getMimeType(),
                 bd.getBoundary());
-        // Parse attachments via separate MimeStreamParser.
+        // Parse attachments via separate parser.
         parseAttachments(MimeUtils.mpMixedContentType(bd.getBoundary()), is);
     }
 
     private void parseAttachments(String attachmentContentType, InputStream is)
             throws MimeException, IOException {
-        MimeConfig config = new MimeConfig.Builder().setHeadlessParsing(attachmentContentType).build();
-
-        final MimeStreamParser attachmentParser = new MimeStreamParser(config);
-        attachmentParser.setContentHandler(new AbstractContentHandler() {
+        ReusableMimeParser.parseFlat(is, attachmentContentType, new AbstractContentHandler() {
             private Map<String, String> headers;
             private String partContentType;
 
@@ -439,18 +421,13 @@ public class ProxyMessageDecoder {
                 }
             }
 
-            @Override
-            public void startMultipart(BodyDescriptor bd) {
-                attachmentParser.setFlat();
-            }
-
             @Override
             public void body(BodyDescriptor bd, InputStream is)
                     throws IOException {
                 LOG.trace("attachment body: {}", bd.getMimeType());
                 try {
                     DigestCalculator dc =
-                            CryptoUtils.createDigestCalculator(getHashAlgoId());
+                            DigestCalculatorPool.borrow(getHashAlgoId());
                     CountingOutputStream cos = new CountingOutputStream(
                             dc.getOutputStream());
                     TeeInputStream proxyIs = new TeeInputStream(is, cos, true);
@@ -459,23 +436,24 @@ public class ProxyMessageDecoder {
 
                     attachmentsByteCount += cos.getByteCount();
 
+                    byte[] digest = dc.getDigest();
+                    DigestCalculatorPool.release(getHashAlgoId(), dc);
+
                     verifier.addPart(
                             MessageFileNames.attachment(++attachmentNo),
-                            getHashAlgoId(), dc.getDigest());
+                            getHashAlgoId(), digest);
                 } catch (Exception ex) {
                     throw translateException(ex);
                 }
             }
         });
-
-        attachmentParser.parse(is);
     }
 
     private void handleHashChainResult(InputStream is) throws CodedException {
         try {
             LOG.trace("handleHashChainResult()");
 
-            String hashChainResult = IOUtils.toString(is, UTF_8);
+            String hashChainResult = MessagePartReader.readString(is, UTF_8);
             LOG.trace("HashChainResult: {}", hashChainResult);
 
             signature = new SignatureData(null, hashChainResult, null);
@@ -488,7 +466,7 @@ public class ProxyMessageDecoder {
         try {
             LOG.trace("handleHashChain()");
 
-            String hashChain = IOUtils.toString(is, UTF_8);
+            String hashChain = MessagePartReader.readString(is, UTF_8);
             LOG.trace("HashChain: {}", hashChain);
 
             signature = new SignatureData(null, signature.getHashChainResult(),
@@ -507,7 +485,7 @@ public class ProxyMessageDecoder {
                     ? "" : bd.getMimeType().toLowerCase()) {
                 case SIGNATURE_BDOC:
                     // We got signature, just as expected.
-                    signature = new SignatureData(IOUtils.toString(is, UTF_8),
+                    signature = new SignatureData(MessagePartReader.readString(is, UTF_8),
                             signature.getHashChainResult(), signature.getHashChain());
                     callback.signature(signature);
                     break;
@@ -517,7 +495,7 @@ public class ProxyMessageDecoder {
                     // party sent SOAP fault instead of signature.
 
                     // Parse the fault message.
-                    Soap soap = new SaxSoapParserImpl().parse(bd.getMimeType(), is);
+                    Soap soap = SOAP_PARSER.parse(bd.getMimeType(), is);
                     if (soap instanceof SoapFault) {
                         callback.fault((SoapFault) soap);
                         return; // The nextPart will be set to NONE
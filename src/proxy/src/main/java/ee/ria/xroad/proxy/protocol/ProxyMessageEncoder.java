@@ -34,9 +34,11 @@ import ee.ria.xroad.common.util.MessageFileNames;
 import ee.ria.xroad.common.util.MimeTypes;
 import ee.ria.xroad.common.util.MultipartEncoder;
 import ee.ria.xroad.proxy.conf.SigningCtx;
+import ee.ria.xroad.proxy.protocol.AttachmentDigester.PendingDigest;
 import ee.ria.xroad.proxy.signedmessage.Signer;
 
 import lombok.Getter;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.input.TeeInputStream;
 import org.apache.commons.io.output.CountingOutputStream;
@@ -47,7 +49,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionException;
 
 import static ee.ria.xroad.common.ErrorCodes.translateException;
 import static ee.ria.xroad.common.util.CryptoUtils.createDigestCalculator;
@@ -66,6 +71,12 @@ public class ProxyMessageEncoder implements ProxyMessageConsumer {
 
     private final Signer signer = new Signer();
 
+    /** Digests attachments on worker threads, null if attachments are digested while writing them. */
+    private final AttachmentDigester attachmentDigester;
+
+    /** Attachments whose digests are being calculated, added to the signer before signing. */
+    private final List<PendingAttachment> pendingAttachments = new ArrayList<>();
+
     private final String topBoundary;
     private final String attachmentBoundary;
 
@@ -99,6 +110,7 @@ public class ProxyMessageEncoder implements ProxyMessageConsumer {
         attachmentBoundary = "xatt" + uniquePart;
 
         mpEncoder = new MultipartEncoder(out, topBoundary);
+        attachmentDigester = createAttachmentDigester(hashAlgoId);
     }
 
     /**
@@ -120,6 +132,7 @@ public class ProxyMessageEncoder implements ProxyMessageConsumer {
         this.topBoundary = topBoundary;
         attachmentBoundary = "xatt" + randomBoundary();
         mpEncoder = new MultipartEncoder(out, topBoundary);
+        attachmentDigester = createAttachmentDigester(hashAlgoId);
     }
 
 
@@ -240,11 +253,10 @@ public class ProxyMessageEncoder implements ProxyMessageConsumer {
             log.trace("writeSoapMessage({})", message.getXml());
         }
 
-        byte[] data = message.getBytes();
         try {
             mpEncoder.startPart(message.getContentType(),
                     toHeaders(additionalHeaders));
-            mpEncoder.write(data);
+            mpEncoder.write(message.getContent());
 
             signer.addMessagePart(hashAlgoId, message);
         } catch (Exception ex) {
@@ -262,12 +274,22 @@ public class ProxyMessageEncoder implements ProxyMessageConsumer {
             inAttachmentPart = true;
         }
 
+        mpEncoder.startPart(contentType, toHeaders(additionalHeaders));
+
+        if (attachmentDigester != null) {
+            PendingDigest digest = attachmentDigester.copy(content, mpEncoder::write);
+
+            attachmentsByteCount += digest.getByteCount();
+            pendingAttachments.add(new PendingAttachment(MessageFileNames.attachment(++attachmentNo), digest));
+
+            return;
+        }
+
         DigestCalculator calc = createDigestCalculator(hashAlgoId);
         CountingOutputStream cos = new CountingOutputStream(
                 calc.getOutputStream());
         TeeInputStream proxyIs = new TeeInputStream(content, cos, true);
 
-        mpEncoder.startPart(contentType, toHeaders(additionalHeaders));
         mpEncoder.write(proxyIs);
 
         attachmentsByteCount += cos.getByteCount();
@@ -308,6 +330,7 @@ public class ProxyMessageEncoder implements ProxyMessageConsumer {
 
     /**
      * Signs all the parts. Call after adding SOAP message and attachments.
+     * Waits for the digests of attachments that are still being calculated.
      *
      * @param securityCtx signing context to use when signing the parts
      * @throws Exception in case of any errors
@@ -315,6 +338,8 @@ public class ProxyMessageEncoder implements ProxyMessageConsumer {
     public void sign(SigningCtx securityCtx) throws Exception {
         log.trace("sign()");
 
+        addPendingAttachments();
+
         signer.sign(securityCtx);
     }
 
@@ -379,4 +404,26 @@ public class ProxyMessageEncoder implements ProxyMessageConsumer {
         return attachmentNo;
     }
 
+    private void addPendingAttachments() throws Exception {
+        for (PendingAttachment attachment : pendingAttachments) {
+            try {
+                signer.addPart(attachment.getName(), hashAlgoId, attachment.getDigest().getDigest().join());
+            } catch (CompletionException e) {
+                throw translateException(e.getCause());
+            }
+        }
+
+        pendingAttachments.clear();
+    }
+
+    private static AttachmentDigester createAttachmentDigester(String hashAlgoId) {
+        return AttachmentDigester.isEnabled() ? new AttachmentDigester(hashAlgoId) : null;
+    }
+
+    @Value
+    private static class PendingAttachment {
+        private final String name;
+        private final PendingDigest digest;
+    }
+
 }
@@ -0,0 +1,96 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.protocol;
+
+import org.apache.james.mime4j.MimeException;
+import org.apache.james.mime4j.parser.ContentHandler;
+import org.apache.james.mime4j.stream.EntityState;
+import org.apache.james.mime4j.stream.MimeConfig;
+import org.apache.james.mime4j.stream.MimeTokenStream;
+import org.apache.james.mime4j.stream.RecursionMode;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Parses multipart content with mime4j token streams that are reused by
+ * the thread, so that the parser state and its buffers are not allocated
+ * for every message. The content is parsed the way the proxy message
+ * decoder needs it: without headers of its own (the content type is known
+ * from the enclosing message) and flat, so nested multiparts are passed to
+ * the content handler as bodies.
+ */
+final class ReusableMimeParser {
+
+    private static final PerThreadPool<MimeTokenStream> STREAMS =
+            new PerThreadPool<>(() -> new MimeTokenStream(new MimeConfig.Builder().build()));
+
+    private ReusableMimeParser() {
+    }
+
+    /**
+     * Parses the multipart content and calls the handler for the headers
+     * and the bodies of its parts.
+     * @param is          the content
+     * @param contentType the multipart content type with the boundary
+     * @param handler     the content handler
+     * @throws MimeException if the content is not valid MIME
+     * @throws IOException   if reading the content fails
+     */
+    static void parseFlat(InputStream is, String contentType, ContentHandler handler)
+            throws MimeException, IOException {
+        MimeTokenStream stream = STREAMS.borrow();
+
+        try {
+            stream.setRecursionMode(RecursionMode.M_RECURSE);
+            stream.parseHeadless(is, contentType);
+
+            for (EntityState state = stream.getState(); state != EntityState.T_END_OF_STREAM; state = stream.next()) {
+                switch (state) {
+                    case T_START_MULTIPART:
+                        // Do not parse nested multiparts (SOAP attachments), the
+                        // handler parses them separately.
+                        stream.setRecursionMode(RecursionMode.M_FLAT);
+                        handler.startMultipart(stream.getBodyDescriptor());
+                        break;
+                    case T_START_HEADER:
+                        handler.startHeader();
+                        break;
+                    case T_FIELD:
+                        handler.field(stream.getField());
+                        break;
+                    case T_BODY:
+                        handler.body(stream.getBodyDescriptor(), stream.getInputStream());
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } finally {
+            // Parsing resets the stream, so it can be reused even if this parsing failed.
+            STREAMS.release(stream);
+        }
+    }
+}
@@ -56,6 +56,8 @@ import ee.ria.xroad.proxy.protocol.ProxyMessage;
 import ee.ria.xroad.proxy.protocol.ProxyMessageDecoder;
 import ee.ria.xroad.proxy.protocol.ProxyMessageEncoder;
 import ee.ria.xroad.proxy.util.MessageProcessorBase;
+import ee.ria.xroad.proxy.util.PhaseTimer;
+import ee.ria.xroad.proxy.util.PhaseTimer.Phase;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang.ArrayUtils;
@@ -169,6 +171,10 @@ class ServerMessageProcessor extends MessageProcessorBase {
             if (requestMessage != null) {
                 requestMessage.consume();
             }
+
+            if (responseSoap != null) {
+                responseSoap.consume();
+            }
         }
     }
 
@@ -245,7 +251,9 @@ class ServerMessageProcessor extends MessageProcessorBase {
         }
 
         if (handler.shouldVerifyAccess()) {
-            verifyAccess();
+            try (PhaseTimer.Measurement ignored = phaseTimer.start(Phase.AUTHORIZATION)) {
+                verifyAccess();
+            }
         }
 
         if (handler.shouldVerifySignature()) {
@@ -257,7 +265,10 @@ class ServerMessageProcessor extends MessageProcessorBase {
         }
 
         try {
-            handler.startHandling(servletRequest, requestMessage, opMonitorHttpClient, opMonitoringData);
+            try (PhaseTimer.Measurement ignored = phaseTimer.start(Phase.SERVICE_WAIT)) {
+                handler.startHandling(servletRequest, requestMessage, opMonitorHttpClient, opMonitoringData);
+            }
+
             parseResponse(handler);
         } finally {
             handler.finishHandling();
@@ -277,8 +288,10 @@ class ServerMessageProcessor extends MessageProcessorBase {
 
                 requestServiceId = soapMessage.getService();
 
-                verifySecurityServer();
-                verifyClientStatus();
+                try (PhaseTimer.Measurement ignored = phaseTimer.start(Phase.AUTHORIZATION)) {
+                    verifySecurityServer();
+                    verifyClientStatus();
+                }
 
                 responseSigningCtx = KeyConf.getSigningCtx(requestServiceId.getClientId());
 
@@ -290,7 +303,7 @@ class ServerMessageProcessor extends MessageProcessorBase {
 
         decoder = new ProxyMessageDecoder(requestMessage, servletRequest.getContentType(), false,
                 getHashAlgoId(servletRequest));
-        try {
+        try (PhaseTimer.Measurement ignored = phaseTimer.start(Phase.PARSING)) {
             decoder.parse(servletRequest.getInputStream());
         } catch (CodedException e) {
             throw e.withPrefix(X_SERVICE_FAILED_X);
@@ -307,7 +320,7 @@ class ServerMessageProcessor extends MessageProcessorBase {
             opMonitoringData.setRequestAttachmentCount(decoder.getAttachmentCount());
 
             if (decoder.getAttachmentCount() > 0) {
-                opMonitoringData.setRequestMimeSize(requestMessage.getSoap().getBytes().length
+                opMonitoringData.setRequestMimeSize(requestMessage.getSoap().getSize()
                         + decoder.getAttachmentsByteCount());
             }
         }
@@ -423,20 +436,26 @@ class ServerMessageProcessor extends MessageProcessorBase {
     private void verifySignature() throws Exception {
         log.trace("verifySignature()");
 
-        decoder.verify(requestMessage.getSoap().getClient(), requestMessage.getSignature());
+        try (PhaseTimer.Measurement ignored = phaseTimer.start(Phase.SIGNATURE_VERIFICATION)) {
+            decoder.verify(requestMessage.getSoap().getClient(), requestMessage.getSignature());
+        }
     }
 
     private void logRequestMessage() throws Exception {
         log.trace("logRequestMessage()");
 
-        MessageLog.log(requestMessage.getSoap(), requestMessage.getSignature(), false, xRequestId);
+        try (PhaseTimer.Measurement ignored = phaseTimer.start(Phase.MESSAGE_LOG)) {
+            MessageLog.log(requestMessage.getSoap(), requestMessage.getSignature(), false, xRequestId);
+        }
     }
 
     private void logResponseMessage() throws Exception {
         if (responseSoap != null && encoder != null) {
             log.trace("logResponseMessage()");
 
-            MessageLog.log(responseSoap, encoder.getSignature(), false, xRequestId);
+            try (PhaseTimer.Measurement ignored = phaseTimer.start(Phase.MESSAGE_LOG)) {
+                MessageLog.log(responseSoap, encoder.getSignature(), false, xRequestId);
+            }
         }
     }
 
@@ -501,14 +520,16 @@ class ServerMessageProcessor extends MessageProcessorBase {
         opMonitoringData.setResponseAttachmentCount(encoder.getAttachmentCount());
 
         if (encoder.getAttachmentCount() > 0) {
-            opMonitoringData.setResponseMimeSize(responseSoap.getBytes().length + encoder.getAttachmentsByteCount());
+            opMonitoringData.setResponseMimeSize(responseSoap.getSize() + encoder.getAttachmentsByteCount());
         }
     }
 
     private void sign() throws Exception {
         log.trace("sign({})", requestServiceId.getClientId());
 
-        encoder.sign(responseSigningCtx);
+        try (PhaseTimer.Measurement ignored = phaseTimer.start(Phase.SIGNING)) {
+            encoder.sign(responseSigningCtx);
+        }
     }
 
     private void writeSignature() throws Exception {
@@ -657,7 +678,7 @@ class ServerMessageProcessor extends MessageProcessorBase {
         public void soap(SoapMessage message, Map<String, String> headers) throws Exception {
             responseSoap = (SoapMessageImpl) message;
 
-            opMonitoringData.setResponseSize(responseSoap.getBytes().length);
+            opMonitoringData.setResponseSize(responseSoap.getSize());
             opMonitoringData.setResponseOutTs(getEpochMillisecond(), true);
 
             encoder.soap(responseSoap, headers);
@@ -52,6 +52,8 @@ import ee.ria.xroad.proxy.protocol.ProxyMessage;
 import ee.ria.xroad.proxy.protocol.ProxyMessageDecoder;
 import ee.ria.xroad.proxy.protocol.ProxyMessageEncoder;
 import ee.ria.xroad.proxy.util.MessageProcessorBase;
+import ee.ria.xroad.proxy.util.PhaseTimer;
+import ee.ria.xroad.proxy.util.PhaseTimer.Phase;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.input.TeeInputStream;
@@ -236,7 +238,9 @@ class ServerRestMessageProcessor extends MessageProcessorBase {
         }
         log.trace("handler={}", handler);
         if (handler.shouldVerifyAccess()) {
-            verifyAccess();
+            try (PhaseTimer.Measurement ignored = phaseTimer.start(Phase.AUTHORIZATION)) {
+                verifyAccess();
+            }
         }
         if (handler.shouldVerifySignature()) {
             verifySignature();
@@ -246,8 +250,10 @@ class ServerRestMessageProcessor extends MessageProcessorBase {
         }
         try {
             preprocess();
-            handler.startHandling(servletRequest, requestMessage, decoder, encoder,
-                    httpClient, null, opMonitoringData);
+            try (PhaseTimer.Measurement ignored = phaseTimer.start(Phase.SERVICE_WAIT)) {
+                handler.startHandling(servletRequest, requestMessage, decoder, encoder,
+                        httpClient, null, opMonitoringData);
+            }
         } finally {
             handler.finishHandling();
             restResponse = handler.getRestResponse();
@@ -263,7 +269,9 @@ class ServerRestMessageProcessor extends MessageProcessorBase {
             public void rest(RestRequest message) throws Exception {
                 super.rest(message);
                 requestServiceId = message.getServiceId();
-                verifyClientStatus();
+                try (PhaseTimer.Measurement ignored = phaseTimer.start(Phase.AUTHORIZATION)) {
+                    verifyClientStatus();
+                }
                 responseSigningCtx = KeyConf.getSigningCtx(requestServiceId.getClientId());
                 if (SystemProperties.isSslEnabled()) {
                     verifySslClientCert();
@@ -273,7 +281,7 @@ class ServerRestMessageProcessor extends MessageProcessorBase {
 
         decoder = new ProxyMessageDecoder(requestMessage, servletRequest.getContentType(), false,
                 getHashAlgoId(servletRequest));
-        try {
+        try (PhaseTimer.Measurement ignored = phaseTimer.start(Phase.PARSING)) {
             decoder.parse(servletRequest.getInputStream());
         } catch (CodedException e) {
             throw e.withPrefix(X_SERVICE_FAILED_X);
@@ -368,24 +376,32 @@ class ServerRestMessageProcessor extends MessageProcessorBase {
     private void verifySignature() throws Exception {
         log.trace("verifySignature()");
 
-        decoder.verify(requestMessage.getRest().getClientId(), requestMessage.getSignature());
+        try (PhaseTimer.Measurement ignored = phaseTimer.start(Phase.SIGNATURE_VERIFICATION)) {
+            decoder.verify(requestMessage.getRest().getClientId(), requestMessage.getSignature());
+        }
     }
 
     private void logRequestMessage() {
         log.trace("logRequestMessage()");
-        MessageLog.log(requestMessage.getRest(), requestMessage.getSignature(), requestMessage.getRestBody(),
-                false, xRequestId);
+        try (PhaseTimer.Measurement ignored = phaseTimer.start(Phase.MESSAGE_LOG)) {
+            MessageLog.log(requestMessage.getRest(), requestMessage.getSignature(), requestMessage.getRestBody(),
+                    false, xRequestId);
+        }
     }
 
     private void logResponseMessage() {
         log.trace("log response message");
-        MessageLog.log(requestMessage.getRest(), restResponse, encoder.getSignature(),
-                restResponseBody == null ? null : restResponseBody.getCachedContents(), false, xRequestId);
+        try (PhaseTimer.Measurement ignored = phaseTimer.start(Phase.MESSAGE_LOG)) {
+            MessageLog.log(requestMessage.getRest(), restResponse, encoder.getSignature(),
+                    restResponseBody == null ? null : restResponseBody.getCachedContents(), false, xRequestId);
+        }
     }
 
     private void sign() throws Exception {
         log.trace("sign({})", requestServiceId.getClientId());
-        encoder.sign(responseSigningCtx);
+        try (PhaseTimer.Measurement ignored = phaseTimer.start(Phase.SIGNING)) {
+            encoder.sign(responseSigningCtx);
+        }
     }
 
     private void writeSignature() throws Exception {
@@ -584,9 +600,14 @@ class ServerRestMessageProcessor extends MessageProcessorBase {
             messageEncoder.restResponse(restResponse);
 
             if (response.getEntity() != null) {
-                restResponseBody = new CachingStream();
-                TeeInputStream tee = new TeeInputStream(response.getEntity().getContent(), restResponseBody);
-                messageEncoder.restBody(tee);
+                if (MessageLog.isBodyLogged(requestProxyMessage.getRest(), false)) {
+                    restResponseBody = new CachingStream();
+                    TeeInputStream tee = new TeeInputStream(response.getEntity().getContent(), restResponseBody);
+                    messageEncoder.restBody(tee);
+                } else {
+                    // the body is not logged, so there is no need to cache it
+                    messageEncoder.restBody(response.getEntity().getContent());
+                }
                 EntityUtils.consume(response.getEntity());
             }
 
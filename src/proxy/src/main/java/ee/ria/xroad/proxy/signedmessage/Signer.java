@@ -64,13 +64,14 @@ public class Signer {
     }
 
     /**
-     * Adds the message part to be signed.
+     * Adds the message part to be signed. Messages kept in a temporary file
+     * are not read into memory, they are signed using their hash only.
      * @param hashMethod identifier of the algorithm used to calculate the hash
      * @param soap the message to be signed
      */
     public void addMessagePart(String hashMethod, SoapMessageImpl soap) {
         builder.addPart(new MessagePart(MessageFileNames.MESSAGE, hashMethod,
-                soap.getHash(), soap.getBytes()));
+                soap.getHash(), soap.isSpilled() ? null : soap.getBytes()));
     }
 
     /**
@@ -37,6 +37,7 @@ import lombok.extern.slf4j.Slf4j;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static ee.ria.xroad.common.ErrorCodes.X_SIGNATURE_VERIFICATION_X;
 import static ee.ria.xroad.common.ErrorCodes.translateWithPrefix;
@@ -51,6 +52,9 @@ public class Verifier {
 
     private final List<MessagePart> parts = new ArrayList<>();
 
+    // The message kept in a temporary file, if any
+    private SoapMessageImpl spilledMessage;
+
     /** Adds new hash to be verified.
      * @param name name of the file in the BDOC container.
      * @param hashMethod identifier of the algorithm used to calculate the hash.
@@ -77,8 +81,12 @@ public class Verifier {
      * @param soap the signed message
      */
     public void addMessagePart(String hashMethod, SoapMessageImpl soap) {
+        if (soap.isSpilled()) {
+            spilledMessage = soap;
+        }
+
         parts.add(new MessagePart(MessageFileNames.MESSAGE, hashMethod,
-                soap.getHash(), soap.getBytes()));
+                soap.getHash(), soap.isSpilled() ? null : soap.getBytes()));
     }
 
     /**
@@ -99,7 +107,7 @@ public class Verifier {
             SignatureVerifier signatureVerifier =
                     new SignatureVerifier(signature);
 
-            signatureVerifier.addParts(parts);
+            signatureVerifier.addParts(getParts(signature));
 
             signatureVerifier.verify(sender, new Date());
         } catch (Exception ex) {
@@ -107,4 +115,18 @@ public class Verifier {
         }
     }
 
+    private List<MessagePart> getParts(SignatureData signature) {
+        if (spilledMessage == null || signature.getHashChainResult() != null) {
+            return parts;
+        }
+
+        // The signature covers the message itself, so the message must be read into memory
+        return parts.stream()
+                .map(part -> MessageFileNames.MESSAGE.equals(part.getName())
+                        ? new MessagePart(part.getName(), part.getHashAlgoId(), part.getData(),
+                                spilledMessage.getBytes())
+                        : part)
+                .collect(Collectors.toList());
+    }
+
 }
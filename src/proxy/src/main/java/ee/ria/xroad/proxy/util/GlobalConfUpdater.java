@@ -24,6 +24,7 @@
  */
 package ee.ria.xroad.proxy.util;
 
+import ee.ria.xroad.common.cert.CertChainVerificationCache;
 import ee.ria.xroad.common.conf.globalconf.GlobalConf;
 
 import lombok.extern.slf4j.Slf4j;
@@ -43,6 +44,8 @@ public class GlobalConfUpdater implements Job {
         try {
             log.trace("Reloading globalconf");
             GlobalConf.reloadIfChanged();
+            CertChainVerificationCache.invalidateIfTrustAnchorsChanged();
+            CertChainVerificationCache.logStatistics();
         } catch (Exception e) {
             log.error("Error reloading globalconf", e);
             throw new JobExecutionException(e);
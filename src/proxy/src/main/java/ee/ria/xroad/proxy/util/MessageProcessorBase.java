@@ -61,6 +61,9 @@ public abstract class MessageProcessorBase {
     /** The http client instance. */
     protected final HttpClient httpClient;
 
+    /** Measures the time spent in the phases of processing. */
+    protected final PhaseTimer phaseTimer = new PhaseTimer();
+
     protected MessageProcessorBase(HttpServletRequest servletRequest,
             HttpServletResponse servletResponse, HttpClient httpClient) {
         this.servletRequest = servletRequest;
@@ -130,7 +133,7 @@ public abstract class MessageProcessorBase {
             opMonitoringData.setMessageProtocolVersion(
                     soapMessage.getProtocolVersion());
             opMonitoringData.setServiceType(DescriptionType.WSDL.name());
-            opMonitoringData.setRequestSize(soapMessage.getBytes().length);
+            opMonitoringData.setRequestSize(soapMessage.getSize());
         }
     }
 
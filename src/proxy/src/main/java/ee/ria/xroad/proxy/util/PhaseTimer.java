@@ -0,0 +1,148 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.util;
+
+import ee.ria.xroad.common.util.ServiceMetricRegistry;
+
+import com.codahale.metrics.Timer;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Measures the time a request spends in the phases of its processing. Every
+ * measurement is also added to the timer of the phase in the
+ * {@link ServiceMetricRegistry}, so the latency distributions of the phases are
+ * available over JMX and to the proxy monitoring agent. Phases may nest, e.g.
+ * the client status is checked while the request is being parsed.
+ * <pre>
+ * try (PhaseTimer.Measurement ignored = phaseTimer.start(Phase.SIGNING)) {
+ *     encoder.sign(signingCtx);
+ * }
+ * </pre>
+ */
+public final class PhaseTimer {
+
+    /**
+     * Phases of request processing.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public enum Phase {
+        /** Reading and parsing the incoming message */
+        PARSING("parsing"),
+        /** Checking the client status, client authentication and access rights */
+        AUTHORIZATION("authorization"),
+        /** Signing the outgoing message */
+        SIGNING("signing"),
+        /** Verifying the signature of the incoming message */
+        SIGNATURE_VERIFICATION("signatureVerification"),
+        /** Saving the message to the message log */
+        MESSAGE_LOG("messageLog"),
+        /** Connecting to the server proxy */
+        CONNECTION_SETUP("connectionSetup"),
+        /** Sending the request and waiting for the response of the server proxy or the service */
+        SERVICE_WAIT("serviceWait");
+
+        private final String metricName;
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+    private static final Timer[] TIMERS = new Timer[PHASES.length];
+
+    static {
+        for (Phase phase : PHASES) {
+            TIMERS[phase.ordinal()] = ServiceMetricRegistry.getMetrics().timer(getMetricName(phase));
+        }
+    }
+
+    private final AtomicLongArray durations = new AtomicLongArray(PHASES.length);
+
+    /**
+     * Starts measuring the given phase.
+     * @param phase the phase
+     * @return the measurement that must be stopped when the phase ends
+     */
+    public Measurement start(Phase phase) {
+        return new Measurement(phase, System.nanoTime());
+    }
+
+    /**
+     * @param phase the phase
+     * @return the time this request has spent in the given phase, in nanoseconds
+     */
+    public long getDuration(Phase phase) {
+        return durations.get(phase.ordinal());
+    }
+
+    /**
+     * @param phase the phase
+     * @return the timer holding the latencies of the given phase over all requests
+     */
+    public static Timer getTimer(Phase phase) {
+        return TIMERS[phase.ordinal()];
+    }
+
+    /**
+     * @param phase the phase
+     * @return name of the timer of the given phase in the service metric registry
+     */
+    public static String getMetricName(Phase phase) {
+        return name(PhaseTimer.class, phase.getMetricName());
+    }
+
+    /**
+     * Measurement of a single phase. Only the first stop is recorded.
+     */
+    @RequiredArgsConstructor
+    public final class Measurement implements AutoCloseable {
+        private final Phase phase;
+        private final long start;
+        private boolean stopped;
+
+        /**
+         * Stops the measurement and records the elapsed time.
+         */
+        public void stop() {
+            if (!stopped) {
+                stopped = true;
+
+                long elapsed = System.nanoTime() - start;
+
+                durations.addAndGet(phase.ordinal(), elapsed);
+                TIMERS[phase.ordinal()].update(elapsed, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        @Override
+        public void close() {
+            stop();
+        }
+    }
+}
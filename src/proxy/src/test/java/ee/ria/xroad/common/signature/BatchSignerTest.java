@@ -0,0 +1,141 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.signature;
+
+import ee.ria.xroad.common.TestCertUtil;
+import ee.ria.xroad.common.TestSecurityUtil;
+import ee.ria.xroad.common.signature.BatchSigner.SigningRequestWrapper;
+import ee.ria.xroad.common.signature.BatchSigner.WorkerImpl;
+import ee.ria.xroad.common.util.CryptoUtils;
+import ee.ria.xroad.common.util.MessageFileNames;
+import ee.ria.xroad.signer.protocol.message.GetTokenBatchSigningEnabled;
+import ee.ria.xroad.signer.protocol.message.Sign;
+import ee.ria.xroad.signer.protocol.message.SignResponse;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.testkit.javadsl.TestKit;
+import com.typesafe.config.ConfigFactory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+
+import static ee.ria.xroad.common.util.CryptoUtils.SHA512_ID;
+import static ee.ria.xroad.common.util.CryptoUtils.calculateDigest;
+
+/**
+ * Tests how the batch signer worker handles the batch signing query to the signer.
+ */
+public class BatchSignerTest {
+
+    private static final String KEY_ID = "consumer";
+
+    private static final long QUERY_TIMEOUT_MILLIS = 200;
+
+    private static final Duration MAX_WAIT = Duration.ofSeconds(5);
+
+    private static ActorSystem actorSystem;
+
+    @BeforeClass
+    public static void init() {
+        TestSecurityUtil.initSecurity();
+
+        actorSystem = ActorSystem.create("BatchSignerTest", ConfigFactory.load());
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        TestKit.shutdownActorSystem(actorSystem);
+    }
+
+    /**
+     * Tests that requests stashed while the batch signing query is pending are signed
+     * one at a time when the signer does not answer the query.
+     */
+    @Test
+    public void fallBackToSingleSigningWhenQueryTimesOut() throws Exception {
+        TestKit signer = new TestKit(actorSystem);
+        TestKit client = new TestKit(actorSystem);
+        ActorRef worker = createWorker(signer);
+
+        worker.tell(createRequest("first"), client.getRef());
+        worker.tell(createRequest("second"), client.getRef());
+
+        // The query reply is lost.
+        signer.expectMsgClass(GetTokenBatchSigningEnabled.class);
+
+        signAndExpectSignature(signer, client, worker);
+        signAndExpectSignature(signer, client, worker);
+    }
+
+    /**
+     * Tests that stashed requests are signed one at a time when the batch signing query fails.
+     */
+    @Test
+    public void fallBackToSingleSigningWhenQueryFails() throws Exception {
+        TestKit signer = new TestKit(actorSystem);
+        TestKit client = new TestKit(actorSystem);
+        ActorRef worker = createWorker(signer);
+
+        worker.tell(createRequest("first"), client.getRef());
+
+        signer.expectMsgClass(GetTokenBatchSigningEnabled.class);
+        worker.tell(new RuntimeException("Signer is not available"), signer.getRef());
+
+        signAndExpectSignature(signer, client, worker);
+
+        // A late answer after the fallback does not disturb the worker.
+        worker.tell(new RuntimeException("Late answer"), signer.getRef());
+        worker.tell(createRequest("second"), client.getRef());
+
+        signAndExpectSignature(signer, client, worker);
+    }
+
+    private static ActorRef createWorker(TestKit signer) {
+        return actorSystem.actorOf(Props.create(WorkerImpl.class, signer.getRef(), QUERY_TIMEOUT_MILLIS));
+    }
+
+    private static void signAndExpectSignature(TestKit signer, TestKit client, ActorRef worker) {
+        signer.expectMsgClass(MAX_WAIT, Sign.class);
+        worker.tell(new SignResponse(new byte[] {1, 2, 3}), signer.getRef());
+
+        client.expectMsgClass(MAX_WAIT, SignatureData.class);
+    }
+
+    private static SigningRequestWrapper createRequest(String message) throws Exception {
+        byte[] messageBytes = message.getBytes(StandardCharsets.UTF_8);
+
+        MessagePart part = new MessagePart(MessageFileNames.MESSAGE, SHA512_ID,
+                calculateDigest(SHA512_ID, messageBytes), messageBytes);
+
+        return new SigningRequestWrapper(KEY_ID, CryptoUtils.SHA512WITHRSA_ID,
+                new SigningRequest(TestCertUtil.getConsumer().certChain[0], Collections.singletonList(part)));
+    }
+}
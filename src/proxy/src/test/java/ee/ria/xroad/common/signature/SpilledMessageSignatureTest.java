@@ -0,0 +1,148 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.signature;
+
+import ee.ria.xroad.common.OcspTestUtils;
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.TestCertUtil;
+import ee.ria.xroad.common.TestSecurityUtil;
+import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+import ee.ria.xroad.common.conf.globalconf.TestGlobalConfImpl;
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.message.SaxSoapParserImpl;
+import ee.ria.xroad.common.message.SoapMessageImpl;
+import ee.ria.xroad.common.util.CryptoUtils;
+import ee.ria.xroad.common.util.MessageFileNames;
+import ee.ria.xroad.common.util.MimeTypes;
+import ee.ria.xroad.proxy.signedmessage.Signer;
+
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.security.cert.X509Certificate;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests signing and verifying a SOAP message that is kept in a temporary file.
+ * Such messages are signed over their hash only, using the hash chain.
+ */
+public class SpilledMessageSignatureTest {
+
+    private static final ClientId CONSUMER_ID = ClientId.create("EE", "BUSINESS", "consumer");
+
+    // The test certificates are valid on this date.
+    private static final Date VALIDATION_DATE = createDate(30, 9, 2014);
+
+    private SoapMessageImpl message;
+
+    static {
+        TestSecurityUtil.initSecurity();
+    }
+
+    /**
+     * Parses the message into a temporary file and sets up the global configuration.
+     * @throws Exception in case of any unexpected error
+     */
+    @Before
+    public void setUp() throws Exception {
+        System.setProperty(SystemProperties.CONFIGURATION_PATH, "../common-util/src/test/resources/globalconf_good_v2");
+        System.setProperty(SystemProperties.CONFIGURATION_ANCHOR_FILE,
+                "../common-util/src/test/resources/configuration-anchor1.xml");
+
+        GlobalConf.reload(new TestGlobalConfImpl(false) {
+            @Override
+            public X509Certificate getCaCert(String instanceIdentifier, X509Certificate memberCert) {
+                return TestCertUtil.getCaCert();
+            }
+        });
+
+        System.setProperty(SystemProperties.SOAP_MESSAGE_SPILL_THRESHOLD, "0");
+
+        try (InputStream is = new FileInputStream("src/test/queries/simple.query")) {
+            message = (SoapMessageImpl) new SaxSoapParserImpl().parse(MimeTypes.TEXT_XML_UTF8, is);
+        } finally {
+            System.clearProperty(SystemProperties.SOAP_MESSAGE_SPILL_THRESHOLD);
+        }
+    }
+
+    /**
+     * Releases the temporary file of the message.
+     */
+    @After
+    public void tearDown() {
+        message.consume();
+    }
+
+    /**
+     * Tests that a spilled message is signed with a hash chain and that the signature verifies
+     * without reading the message into memory.
+     * @throws Exception in case of any unexpected error
+     */
+    @Test
+    public void signAndVerifySpilledMessage() throws Exception {
+        assertTrue(message.isSpilled());
+
+        OCSPResp ocsp = OcspTestUtils.createOCSPResponse(TestCertUtil.getConsumer().certChain[0],
+                TestCertUtil.getCaCert(), TestCertUtil.getOcspSigner().certChain[0],
+                TestCertUtil.getOcspSigner().key, CertificateStatus.GOOD, VALIDATION_DATE, null);
+
+        Signer signer = new Signer();
+        signer.addMessagePart(CryptoUtils.SHA512_ID, message);
+        signer.sign(builder -> {
+            builder.setSigningCert(TestCertUtil.getConsumer().certChain[0]);
+            builder.addOcspResponses(Collections.singletonList(ocsp));
+
+            return builder.build(new TestSigningKey(TestCertUtil.getConsumer().key), CryptoUtils.SHA512_ID);
+        });
+
+        SignatureData signature = signer.getSignatureData();
+
+        assertTrue(signature.isBatchSignature());
+        assertNotNull(signature.getHashChain());
+
+        // The verifier passes spilled messages with their hash only when the signature has a hash chain.
+        SignatureVerifier verifier = new SignatureVerifier(signature);
+        verifier.addPart(new MessagePart(MessageFileNames.MESSAGE, CryptoUtils.SHA512_ID, message.getHash(), null));
+        verifier.verify(CONSUMER_ID, VALIDATION_DATE);
+    }
+
+    private static Date createDate(int day, int month, int year) {
+        Calendar cal = Calendar.getInstance();
+        cal.clear();
+        cal.set(year, month, day);
+
+        return cal.getTime();
+    }
+}
@@ -30,9 +30,11 @@ import ee.ria.xroad.common.conf.globalconf.GlobalConf;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
@@ -156,6 +158,54 @@ public class AntiDosConnectionManagerTest {
         cm.assertEmpty();
     }
 
+    /**
+     * Test to ensure a partner gets as many connections per turn as its weight is.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void weightedPartnerGetsMoreConnections() throws Exception {
+        TestConfiguration conf = new TestConfiguration(5, 1.1);
+        conf.setPartnerWeights(Collections.singletonMap("test1", 2));
+
+        TestSystemMetrics sm = new TestSystemMetrics();
+        sm.addLoad(7, 0.1);
+
+        TestSocketChannel member1 = createConnection("test1");
+        TestSocketChannel member2 = createConnection("test2");
+
+        TestConnectionManager cm = createConnectionManager(conf, sm);
+        cm.accept(member1, member1, member1, member2, member2);
+
+        cm.assertConnections(member1, member1, member2, member1, member2);
+
+        cm.assertEmpty();
+    }
+
+    /**
+     * Test to ensure the result of the resource check is reused within the check interval.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void resourceCheckIsReused() throws Exception {
+        TestConfiguration conf = new TestConfiguration(5, 1.1);
+        conf.setResourceCheckInterval(60000);
+
+        TestSystemMetrics sm = new TestSystemMetrics();
+        sm.addLoad(7, 0.1);
+        sm.addLoad(3, 0.1);
+
+        TestSocketChannel member1 = createConnection("test1");
+        TestSocketChannel member2 = createConnection("test2");
+
+        TestConnectionManager cm = createConnectionManager(conf, sm);
+        cm.accept(member1, member2);
+
+        cm.assertConnections(member1, member2);
+        assertFalse(member2.isClosed());
+
+        cm.assertEmpty();
+    }
+
     // ------------------------------------------------------------------------
 
     private static TestConnectionManager createConnectionManager(
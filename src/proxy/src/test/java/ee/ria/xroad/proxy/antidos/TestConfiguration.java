@@ -26,10 +26,16 @@ package ee.ria.xroad.proxy.antidos;
 
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+
+import java.util.Collections;
+import java.util.Map;
 
 @RequiredArgsConstructor
 @Getter
 class TestConfiguration extends AntiDosConfiguration {
     private final int minFreeFileHandles;
     private final double maxCpuLoad;
+    @Setter private long resourceCheckInterval;
+    @Setter private Map<String, Integer> partnerWeights = Collections.emptyMap();
 }
@@ -0,0 +1,98 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.protocol;
+
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.util.CryptoUtils;
+import ee.ria.xroad.proxy.protocol.AttachmentDigester.PendingDigest;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests digesting attachments on worker threads.
+ */
+public class AttachmentDigesterTest {
+
+    private static final String HASH_ALGO_ID = CryptoUtils.DEFAULT_DIGEST_ALGORITHM_ID;
+
+    @BeforeClass
+    public static void setUp() {
+        System.setProperty(SystemProperties.PROXY_ATTACHMENT_DIGEST_THREADS, "2");
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        System.clearProperty(SystemProperties.PROXY_ATTACHMENT_DIGEST_THREADS);
+    }
+
+    @Test
+    public void digestEqualsSequentialDigest() throws Exception {
+        AttachmentDigester digester = new AttachmentDigester(HASH_ALGO_ID);
+
+        for (int size : new int[] {0, 1, 64 * 1024, 64 * 1024 + 1, 3 * 1024 * 1024 + 7}) {
+            byte[] content = randomBytes(size);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            PendingDigest digest = digester.copy(new ByteArrayInputStream(content), out::write);
+
+            assertEquals(size, digest.getByteCount());
+            assertArrayEquals(content, out.toByteArray());
+            assertArrayEquals(CryptoUtils.calculateDigest(HASH_ALGO_ID, content), digest.getDigest().join());
+        }
+    }
+
+    @Test
+    public void digestAttachmentsConcurrently() throws Exception {
+        AttachmentDigester digester = new AttachmentDigester(HASH_ALGO_ID);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        byte[] first = randomBytes(5 * 1024 * 1024);
+        byte[] second = randomBytes(2 * 1024 * 1024);
+
+        // The first digest may still be calculated while the second attachment is copied.
+        PendingDigest firstDigest = digester.copy(new ByteArrayInputStream(first), out::write);
+        PendingDigest secondDigest = digester.copy(new ByteArrayInputStream(second), out::write);
+
+        assertArrayEquals(CryptoUtils.calculateDigest(HASH_ALGO_ID, first), firstDigest.getDigest().join());
+        assertArrayEquals(CryptoUtils.calculateDigest(HASH_ALGO_ID, second), secondDigest.getDigest().join());
+        assertEquals(first.length + second.length, out.size());
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+
+        return bytes;
+    }
+}
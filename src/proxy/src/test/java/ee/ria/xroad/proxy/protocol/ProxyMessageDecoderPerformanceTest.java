@@ -0,0 +1,225 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.protocol;
+
+import ee.ria.xroad.common.message.SaxSoapParserImpl;
+import ee.ria.xroad.common.message.Soap;
+import ee.ria.xroad.common.message.SoapFault;
+import ee.ria.xroad.common.message.SoapMessageImpl;
+import ee.ria.xroad.common.signature.SignatureData;
+import ee.ria.xroad.common.util.CryptoUtils;
+import ee.ria.xroad.common.util.MimeTypes;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Proxy message decoder throughput and allocation test program. Decodes
+ * proxy messages as sent between security servers: a SOAP message with
+ * an OCSP response and a signature, the same with a batch signature hash
+ * chain, and the same with attachments. Reports the time and the bytes
+ * allocated per decoded message.
+ */
+@Slf4j
+public final class ProxyMessageDecoderPerformanceTest {
+
+    private static final int KB = 1024;
+
+    private static final int ITERATIONS = 20_000;
+    private static final int WARMUP_ITERATIONS = 5_000;
+
+    private static final int HASH_CHAIN_SIZE = 4 * KB;
+    private static final int[] ATTACHMENT_SIZES = {KB, 64 * KB, 256 * KB};
+
+    private static final long NANOS_IN_MICRO = 1_000L;
+
+    private static final String HASH_ALGO_ID = CryptoUtils.DEFAULT_DIGEST_ALGORITHM_ID;
+
+    private ProxyMessageDecoderPerformanceTest() {
+    }
+
+    /**
+     * Main program access point.
+     * @param args command-line arguments
+     * @throws Exception in case of any errors
+     */
+    public static void main(String[] args) throws Exception {
+        log.info("Starting proxy message decoder performance test...");
+
+        SoapMessageImpl soap = createMessage();
+        OCSPResp ocsp = getOcsp();
+        String signatureXml = IOUtils.toString(getQuery("signature.xml"));
+
+        run("SOAP + OCSP + signature",
+                encode(soap, ocsp, new SignatureData(signatureXml, null, null), new int[0]));
+        run("SOAP + OCSP + batch signature",
+                encode(soap, ocsp, new SignatureData(signatureXml, filler(HASH_CHAIN_SIZE / 4),
+                        filler(HASH_CHAIN_SIZE)), new int[0]));
+        run("SOAP + OCSP + signature + attachments",
+                encode(soap, ocsp, new SignatureData(signatureXml, null, null), ATTACHMENT_SIZES));
+    }
+
+    private static void run(String description, EncodedMessage message) throws Exception {
+        decode(message, WARMUP_ITERATIONS);
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+
+        decode(message, ITERATIONS);
+
+        long nanos = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        log.info("{} ({} bytes): {} us/message, {} bytes allocated/message", description,
+                message.content.length, nanos / ITERATIONS / NANOS_IN_MICRO, allocated / ITERATIONS);
+    }
+
+    private static void decode(EncodedMessage message, int iterations) throws Exception {
+        DrainingConsumer consumer = new DrainingConsumer();
+
+        for (int i = 0; i < iterations; i++) {
+            ProxyMessageDecoder decoder = new ProxyMessageDecoder(consumer, message.contentType, HASH_ALGO_ID);
+            decoder.parse(new ByteArrayInputStream(message.content));
+
+            if (consumer.signature == null) {
+                throw new IllegalStateException("Signature was not decoded");
+            }
+
+            consumer.signature = null;
+        }
+    }
+
+    private static EncodedMessage encode(SoapMessageImpl soap, OCSPResp ocsp, SignatureData signature,
+            int[] attachmentSizes) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ProxyMessageEncoder encoder = new ProxyMessageEncoder(out, HASH_ALGO_ID);
+
+        encoder.ocspResponse(ocsp);
+        encoder.soap(soap, new HashMap<>());
+
+        for (int size : attachmentSizes) {
+            encoder.attachment(MimeTypes.BINARY, new ByteArrayInputStream(new byte[size]), null);
+        }
+
+        encoder.signature(signature);
+        encoder.close();
+
+        return new EncodedMessage(encoder.getContentType(), out.toByteArray());
+    }
+
+    private static String filler(int size) {
+        StringBuilder sb = new StringBuilder(size);
+
+        while (sb.length() < size) {
+            sb.append('a');
+        }
+
+        return sb.toString();
+    }
+
+    private static SoapMessageImpl createMessage() throws Exception {
+        Soap soap = new SaxSoapParserImpl().parse(MimeTypes.TEXT_XML_UTF8, getQuery("simple.query"));
+
+        if (soap instanceof SoapMessageImpl) {
+            return (SoapMessageImpl) soap;
+        }
+
+        throw new RuntimeException("Unexpected SOAP from parser: " + soap.getClass());
+    }
+
+    private static InputStream getQuery(String fileName) throws Exception {
+        return new FileInputStream("src/test/queries/" + fileName);
+    }
+
+    private static OCSPResp getOcsp() throws Exception {
+        try (InputStream is = getQuery("test.ocsp")) {
+            return new OCSPResp(IOUtils.toByteArray(is));
+        }
+    }
+
+    private static final class EncodedMessage {
+        private final String contentType;
+        private final byte[] content;
+
+        private EncodedMessage(String contentType, byte[] content) {
+            this.contentType = contentType;
+            this.content = content;
+        }
+    }
+
+    private static final class DrainingConsumer implements ProxyMessageConsumer {
+        private SignatureData signature;
+
+        @Override
+        public void soap(SoapMessageImpl message, Map<String, String> additionalHeaders) {
+            // the decoded message is not used
+        }
+
+        @Override
+        public void restBody(InputStream content) throws Exception {
+            drain(content);
+        }
+
+        @Override
+        public void attachment(String contentType, InputStream content, Map<String, String> additionalHeaders)
+                throws Exception {
+            drain(content);
+        }
+
+        @Override
+        public void ocspResponse(OCSPResp resp) {
+            // the decoded response is not used
+        }
+
+        @Override
+        public void signature(SignatureData sig) {
+            this.signature = sig;
+        }
+
+        @Override
+        public void fault(SoapFault fault) {
+            throw new IllegalStateException("Unexpected fault: " + fault.getFaultString());
+        }
+
+        private static void drain(InputStream content) throws IOException {
+            // Only the digest of the content is calculated while reading it.
+            IOUtils.skip(content, Long.MAX_VALUE);
+        }
+    }
+}
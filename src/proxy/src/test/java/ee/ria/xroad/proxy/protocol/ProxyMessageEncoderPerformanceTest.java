@@ -0,0 +1,177 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.protocol;
+
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.message.SaxSoapParserImpl;
+import ee.ria.xroad.common.message.Soap;
+import ee.ria.xroad.common.message.SoapMessageImpl;
+import ee.ria.xroad.common.signature.SignatureData;
+import ee.ria.xroad.common.util.CryptoUtils;
+import ee.ria.xroad.common.util.MimeTypes;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.apache.commons.io.output.NullOutputStream.NULL_OUTPUT_STREAM;
+
+/**
+ * Proxy message encoder throughput test program. Encodes and signs a SOAP
+ * message with ten 50 MB attachments, first digesting the attachments on
+ * the writing thread and then on worker threads, and reports the time and
+ * throughput of both. The encoded message is discarded, so the test
+ * measures the encoding and digesting only.
+ */
+@Slf4j
+public final class ProxyMessageEncoderPerformanceTest {
+
+    private static final int MB = 1024 * 1024;
+
+    private static final int ATTACHMENTS = 10;
+    private static final long ATTACHMENT_SIZE = 50L * MB;
+
+    private static final int ITERATIONS = 5;
+    private static final int WARMUP_ITERATIONS = 2;
+
+    private static final long NANOS_IN_MILLI = 1_000_000L;
+    private static final double NANOS_IN_SECOND = 1e9;
+
+    private static final String HASH_ALGO_ID = CryptoUtils.DEFAULT_DIGEST_ALGORITHM_ID;
+
+    private ProxyMessageEncoderPerformanceTest() {
+    }
+
+    /**
+     * Main program access point.
+     * @param args command-line arguments, optionally the number of digest threads
+     * @throws Exception in case of any errors
+     */
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+
+        log.info("Starting proxy message encoder performance test...");
+
+        SoapMessageImpl soap = createMessage();
+        String signatureXml = IOUtils.toString(getQuery("signature.xml"));
+
+        System.setProperty(SystemProperties.PROXY_ATTACHMENT_DIGEST_THREADS, "0");
+        run("Sequential digests", soap, signatureXml);
+
+        System.setProperty(SystemProperties.PROXY_ATTACHMENT_DIGEST_THREADS, String.valueOf(threads));
+        run("Parallel digests (" + threads + " threads)", soap, signatureXml);
+    }
+
+    private static void run(String description, SoapMessageImpl soap, String signatureXml) throws Exception {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            encode(soap, signatureXml);
+        }
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            encode(soap, signatureXml);
+        }
+
+        long nanos = (System.nanoTime() - start) / ITERATIONS;
+        double megabytes = (double) ATTACHMENTS * ATTACHMENT_SIZE / MB;
+
+        log.info("{}: {} ms/message, {} MB/s", description, nanos / NANOS_IN_MILLI,
+                String.format("%.1f", megabytes / (nanos / NANOS_IN_SECOND)));
+    }
+
+    private static void encode(SoapMessageImpl soap, String signatureXml) throws Exception {
+        ProxyMessageEncoder encoder = new ProxyMessageEncoder(NULL_OUTPUT_STREAM, HASH_ALGO_ID);
+
+        encoder.soap(soap, new HashMap<>());
+
+        for (int i = 0; i < ATTACHMENTS; i++) {
+            encoder.attachment(MimeTypes.BINARY, new GeneratedInputStream(ATTACHMENT_SIZE), null);
+        }
+
+        encoder.sign(builder -> new SignatureData(signatureXml, null, null));
+        encoder.writeSignature();
+        encoder.close();
+    }
+
+    private static SoapMessageImpl createMessage() throws Exception {
+        Soap soap = new SaxSoapParserImpl().parse(MimeTypes.TEXT_XML_UTF8, getQuery("simple.query"));
+
+        if (soap instanceof SoapMessageImpl) {
+            return (SoapMessageImpl) soap;
+        }
+
+        throw new RuntimeException("Unexpected SOAP from parser: " + soap.getClass());
+    }
+
+    private static InputStream getQuery(String fileName) throws Exception {
+        return new FileInputStream("src/test/queries/" + fileName);
+    }
+
+    /**
+     * Produces the given number of bytes by repeating a random pattern,
+     * without keeping the whole attachment in memory.
+     */
+    private static final class GeneratedInputStream extends InputStream {
+        private static final byte[] PATTERN = new byte[MB + 1];
+
+        static {
+            new Random(0).nextBytes(PATTERN);
+        }
+
+        private long remaining;
+        private int position;
+
+        private GeneratedInputStream(long size) {
+            this.remaining = size;
+        }
+
+        @Override
+        public int read() {
+            byte[] b = new byte[1];
+
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (remaining == 0) {
+                return -1;
+            }
+
+            int count = (int) Math.min(Math.min(len, remaining), PATTERN.length - position);
+            System.arraycopy(PATTERN, position, b, off, count);
+
+            position = (position + count) % PATTERN.length;
+            remaining -= count;
+
+            return count;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.protocol;
+
+import ee.ria.xroad.common.util.MimeUtils;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.james.mime4j.MimeException;
+import org.apache.james.mime4j.parser.AbstractContentHandler;
+import org.apache.james.mime4j.stream.BodyDescriptor;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the reusable MIME parser of the proxy message decoder.
+ */
+public class ReusableMimeParserTest {
+
+    private static final String MESSAGE = "--top\r\n"
+            + "Content-Type: text/plain\r\n\r\n"
+            + "first\r\n"
+            + "--top\r\n"
+            + "Content-Type: multipart/mixed; boundary=nested\r\n\r\n"
+            + "--nested\r\n"
+            + "Content-Type: text/plain\r\n\r\n"
+            + "attachment 1\r\n"
+            + "--nested\r\n"
+            + "Content-Type: text/plain\r\n\r\n"
+            + "attachment 2\r\n"
+            + "--nested--\r\n"
+            + "\r\n"
+            + "--top\r\n"
+            + "Content-Type: text/plain\r\n\r\n"
+            + "last\r\n"
+            + "--top--\r\n";
+
+    @Test
+    public void parseNestedMultipartWithinBody() throws Exception {
+        // The second round reuses the parsers released by the first one.
+        for (int i = 0; i < 2; i++) {
+            List<String> bodies = new ArrayList<>();
+
+            ReusableMimeParser.parseFlat(new ByteArrayInputStream(MESSAGE.getBytes(UTF_8)),
+                    MimeUtils.mpMixedContentType("top"), new CollectingHandler(bodies));
+
+            assertEquals("[first, [attachment 1, attachment 2], last]", bodies.toString());
+        }
+    }
+
+    @Test
+    public void readPartLargerThanBuffer() throws Exception {
+        StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < 10_000; i++) {
+            sb.append(i);
+        }
+
+        String part = sb.toString();
+
+        assertEquals(part, MessagePartReader.readString(new ByteArrayInputStream(part.getBytes(UTF_8)), UTF_8));
+        assertEquals("small", MessagePartReader.readString(new ByteArrayInputStream("small".getBytes(UTF_8)), UTF_8));
+    }
+
+    @Test
+    public void readOcspResponse() throws Exception {
+        byte[] encoded;
+
+        try (InputStream is = new FileInputStream("src/test/queries/test.ocsp")) {
+            encoded = IOUtils.toByteArray(is);
+        }
+
+        assertArrayEquals(encoded, MessagePartReader.readOcspResponse(new ByteArrayInputStream(encoded)).getEncoded());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectOcspResponseLongerThanPart() throws Exception {
+        // A SEQUENCE declaring a length of 2 GB, followed by a few bytes only.
+        byte[] encoded = {0x30, (byte) 0x84, 0x7f, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0a, 0x01, 0x00};
+
+        MessagePartReader.readOcspResponse(new ByteArrayInputStream(encoded));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectEmptyOcspResponse() throws Exception {
+        MessagePartReader.readOcspResponse(new ByteArrayInputStream(new byte[0]));
+    }
+
+    private static final class CollectingHandler extends AbstractContentHandler {
+        private final List<String> bodies;
+
+        private CollectingHandler(List<String> bodies) {
+            this.bodies = bodies;
+        }
+
+        @Override
+        public void body(BodyDescriptor bd, InputStream is) throws MimeException, IOException {
+            if (MimeUtils.getBaseContentType(bd.getMimeType()).startsWith("multipart/")) {
+                List<String> nested = new ArrayList<>();
+
+                ReusableMimeParser.parseFlat(is, MimeUtils.mpMixedContentType(bd.getBoundary()),
+                        new CollectingHandler(nested));
+
+                bodies.add(nested.toString());
+            } else {
+                bodies.add(MessagePartReader.readString(is, UTF_8));
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.util;
+
+import ee.ria.xroad.common.util.ServiceMetricRegistry;
+import ee.ria.xroad.proxy.util.PhaseTimer.Phase;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link PhaseTimer}.
+ */
+public class PhaseTimerTest {
+
+    /**
+     * Test that a measurement is added to the request and to the phase metrics once.
+     */
+    @Test
+    public void recordsMeasurementOnce() throws Exception {
+        PhaseTimer phaseTimer = new PhaseTimer();
+        long count = PhaseTimer.getTimer(Phase.SIGNING).getCount();
+
+        PhaseTimer.Measurement measurement = phaseTimer.start(Phase.SIGNING);
+        Thread.sleep(5);
+        measurement.stop();
+        measurement.close();
+
+        assertTrue(phaseTimer.getDuration(Phase.SIGNING) >= 5_000_000L);
+        assertEquals(0, phaseTimer.getDuration(Phase.PARSING));
+        assertEquals(count + 1, PhaseTimer.getTimer(Phase.SIGNING).getCount());
+    }
+
+    /**
+     * Test that the durations of the same phase are summed.
+     */
+    @Test
+    public void sumsDurationsOfPhase() throws Exception {
+        PhaseTimer phaseTimer = new PhaseTimer();
+
+        try (PhaseTimer.Measurement ignored = phaseTimer.start(Phase.MESSAGE_LOG)) {
+            Thread.sleep(2);
+        }
+
+        long first = phaseTimer.getDuration(Phase.MESSAGE_LOG);
+
+        try (PhaseTimer.Measurement ignored = phaseTimer.start(Phase.MESSAGE_LOG)) {
+            Thread.sleep(2);
+        }
+
+        assertTrue(phaseTimer.getDuration(Phase.MESSAGE_LOG) >= first + 2_000_000L);
+    }
+
+    /**
+     * Test that the phase timers are registered in the service metric registry.
+     */
+    @Test
+    public void registersTimers() {
+        for (Phase phase : Phase.values()) {
+            assertSame(PhaseTimer.getTimer(phase),
+                    ServiceMetricRegistry.getMetrics().getTimers().get(PhaseTimer.getMetricName(phase)));
+        }
+    }
+}
@@ -45,6 +45,7 @@ import org.hibernate.Session;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
@@ -65,6 +66,7 @@ public class CachingServerConfImpl extends ServerConfImpl {
     private final Cache<ServiceId, Optional<ServiceType>> serviceCache;
     private final Cache<AclCacheKey, List<EndpointType>> aclCache;
     private final Cache<ClientId, Optional<ClientType>> clientCache;
+    private final Cache<ServicesCacheKey, List<ServiceId>> servicesCache;
 
     /**
      * Constructor, creates time based object cache with expireSeconds paramter
@@ -98,6 +100,11 @@ public class CachingServerConfImpl extends ServerConfImpl {
                 .recordStats()
                 .build();
 
+        servicesCache = CacheBuilder.newBuilder()
+                .maximumSize(SystemProperties.getServerConfClientCacheSize())
+                .expireAfterWrite(expireSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
     }
 
     @Override
@@ -191,6 +198,31 @@ public class CachingServerConfImpl extends ServerConfImpl {
         return getService(service).map(ServiceType::getRequiredSecurityCategory).orElse(Collections.emptyList());
     }
 
+    @Override
+    public List<ServiceId> getServicesByDescriptionType(ClientId serviceProvider, DescriptionType descriptionType) {
+        return getServices(new ServicesCacheKey(serviceProvider, null, descriptionType),
+                () -> super.getServicesByDescriptionType(serviceProvider, descriptionType));
+    }
+
+    @Override
+    public List<ServiceId> getAllowedServicesByDescriptionType(ClientId serviceProvider, ClientId client,
+            DescriptionType descriptionType) {
+        return getServices(new ServicesCacheKey(serviceProvider, client, descriptionType),
+                () -> super.getAllowedServicesByDescriptionType(serviceProvider, client, descriptionType));
+    }
+
+    private List<ServiceId> getServices(ServicesCacheKey key, Callable<List<ServiceId>> loader) {
+        try {
+            return servicesCache.get(key, loader);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CodedException) {
+                throw (CodedException)e.getCause();
+            }
+            log.debug("Failed to get list of services", e);
+            return Collections.emptyList();
+        }
+    }
+
     @Override
     protected List<EndpointType> getEndpoints(Session session, ClientId client, ServiceId service) {
         final AclCacheKey key = new AclCacheKey(client, service);
@@ -245,6 +277,8 @@ public class CachingServerConfImpl extends ServerConfImpl {
                     serviceCache.stats().toString());
             log.trace("ServerConf.aclCache    : entries: {}, stats: {}", aclCache.size(),
                     aclCache.stats().toString());
+            log.trace("ServerConf.servicesCache: entries: {}, stats: {}", servicesCache.size(),
+                    servicesCache.stats().toString());
         }
     }
 
@@ -253,4 +287,11 @@ public class CachingServerConfImpl extends ServerConfImpl {
         final ClientId client;
         final ServiceId serviceId;
     }
+
+    @Value
+    private static class ServicesCacheKey {
+        final ClientId serviceProvider;
+        final ClientId client;
+        final DescriptionType descriptionType;
+    }
 }
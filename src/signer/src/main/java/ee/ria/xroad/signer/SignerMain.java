@@ -29,6 +29,7 @@ import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.SystemPropertiesLoader;
 import ee.ria.xroad.common.util.AdminPort;
 import ee.ria.xroad.common.util.JsonUtils;
+import ee.ria.xroad.common.util.ServiceMetricRegistry;
 import ee.ria.xroad.signer.certmanager.OcspClientWorker;
 import ee.ria.xroad.signer.util.SignerUtil;
 
@@ -105,6 +106,8 @@ public final class SignerMain {
         signer = new Signer(actorSystem);
         signer.start();
 
+        ServiceMetricRegistry.startJmxReporter("xroad.signer");
+
         Await.result(actorSystem.whenTerminated(), Duration.Inf());
 
         shutdown();
@@ -113,6 +116,8 @@ public final class SignerMain {
     private static void shutdown() {
         log.info("Signer shutting down...");
 
+        ServiceMetricRegistry.stopJmxReporter();
+
         try {
             signer.stop();
             signer.join();
@@ -25,6 +25,7 @@
 package ee.ria.xroad.signer.certmanager;
 
 import ee.ria.xroad.common.ocsp.OcspCache;
+import ee.ria.xroad.common.ocsp.OcspResponseStore;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
@@ -32,114 +33,137 @@ import org.bouncycastle.cert.ocsp.OCSPResp;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 
 import static ee.ria.xroad.common.ErrorCodes.translateException;
-import static ee.ria.xroad.common.SystemProperties.getOcspCachePath;
 
 /**
- * OCSP cache that holds the OCSP responses on disk.
+ * OCSP cache that holds the OCSP responses on disk in a single
+ * {@link OcspResponseStore} file.
  */
 @Slf4j
 public class FileBasedOcspCache extends OcspCache {
 
-    /** The OCSP response file extension. */
+    /** The file extension of OCSP responses stored by earlier versions. */
     private static final String OCSP_FILE_EXTENSION = ".ocsp";
 
+    private final OcspResponseStore store;
+
+    /**
+     * Creates the cache on top of the store in the configured OCSP cache directory.
+     */
+    public FileBasedOcspCache() {
+        this(new OcspResponseStore(OcspResponseStore.getDefaultStoreFile(), false));
+    }
+
+    FileBasedOcspCache(OcspResponseStore store) {
+        this.store = store;
+    }
+
     /**
      * Returns the OCSP response for the given certificate or null, if the
      * response is not available.
-     * @param certHash for which to get the response
+     * @param key the certificate hash for which to get the response
      * @return the OCSP response object or null, if no response is available
      */
     @Override
     protected OCSPResp getResponse(Object key, Date atDate) {
-        OCSPResp response = null;
-        if (cache.containsKey(key)) { // is the OCSP response in memory?
-            response = super.getResponse(key, atDate);
-            if (response != null) {
-                return response;
-            }
+        try {
+            return store.get(String.valueOf(key), atDate);
+        } catch (Exception e) {
+            // Failed to load OCSP response from the store
+            throw translateException(e);
         }
+    }
 
-        File file = getOcspResponseFile(getOcspCachePath(), key);
+    @Override
+    public OCSPResp put(String key, OCSPResp value) {
+        log.trace("Setting OCSP response for '{}'", key);
         try {
-            response = loadResponseFromFileIfNotExpired(file, atDate);
+            return store.put(key, value);
         } catch (Exception e) {
-            // Failed to load OCSP response from file
+            // Failed to save OCSP response to the store
             throw translateException(e);
         }
+    }
 
-        return response;
+    /**
+     * Stores the given OCSP responses with a single append to the store file.
+     * @param responses the OCSP responses keyed by certificate hash
+     */
+    public void putAll(Map<String, OCSPResp> responses) {
+        try {
+            store.putAll(responses);
+        } catch (Exception e) {
+            // Failed to save the OCSP responses to the store
+            throw translateException(e);
+        }
     }
 
     @Override
-    public OCSPResp put(String key, OCSPResp value) {
-        OCSPResp response = super.put(key, value);
+    public Set<Entry<String, OCSPResp>> entrySet() {
         try {
-            File file = getOcspResponseFile(getOcspCachePath(), key);
-            saveResponseToFile(file, value);
-        } catch (IOException e) {
-            // Failed to save OCSP response to file
+            return store.getResponses().entrySet();
+        } catch (Exception e) {
             throw translateException(e);
         }
-
-        return response;
     }
 
     void reloadFromDisk() throws Exception {
-        Path path = Paths.get(getOcspCachePath());
+        store.open();
 
-        try (DirectoryStream<Path> stream =
-                Files.newDirectoryStream(path, this::isOcspFile)) {
-            for (Path entry : stream) {
-                loadResponseFromFileIfNotExpired(entry.toFile(), new Date());
-            }
-        }
+        importResponseFiles(store.getFile().toAbsolutePath().getParent());
     }
 
-    boolean isOcspFile(Path p) {
-        return Files.isRegularFile(p)
-                && p.toString().endsWith(OCSP_FILE_EXTENSION);
-    }
+    /**
+     * Moves the OCSP responses stored one per file by earlier versions
+     * into the store and deletes the files.
+     */
+    void importResponseFiles(Path path) throws Exception {
+        if (!Files.isDirectory(path)) {
+            return;
+        }
 
-    void saveResponseToFile(File file, OCSPResp ocspResponse)
-            throws IOException {
-        createIntermediateDirectories(file);
+        Map<String, OCSPResp> responses = new HashMap<>();
+        Date now = new Date();
 
-        try (OutputStream os = new FileOutputStream(file)) {
-            os.write(ocspResponse.getEncoded());
-        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(path, this::isOcspFile)) {
+            for (Path entry : stream) {
+                File file = entry.toFile();
 
-        log.trace("Saved OCSP response to file '{}'", file);
-    }
+                try {
+                    OCSPResp response = loadResponseFromFile(file);
+
+                    if (response != null && !isExpired(response, now)) {
+                        responses.put(getFileNameWithoutExtension(file), response);
+                    }
+                } catch (Exception e) {
+                    log.warn("Failed to import OCSP response from file '{}': {}", file, e);
+                }
 
-    OCSPResp loadResponseFromFileIfNotExpired(File file, Date atDate)
-            throws Exception {
-        OCSPResp response = loadResponseFromFile(file);
-        if (response != null) {
-            String key = getFileNameWithoutExtension(file);
-            if (!isExpired(response, atDate)) {
-                log.trace("Loaded OCSP response for cert hash {}", key);
-
-                super.put(key, response); // store in memory
-            } else {
-                log.trace("Cached OCSP response for certificate '{}' "
-                        + "has expired, deleting the file '{}'", key, file);
                 delete(file);
-                return null;
             }
         }
 
-        return response;
+        if (!responses.isEmpty()) {
+            log.info("Imported {} OCSP responses into '{}'", responses.size(), store.getFile());
+
+            store.putAll(responses);
+        }
+    }
+
+    boolean isOcspFile(Path p) {
+        return Files.isRegularFile(p)
+                && p.toString().endsWith(OCSP_FILE_EXTENSION);
     }
 
     OCSPResp loadResponseFromFile(File file) throws IOException {
@@ -160,21 +184,9 @@ public class FileBasedOcspCache extends OcspCache {
         }
     }
 
-    private static void createIntermediateDirectories(File file)
-            throws IOException {
-        File path = file.getParentFile();
-        if (!path.exists() && !path.mkdirs()) {
-            throw new IOException("Could not create path " + path);
-        }
-    }
-
-    private static File getOcspResponseFile(String path, Object certHash) {
-        return new File(path, certHash + OCSP_FILE_EXTENSION);
-    }
-
     private static void delete(File file) {
         try {
-            Files.delete(file.toPath());
+            Files.deleteIfExists(file.toPath());
         } catch (Exception e) {
             log.warn("Failed to delete {}: {}", file, e);
         }
@@ -28,6 +28,7 @@ import ee.ria.xroad.common.CertificationServiceDiagnostics;
 import ee.ria.xroad.common.CertificationServiceStatus;
 import ee.ria.xroad.common.DiagnosticsErrorCodes;
 import ee.ria.xroad.common.OcspResponderStatus;
+import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.cert.CertChain;
 import ee.ria.xroad.common.conf.globalconf.GlobalConf;
 import ee.ria.xroad.common.conf.globalconfextension.GlobalConfExtensions;
@@ -35,6 +36,7 @@ import ee.ria.xroad.common.conf.globalconfextension.OcspFetchInterval;
 import ee.ria.xroad.common.ocsp.OcspVerifier;
 import ee.ria.xroad.common.ocsp.OcspVerifierOptions;
 import ee.ria.xroad.common.util.CertUtils;
+import ee.ria.xroad.common.util.ServiceMetricRegistry;
 import ee.ria.xroad.signer.OcspClientJob;
 import ee.ria.xroad.signer.certmanager.OcspResponseManager.IsCachedOcspResponse;
 import ee.ria.xroad.signer.protocol.dto.CertificateInfo;
@@ -44,11 +46,17 @@ import ee.ria.xroad.signer.util.AbstractSignerActor;
 import ee.ria.xroad.signer.util.SignerUtil;
 
 import akka.actor.ActorRef;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
 import org.bouncycastle.cert.ocsp.OCSPException;
 import org.bouncycastle.cert.ocsp.OCSPResp;
 
+import javax.security.auth.x500.X500Principal;
+
 import java.io.IOException;
 import java.net.ConnectException;
 import java.security.PrivateKey;
@@ -59,10 +67,19 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static ee.ria.xroad.common.util.CryptoUtils.calculateCertHexHash;
 import static ee.ria.xroad.common.util.CryptoUtils.encodeBase64;
@@ -77,6 +94,8 @@ import static java.util.Collections.emptyList;
  * server and providing the responses to the message signer.
  *
  * The certificate status is queried from the server at a fixed interval.
+ * The queries are executed in parallel, while the number of concurrent
+ * requests sent to a single OCSP responder is limited.
  */
 @Slf4j
 @RequiredArgsConstructor
@@ -95,15 +114,33 @@ public class OcspClientWorker extends AbstractSignerActor {
 
     private static final String OCSP_CLIENT_JOB_PATH = "/user/" + OCSP_CLIENT_JOB;
 
+    private static final String RESPONSE_AGE_PREFIX = MetricRegistry.name(OcspClientWorker.class, "responseAge");
+
+    private static final Timer REFRESH_CYCLE_TIMER = ServiceMetricRegistry.getMetrics().timer(
+            MetricRegistry.name(OcspClientWorker.class, "refreshCycle"));
+
+    private final Map<String, OcspResponderQueue> responderQueues = new ConcurrentHashMap<>();
+
+    private final Map<String, Date> responseThisUpdates = new ConcurrentHashMap<>();
+
     private GlobalConfChangeChecker changeChecker;
 
     private CertificationServiceDiagnostics certServDiagnostics;
 
+    private ExecutorService fetchExecutor;
+
     @Override
     public void preStart() throws Exception {
         super.preStart();
         changeChecker = new GlobalConfChangeChecker();
         certServDiagnostics = new CertificationServiceDiagnostics();
+        fetchExecutor = createFetchExecutor(SystemProperties.getOcspFetchThreads());
+    }
+
+    @Override
+    public void postStop() throws Exception {
+        fetchExecutor.shutdownNow();
+        super.postStop();
     }
 
     @Override
@@ -210,19 +247,38 @@ public class OcspClientWorker extends AbstractSignerActor {
 
         log.info("Fetching OCSP responses for {} certificates", certs.size());
 
-        Boolean failed = false;
+        Timer.Context cycleTimer = REFRESH_CYCLE_TIMER.time();
+
+        boolean failed = false;
         Map<String, OCSPResp> statuses = new HashMap<>();
 
-        for (X509Certificate subject : certs) {
+        Map<X509Certificate, Future<OCSPResp>> queries = submitCertStatusQueries(certs, new OcspVerifierOptions(
+                GlobalConfExtensions.getInstance().shouldVerifyOcspNextUpdate()));
+
+        for (Entry<X509Certificate, Future<OCSPResp>> query : queries.entrySet()) {
+            X509Certificate subject = query.getKey();
+
             try {
-                OCSPResp status = queryCertStatus(subject, new OcspVerifierOptions(
-                        GlobalConfExtensions.getInstance().shouldVerifyOcspNextUpdate()));
+                OCSPResp status = query.getValue().get();
                 if (status != null) {
                     String subjectHash = calculateCertHexHash(subject);
                     statuses.put(subjectHash, status);
+                    recordResponseAge(subjectHash, status);
                 } else {
                     failed = true;
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queries.values().forEach(f -> f.cancel(true));
+                failed = true;
+
+                log.error("Interrupted while querying certificate statuses");
+
+                break;
+            } catch (ExecutionException e) {
+                failed = true;
+
+                log.error("Error when querying certificate '{}'", subject.getSerialNumber(), e.getCause());
             } catch (Exception e) {
                 failed = true;
 
@@ -230,6 +286,11 @@ public class OcspClientWorker extends AbstractSignerActor {
             }
         }
 
+        long cycleDuration = cycleTimer.stop();
+
+        log.info("OCSP-response refresh cycle finished in {} ms, received {} of {} responses",
+                TimeUnit.NANOSECONDS.toMillis(cycleDuration), statuses.size(), certs.size());
+
         if (failed) {
             getSender().tell(FAILED, getSelf());
         } else {
@@ -278,61 +339,152 @@ public class OcspClientWorker extends AbstractSignerActor {
                 continue; // ignore self-signed certificates
             }
 
-            getCertChain(cert).stream().filter(this::isCertValid).forEach(certs::add);
+            certs.addAll(getCertChain(cert));
+        }
+
+        pruneResponseAges(certs);
+
+        // certificates shared by several chains (e.g. intermediate CAs) are checked only once
+        List<X509Certificate> result = new ArrayList<>();
+        certs.stream().filter(this::isCertValid).forEach(result::add);
+
+        return result;
+    }
+
+    /**
+     * Submits the OCSP queries for the given certificates. Certificates are grouped by issuer, so that the
+     * issuer certificate is looked up only once per group. The requests are queued per responder, so that
+     * fetch threads never wait for a busy responder.
+     */
+    Map<X509Certificate, Future<OCSPResp>> submitCertStatusQueries(List<X509Certificate> certs,
+            OcspVerifierOptions verifierOptions) {
+        Map<X500Principal, List<X509Certificate>> certsByIssuer = new LinkedHashMap<>();
+
+        for (X509Certificate cert : certs) {
+            certsByIssuer.computeIfAbsent(cert.getIssuerX500Principal(), i -> new ArrayList<>()).add(cert);
+        }
+
+        Map<X509Certificate, Future<OCSPResp>> queries = new LinkedHashMap<>();
+
+        for (List<X509Certificate> group : certsByIssuer.values()) {
+            X509Certificate issuer;
+
+            try {
+                issuer = GlobalConf.getCaCert(GlobalConf.getInstanceIdentifier(), group.get(0));
+            } catch (Exception e) {
+                log.error("Unable to find issuer for certificate '{}'", group.get(0).getIssuerX500Principal(), e);
+
+                for (X509Certificate subject : group) {
+                    queries.put(subject, failedQuery(e));
+                }
+
+                continue;
+            }
+
+            for (X509Certificate subject : group) {
+                queries.put(subject, submitCertStatusQuery(subject, issuer, verifierOptions));
+            }
         }
 
-        return new ArrayList<>(certs);
+        return queries;
     }
 
     OCSPResp queryCertStatus(X509Certificate subject, OcspVerifierOptions verifierOptions) throws Exception {
         X509Certificate issuer = GlobalConf.getCaCert(GlobalConf.getInstanceIdentifier(), subject);
 
-        PrivateKey signerKey = OcspClient.getOcspRequestKey(subject);
-        X509Certificate signer = OcspClient.getOcspSignerCert();
-        String signAlgoId = OcspClient.getSignAlgorithmId();
+        return queryCertStatus(subject, issuer, verifierOptions);
+    }
+
+    OCSPResp queryCertStatus(X509Certificate subject, X509Certificate issuer, OcspVerifierOptions verifierOptions)
+            throws Exception {
+        try {
+            return submitCertStatusQuery(subject, issuer, verifierOptions).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+
+            throw e;
+        }
+    }
+
+    private CompletableFuture<OCSPResp> submitCertStatusQuery(X509Certificate subject, X509Certificate issuer,
+            OcspVerifierOptions verifierOptions) {
+        PrivateKey signerKey;
+        X509Certificate signer;
+        String signAlgoId;
+        List<String> responderURIs;
 
-        List<String> responderURIs = GlobalConf.getOcspResponderAddresses(subject);
+        try {
+            signerKey = OcspClient.getOcspRequestKey(subject);
+            signer = OcspClient.getOcspSignerCert();
+            signAlgoId = OcspClient.getSignAlgorithmId();
+
+            responderURIs = GlobalConf.getOcspResponderAddresses(subject);
+        } catch (Exception e) {
+            return failedQuery(e);
+        }
 
         log.debug("responder URIs: {}", responderURIs);
 
         if (responderURIs.isEmpty()) {
-            throw new ConnectException("No OCSP responder URIs available");
+            return failedQuery(new ConnectException("No OCSP responder URIs available"));
         }
 
-        OCSPResp response = null;
+        // the responders are tried in order until one of them returns a response
+        CompletableFuture<OCSPResp> query = CompletableFuture.completedFuture(null);
 
         for (String responderURI : responderURIs) {
-            try {
-                log.debug("Fetching response from: {}", responderURI);
+            query = query.thenCompose(response -> response != null
+                    ? CompletableFuture.completedFuture(response)
+                    : getResponderQueue(responderURI).submit(() ->
+                            fetchResponse(responderURI, subject, issuer, signerKey, signer, signAlgoId)));
+        }
 
-                response = OcspClient.fetchResponse(responderURI, subject, issuer, signerKey, signer, signAlgoId);
+        return query.thenApply(response -> verifyResponse(response, subject, issuer, verifierOptions));
+    }
 
-                if (response != null) {
-                    reportOcspDiagnostics(issuer, responderURI, DiagnosticsErrorCodes.RETURN_SUCCESS, LocalTime.now(),
-                            LocalTime.now().plusSeconds(GlobalConfExtensions.getInstance().getOcspFetchInterval()));
+    private OCSPResp fetchResponse(String responderURI, X509Certificate subject, X509Certificate issuer,
+            PrivateKey signerKey, X509Certificate signer, String signAlgoId) throws Exception {
+        try {
+            log.debug("Fetching response from: {}", responderURI);
 
-                    break;
-                }
-            } catch (OCSPException e) {
-                log.error("Parsing OCSP response from " + responderURI + " failed", e);
+            OCSPResp response = OcspClient.fetchResponse(responderURI, subject, issuer, signerKey, signer,
+                    signAlgoId);
 
-                reportOcspDiagnostics(issuer, responderURI, DiagnosticsErrorCodes.ERROR_CODE_OCSP_RESPONSE_INVALID,
-                        LocalTime.now(),
+            if (response != null) {
+                reportOcspDiagnostics(issuer, responderURI, DiagnosticsErrorCodes.RETURN_SUCCESS, LocalTime.now(),
                         LocalTime.now().plusSeconds(GlobalConfExtensions.getInstance().getOcspFetchInterval()));
-            } catch (IOException e) {
-                log.error("Unable to connect to responder at " + responderURI, e);
+            }
 
-                reportOcspDiagnostics(issuer, responderURI, DiagnosticsErrorCodes.ERROR_CODE_OCSP_CONNECTION_ERROR,
-                        LocalTime.now(),
-                        LocalTime.now().plusSeconds(GlobalConfExtensions.getInstance().getOcspFetchInterval()));
-            } catch (Exception e) {
-                log.error("Unable to fetch response from responder at " + responderURI, e);
+            return response;
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (OCSPException e) {
+            log.error("Parsing OCSP response from " + responderURI + " failed", e);
+
+            reportOcspDiagnostics(issuer, responderURI, DiagnosticsErrorCodes.ERROR_CODE_OCSP_RESPONSE_INVALID,
+                    LocalTime.now(),
+                    LocalTime.now().plusSeconds(GlobalConfExtensions.getInstance().getOcspFetchInterval()));
+        } catch (IOException e) {
+            log.error("Unable to connect to responder at " + responderURI, e);
+
+            reportOcspDiagnostics(issuer, responderURI, DiagnosticsErrorCodes.ERROR_CODE_OCSP_CONNECTION_ERROR,
+                    LocalTime.now(),
+                    LocalTime.now().plusSeconds(GlobalConfExtensions.getInstance().getOcspFetchInterval()));
+        } catch (Exception e) {
+            log.error("Unable to fetch response from responder at " + responderURI, e);
 
-                reportOcspDiagnostics(issuer, responderURI, DiagnosticsErrorCodes.ERROR_CODE_OCSP_FAILED,
-                        LocalTime.now(),
-                        LocalTime.now().plusSeconds(GlobalConfExtensions.getInstance().getOcspFetchInterval()));
-            }
+            reportOcspDiagnostics(issuer, responderURI, DiagnosticsErrorCodes.ERROR_CODE_OCSP_FAILED,
+                    LocalTime.now(),
+                    LocalTime.now().plusSeconds(GlobalConfExtensions.getInstance().getOcspFetchInterval()));
         }
+
+        return null;
+    }
+
+    private OCSPResp verifyResponse(OCSPResp response, X509Certificate subject, X509Certificate issuer,
+            OcspVerifierOptions verifierOptions) {
         try {
             log.debug("Verifying response: {}", response);
 
@@ -350,7 +502,19 @@ public class OcspClientWorker extends AbstractSignerActor {
         }
     }
 
-    private void reportOcspDiagnostics(X509Certificate issuer, String responderURI, int statusCode,
+    private OcspResponderQueue getResponderQueue(String responderURI) {
+        return responderQueues.computeIfAbsent(responderURI,
+                uri -> new OcspResponderQueue(fetchExecutor, SystemProperties.getOcspMaxRequestsPerResponder()));
+    }
+
+    private static CompletableFuture<OCSPResp> failedQuery(Exception cause) {
+        CompletableFuture<OCSPResp> failure = new CompletableFuture<>();
+        failure.completeExceptionally(cause);
+
+        return failure;
+    }
+
+    private synchronized void reportOcspDiagnostics(X509Certificate issuer, String responderURI, int statusCode,
             LocalTime prevUpdate, LocalTime nextUpdate) {
 
         OcspResponderStatus responderStatus = new OcspResponderStatus(statusCode, responderURI, prevUpdate, nextUpdate);
@@ -385,6 +549,57 @@ public class OcspClientWorker extends AbstractSignerActor {
                 new String[statuses.size()]), responses.toArray(new String[statuses.size()])), getSelf());
     }
 
+    private void recordResponseAge(String certHash, OCSPResp response) {
+        try {
+            BasicOCSPResp basicResponse = (BasicOCSPResp) response.getResponseObject();
+
+            responseThisUpdates.put(certHash, basicResponse.getResponses()[0].getThisUpdate());
+        } catch (Exception e) {
+            log.warn("Unable to read thisUpdate of OCSP response for cert {}", certHash, e);
+
+            return;
+        }
+
+        String name = MetricRegistry.name(RESPONSE_AGE_PREFIX, certHash);
+
+        if (!ServiceMetricRegistry.getMetrics().getGauges().containsKey(name)) {
+            ServiceMetricRegistry.getMetrics().register(name, (Gauge<Long>) () -> {
+                Date thisUpdate = responseThisUpdates.get(certHash);
+
+                return thisUpdate != null
+                        ? TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - thisUpdate.getTime()) : null;
+            });
+        }
+    }
+
+    private void pruneResponseAges(Set<X509Certificate> trackedCerts) {
+        Set<String> trackedHashes = new HashSet<>();
+
+        for (X509Certificate cert : trackedCerts) {
+            try {
+                trackedHashes.add(calculateCertHexHash(cert));
+            } catch (Exception e) {
+                log.error("Failed to calculate hash of certificate {}", cert.getSubjectX500Principal(), e);
+            }
+        }
+
+        responseThisUpdates.keySet().retainAll(trackedHashes);
+
+        ServiceMetricRegistry.getMetrics().removeMatching((name, metric) -> name.startsWith(RESPONSE_AGE_PREFIX)
+                && !trackedHashes.contains(name.substring(RESPONSE_AGE_PREFIX.length() + 1)));
+    }
+
+    private static ExecutorService createFetchExecutor(int threads) {
+        AtomicInteger threadCount = new AtomicInteger();
+
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "ocsp-fetch-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+
+            return thread;
+        });
+    }
+
     /**
      * @return true if the response for given certificate does not exist, is expired (in which case it is also
      * removed from cache) or is not valid
@@ -0,0 +1,151 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.signer.certmanager;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Limits the number of concurrent requests sent to a single OCSP responder.
+ *
+ * Requests exceeding the limit wait in the responder's own queue and are handed over to the shared
+ * fetch executor only when a previous request to the same responder completes. This way a slow
+ * responder never occupies more executor threads than its limit and does not delay requests to
+ * other responders.
+ */
+class OcspResponderQueue {
+
+    private final Executor executor;
+
+    private final int maxConcurrentRequests;
+
+    private final Queue<Request<?>> waiting = new ArrayDeque<>();
+
+    private int running;
+
+    OcspResponderQueue(Executor executor, int maxConcurrentRequests) {
+        this.executor = executor;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    /**
+     * Executes the given request on the fetch executor as soon as the responder has a free slot.
+     * @param task the request to the responder
+     * @param <T> type of the request result
+     * @return future completed with the result of the request
+     */
+    <T> CompletableFuture<T> submit(Callable<T> task) {
+        Request<T> request = new Request<>(task);
+
+        synchronized (this) {
+            if (running >= maxConcurrentRequests) {
+                waiting.add(request);
+
+                return request.result;
+            }
+
+            running++;
+        }
+
+        if (!dispatch(request)) {
+            requestFinished();
+        }
+
+        return request.result;
+    }
+
+    /**
+     * @return number of requests waiting for a free slot
+     */
+    synchronized int getWaitingCount() {
+        return waiting.size();
+    }
+
+    private boolean dispatch(Request<?> request) {
+        try {
+            executor.execute(request);
+
+            return true;
+        } catch (RejectedExecutionException e) {
+            request.result.completeExceptionally(e);
+
+            return false;
+        }
+    }
+
+    /**
+     * Hands the slot of a finished request over to the next waiting request. Requests the executor
+     * rejects (e.g. after shutdown) are failed in a loop rather than recursively, so a long queue
+     * cannot overflow the stack.
+     */
+    private void requestFinished() {
+        while (true) {
+            Request<?> next;
+
+            synchronized (this) {
+                next = waiting.poll();
+
+                if (next == null) {
+                    running--;
+
+                    return;
+                }
+            }
+
+            if (dispatch(next)) {
+                return;
+            }
+        }
+    }
+
+    private final class Request<T> implements Runnable {
+
+        private final Callable<T> task;
+
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        Request(Callable<T> task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            try {
+                // the query may have been cancelled while waiting for a free slot
+                if (!result.isDone()) {
+                    result.complete(task.call());
+                }
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            } finally {
+                requestFinished();
+            }
+        }
+    }
+}
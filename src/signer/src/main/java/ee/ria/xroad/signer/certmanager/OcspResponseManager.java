@@ -41,6 +41,8 @@ import org.bouncycastle.cert.ocsp.OCSPResp;
 import java.io.Serializable;
 import java.security.cert.X509Certificate;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Map.Entry;
 
 import static ee.ria.xroad.common.util.CryptoUtils.calculateCertHexHash;
@@ -54,14 +56,12 @@ import static ee.ria.xroad.common.util.CryptoUtils.encodeBase64;
  * Certificates are identified by their SHA-1 fingerprint calculated over
  * the entire certificate.
  *
- * When an OCSP response is added to the manager, it is first cached in memory
- * (overwriting any existing response) and then attempted to be written to disk
- * (overwriting any existing response file).
+ * When OCSP responses are added to the manager, they are appended to the
+ * OCSP response store file with a single write and indexed in memory
+ * (overriding any existing responses).
  *
- * When an OCSP response is queried from the manager, first the cache is checked
- * for the response. If the response exists in the memory cache, it is returned.
- * If the response does not exist in the memory cache, the response will be
- * loaded from disk, if it exists and is cached in memory as well.
+ * When an OCSP response is queried from the manager, it is looked up from the
+ * index and read from the memory-mapped store file, if it is not expired.
  */
 @Slf4j
 public class OcspResponseManager extends AbstractSignerActor {
@@ -169,10 +169,14 @@ public class OcspResponseManager extends AbstractSignerActor {
     void handleSetOcspResponses(SetOcspResponses message) throws Exception {
         log.trace("handleSetOcspResponses()");
 
+        Map<String, OCSPResp> responses = new LinkedHashMap<>();
+
         for (int i = 0; i < message.getCertHashes().length; i++) {
-            setResponse(message.getCertHashes()[i], new OCSPResp(
+            responses.put(message.getCertHashes()[i], new OCSPResp(
                     decodeBase64(message.getBase64EncodedResponses()[i])));
         }
+
+        setResponses(responses);
     }
 
     void handleIsCachedOcspResponse(IsCachedOcspResponse message)
@@ -195,6 +199,15 @@ public class OcspResponseManager extends AbstractSignerActor {
         }
     }
 
+    void setResponses(Map<String, OCSPResp> responses) {
+        log.debug("Setting {} new responses to cache", responses.size());
+        try {
+            responseCache.putAll(responses);
+        } finally {
+            responses.forEach(TokenManager::setOcspResponse);
+        }
+    }
+
     @RequiredArgsConstructor
     private static class GetOcspResponseHandler extends AbstractSignerActor {
 
@@ -53,7 +53,9 @@ import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -74,6 +76,15 @@ public final class TokenManager {
 
     private static volatile List<Token> currentTokens = new ArrayList<>();
 
+    /** Leaves room for about a million changes per millisecond of uptime before reaching a later boot's seed. */
+    private static final int VERSION_EPOCH_SHIFT = 20;
+
+    /**
+     * Seeded from the start time, so that a restarted signer never reports
+     * a version the clients may have cached from a previous run.
+     */
+    private static final AtomicLong VERSION = new AtomicLong(System.currentTimeMillis() << VERSION_EPOCH_SHIFT);
+
     private static boolean initialized;
 
     // configure the implementation somewhere else if multiple implementations created
@@ -95,6 +106,7 @@ public final class TokenManager {
         }
 
         currentTokens = new ArrayList<>(TokenConf.getInstance().getTokens());
+        changed();
 
         initialized = true;
     }
@@ -135,6 +147,7 @@ public final class TokenManager {
             synchronized (TokenManager.class) {
                 result = mergeStrategy.merge(fileTokens, currentTokens);
                 currentTokens = result.getResultTokens();
+                changed();
             }
             if (listener != null) {
                 listener.mergeDone(result.getAddedCertificates());
@@ -148,6 +161,22 @@ public final class TokenManager {
         }
     }
 
+    /**
+     * Returns the version of the token state. The version changes whenever tokens, keys,
+     * certificates or certificate requests change, so clients can check it instead of
+     * listing all tokens to see if their copy is up to date. Versions keep increasing
+     * across signer restarts.
+     *
+     * @return the current version
+     */
+    public static long getVersion() {
+        return VERSION.get();
+    }
+
+    private static void changed() {
+        VERSION.incrementAndGet();
+    }
+
     // ------------------------------------------------------------------------
 
     /**
@@ -186,6 +215,7 @@ public final class TokenManager {
         token.setAvailable(true);
 
         currentTokens.add(token);
+        changed();
 
         return token.toDTO();
     }
@@ -439,6 +469,7 @@ public final class TokenManager {
         forCert((k, c) -> certHash.equals(c.getHash()),
                 (k, c) -> {
                     c.setOcspResponse(response);
+                    changed();
                     return null;
                 });
     }
@@ -537,8 +568,11 @@ public final class TokenManager {
         log.trace("setTokenAvailable({}, {})", tokenId, available);
 
         Token token = findToken(tokenId);
-        token.setAvailable(available);
-        token.setModuleId(tokenType.getModuleType());
+        if (token.isAvailable() != available || !Objects.equals(token.getModuleId(), tokenType.getModuleType())) {
+            token.setAvailable(available);
+            token.setModuleId(tokenType.getModuleType());
+            changed();
+        }
     }
 
     /**
@@ -550,7 +584,11 @@ public final class TokenManager {
     public static synchronized void setTokenAvailable(String tokenId, boolean available) {
         log.trace("setTokenAvailable({}, {})", tokenId, available);
 
-        findToken(tokenId).setAvailable(available);
+        Token token = findToken(tokenId);
+        if (token.isAvailable() != available) {
+            token.setAvailable(available);
+            changed();
+        }
     }
 
     /**
@@ -563,7 +601,11 @@ public final class TokenManager {
                                                    boolean active) {
         log.trace("setTokenActive({}, {})", tokenId, active);
 
-        findToken(tokenId).setActive(active);
+        Token token = findToken(tokenId);
+        if (token.isActive() != active) {
+            token.setActive(active);
+            changed();
+        }
     }
 
     /**
@@ -577,6 +619,7 @@ public final class TokenManager {
         log.trace("setTokenFriendlyName({}, {})", tokenId, friendlyName);
 
         findToken(tokenId).setFriendlyName(friendlyName);
+        changed();
     }
 
     /**
@@ -599,7 +642,11 @@ public final class TokenManager {
                                                    TokenStatusInfo status) {
         log.trace("setTokenStatus({}, {})", tokenId, status);
 
-        findToken(tokenId).setStatus(status);
+        Token token = findToken(tokenId);
+        if (token.getStatus() != status) {
+            token.setStatus(status);
+            changed();
+        }
     }
 
     /**
@@ -612,7 +659,11 @@ public final class TokenManager {
                                                     boolean available) {
         log.trace("setKeyAvailable({}, {})", keyId, available);
 
-        findKey(keyId).setAvailable(available);
+        Key key = findKey(keyId);
+        if (key.isAvailable() != available) {
+            key.setAvailable(available);
+            changed();
+        }
     }
 
     /**
@@ -636,6 +687,7 @@ public final class TokenManager {
         log.trace("setKeyFriendlyName({}, {})", keyId, friendlyName);
 
         findKey(keyId).setFriendlyName(friendlyName);
+        changed();
     }
 
     /**
@@ -648,6 +700,7 @@ public final class TokenManager {
         log.trace("setKeyLabel({}, {})", keyId, label);
 
         findKey(keyId).setLabel(label);
+        changed();
     }
 
     /**
@@ -661,6 +714,7 @@ public final class TokenManager {
         log.trace("setKeyUsage({}, {})", keyId, keyUsage);
 
         findKey(keyId).setUsage(keyUsage);
+        changed();
     }
 
     /**
@@ -680,6 +734,7 @@ public final class TokenManager {
         key.setPublicKey(publicKeyBase64);
 
         token.addKey(key);
+        changed();
 
         return key.toDTO();
     }
@@ -693,8 +748,13 @@ public final class TokenManager {
     public static synchronized boolean removeKey(String keyId) {
         log.trace("removeKey({})", keyId);
 
-        return forKey((t, k) -> k.getId().equals(keyId),
+        boolean removed = forKey((t, k) -> k.getId().equals(keyId),
                 (t, k) -> t.getKeys().remove(k)).orElse(false);
+        if (removed) {
+            changed();
+        }
+
+        return removed;
     }
 
     /**
@@ -708,6 +768,7 @@ public final class TokenManager {
         log.trace("setPublicKey({}, {})", keyId, publicKeyBase64);
 
         findKey(keyId).setPublicKey(publicKeyBase64);
+        changed();
     }
 
     /**
@@ -725,6 +786,7 @@ public final class TokenManager {
         cert.setCertificate(certBytes);
 
         key.addCert(cert);
+        changed();
     }
 
     /**
@@ -748,6 +810,7 @@ public final class TokenManager {
         cert.setStatus(certInfo.getStatus());
 
         key.addCert(cert);
+        changed();
     }
 
     /**
@@ -761,6 +824,7 @@ public final class TokenManager {
         log.trace("setCertActive({}, {})", certId, active);
 
         findCert(certId).setActive(active);
+        changed();
     }
 
     /**
@@ -774,6 +838,7 @@ public final class TokenManager {
         log.trace("setCertStatus({}, {})", certId, status);
 
         findCert(certId).setStatus(status);
+        changed();
     }
 
     /**
@@ -785,8 +850,13 @@ public final class TokenManager {
     public static synchronized boolean removeCert(String certId) {
         log.trace("removeCert({})", certId);
 
-        return forCert((k, c) -> c.getId().equals(certId),
+        boolean removed = forCert((k, c) -> c.getId().equals(certId),
                 (k, c) -> k.getCerts().remove(c)).orElse(false);
+        if (removed) {
+            changed();
+        }
+
+        return removed;
     }
 
     /**
@@ -811,7 +881,10 @@ public final class TokenManager {
                     key.getUsage());
         }
 
-        key.setUsage(keyUsage);
+        if (key.getUsage() != keyUsage) {
+            key.setUsage(keyUsage);
+            changed();
+        }
 
         for (CertRequest certRequest : key.getCertRequests()) {
             ClientId crMember = certRequest.getMemberId();
@@ -829,6 +902,7 @@ public final class TokenManager {
 
         String certId = SignerUtil.randomId();
         key.addCertRequest(new CertRequest(certId, memberId, subjectName));
+        changed();
 
         log.info("Added new certificate request (memberId: {}, "
                         + "subjectId: {}) under key {}",
@@ -851,6 +925,7 @@ public final class TokenManager {
                     if (!k.getCertRequests().remove(c)) {
                         return null;
                     }
+                    changed();
 
                     return k.getId();
                 }).orElse(null);
@@ -863,7 +938,11 @@ public final class TokenManager {
      * @param info    the token info
      */
     public static synchronized void setTokenInfo(String tokenId, Map<String, String> info) {
-        findToken(tokenId).setInfo(info);
+        Token token = findToken(tokenId);
+        if (!token.getTokenInfo().equals(info)) {
+            token.setInfo(info);
+            changed();
+        }
     }
 
     /**
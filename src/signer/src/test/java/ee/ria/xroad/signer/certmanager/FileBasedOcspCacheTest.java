@@ -28,19 +28,28 @@ import ee.ria.xroad.common.OcspTestUtils;
 import ee.ria.xroad.common.TestCertUtil;
 import ee.ria.xroad.common.conf.globalconf.EmptyGlobalConf;
 import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+import ee.ria.xroad.common.ocsp.OcspResponseStore;
 
 import org.bouncycastle.cert.ocsp.CertificateStatus;
 import org.bouncycastle.cert.ocsp.OCSPResp;
 import org.joda.time.DateTime;
+import org.junit.Before;
 import org.junit.BeforeClass;
+import org.junit.Rule;
 import org.junit.Test;
-import org.mockito.Mockito;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.PrivateKey;
 import java.security.cert.X509Certificate;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.mockito.Mockito.mock;
@@ -56,28 +65,50 @@ public class FileBasedOcspCacheTest {
     static X509Certificate signer;
     static PrivateKey signerKey;
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path storeFile;
+
+    /**
+     * Sets up the store file.
+     */
+    @Before
+    public void setUp() {
+        storeFile = folder.getRoot().toPath().resolve(OcspResponseStore.STORE_FILE_NAME);
+    }
+
     /**
      * Test.
      * @throws Exception if an error occurs
      */
     @Test
     public void putGet() throws Exception {
-        Date thisUpdate = new DateTime().plusDays(1).toDate();
-        OCSPResp ocsp = OcspTestUtils.createOCSPResponse(subject, issuer,
-                signer, signerKey, CertificateStatus.GOOD, thisUpdate, null);
+        OCSPResp ocsp = createResponse(new DateTime().plusDays(1).toDate());
+
+        FileBasedOcspCache cache = createCache();
 
-        FileBasedOcspCache cache = new FileBasedOcspCache();
-        FileBasedOcspCache spy = Mockito.spy(cache);
+        assertNull(cache.put("foo", ocsp));
+        assertNotNull(cache.get("foo"));
+    }
 
-        Mockito.doNothing().when(spy).saveResponseToFile(
-                Mockito.any(File.class), Mockito.any(OCSPResp.class));
+    /**
+     * Test.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void putAllGet() throws Exception {
+        OCSPResp ocsp = createResponse(new DateTime().plusDays(1).toDate());
 
-        spy.put("foo", ocsp);
+        Map<String, OCSPResp> responses = new HashMap<>();
+        responses.put("foo", ocsp);
+        responses.put("bar", ocsp);
 
-        Mockito.verify(spy).saveResponseToFile(Mockito.any(File.class),
-                Mockito.any(OCSPResp.class));
+        FileBasedOcspCache cache = createCache();
+        cache.putAll(responses);
 
         assertNotNull(cache.get("foo"));
+        assertNotNull(cache.get("bar"));
     }
 
     /**
@@ -86,21 +117,12 @@ public class FileBasedOcspCacheTest {
      */
     @Test
     public void expiredResponse() throws Exception {
-        Date thisUpdate = new DateTime().minusDays(1).toDate();
-        OCSPResp ocsp = OcspTestUtils.createOCSPResponse(subject, issuer,
-                signer, signerKey, CertificateStatus.GOOD, thisUpdate, null);
+        OCSPResp ocsp = createResponse(new DateTime().minusDays(1).toDate());
 
-        FileBasedOcspCache cache = new FileBasedOcspCache();
-        FileBasedOcspCache spy = Mockito.spy(cache);
+        FileBasedOcspCache cache = createCache();
 
-        Mockito.doNothing().when(spy).saveResponseToFile(
-                Mockito.any(File.class), Mockito.any(OCSPResp.class));
-
-        Mockito.doReturn(ocsp).when(spy).loadResponseFromFile(
-                Mockito.any(File.class));
-
-        assertNull(spy.put("foo", ocsp));
-        assertNull(spy.get("foo"));
+        assertNull(cache.put("foo", ocsp));
+        assertNull(cache.get("foo"));
     }
 
     /**
@@ -108,28 +130,34 @@ public class FileBasedOcspCacheTest {
      * @throws Exception if an error occurs
      */
     @Test
-    public void saveLoadOcspResponseToFile() throws Exception {
-        Date thisUpdate = new DateTime().plusDays(1).toDate();
-        OCSPResp ocsp = OcspTestUtils.createOCSPResponse(subject, issuer,
-                signer, signerKey, CertificateStatus.GOOD, thisUpdate, null);
+    public void saveLoadOcspResponseFromStore() throws Exception {
+        OCSPResp ocsp = createResponse(new DateTime().plusDays(1).toDate());
 
-        FileBasedOcspCache cache = new FileBasedOcspCache();
-        FileBasedOcspCache spy = Mockito.spy(cache);
+        createCache().put("foo", ocsp);
 
-        Mockito.doNothing().when(spy).saveResponseToFile(
-                Mockito.any(File.class), Mockito.any(OCSPResp.class));
+        FileBasedOcspCache cache = createCache();
+        cache.reloadFromDisk();
 
-        spy.put("foo", ocsp);
+        assertArrayEquals(ocsp.getEncoded(), cache.get("foo").getEncoded());
+        assertNotNull(cache.entrySet().iterator().next().getValue());
+    }
 
-        Mockito.verify(spy).saveResponseToFile(Mockito.any(File.class),
-                Mockito.any(OCSPResp.class));
+    /**
+     * Test.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void importResponseFiles() throws Exception {
+        OCSPResp ocsp = createResponse(new DateTime().plusDays(1).toDate());
 
-        spy.clear();
+        File responseFile = folder.newFile("foo.ocsp");
+        Files.write(responseFile.toPath(), ocsp.getEncoded());
 
-        Mockito.doReturn(ocsp).when(spy).loadResponseFromFile(
-                Mockito.any(File.class));
+        FileBasedOcspCache cache = createCache();
+        cache.reloadFromDisk();
 
-        assertNotNull(spy.get("foo"));
+        assertNotNull(cache.get("foo"));
+        assertFalse(responseFile.exists());
     }
 
     /**
@@ -138,7 +166,7 @@ public class FileBasedOcspCacheTest {
      */
     @Test
     public void readOcspFromEmptyFile() throws Exception {
-        FileBasedOcspCache cache = new FileBasedOcspCache();
+        FileBasedOcspCache cache = createCache();
 
         File f = mock(File.class);
         when(f.exists()).thenReturn(true);
@@ -166,4 +194,13 @@ public class FileBasedOcspCacheTest {
         subject = TestCertUtil.getCertChainCert("user_0.p12");
         assertNotNull(subject);
     }
+
+    private FileBasedOcspCache createCache() {
+        return new FileBasedOcspCache(new OcspResponseStore(storeFile, false));
+    }
+
+    private static OCSPResp createResponse(Date thisUpdate) throws Exception {
+        return OcspTestUtils.createOCSPResponse(subject, issuer,
+                signer, signerKey, CertificateStatus.GOOD, thisUpdate, null);
+    }
 }
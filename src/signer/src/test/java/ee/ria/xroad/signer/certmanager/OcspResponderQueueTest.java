@@ -0,0 +1,204 @@
+/**
+ * The MIT License
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.signer.certmanager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the per-responder request limit of the OCSP client.
+ */
+public class OcspResponderQueueTest {
+
+    private static final int FETCH_THREADS = 4;
+
+    private static final int REQUESTS = 6;
+
+    private static final int REJECTED_REQUESTS = 100000;
+
+    private ExecutorService executor;
+
+    /**
+     * Creates the fetch executor.
+     */
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(FETCH_THREADS);
+    }
+
+    /**
+     * Stops the fetch executor.
+     */
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Test.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void limitsConcurrentRequestsToResponder() throws Exception {
+        OcspResponderQueue slowResponder = new OcspResponderQueue(executor, 2);
+
+        CountDownLatch responderBlocked = new CountDownLatch(1);
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+
+        for (int i = 0; i < REQUESTS; i++) {
+            int request = i;
+
+            results.add(slowResponder.submit(() -> {
+                maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+
+                try {
+                    responderBlocked.await();
+                } finally {
+                    active.decrementAndGet();
+                }
+
+                return request;
+            }));
+        }
+
+        assertEquals(REQUESTS - 2, slowResponder.getWaitingCount());
+
+        responderBlocked.countDown();
+
+        for (int i = 0; i < REQUESTS; i++) {
+            assertEquals(Integer.valueOf(i), results.get(i).get(1, TimeUnit.SECONDS));
+        }
+
+        assertEquals(2, maxActive.get());
+        assertEquals(0, slowResponder.getWaitingCount());
+    }
+
+    /**
+     * Test.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void slowResponderDoesNotBlockOtherResponders() throws Exception {
+        OcspResponderQueue slowResponder = new OcspResponderQueue(executor, 1);
+        OcspResponderQueue fastResponder = new OcspResponderQueue(executor, 1);
+
+        CountDownLatch responderBlocked = new CountDownLatch(1);
+
+        List<CompletableFuture<Boolean>> slowResults = new ArrayList<>();
+
+        // more requests than there are fetch threads, all waiting on the same responder
+        for (int i = 0; i < REQUESTS; i++) {
+            slowResults.add(slowResponder.submit(() -> responderBlocked.await(1, TimeUnit.MINUTES)));
+        }
+
+        assertTrue(fastResponder.submit(() -> true).get(1, TimeUnit.SECONDS));
+
+        assertFalse(slowResults.get(0).isDone());
+        assertEquals(REQUESTS - 1, slowResponder.getWaitingCount());
+
+        responderBlocked.countDown();
+
+        for (CompletableFuture<Boolean> result : slowResults) {
+            assertTrue(result.get(1, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * Test.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void failedRequestReleasesSlot() throws Exception {
+        OcspResponderQueue responder = new OcspResponderQueue(executor, 1);
+
+        CompletableFuture<Object> failed = responder.submit(() -> {
+            throw new IllegalStateException("responder failure");
+        });
+        CompletableFuture<Object> next = responder.submit(() -> "response");
+
+        assertEquals("response", next.get(1, TimeUnit.SECONDS));
+        assertTrue(failed.isCompletedExceptionally());
+    }
+
+    /**
+     * Test that a long queue of requests the executor rejects after shutdown is failed without
+     * recursing once per request.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void rejectedRequestsFailWithoutRecursion() throws Exception {
+        OcspResponderQueue responder = new OcspResponderQueue(executor, 1);
+
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Object> running = responder.submit(() -> {
+            release.await();
+
+            return "response";
+        });
+
+        List<CompletableFuture<Object>> waiting = new ArrayList<>();
+
+        for (int i = 0; i < REJECTED_REQUESTS; i++) {
+            waiting.add(responder.submit(() -> "response"));
+        }
+
+        executor.shutdown();
+        release.countDown();
+
+        assertEquals("response", running.get(1, TimeUnit.SECONDS));
+
+        for (CompletableFuture<Object> request : waiting) {
+            try {
+                request.get(1, TimeUnit.SECONDS);
+
+                fail("request should have been rejected");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+        }
+
+        assertEquals(0, responder.getWaitingCount());
+    }
+}